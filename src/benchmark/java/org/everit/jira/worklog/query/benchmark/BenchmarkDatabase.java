@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.everit.jira.worklog.query.test.DatabaseSupport;
+import org.everit.jira.worklog.query.test.H2QuerydslSupport;
+import org.everit.jira.worklog.query.test.WorklogDatasetGenerator;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The H2 database of the benchmarks with the schema of the {@link DatabaseSupport} and the given
+ * number of worklogs generated by the {@link WorklogDatasetGenerator}. Every user is the member of
+ * the {@link #GROUP}, so a query of the group returns every worklog of the year 2016. The database
+ * is stored in a file under the target directory, so the large scales do not have to fit in the
+ * heap.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+  public static final String GROUP = "group-0";
+
+  private static final int PROJECTS = 100;
+
+  private static final long SEED = 20160101L;
+
+  private static final int USERS = 5000;
+
+  private static final int WORKLOGS_PER_ISSUE = 10;
+
+  private JdbcDataSource dataSource;
+
+  private WorklogDatasetGenerator generator;
+
+  private H2QuerydslSupport querydslSupport;
+
+  @Param({ "10000", "1000000", "10000000" })
+  public int worklogs;
+
+  public WorklogDatasetGenerator getGenerator() {
+    return generator;
+  }
+
+  public H2QuerydslSupport getQuerydslSupport() {
+    return querydslSupport;
+  }
+
+  /**
+   * Creates the schema and generates the rows.
+   *
+   * @throws SQLException
+   *           if the database cannot be initialized.
+   */
+  @Setup
+  public void setUp() throws SQLException {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:file:./target/benchmark/worklogs");
+    dataSource.setUser("sa");
+    dataSource.setPassword("");
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("DROP ALL OBJECTS");
+    }
+    DatabaseSupport.createTables(dataSource);
+    generator = new WorklogDatasetGenerator()
+        .seed(SEED)
+        .users(USERS)
+        .groups(1)
+        .projects(PROJECTS)
+        .issues(Math.max(1, worklogs / WORKLOGS_PER_ISSUE))
+        .worklogs(worklogs)
+        .startDate("2016-01-01")
+        .days(366);
+    generator.generate(dataSource);
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("CREATE INDEX worklog_issue ON worklog (ISSUEID)");
+      statement.execute("CREATE INDEX worklog_author ON worklog (AUTHOR)");
+    }
+    querydslSupport = new H2QuerydslSupport(dataSource);
+  }
+
+  /**
+   * Drops the database.
+   *
+   * @throws SQLException
+   *           if the database cannot be dropped.
+   */
+  @TearDown
+  public void tearDown() throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("DROP ALL OBJECTS DELETE FILES");
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.benchmark;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.jira.worklog.query.plugin.DateTimeConverterUtil;
+import org.everit.jira.worklog.query.plugin.query.JsonWorklog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atlassian.jira.util.json.JSONException;
+
+/**
+ * Benchmarks of the per-row work of the worklog queries: the population of a {@link JsonWorklog}
+ * by the query projection, its serialization and the date formatting it uses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Duser.timezone=UTC")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class JsonWorklogBenchmark {
+
+  private final Timestamp startDate = Timestamp.valueOf("2016-03-01 08:00:00");
+
+  private final Timestamp updated = Timestamp.valueOf("2016-03-07 14:08:08.967");
+
+  @Benchmark
+  public String formatDate() {
+    return DateTimeConverterUtil.stringDateToISO8601FormatString(startDate);
+  }
+
+  @Benchmark
+  public String serializeWorklog() throws JSONException {
+    JsonWorklog worklog = new JsonWorklog();
+    worklog.setId(10001L);
+    worklog.setStartDate(startDate);
+    worklog.setIssueKey("SAM-2");
+    worklog.setUserId("test-user@everit.biz");
+    worklog.setDuration(22020L);
+    worklog.setCommentBody("worklog comment");
+    worklog.setUpdated(updated);
+    return worklog.toString();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.benchmark;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.jira.worklog.query.plugin.IssueBeanWithTimespent;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsByIssuesQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsQuery;
+import org.everit.jira.worklog.query.plugin.query.JsonWorklog;
+import org.everit.jira.worklog.query.plugin.query.WriteWorklogsQuery;
+import org.everit.jira.worklog.query.test.WorklogDatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atlassian.jira.rest.api.util.StringList;
+
+/**
+ * Benchmarks of the SQL callables without the Jira components: the worklogs query that collects
+ * the rows, the one that writes them while they are read and the worklogs by issues query.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Duser.timezone=UTC", "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WorklogQueryCallableBenchmark {
+
+  /**
+   * Writer that drops the written characters.
+   */
+  private static final class DiscardingWriter extends Writer {
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+    }
+
+    @Override
+    public void write(final int c) {
+    }
+
+    @Override
+    public void write(final String str) {
+    }
+  }
+
+  /**
+   * The parameters of the queries that cover every generated worklog.
+   */
+  @State(Scope.Benchmark)
+  public static class QueryParameters {
+
+    private static final int ISSUES_PAGE_SIZE = 1000;
+
+    private Calendar endDate;
+
+    private Set<Long> issueIds;
+
+    private List<Long> projectIds;
+
+    private Calendar startDate;
+
+    private List<String> userKeys;
+
+    /**
+     * Creates the parameters for the users, the projects and the issues of the database.
+     *
+     * @param database
+     *          the database of the benchmark.
+     */
+    @Setup
+    public void setUp(final BenchmarkDatabase database) {
+      startDate = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+      startDate.clear();
+      startDate.set(2016, Calendar.JANUARY, 1);
+      endDate = (Calendar) startDate.clone();
+      endDate.add(Calendar.YEAR, 1);
+      WorklogDatasetGenerator generator = database.getGenerator();
+      userKeys = generator.getGroupUserKeys(0);
+      projectIds = new ArrayList<>();
+      for (int project = 0; project < generator.getProjectCount(); project++) {
+        projectIds.add(generator.getProjectId(project));
+      }
+      issueIds = new HashSet<>();
+      for (int issue = 0; issue < generator.getIssueCount(); issue++) {
+        issueIds.add(generator.getIssueId(issue));
+      }
+    }
+  }
+
+  @Benchmark
+  public List<JsonWorklog> findWorklogs(final BenchmarkDatabase database,
+      final QueryParameters parameters) {
+    return database.getQuerydslSupport().execute(new FindWorklogsQuery(parameters.startDate,
+        parameters.endDate, Collections.<StringList> emptyList(), parameters.userKeys,
+        parameters.projectIds, false));
+  }
+
+  @Benchmark
+  public List<IssueBeanWithTimespent> findWorklogsByIssues(final BenchmarkDatabase database,
+      final QueryParameters parameters) {
+    return database.getQuerydslSupport().execute(new FindWorklogsByIssuesQuery(
+        parameters.startDate, parameters.endDate, parameters.userKeys, parameters.issueIds, 0,
+        QueryParameters.ISSUES_PAGE_SIZE, "http://localhost:2990/jira/rest/api/2/issue/"));
+  }
+
+  @Benchmark
+  public long writeWorklogs(final BenchmarkDatabase database, final QueryParameters parameters) {
+    return database.getQuerydslSupport().execute(new WriteWorklogsQuery(
+        new FindWorklogsQuery(parameters.startDate, parameters.endDate,
+            Collections.<StringList> emptyList(), parameters.userKeys, parameters.projectIds,
+            false),
+        new DiscardingWriter()));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.everit.jira.worklog.query.plugin.FindWorklogsByIssuesParam;
+import org.everit.jira.worklog.query.plugin.SearchResultsBeanWithTimespent;
+import org.everit.jira.worklog.query.plugin.WorklogQueryCoreImpl;
+import org.everit.jira.worklog.query.test.DatabaseSupport.DiscardingOutputStream;
+import org.everit.jira.worklog.query.test.MockJiraComponents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atlassian.jira.rest.api.util.StringList;
+
+/**
+ * End-to-end benchmarks of the {@link WorklogQueryCoreImpl} on the {@link BenchmarkDatabase} with
+ * the Jira components mocked like in the MockTest. The results are written to a discarding stream,
+ * so the serialization is measured as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Duser.timezone=UTC", "-Xmx4g" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WorklogQueryCoreBenchmark {
+
+  /**
+   * The core on the benchmark database with the {@link MockJiraComponents}. The queries are run
+   * for the {@link BenchmarkDatabase#GROUP} and every project, the JQL search returns every
+   * generated issue.
+   */
+  @State(Scope.Benchmark)
+  public static class Core {
+
+    private static final int ISSUES_PAGE_SIZE = 1000;
+
+    private FindWorklogsByIssuesParam findWorklogsByIssuesParam;
+
+    private WorklogQueryCoreImpl worklogQueryCore;
+
+    /**
+     * Mocks the Jira components and creates the core.
+     *
+     * @param database
+     *          the database of the benchmark.
+     */
+    @Setup
+    public void setUp(final BenchmarkDatabase database) {
+      MockJiraComponents.init(database.getGenerator());
+      worklogQueryCore = new WorklogQueryCoreImpl(database.getQuerydslSupport());
+      List<StringList> fields = new ArrayList<>();
+      fields.add(StringList.fromList("emptyFieldValue"));
+      findWorklogsByIssuesParam = new FindWorklogsByIssuesParam()
+          .startDate("2016-01-01")
+          .endDate("2016-12-31")
+          .group(BenchmarkDatabase.GROUP)
+          .jql("")
+          .startAt(0)
+          .maxResults(ISSUES_PAGE_SIZE)
+          .fields(fields);
+    }
+  }
+
+  @Benchmark
+  public long findWorklogs(final Core core) throws IOException {
+    Response response = core.worklogQueryCore.findWorklogs("2016-01-01", "2016-12-31", "", "",
+        BenchmarkDatabase.GROUP, "", new ArrayList<StringList>(), null);
+    DiscardingOutputStream output = new DiscardingOutputStream();
+    if (response.getEntity() instanceof StreamingOutput) {
+      ((StreamingOutput) response.getEntity()).write(output);
+      return output.getCount();
+    }
+    return response.getEntity().toString().length();
+  }
+
+  @Benchmark
+  public SearchResultsBeanWithTimespent findWorklogsByIssues(final Core core) {
+    return core.worklogQueryCore.findWorklogsByIssues(core.findWorklogsByIssuesParam);
+  }
+}
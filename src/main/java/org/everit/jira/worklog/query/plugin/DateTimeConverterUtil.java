@@ -16,14 +16,25 @@
 package org.everit.jira.worklog.query.plugin;
 
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * The utility class of date and time conversions.
+ * The utility class of date and time conversions. The formatters are immutable and cached, so no
+ * formatter or calendar is created for a formatted worklog.
  */
 public final class DateTimeConverterUtil {
 
@@ -32,10 +43,32 @@ public final class DateTimeConverterUtil {
    */
   private static final String INPUT_DATE_FORMAT = "yyyy-MM-dd";
 
+  /**
+   * The formatter of the input parameters. The month and the day are accepted with one digit too.
+   */
+  private static final DateTimeFormatter INPUT_DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("uuuu-M-d");
+
+  /**
+   * The separator of the date and the time in the ISO-8601 instants of the input parameters.
+   */
+  private static final char INPUT_TIME_SEPARATOR = 'T';
+
   /**
    * The date format of JIRA.
    */
-  private static final String JIRA_OUTPUT_DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.s";
+  private static final String JIRA_OUTPUT_DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss.S";
+
+  /**
+   * The formatter of the {@value #JIRA_OUTPUT_DATE_TIME_FORMAT} dates of JIRA.
+   */
+  private static final DateTimeFormatter JIRA_OUTPUT_DATE_TIME_FORMATTER =
+      new DateTimeFormatterBuilder()
+          .appendPattern("uuuu-MM-dd HH:mm:ss")
+          .optionalStart()
+          .appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true)
+          .optionalEnd()
+          .toFormatter();
 
   /**
    * The date format of the output.
@@ -43,90 +76,150 @@ public final class DateTimeConverterUtil {
   private static final String OUTPUT_DATE_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
 
   /**
-   * Convert the date to String ({@value #OUTPUT_DATE_TIME_FORMAT}).
+   * The formatter of the output without time zone.
+   */
+  private static final DateTimeFormatter OUTPUT_DATE_TIME_FORMATTER =
+      DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ssZ");
+
+  /**
+   * The output formatters by time zone.
+   */
+  private static final ConcurrentMap<ZoneId, DateTimeFormatter> OUTPUT_DATE_TIME_FORMATTERS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Format epoch milliseconds to a valid ISO-8601 format String date
+   * ({@value #OUTPUT_DATE_TIME_FORMAT}).
    *
-   * @param date
-   *          The Date to convert.
-   * @return The result time.
+   * @param millis
+   *          The time in milliseconds.
+   * @param zone
+   *          The time zone of the output.
+   * @return The formated String date.
+   */
+  public static String formatDateTime(final long millis, final ZoneId zone) {
+    return getOutputFormatter(zone).format(Instant.ofEpochMilli(millis));
+  }
+
+  /**
+   * The cached formatter of the {@value #OUTPUT_DATE_TIME_FORMAT} output in the given time zone.
+   *
+   * @param zone
+   *          The time zone of the output.
+   * @return The formatter of {@link Instant}s.
    */
-  private static String dateToString(final Date date) {
-    SimpleDateFormat simpleDateFormat = new SimpleDateFormat(OUTPUT_DATE_TIME_FORMAT);
-    String dateString = simpleDateFormat.format(date);
-    return dateString;
+  public static DateTimeFormatter getOutputFormatter(final ZoneId zone) {
+    return OUTPUT_DATE_TIME_FORMATTERS.computeIfAbsent(zone, OUTPUT_DATE_TIME_FORMATTER::withZone);
   }
 
   /**
-   * Convert String ({@value #INPUT_DATE_FORMAT}) to Calendar.
+   * Convert a String ({@value #INPUT_DATE_FORMAT}) date and a time of the day to Calendar in the
+   * given time zone. An ISO-8601 instant with an explicit offset, for example
+   * <code>2016-03-01T10:05:00.000+02:00</code>, is converted to the exact instant and the time of
+   * the day is not applied. The precision of the instants is millisecond.
    *
    * @param dateString
-   *          The String date to convert.
-   * @return The result Date.
-   * @throws ParseException
+   *          The String date or instant to convert.
+   * @param time
+   *          The time of the day of the dates.
+   * @param zone
+   *          The time zone of the result.
+   * @return The result Calendar.
+   * @throws DateTimeParseException
    *           If can't parse the date.
    */
-  public static Calendar inputStringToCalendar(final String dateString) throws ParseException {
-    DateFormat dateFormat = new SimpleDateFormat(INPUT_DATE_FORMAT);
-    Calendar calendar = Calendar.getInstance();
-    calendar.setTime(dateFormat.parse(dateString));
-    return calendar;
+  public static Calendar inputStringToCalendar(final String dateString, final LocalTime time,
+      final ZoneId zone) {
+    if (isInstant(dateString)) {
+      return GregorianCalendar.from(OffsetDateTime
+          .parse(dateString, DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+          .atZoneSameInstant(zone));
+    }
+    return toCalendar(LocalDate.parse(dateString, INPUT_DATE_FORMATTER), time, zone);
   }
 
   /**
-   * Set the calendar hour, minute and second value.
+   * Checks whether the input parameter is an ISO-8601 instant instead of a date.
    *
-   * @param originalCalendar
-   *          The original calendar.
-   * @param hourOfDay
-   *          The hour of the day to set.
-   * @param minute
-   *          The minute to set.
-   * @param second
-   *          The second to set.
-   * @return The new calendar object.
+   * @param dateString
+   *          The String date or instant.
+   * @return true if the parameter has a time part.
    */
-  public static Calendar setCalendarHourMinSec(final Calendar originalCalendar,
-      final int hourOfDay,
-      final int minute, final int second) {
-    Calendar calendar = Calendar.getInstance();
-    calendar.set(Calendar.MILLISECOND, 0);
-    calendar.set(
-        originalCalendar.get(Calendar.YEAR),
-        originalCalendar.get(Calendar.MONTH),
-        originalCalendar.get(Calendar.DAY_OF_MONTH),
-        hourOfDay,
-        minute,
-        second);
-    return calendar;
+  public static boolean isInstant(final String dateString) {
+    return dateString.indexOf(INPUT_TIME_SEPARATOR) >= 0;
   }
 
   /**
-   * Format a String date to valid ISO-8601 format String date.
+   * Parse the time zone parameter.
+   *
+   * @param timeZone
+   *          The ID of the time zone, for example <code>Europe/Budapest</code> or
+   *          <code>+02:00</code>. Null or empty for the default time zone.
+   * @return The time zone.
+   * @throws DateTimeException
+   *           If the time zone is unknown or invalid.
+   */
+  public static ZoneId parseTimeZone(final String timeZone) {
+    if ((timeZone == null) || timeZone.isEmpty()) {
+      return ZoneId.systemDefault();
+    }
+    return ZoneId.of(timeZone);
+  }
+
+  /**
+   * Truncate a time to the start of its day in the default time zone.
+   *
+   * @param millis
+   *          The time in milliseconds.
+   * @return The start of the day in milliseconds.
+   */
+  public static long startOfDay(final long millis) {
+    ZoneId zone = ZoneId.systemDefault();
+    return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().atStartOfDay(zone)
+        .toInstant().toEpochMilli();
+  }
+
+  /**
+   * Format a String date ({@value #JIRA_OUTPUT_DATE_TIME_FORMAT}) of the default time zone to
+   * valid ISO-8601 format String date.
    *
    * @param dateString
    *          The date.
    * @return The formated String date.
-   * @throws ParseException
-   *           If cannot parse the String to Date.
-   */
-  public static String stringDateToISO8601FormatString(final String dateString)
-      throws ParseException {
-    DateFormat dateFormat = new SimpleDateFormat(JIRA_OUTPUT_DATE_TIME_FORMAT);
-    Date date = dateFormat.parse(dateString);
-    return DateTimeConverterUtil.dateToString(date);
+   * @throws DateTimeParseException
+   *           If cannot parse the String to date.
+   */
+  public static String stringDateToISO8601FormatString(final String dateString) {
+    ZoneId zone = ZoneId.systemDefault();
+    return getOutputFormatter(zone).format(
+        LocalDateTime.parse(dateString, JIRA_OUTPUT_DATE_TIME_FORMATTER).atZone(zone));
   }
 
   /**
-   * Format a timestamp to valid ISO-8601 format String date.
+   * Format a timestamp to valid ISO-8601 format String date in the default time zone.
    *
    * @param timestamp
    *          The timestamp.
    * @return The formated String date.
-   * @throws ParseException
-   *           If cannot parse the String to Date.
    */
   public static String stringDateToISO8601FormatString(final Timestamp timestamp) {
-    Date date = new Date(timestamp.getTime());
-    return DateTimeConverterUtil.dateToString(date);
+    return formatDateTime(timestamp.getTime(), ZoneId.systemDefault());
+  }
+
+  /**
+   * The Calendar of the time of a day in the given time zone.
+   *
+   * @param date
+   *          The day.
+   * @param time
+   *          The time of the day.
+   * @param zone
+   *          The time zone.
+   * @return The new calendar object.
+   */
+  public static Calendar toCalendar(final LocalDate date, final LocalTime time,
+      final ZoneId zone) {
+    return GregorianCalendar.from(date.atTime(time).atZone(zone));
   }
 
   /**
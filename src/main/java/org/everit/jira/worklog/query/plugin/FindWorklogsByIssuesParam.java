@@ -30,13 +30,18 @@ public class FindWorklogsByIssuesParam implements Serializable {
    */
   private static final long serialVersionUID = -4947183929460600358L;
   /**
-   * The query start date parameter.
+   * The query start date parameter. A date (yyyy-MM-dd) or an ISO-8601 instant with offset.
    */
   public String startDate;
   /**
-   * The query end date parameter.
+   * The query end date parameter. A date (yyyy-MM-dd) or an exclusive ISO-8601 instant with
+   * offset.
    */
   public String endDate;
+  /**
+   * The query time zone parameter.
+   */
+  public String timeZone;
   /**
    * The query user parameter.
    */
@@ -103,6 +108,11 @@ public class FindWorklogsByIssuesParam implements Serializable {
     return this;
   }
 
+  public FindWorklogsByIssuesParam timeZone(final String timeZone) {
+    this.timeZone = timeZone;
+    return this;
+  }
+
   public FindWorklogsByIssuesParam user(final String user) {
     this.user = user;
     return this;
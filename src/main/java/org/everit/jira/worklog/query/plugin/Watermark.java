@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of a consumer in the worklog change feed. The changes are ordered by the updated
+ * date and the id of the worklogs, the watermark points to the last consumed change. The string
+ * form of the watermark is opaque for the clients.
+ */
+public final class Watermark {
+
+  /**
+   * The watermark before every change.
+   */
+  public static final Watermark INITIAL = new Watermark(0L, 0L);
+
+  /**
+   * The number of the encoded watermark parts.
+   */
+  private static final int PART_COUNT = 3;
+
+  /**
+   * The separator of the encoded watermark parts.
+   */
+  private static final String SEPARATOR = ":";
+
+  /**
+   * The version prefix of the encoded watermark.
+   */
+  private static final String VERSION = "1";
+
+  /**
+   * Decode the string form of a watermark.
+   *
+   * @param watermarkString
+   *          The encoded watermark. If null or empty then the {@link #INITIAL} watermark is
+   *          returned.
+   * @return The decoded watermark.
+   * @throws WorklogQueryException
+   *           If the watermark is malformed.
+   */
+  public static Watermark decode(final String watermarkString) throws WorklogQueryException {
+    if ((watermarkString == null) || (watermarkString.length() == 0)) {
+      return INITIAL;
+    }
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(watermarkString),
+          StandardCharsets.UTF_8);
+      String[] parts = decoded.split(SEPARATOR);
+      if ((parts.length != PART_COUNT) || !VERSION.equals(parts[0])) {
+        throw new WorklogQueryException("Invalid watermark: " + watermarkString);
+      }
+      return new Watermark(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    } catch (IllegalArgumentException e) {
+      throw new WorklogQueryException("Invalid watermark: " + watermarkString, e);
+    }
+  }
+
+  private final long id;
+
+  private final long updated;
+
+  /**
+   * Simple constructor.
+   *
+   * @param updated
+   *          The updated date of the last consumed change in milliseconds.
+   * @param id
+   *          The id of the last consumed worklog.
+   */
+  public Watermark(final long updated, final long id) {
+    this.updated = updated;
+    this.id = id;
+  }
+
+  /**
+   * Encode the watermark to its opaque string form.
+   *
+   * @return The URL safe string form of the watermark.
+   */
+  public String encode() {
+    String plain = VERSION + SEPARATOR + updated + SEPARATOR + id;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof Watermark)) {
+      return false;
+    }
+    Watermark other = (Watermark) obj;
+    return (id == other.id) && (updated == other.updated);
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public long getUpdated() {
+    return updated;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(updated) * 31 + Long.hashCode(id);
+  }
+
+  @Override
+  public String toString() {
+    return encode();
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.util.List;
+
+import org.everit.jira.worklog.query.plugin.query.JsonWorklog;
+
+/**
+ * One page of the worklog change feed.
+ */
+public class WorklogChanges {
+
+  private final boolean hasMore;
+
+  private final Watermark nextWatermark;
+
+  private final List<JsonWorklog> worklogs;
+
+  /**
+   * WorklogChanges constructor with fields.
+   *
+   * @param worklogs
+   *          The changed worklogs ordered by their updated date and id.
+   * @param nextWatermark
+   *          The watermark of the last returned change. The same as the requested watermark if
+   *          there was no change.
+   * @param hasMore
+   *          True if there are more changes after the next watermark.
+   */
+  public WorklogChanges(final List<JsonWorklog> worklogs, final Watermark nextWatermark,
+      final boolean hasMore) {
+    this.worklogs = worklogs;
+    this.nextWatermark = nextWatermark;
+    this.hasMore = hasMore;
+  }
+
+  public Watermark getNextWatermark() {
+    return nextWatermark;
+  }
+
+  public List<JsonWorklog> getWorklogs() {
+    return worklogs;
+  }
+
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+}
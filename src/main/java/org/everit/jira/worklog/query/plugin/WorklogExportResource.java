@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.everit.jira.worklog.query.plugin.export.ByteRange;
+import org.everit.jira.worklog.query.plugin.export.WorklogExportJob;
+import org.everit.jira.worklog.query.plugin.export.WorklogExportManager;
+import org.everit.jira.worklog.query.plugin.export.WorklogExportStatus;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.rest.api.util.StringList;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.json.JSONException;
+
+/**
+ * The REST resource of the background worklog exports. An export job is submitted with the
+ * parameters of the worklogs query, its status is polled and its gzip compressed JSON file is
+ * downloaded, optionally in byte ranges. The jobs are only visible for the user who submitted them
+ * and they are kept on the node that accepted them.
+ *
+ * <p>
+ * On a Data Center cluster the status, download and delete requests of a job have to reach the
+ * node that accepted the job, for example through the sticky sessions of the load balancer. The
+ * node of the job is returned in the {@code node} field of the job, and the NOT_FOUND responses
+ * of a cluster node name the node that answered.
+ * </p>
+ */
+@Path("/export")
+public class WorklogExportResource {
+
+  /**
+   * The media type of the exported files.
+   */
+  private static final String GZIP_MEDIA_TYPE = "application/gzip";
+
+  /**
+   * The status of the download requests whose range starts after the end of the file.
+   */
+  private static final int RANGE_NOT_SATISFIABLE = 416;
+
+  private static String getLoggedInUserKey() {
+    ApplicationUser loggedInUser =
+        ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    return loggedInUser == null ? null : loggedInUser.getKey();
+  }
+
+  private static StreamingOutput rangeOutput(final java.nio.file.Path file, final long start,
+      final long length) {
+    return outputStream -> {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long position = start;
+        long remaining = length;
+        while (remaining > 0) {
+          long transferred = channel.transferTo(position, remaining, target);
+          if (transferred <= 0) {
+            break;
+          }
+          position += transferred;
+          remaining -= transferred;
+        }
+      }
+    };
+  }
+
+  private final WorklogExportManager worklogExportManager;
+
+  private final WorklogQueryCore worklogQueryResource;
+
+  /**
+   * Constructor with the plugin components.
+   *
+   * @param worklogExportManager
+   *          The runner of the background worklog exports.
+   */
+  public WorklogExportResource(final WorklogExportManager worklogExportManager) {
+    this.worklogExportManager = worklogExportManager;
+    worklogQueryResource = new WorklogQueryCoreImpl(null, null, null, null, worklogExportManager);
+  }
+
+  /**
+   * Cancels the export job if it is running and deletes it with its file.
+   *
+   * @param id
+   *          The identifier of the job.
+   * @return {@link Response} with NO_CONTENT status or NOT_FOUND if the user has no such job on
+   *         this node.
+   */
+  @DELETE
+  @Path("/{id}")
+  public Response deleteExport(@PathParam("id") final String id) {
+    if (!worklogExportManager.delete(id, getLoggedInUserKey())) {
+      return notFound();
+    }
+    return Response.noContent().build();
+  }
+
+  /**
+   * Downloads the file of a completed export job. A single byte range is supported, so an
+   * interrupted download can be continued.
+   *
+   * @param id
+   *          The identifier of the job.
+   * @param range
+   *          The Range header of the request, optional.
+   * @return {@link Response} with the whole file, PARTIAL_CONTENT with the requested range,
+   *         NOT_FOUND if the user has no such job on this node or CONFLICT if the job is not
+   *         completed.
+   */
+  @GET
+  @Path("/{id}/file")
+  @Produces({ GZIP_MEDIA_TYPE })
+  public Response downloadExport(@PathParam("id") final String id,
+      @HeaderParam("Range") final String range) {
+    WorklogExportJob job = worklogExportManager.getJob(id, getLoggedInUserKey());
+    if (job == null) {
+      return notFound();
+    }
+    if (job.getStatus() != WorklogExportStatus.COMPLETED) {
+      return Response.status(Response.Status.CONFLICT)
+          .entity("The worklog export is " + job.getStatus() + ".").type(MediaType.TEXT_PLAIN)
+          .build();
+    }
+    java.nio.file.Path file = job.getFile();
+    long size;
+    try {
+      size = Files.size(file);
+    } catch (IOException e) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    ByteRange byteRange = ByteRange.parse(range, size);
+    if (byteRange == null) {
+      return Response.ok(rangeOutput(file, 0, size))
+          .header("Accept-Ranges", "bytes")
+          .header("Content-Length", size)
+          .header("Content-Disposition", "attachment; filename=\"worklogs-" + id + ".json.gz\"")
+          .build();
+    }
+    if (!byteRange.isSatisfiable()) {
+      return Response.status(RANGE_NOT_SATISFIABLE)
+          .header("Content-Range", byteRange.getContentRange()).build();
+    }
+    return Response.status(Response.Status.PARTIAL_CONTENT)
+        .entity(rangeOutput(file, byteRange.getStart(), byteRange.getLength()))
+        .header("Accept-Ranges", "bytes")
+        .header("Content-Range", byteRange.getContentRange())
+        .header("Content-Length", byteRange.getLength())
+        .build();
+  }
+
+  /**
+   * The status of an export job.
+   *
+   * @param id
+   *          The identifier of the job.
+   * @return {@link Response} what contains the id, the status, the creation and the finish date,
+   *         the size of the file, the message of the failure and the cluster node of the job.
+   *         NOT_FOUND if the user has no such job on this node.
+   */
+  @GET
+  @Path("/{id}")
+  @Produces({ MediaType.APPLICATION_JSON })
+  public Response exportStatus(@PathParam("id") final String id) {
+    WorklogExportJob job = worklogExportManager.getJob(id, getLoggedInUserKey());
+    if (job == null) {
+      return notFound();
+    }
+    try {
+      return Response.ok(job.toJson().toString()).build();
+    } catch (JSONException e) {
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity(e.getMessage()).build();
+    }
+  }
+
+  /**
+   * Submits the export of the worklogs. The parameters are the same as the parameters of the
+   * worklogs query.
+   *
+   * @param startDate
+   *          The query startDate parameter. A date (yyyy-MM-dd) or an ISO-8601 instant with
+   *          millisecond precision and offset, for example 2016-03-01T10:05:00.000+02:00.
+   * @param endDate
+   *          The query endDate parameter, optional. Default value is the current time. A date
+   *          (yyyy-MM-dd) or an exclusive ISO-8601 instant with millisecond precision and offset.
+   * @param timeZone
+   *          The query time zone parameter, optional. The ID of the time zone of the dates, for
+   *          example Europe/Budapest or +02:00. Default is the time zone of Jira.
+   * @param user
+   *          The query user parameter, optional. This or the group parameter is required.
+   * @param group
+   *          The query group parameter, optional. This or the user parameter is required.
+   * @param project
+   *          The query project parameter, optional. Default is all project.
+   * @param fields
+   *          List of the queried fields.
+   * @param updated
+   *          If true the worklogs created or updated in the period are exported, optional. Default
+   *          is false, the worklogs of the period.
+   * @return {@link Response} with ACCEPTED status what contains the id and the status of the job.
+   *         TOO_MANY_REQUESTS with a Retry-After header if the export queue is full or the user
+   *         has too many queued and running exports. If the method parameters was wrong then a
+   *         message what contains the description of the bad request.
+   */
+  @POST
+  @Produces({ MediaType.APPLICATION_JSON })
+  @Path("/worklogs")
+  public Response exportWorklogs(
+      @QueryParam("startDate") final String startDate,
+      @QueryParam("endDate") final String endDate,
+      @QueryParam("timeZone") final String timeZone,
+      @QueryParam("user") final String user,
+      @QueryParam("group") final String group,
+      @QueryParam("project") final String project,
+      @QueryParam("fields") final List<StringList> fields,
+      @DefaultValue("false") @QueryParam("updated") final boolean updated) {
+    try {
+      return worklogQueryResource.exportWorklogs(startDate, endDate, timeZone, user, group, project,
+          fields, updated);
+    } catch (WorklogQueryException e) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity(e.getMessage()).build();
+    }
+  }
+
+  private Response notFound() {
+    String nodeId = worklogExportManager.getNodeId();
+    if (nodeId == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.status(Response.Status.NOT_FOUND)
+        .entity("No such worklog export on the cluster node " + nodeId
+            + ". The export jobs are kept on the node that accepted them.")
+        .type(MediaType.TEXT_PLAIN).build();
+  }
+}
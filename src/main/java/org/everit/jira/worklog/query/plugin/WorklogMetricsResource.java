@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogPrometheusExporter;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryMetrics;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.permission.GlobalPermissionKey;
+import com.atlassian.jira.user.ApplicationUser;
+
+/**
+ * The REST resource of the plugin metrics in the Prometheus text format. Only the Jira
+ * administrators can use it, so the scraper needs the credentials of an administrator user.
+ */
+@Path("/metrics")
+public class WorklogMetricsResource {
+
+  private final WorklogQueryMetrics worklogQueryMetrics;
+
+  private final WorklogResultCache worklogResultCache;
+
+  /**
+   * Constructor with the plugin components.
+   *
+   * @param worklogQueryMetrics
+   *          The metrics of the endpoints.
+   * @param worklogResultCache
+   *          The cache of the query results.
+   */
+  public WorklogMetricsResource(final WorklogQueryMetrics worklogQueryMetrics,
+      final WorklogResultCache worklogResultCache) {
+    this.worklogQueryMetrics = worklogQueryMetrics;
+    this.worklogResultCache = worklogResultCache;
+  }
+
+  /**
+   * The metrics of the worklog query endpoints and the result cache.
+   *
+   * @return {@link Response} what contains the metrics in the Prometheus text format or FORBIDDEN
+   *         if the logged in user is not an administrator.
+   */
+  @GET
+  @Produces(WorklogPrometheusExporter.CONTENT_TYPE)
+  public Response getMetrics() {
+    ApplicationUser loggedInUser =
+        ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    if ((loggedInUser == null) || !ComponentAccessor.getGlobalPermissionManager()
+        .hasPermission(GlobalPermissionKey.ADMINISTER, loggedInUser)) {
+      return Response.status(Response.Status.FORBIDDEN).build();
+    }
+    return Response.ok(WorklogPrometheusExporter.export(worklogQueryMetrics, worklogResultCache))
+        .build();
+  }
+}
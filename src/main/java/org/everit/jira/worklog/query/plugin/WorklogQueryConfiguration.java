@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+/**
+ * The configuration of the Worklog Query Plugin. The values can be overridden by JVM system
+ * properties prefixed with {@value #PROPERTY_PREFIX}.
+ */
+public final class WorklogQueryConfiguration {
+
+  /**
+   * The default number of the concurrently running queries of a cheap endpoint.
+   */
+  private static final int DEFAULT_ADMISSION_CHEAP_LIMIT = 16;
+
+  /**
+   * The default number of the concurrently running cheap queries of a user.
+   */
+  private static final int DEFAULT_ADMISSION_CHEAP_USER_LIMIT = 8;
+
+  /**
+   * The default number of the concurrently running queries of a heavy endpoint.
+   */
+  private static final int DEFAULT_ADMISSION_HEAVY_LIMIT = 4;
+
+  /**
+   * The default number of the concurrently running heavy queries of a user.
+   */
+  private static final int DEFAULT_ADMISSION_HEAVY_USER_LIMIT = 2;
+
+  /**
+   * The default maximum time an admission is held.
+   */
+  private static final long DEFAULT_ADMISSION_LEASE_SECONDS = 600L;
+
+  /**
+   * The default maximum wait time of a query for its endpoint in milliseconds.
+   */
+  private static final long DEFAULT_ADMISSION_MAX_WAIT_MILLIS = 2000L;
+
+  /**
+   * The default number of the queries that may wait for an endpoint.
+   */
+  private static final int DEFAULT_ADMISSION_QUEUE_SIZE = 8;
+
+  /**
+   * The default time after the rejected clients should retry in seconds.
+   */
+  private static final long DEFAULT_ADMISSION_RETRY_AFTER_SECONDS = 10L;
+
+  /**
+   * The default approximate size limit of the query result cache in bytes.
+   */
+  private static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * The default time to live of the cached query results in seconds.
+   */
+  private static final long DEFAULT_CACHE_TTL_SECONDS = 300L;
+
+  /**
+   * The default maximum number of worklogs returned by one change feed request.
+   */
+  private static final int DEFAULT_CHANGES_MAX_RESULTS = 1000;
+
+  /**
+   * The upper limit of the maxResults parameter of the change feed.
+   */
+  private static final int DEFAULT_CHANGES_MAX_RESULTS_LIMIT = 10000;
+
+  /**
+   * The default lag of the change feed behind the current time in milliseconds.
+   */
+  private static final long DEFAULT_CHANGES_SAFETY_LAG_MILLIS = 30000L;
+
+  /**
+   * The default preference order of the worklog query engines.
+   */
+  private static final String DEFAULT_ENGINE_ORDER = "columnar,rollup,sql";
+
+  /**
+   * The default number of the export jobs that may wait for a thread.
+   */
+  private static final int DEFAULT_EXPORT_QUEUE_SIZE = 8;
+
+  /**
+   * The default retention of the finished export jobs in hours.
+   */
+  private static final int DEFAULT_EXPORT_RETENTION_HOURS = 24;
+
+  /**
+   * The default number of the concurrently running export jobs.
+   */
+  private static final int DEFAULT_EXPORT_THREADS = 2;
+
+  /**
+   * The default number of the queued and running export jobs of a user.
+   */
+  private static final int DEFAULT_EXPORT_USER_LIMIT = 2;
+
+  /**
+   * The default period of the full rebuild of the columnar worklog index in hours.
+   */
+  private static final int DEFAULT_INDEX_REBUILD_HOURS = 24;
+
+  /**
+   * The default query timeout of the cheap endpoints in seconds.
+   */
+  private static final int DEFAULT_QUERY_CHEAP_TIMEOUT_SECONDS = 30;
+
+  /**
+   * The default query timeout of the heavy endpoints in seconds.
+   */
+  private static final int DEFAULT_QUERY_HEAVY_TIMEOUT_SECONDS = 300;
+
+  /**
+   * The default number of the sub-intervals of a worklogs query that are read in parallel.
+   */
+  private static final int DEFAULT_QUERY_PARALLELISM = 1;
+
+  /**
+   * The default number of issues rebuilt together in the worklog rollup table.
+   */
+  private static final int DEFAULT_ROLLUP_REBUILD_CHUNK_SIZE = 500;
+
+  /**
+   * The default statement prefix that returns the execution plan of a query.
+   */
+  private static final String DEFAULT_SLOW_QUERY_EXPLAIN_PREFIX = "EXPLAIN";
+
+  /**
+   * The default duration of the requests logged by the slow query log in milliseconds.
+   */
+  private static final long DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = 10000L;
+
+  /**
+   * The default retention time of the deleted worklog tombstones in days.
+   */
+  private static final int DEFAULT_TOMBSTONE_RETENTION_DAYS = 90;
+
+  /**
+   * The prefix of the system properties.
+   */
+  public static final String PROPERTY_PREFIX = "org.everit.jira.worklog.query.plugin.";
+
+  /**
+   * The number of the concurrently running queries of an endpoint. The {@code admission.limit.}
+   * property of the endpoint overrides the {@code admission.heavyLimit} or the
+   * {@code admission.cheapLimit} property of its lane.
+   *
+   * @param endpoint
+   *          the name of the endpoint.
+   * @param heavy
+   *          true if the endpoint is in the heavy lane.
+   * @return the limit.
+   */
+  public static int getAdmissionEndpointLimit(final String endpoint, final boolean heavy) {
+    int laneLimit = heavy
+        ? Integer.getInteger(PROPERTY_PREFIX + "admission.heavyLimit",
+            DEFAULT_ADMISSION_HEAVY_LIMIT)
+        : Integer.getInteger(PROPERTY_PREFIX + "admission.cheapLimit",
+            DEFAULT_ADMISSION_CHEAP_LIMIT);
+    return Integer.getInteger(PROPERTY_PREFIX + "admission.limit." + endpoint, laneLimit);
+  }
+
+  /**
+   * The maximum time an admission is held. An admission that is not closed in this time is
+   * released by the next admitted query, for example when the container never writes a streamed
+   * response.
+   *
+   * @return the value of the {@code admission.leaseSeconds} property.
+   */
+  public static long getAdmissionLeaseSeconds() {
+    return Long.getLong(PROPERTY_PREFIX + "admission.leaseSeconds",
+        DEFAULT_ADMISSION_LEASE_SECONDS);
+  }
+
+  /**
+   * The maximum time a query waits for its saturated endpoint before it is rejected.
+   *
+   * @return the value of the {@code admission.maxWaitMillis} property.
+   */
+  public static long getAdmissionMaxWaitMillis() {
+    return Long.getLong(PROPERTY_PREFIX + "admission.maxWaitMillis",
+        DEFAULT_ADMISSION_MAX_WAIT_MILLIS);
+  }
+
+  /**
+   * The number of the queries that may wait for a saturated endpoint. The further queries are
+   * rejected immediately.
+   *
+   * @return the value of the {@code admission.queueSize} property.
+   */
+  public static int getAdmissionQueueSize() {
+    return Integer.getInteger(PROPERTY_PREFIX + "admission.queueSize",
+        DEFAULT_ADMISSION_QUEUE_SIZE);
+  }
+
+  /**
+   * The value of the Retry-After header of the rejected queries in seconds.
+   *
+   * @return the value of the {@code admission.retryAfterSeconds} property.
+   */
+  public static long getAdmissionRetryAfterSeconds() {
+    return Long.getLong(PROPERTY_PREFIX + "admission.retryAfterSeconds",
+        DEFAULT_ADMISSION_RETRY_AFTER_SECONDS);
+  }
+
+  /**
+   * The number of the concurrently running queries of a user in a lane.
+   *
+   * @param heavy
+   *          true for the heavy lane, false for the cheap lane.
+   * @return the value of the {@code admission.heavyUserLimit} or the
+   *         {@code admission.cheapUserLimit} property.
+   */
+  public static int getAdmissionUserLimit(final boolean heavy) {
+    if (heavy) {
+      return Integer.getInteger(PROPERTY_PREFIX + "admission.heavyUserLimit",
+          DEFAULT_ADMISSION_HEAVY_USER_LIMIT);
+    }
+    return Integer.getInteger(PROPERTY_PREFIX + "admission.cheapUserLimit",
+        DEFAULT_ADMISSION_CHEAP_USER_LIMIT);
+  }
+
+  /**
+   * The approximate size limit of the query result cache in bytes. Zero disables the cache.
+   *
+   * @return the value of the {@code cache.maxBytes} property.
+   */
+  public static long getCacheMaxBytes() {
+    return Long.getLong(PROPERTY_PREFIX + "cache.maxBytes", DEFAULT_CACHE_MAX_BYTES);
+  }
+
+  /**
+   * The time to live of the cached query results in seconds. The results are invalidated by the
+   * worklog changes, the time to live limits the staleness caused by other changes, for example
+   * the changes of the issues or the permissions.
+   *
+   * @return the value of the {@code cache.ttlSeconds} property.
+   */
+  public static long getCacheTtlSeconds() {
+    return Long.getLong(PROPERTY_PREFIX + "cache.ttlSeconds", DEFAULT_CACHE_TTL_SECONDS);
+  }
+
+  /**
+   * The default number of worklogs returned by one change feed request.
+   *
+   * @return the value of the {@code changes.maxResults} property.
+   */
+  public static int getChangesMaxResults() {
+    return Integer.getInteger(PROPERTY_PREFIX + "changes.maxResults",
+        DEFAULT_CHANGES_MAX_RESULTS);
+  }
+
+  /**
+   * The upper limit of the number of worklogs returned by one change feed request.
+   *
+   * @return the value of the {@code changes.maxResultsLimit} property.
+   */
+  public static int getChangesMaxResultsLimit() {
+    return Integer.getInteger(PROPERTY_PREFIX + "changes.maxResultsLimit",
+        DEFAULT_CHANGES_MAX_RESULTS_LIMIT);
+  }
+
+  /**
+   * The change feed only returns worklogs updated before the current time minus this lag, so the
+   * worklogs of the in-flight transactions are not skipped by the next watermark.
+   *
+   * @return the value of the {@code changes.safetyLagMillis} property.
+   */
+  public static long getChangesSafetyLagMillis() {
+    return Long.getLong(PROPERTY_PREFIX + "changes.safetyLagMillis",
+        DEFAULT_CHANGES_SAFETY_LAG_MILLIS);
+  }
+
+  /**
+   * The comma separated names of the enabled worklog query engines in preference order: columnar,
+   * rollup, lucene and sql. The first available engine that supports a query serves it. The lucene
+   * engine selects the worklogs from the worklog index of Jira and it is disabled by default. The
+   * sql engine is always enabled as the last resort.
+   *
+   * @return the value of the {@code engine.order} property.
+   */
+  public static String getEngineOrder() {
+    return System.getProperty(PROPERTY_PREFIX + "engine.order", DEFAULT_ENGINE_ORDER);
+  }
+
+  /**
+   * The number of the submitted export jobs that may wait for a free export thread. The
+   * submission of a further job is rejected.
+   *
+   * @return the value of the {@code export.queueSize} property.
+   */
+  public static int getExportQueueSize() {
+    return Integer.getInteger(PROPERTY_PREFIX + "export.queueSize", DEFAULT_EXPORT_QUEUE_SIZE);
+  }
+
+  /**
+   * The finished export jobs and their files are deleted after this many hours.
+   *
+   * @return the value of the {@code export.retentionHours} property.
+   */
+  public static int getExportRetentionHours() {
+    return Integer.getInteger(PROPERTY_PREFIX + "export.retentionHours",
+        DEFAULT_EXPORT_RETENTION_HOURS);
+  }
+
+  /**
+   * The number of the export jobs that run at the same time.
+   *
+   * @return the value of the {@code export.threads} property.
+   */
+  public static int getExportThreads() {
+    return Integer.getInteger(PROPERTY_PREFIX + "export.threads", DEFAULT_EXPORT_THREADS);
+  }
+
+  /**
+   * The number of the queued and running export jobs of a user. The submission of a further job
+   * of the user is rejected, so a single user can not occupy the whole export queue.
+   *
+   * @return the value of the {@code export.userLimit} property.
+   */
+  public static int getExportUserLimit() {
+    return Integer.getInteger(PROPERTY_PREFIX + "export.userLimit",
+        DEFAULT_EXPORT_USER_LIMIT);
+  }
+
+  /**
+   * The columnar worklog index is rebuilt from the worklog table with this period, so the changes
+   * that are not published as worklog events (for example the move of an issue to another
+   * project) are picked up.
+   *
+   * @return the value of the {@code index.rebuildHours} property.
+   */
+  public static int getIndexRebuildHours() {
+    return Integer.getInteger(PROPERTY_PREFIX + "index.rebuildHours",
+        DEFAULT_INDEX_REBUILD_HOURS);
+  }
+
+  /**
+   * The worklogs queries whose interval spans more months are split at the month boundaries into
+   * at most this many sub-intervals. The sub-intervals are read at the same time, each on its own
+   * thread and database connection, and merged by the worklog id. A query may use this many
+   * connections of the pool of JIRA, so the limit of the heavy endpoints has to be set
+   * accordingly. One disables the splitting, that is the default.
+   *
+   * @return the value of the {@code query.parallelism} property.
+   */
+  public static int getQueryParallelism() {
+    return Integer.getInteger(PROPERTY_PREFIX + "query.parallelism", DEFAULT_QUERY_PARALLELISM);
+  }
+
+  /**
+   * The JDBC query timeout of the statements of an endpoint in seconds. Zero disables the timeout.
+   * The {@code query.timeoutSeconds.} property of the endpoint overrides the
+   * {@code query.heavyTimeoutSeconds} or the {@code query.cheapTimeoutSeconds} property of its
+   * lane.
+   *
+   * @param endpoint
+   *          the name of the endpoint.
+   * @param heavy
+   *          true if the endpoint is in the heavy lane.
+   * @return the timeout.
+   */
+  public static int getQueryTimeoutSeconds(final String endpoint, final boolean heavy) {
+    int laneTimeout = heavy
+        ? Integer.getInteger(PROPERTY_PREFIX + "query.heavyTimeoutSeconds",
+            DEFAULT_QUERY_HEAVY_TIMEOUT_SECONDS)
+        : Integer.getInteger(PROPERTY_PREFIX + "query.cheapTimeoutSeconds",
+            DEFAULT_QUERY_CHEAP_TIMEOUT_SECONDS);
+    return Integer.getInteger(PROPERTY_PREFIX + "query.timeoutSeconds." + endpoint, laneTimeout);
+  }
+
+  /**
+   * The number of issues whose worklogs are read and rebuilt together in the worklog rollup table.
+   *
+   * @return the value of the {@code rollup.rebuildChunkSize} property.
+   */
+  public static int getRollupRebuildChunkSize() {
+    return Integer.getInteger(PROPERTY_PREFIX + "rollup.rebuildChunkSize",
+        DEFAULT_ROLLUP_REBUILD_CHUNK_SIZE);
+  }
+
+  /**
+   * The prefix that turns a captured statement into the statement returning its execution plan.
+   * The default fits PostgreSQL and MySQL, for example {@code EXPLAIN ANALYZE} runs the statement
+   * on PostgreSQL.
+   *
+   * @return the value of the {@code slowQuery.explainPrefix} property.
+   */
+  public static String getSlowQueryExplainPrefix() {
+    return System.getProperty(PROPERTY_PREFIX + "slowQuery.explainPrefix",
+        DEFAULT_SLOW_QUERY_EXPLAIN_PREFIX);
+  }
+
+  /**
+   * The requests that take at least this long are written to the slow query log with their SQL
+   * statements and stage timings. Zero or negative disables the slow query log.
+   *
+   * @return the value of the {@code slowQuery.thresholdMillis} property.
+   */
+  public static long getSlowQueryThresholdMillis() {
+    return Long.getLong(PROPERTY_PREFIX + "slowQuery.thresholdMillis",
+        DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+  }
+
+  /**
+   * The tombstones of the deleted worklogs are kept for this many days. The incremental consumers
+   * have to poll the deletions more frequently.
+   *
+   * @return the value of the {@code tombstone.retentionDays} property.
+   */
+  public static int getTombstoneRetentionDays() {
+    return Integer.getInteger(PROPERTY_PREFIX + "tombstone.retentionDays",
+        DEFAULT_TOMBSTONE_RETENTION_DAYS);
+  }
+
+  /**
+   * The queries of the REST endpoints are under admission control if it is enabled. Enabled by
+   * default.
+   *
+   * @return the value of the {@code admission.enabled} property.
+   */
+  public static boolean isAdmissionEnabled() {
+    return Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "admission.enabled", "true"));
+  }
+
+  /**
+   * The columnar worklog index is built in the heap at the plugin start and the aggregate queries
+   * are answered from it if it is enabled.
+   *
+   * @return the value of the {@code index.enabled} property.
+   */
+  public static boolean isIndexEnabled() {
+    return Boolean.getBoolean(PROPERTY_PREFIX + "index.enabled");
+  }
+
+  /**
+   * The columnar worklog index writes a snapshot to the local home and loads it at the next start
+   * if it is enabled. Enabled by default.
+   *
+   * @return the value of the {@code index.snapshot} property.
+   */
+  public static boolean isIndexSnapshotEnabled() {
+    return Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "index.snapshot", "true"));
+  }
+
+  /**
+   * The metrics of the worklog query endpoints are registered as MXBeans in the platform MBean
+   * server if it is enabled. Enabled by default.
+   *
+   * @return the value of the {@code metrics.jmx} property.
+   */
+  public static boolean isMetricsJmxEnabled() {
+    return Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "metrics.jmx", "true"));
+  }
+
+  /**
+   * The aggregate queries read the worklog rollup table instead of the worklog table if it is
+   * enabled and the rollup table was rebuilt.
+   *
+   * @return the value of the {@code rollup.enabled} property.
+   */
+  public static boolean isRollupEnabled() {
+    return Boolean.getBoolean(PROPERTY_PREFIX + "rollup.enabled");
+  }
+
+  /**
+   * The slow query log runs the statements of the slow requests again with the
+   * {@link #getSlowQueryExplainPrefix() explain prefix} and logs their execution plans if it is
+   * enabled. Disabled by default.
+   *
+   * @return the value of the {@code slowQuery.explain} property.
+   */
+  public static boolean isSlowQueryExplainEnabled() {
+    return Boolean.getBoolean(PROPERTY_PREFIX + "slowQuery.explain");
+  }
+
+  /**
+   * Private constructor.
+   */
+  private WorklogQueryConfiguration() {
+  }
+
+}
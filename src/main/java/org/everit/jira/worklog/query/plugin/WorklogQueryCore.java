@@ -17,6 +17,7 @@ package org.everit.jira.worklog.query.plugin;
 
 import java.util.List;
 
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import com.atlassian.jira.rest.api.util.StringList;
@@ -26,13 +27,32 @@ import com.atlassian.jira.rest.api.util.StringList;
  */
 public interface WorklogQueryCore {
 
-  Response findUpdatedWorklogs(String startDate, String endDate, String user, String group,
-      String project, List<StringList> fields) throws WorklogQueryException;
+  Response exportWorklogs(String startDate, String endDate, String timeZone, String user,
+      String group, String project, List<StringList> fields, boolean updated)
+      throws WorklogQueryException;
 
-  Response findWorklogs(String startDate, String endDate, String user, String group,
-      String project, List<StringList> fields) throws WorklogQueryException;
+  Response findDeletedWorklogs(String since, String timeZone, String project, int maxResults)
+      throws WorklogQueryException;
+
+  Response findUpdatedWorklogs(String startDate, String endDate, String timeZone, String user,
+      String group, String project, List<StringList> fields, Request request)
+      throws WorklogQueryException;
+
+  Response findWorklogChanges(String since, String timeZone, String user, String group,
+      String project, int maxResults, List<StringList> fields) throws WorklogQueryException;
+
+  Response findWorklogs(String startDate, String endDate, String timeZone, String user,
+      String group, String project, List<StringList> fields, Request request)
+      throws WorklogQueryException;
 
   SearchResultsBeanWithTimespent findWorklogsByIssues(
       FindWorklogsByIssuesParam findWorklogsByIssuesParam)
           throws WorklogQueryException;
+
+  WorklogSummary findWorklogsByIssuesSummary(
+      FindWorklogsByIssuesParam findWorklogsByIssuesParam)
+          throws WorklogQueryException;
+
+  Response findWorklogsSummary(String startDate, String endDate, String timeZone, String user,
+      String group, String project) throws WorklogQueryException;
 }
@@ -15,23 +15,55 @@
  */
 package org.everit.jira.worklog.query.plugin;
 
-import java.text.ParseException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.everit.jira.querydsl.support.QuerydslSupport;
 import org.everit.jira.querydsl.support.ri.QuerydslSupportImpl;
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+import org.everit.jira.worklog.query.plugin.admission.WorklogQueryLane;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCacheKey;
+import org.everit.jira.worklog.query.plugin.engine.ColumnarWorklogQueryEngine;
+import org.everit.jira.worklog.query.plugin.engine.LuceneWorklogQueryEngine;
+import org.everit.jira.worklog.query.plugin.engine.RollupWorklogQueryEngine;
+import org.everit.jira.worklog.query.plugin.engine.SqlWorklogQueryEngine;
+import org.everit.jira.worklog.query.plugin.engine.WorklogQueryEngine;
+import org.everit.jira.worklog.query.plugin.engine.WorklogQueryPlanner;
+import org.everit.jira.worklog.query.plugin.engine.WorklogQuerySpec;
+import org.everit.jira.worklog.query.plugin.engine.WorklogSumByIssuesEngine;
+import org.everit.jira.worklog.query.plugin.export.WorklogExportJob;
+import org.everit.jira.worklog.query.plugin.export.WorklogExportManager;
+import org.everit.jira.worklog.query.plugin.index.WorklogColumnarIndex;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryStage;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryTrace;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogChangesQuery;
 import org.everit.jira.worklog.query.plugin.query.FindWorklogsByIssuesQuery;
-import org.everit.jira.worklog.query.plugin.query.FindWorklogsQuery;
-import org.everit.jira.worklog.query.plugin.query.JsonWorklog;
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+import org.everit.jira.worklog.query.plugin.rollup.WorklogRollupStore;
+import org.everit.jira.worklog.query.plugin.tombstone.WorklogTombstone;
+import org.everit.jira.worklog.query.plugin.tombstone.WorklogTombstoneStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,7 +94,11 @@ import com.atlassian.jira.security.JiraAuthenticationContext;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.collect.CollectionBuilder;
 import com.atlassian.jira.util.json.JSONArray;
+import com.atlassian.jira.util.json.JSONException;
+import com.atlassian.jira.util.json.JSONObject;
 import com.atlassian.jira.web.bean.PagerFilter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
  * The implementations of the WorklogQueryCore.
@@ -93,19 +129,88 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(WorklogQueryCoreImpl.class);
 
-  private QuerydslSupport querydslSupport;
-
   /**
-   * Simple constructor. Create {@link QuerydslSupport} instance.
+   * The status of the export jobs rejected because the export queue is full.
    */
-  public WorklogQueryCoreImpl() {
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private static QuerydslSupport createQuerydslSupport() {
     try {
-      querydslSupport = new QuerydslSupportImpl();
+      return new QuerydslSupportImpl();
     } catch (Exception e) {
       throw new RuntimeException("Cannot create Worklog Query instance.", e);
     }
   }
 
+  private final QuerydslSupport querydslSupport;
+
+  private final WorklogExportManager worklogExportManager;
+
+  private final WorklogQueryPlanner worklogQueryPlanner;
+
+  private final WorklogResultCache worklogResultCache;
+
+  private final WorklogTombstoneStore worklogTombstoneStore;
+
+  /**
+   * Simple constructor. Create {@link QuerydslSupport} instance. The deleted worklogs are not
+   * available, the aggregate queries are only served by the SQL and the Lucene engines and the
+   * results are not cached without the plugin owned stores.
+   */
+  public WorklogQueryCoreImpl() {
+    this(null, null, null, null, null);
+  }
+
+  /**
+   * Constructor with the given database access and without the plugin owned stores. Used by the
+   * benchmarks that run on a database outside of Jira.
+   *
+   * @param querydslSupport
+   *          The database access of the queries.
+   */
+  public WorklogQueryCoreImpl(final QuerydslSupport querydslSupport) {
+    this(querydslSupport, null, null, null, null, null);
+  }
+
+  /**
+   * Constructor with the plugin owned stores. Create {@link QuerydslSupport} instance and the
+   * {@link WorklogQueryPlanner} of the query engines.
+   *
+   * @param worklogTombstoneStore
+   *          The store of the deleted worklogs.
+   * @param worklogRollupStore
+   *          The store of the summarized worklogs.
+   * @param worklogResultCache
+   *          The cache of the query results.
+   * @param worklogColumnarIndex
+   *          The in-heap columnar index of the worklogs.
+   * @param worklogExportManager
+   *          The runner of the background worklog exports.
+   */
+  public WorklogQueryCoreImpl(final WorklogTombstoneStore worklogTombstoneStore,
+      final WorklogRollupStore worklogRollupStore, final WorklogResultCache worklogResultCache,
+      final WorklogColumnarIndex worklogColumnarIndex,
+      final WorklogExportManager worklogExportManager) {
+    this(createQuerydslSupport(), worklogTombstoneStore, worklogRollupStore, worklogResultCache,
+        worklogColumnarIndex, worklogExportManager);
+  }
+
+  private WorklogQueryCoreImpl(final QuerydslSupport querydslSupport,
+      final WorklogTombstoneStore worklogTombstoneStore,
+      final WorklogRollupStore worklogRollupStore, final WorklogResultCache worklogResultCache,
+      final WorklogColumnarIndex worklogColumnarIndex,
+      final WorklogExportManager worklogExportManager) {
+    this.querydslSupport = querydslSupport;
+    this.worklogTombstoneStore = worklogTombstoneStore;
+    this.worklogExportManager = worklogExportManager;
+    this.worklogResultCache = worklogResultCache;
+    worklogQueryPlanner = new WorklogQueryPlanner(Arrays.<WorklogQueryEngine> asList(
+        new ColumnarWorklogQueryEngine(worklogColumnarIndex),
+        new RollupWorklogQueryEngine(worklogRollupStore),
+        new LuceneWorklogQueryEngine(querydslSupport),
+        new SqlWorklogQueryEngine(querydslSupport)));
+  }
+
   private void addFields(final Issue issue, final IssueBean bean) {
     // iterate over all the visible layout items from the field layout for this issue and attempt to
     // add them
@@ -147,6 +252,7 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
 
   private void addFieldsToIssueBeans(final List<StringList> fields,
       final Map<Long, Issue> issueIdIssue, final List<IssueBeanWithTimespent> issueBeans) {
+    long startNanos = System.nanoTime();
     IncludedFields includedFields = IncludedFields.includeNavigableByDefault(fields);
     boolean isEmptyField = StringList.joinLists(fields)
         .asList().contains("emptyFieldValue");
@@ -156,6 +262,7 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
         addFields(issueIdIssue.get(Long.valueOf(issueBean.getId())), issueBean);
       }
     }
+    WorklogQueryTrace.record(WorklogQueryStage.FIELDS, startNanos);
   }
 
   private void addRestAwareField(final Issue issue, final IssueBean bean, final Field field,
@@ -166,6 +273,16 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
     }
   }
 
+  /**
+   * Returns the cached result or loads and caches it if the cache is available.
+   */
+  private <T> T cached(final WorklogResultCacheKey cacheKey, final Supplier<T> loader) {
+    if (worklogResultCache == null) {
+      return loader.get();
+    }
+    return worklogResultCache.get(cacheKey, loader);
+  }
+
   /**
    * Check the required (or optional) parameters. If any parameter missing or conflict return with
    * the right Response what describes the problem. If everything is right then return with null.
@@ -218,6 +335,19 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
       return Response.status(Response.Status.BAD_REQUEST)
           .entity("The 'startDate' parameter is missing!").build();
     }
+    return checkRequiredUserParameter(user, group);
+  }
+
+  /**
+   * Check that exactly one of the user and the group parameters is present.
+   *
+   * @param user
+   *          The user parameter of the REST.
+   * @param group
+   *          The group parameter of the REST.
+   * @return If find bad parameter then return with Response else null.
+   */
+  private Response checkRequiredUserParameter(final String user, final String group) {
     if ((isStringEmpty(user)) && (isStringEmpty(group))) {
       return Response.status(Response.Status.BAD_REQUEST)
           .entity("The 'user' or the 'group' parameter is missing!").build();
@@ -230,6 +360,58 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
     return null;
   }
 
+  /**
+   * Checks the projects and the users selected by the parameters of a worklog query.
+   *
+   * @param projectString
+   *          The project parameter of the REST.
+   * @param projects
+   *          The ids of the projects selected by the project parameter.
+   * @param users
+   *          The keys of the users selected by the user or the group parameter. Null if the query
+   *          does not filter the users.
+   * @return The bad request Response if no project or no user was selected, else null.
+   */
+  private Response checkWorklogQueryTargets(final String projectString, final List<Long> projects,
+      final List<String> users) {
+    if ((projectString != null) && projects.isEmpty()) {
+      return Response
+          .status(Response.Status.BAD_REQUEST)
+          .entity(
+              "Error running search: There is no project matching the given 'project' parameter: "
+                  + projectString)
+          .build();
+    }
+    if ((users != null) && users.isEmpty()) {
+      return Response.status(Response.Status.BAD_REQUEST)
+          .entity("Error running search: There is no group or user matching the given parameters.")
+          .build();
+    }
+    return null;
+  }
+
+  /**
+   * Creates the issue beans of the findWorklogsByIssues method from the time spent per issue
+   * summarized by the given engine.
+   */
+  private List<IssueBeanWithTimespent> collectIssueBeansFromAggregates(
+      final WorklogSumByIssuesEngine engine, final WorklogQuerySpec spec,
+      final Map<Long, Issue> issueIdIssue, final int startAt, final int maxResults,
+      final String jiraBaseUrl) throws URISyntaxException {
+    Map<Long, Long> timeSpentByIssue = WorklogQueryTrace.timed(WorklogQueryStage.QUERY,
+        () -> engine.sumTimeSpentByIssues(spec));
+    List<Long> issueIds = new ArrayList<>(timeSpentByIssue.keySet());
+    Collections.sort(issueIds);
+    int fromIndex = Math.min(startAt, issueIds.size());
+    int toIndex = (int) Math.min((long) fromIndex + maxResults, issueIds.size());
+    List<IssueBeanWithTimespent> issueBeans = new ArrayList<>();
+    for (Long issueId : issueIds.subList(fromIndex, toIndex)) {
+      issueBeans.add(new IssueBeanWithTimespent(issueId, issueIdIssue.get(issueId).getKey(),
+          jiraBaseUrl + issueId, timeSpentByIssue.get(issueId)));
+    }
+    return issueBeans;
+  }
+
   private Map<Long, Issue> collectIssueIds(final List<Issue> issues) {
     Map<Long, Issue> result = new HashMap<>();
     for (Issue issue : issues) {
@@ -243,26 +425,27 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    *
    * @param endDateString
    *          The endDate parameter.
-   * @return The formated, valid calendar.
-   * @throws ParseException
+   * @param zone
+   *          The time zone of the request.
+   * @return The end of the day in the time zone, the end of today if the parameter is empty or
+   *         the exact instant if the parameter is an ISO-8601 instant.
+   * @throws WorklogQueryException
    *           If cannot parse the String to Calendar.
    */
-  private Calendar convertEndDate(final String endDateString) throws WorklogQueryException {
-    Calendar endDate;
+  private Calendar convertEndDate(final String endDateString, final ZoneId zone)
+      throws WorklogQueryException {
+    LocalTime endOfDay = LocalTime.of(LAST_HOUR_OF_DAY, LAST_MINUTE_OF_HOUR,
+        LAST_SECOND_OF_MINUTE);
     if ((endDateString == null) || (endDateString.length() == 0)) {
-      endDate = Calendar.getInstance();
-    } else {
-      try {
-        endDate = DateTimeConverterUtil.inputStringToCalendar(endDateString);
-      } catch (ParseException e) {
-        LOGGER.error("Failed to convert end date", e);
-        throw new WorklogQueryException("Cannot parse the 'endDate' parameter: " + endDateString,
-            e);
-      }
+      return DateTimeConverterUtil.toCalendar(LocalDate.now(zone), endOfDay, zone);
+    }
+    try {
+      return DateTimeConverterUtil.inputStringToCalendar(endDateString, endOfDay, zone);
+    } catch (DateTimeParseException e) {
+      LOGGER.error("Failed to convert end date", e);
+      throw new WorklogQueryException("Cannot parse the 'endDate' parameter: " + endDateString,
+          e);
     }
-    endDate = DateTimeConverterUtil.setCalendarHourMinSec(endDate,
-        LAST_HOUR_OF_DAY, LAST_MINUTE_OF_HOUR, LAST_SECOND_OF_MINUTE);
-    return endDate;
   }
 
   /**
@@ -270,21 +453,103 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    *
    * @param startDateString
    *          The startDate parameter.
-   * @return The formated, valid calendar.
-   * @throws ParseException
+   * @param zone
+   *          The time zone of the request.
+   * @return The start of the day in the time zone or the exact instant if the parameter is an
+   *         ISO-8601 instant.
+   * @throws WorklogQueryException
    *           Id cannot parse the String to Calendar.
    */
-  private Calendar convertStartDate(final String startDateString) throws WorklogQueryException {
-    Calendar startDate;
+  private Calendar convertStartDate(final String startDateString, final ZoneId zone)
+      throws WorklogQueryException {
     try {
-      startDate = DateTimeConverterUtil.inputStringToCalendar(startDateString);
-    } catch (ParseException e) {
+      return DateTimeConverterUtil.inputStringToCalendar(startDateString, LocalTime.MIDNIGHT,
+          zone);
+    } catch (DateTimeParseException e) {
       LOGGER.error("Failed to convert start date", e);
       throw new WorklogQueryException("Cannot parse the 'startDate' parameter: " + startDateString,
           e);
     }
-    startDate = DateTimeConverterUtil.setCalendarHourMinSec(startDate, 0, 0, 0);
-    return startDate;
+  }
+
+  /**
+   * Convert the timeZone String to time zone.
+   *
+   * @param timeZone
+   *          The timeZone parameter.
+   * @return The time zone of the parameter, the default time zone if the parameter is empty.
+   * @throws WorklogQueryException
+   *           If the time zone is unknown.
+   */
+  private ZoneId convertTimeZone(final String timeZone) throws WorklogQueryException {
+    try {
+      return DateTimeConverterUtil.parseTimeZone(timeZone);
+    } catch (DateTimeException e) {
+      throw new WorklogQueryException("Cannot parse the 'timeZone' parameter: " + timeZone, e);
+    }
+  }
+
+  /**
+   * Copies the cached issue beans, so the fields of a request are not added to the cached beans.
+   */
+  private List<IssueBeanWithTimespent> copyIssueBeans(
+      final List<IssueBeanWithTimespent> issueBeans) throws URISyntaxException {
+    List<IssueBeanWithTimespent> copies = new ArrayList<>(issueBeans.size());
+    for (IssueBeanWithTimespent issueBean : issueBeans) {
+      copies.add(new IssueBeanWithTimespent(Long.valueOf(issueBean.getId()), issueBean.getKey(),
+          issueBean.getSelf().toString(), issueBean.getTimeSpent()));
+    }
+    return copies;
+  }
+
+  /**
+   * Create the entity tag of a findWorklogs or findUpdatedWorklogs result. The tag covers the
+   * parameters, the permission filtered projects and the validator of the matching worklogs, so it
+   * changes whenever a worklog is created, updated or deleted in the result.
+   */
+  private EntityTag createEntityTag(final Calendar startDate, final Calendar endDate,
+      final List<String> users, final List<Long> projects, final List<StringList> fields,
+      final boolean updated, final WorklogValidator worklogValidator) {
+    List<String> sortedUsers = new ArrayList<>(users);
+    Collections.sort(sortedUsers);
+    List<Long> sortedProjects = new ArrayList<>(projects);
+    Collections.sort(sortedProjects);
+    Date lastUpdated = worklogValidator.getLastUpdated();
+    String tag = Hashing.murmur3_128().newHasher()
+        .putBoolean(updated)
+        .putLong(startDate.getTimeInMillis())
+        .putLong(endDate.getTimeInMillis())
+        .putString(startDate.getTimeZone().getID(), StandardCharsets.UTF_8)
+        .putString(sortedUsers.toString(), StandardCharsets.UTF_8)
+        .putString(sortedProjects.toString(), StandardCharsets.UTF_8)
+        .putString(fieldsParameter(fields), StandardCharsets.UTF_8)
+        .putLong(worklogValidator.getCount())
+        .putLong(lastUpdated == null ? 0 : lastUpdated.getTime())
+        .hash()
+        .toString();
+    return new EntityTag(tag);
+  }
+
+  /**
+   * Creates the digest of the ids of the issues found by the JQL search. The search is filtered by
+   * the permissions of the user, so the cached aggregates of the issues are keyed by this digest.
+   *
+   * @param issueIds
+   *          The ids of the found issues.
+   * @return The digest.
+   */
+  private String createIssueIdsDigest(final Collection<Long> issueIds) {
+    long[] sortedIssueIds = new long[issueIds.size()];
+    int i = 0;
+    for (Long issueId : issueIds) {
+      sortedIssueIds[i++] = issueId;
+    }
+    Arrays.sort(sortedIssueIds);
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (long issueId : sortedIssueIds) {
+      hasher.putLong(issueId);
+    }
+    return hasher.hash().toString();
   }
 
   /**
@@ -299,7 +564,7 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    * @return The list of the issues conditions.
    */
   private List<Long> createProjects(final String projectString, final ApplicationUser user) {
-
+    long startNanos = System.nanoTime();
     Collection<Project> projects = ComponentAccessor.getPermissionManager()
         .getProjects(ProjectPermissions.BROWSE_PROJECTS, user);
 
@@ -313,10 +578,25 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
         projectList.add(project.getId());
       }
     }
+    WorklogQueryTrace.record(WorklogQueryStage.PROJECTS, startNanos);
     return projectList;
   }
 
+  /**
+   * Creates the control of the JDBC statements of a request with the query timeout of the
+   * endpoint.
+   *
+   * @param endpoint
+   *          The endpoint of the request.
+   * @return The statement control.
+   */
+  private WorklogStatementControl createStatementControl(final WorklogEndpoint endpoint) {
+    return new WorklogStatementControl(WorklogQueryConfiguration.getQueryTimeoutSeconds(
+        endpoint.getName(), endpoint.getLane() == WorklogQueryLane.HEAVY));
+  }
+
   private List<String> createUsers(final String userName, final String group) {
+    long startNanos = System.nanoTime();
     List<String> users = new ArrayList<>();
     if ((group != null) && (group.length() != 0)) {
       Set<ApplicationUser> groupUsers = ComponentAccessor.getUserUtil()
@@ -331,9 +611,174 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
         users.add(user.getKey());
       }
     }
+    WorklogQueryTrace.record(WorklogQueryStage.USERS, startNanos);
     return users;
   }
 
+  /**
+   * The exportWorklogs REST method core implementation. The worklogs are selected like by the
+   * findWorklogs or the findUpdatedWorklogs method, but they are written into a file by a
+   * background job.
+   *
+   * @param startDate
+   *          The startDate parameter of the REST.
+   * @param endDate
+   *          The endDate parameter of the REST.
+   * @param timeZone
+   *          The timeZone parameter of the REST.
+   * @param user
+   *          The user parameter of the REST.
+   * @param group
+   *          The group parameter of the REST.
+   * @param project
+   *          The project parameter of the REST.
+   * @param fields
+   *          The fields parameter of the REST.
+   * @param updated
+   *          True if the worklogs created or updated in the period are exported, false if the
+   *          worklogs of the period.
+   * @return ACCEPTED with the state of the submitted job or TOO_MANY_REQUESTS if the export queue
+   *         is full.
+   */
+  @Override
+  public Response exportWorklogs(final String startDate, final String endDate,
+      final String timeZone, final String user, final String group, final String project,
+      final List<StringList> fields, final boolean updated) throws WorklogQueryException {
+    if (worklogExportManager == null) {
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .entity("The export of the worklogs is not available.").build();
+    }
+    Response checkRequiredFindWorklogsParamResponse = checkRequiredFindWorklogsParameter(startDate,
+        user, group);
+    if (checkRequiredFindWorklogsParamResponse != null) {
+      return checkRequiredFindWorklogsParamResponse;
+    }
+    ApplicationUser loggedInUser =
+        ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    if (loggedInUser == null) {
+      return Response.status(Response.Status.UNAUTHORIZED)
+          .entity("The export of the worklogs requires an authenticated user.").build();
+    }
+    ZoneId zone = convertTimeZone(timeZone);
+    Calendar startDateCalendar = convertStartDate(startDate, zone);
+    Calendar endDateCalendar = convertEndDate(endDate, zone);
+    List<Long> projects = createProjects(project, loggedInUser);
+    List<String> users = createUsers(user, group);
+    Response targetsResponse = checkWorklogQueryTargets(project, projects, users);
+    if (targetsResponse != null) {
+      return targetsResponse;
+    }
+
+    // The export runs without a client, so it has its own timeout in the heavy lane.
+    WorklogStatementControl statementControl = new WorklogStatementControl(
+        WorklogQueryConfiguration.getQueryTimeoutSeconds("exportWorklogs", true));
+    WorklogQuerySpec spec = WorklogQuerySpec.byProjects(startDateCalendar, endDateCalendar,
+        users, projects, fields, updated, statementControl);
+    WorklogExportJob job = worklogExportManager.submit(loggedInUser.getKey(), statementControl,
+        new WorklogStreamingOutput(worklogQueryPlanner.planFind(spec), spec, statementControl,
+            null, null));
+    if (job == null) {
+      return Response.status(TOO_MANY_REQUESTS)
+          .header("Retry-After", WorklogQueryConfiguration.getAdmissionRetryAfterSeconds())
+          .entity("Too many queued worklog exports. Retry later.").build();
+    }
+    try {
+      return Response.status(Response.Status.ACCEPTED).entity(job.toJson().toString()).build();
+    } catch (JSONException e) {
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity(e.getMessage()).build();
+    }
+  }
+
+  /**
+   * Normalize the fields parameter to a comma separated String.
+   *
+   * @param fields
+   *          The fields parameter. Can be null.
+   * @return The joined fields.
+   */
+  private String fieldsParameter(final List<StringList> fields) {
+    if (fields == null) {
+      return "";
+    }
+    return StringList.joinLists(fields).toQueryParam();
+  }
+
+  /**
+   * The deleted worklogs REST method core implementation.
+   *
+   * @param since
+   *          The opaque watermark returned by the previous call. Null or empty to start from the
+   *          oldest retained deletion.
+   * @param timeZone
+   *          The timeZone parameter of the REST, the time zone of the deletion dates.
+   * @param project
+   *          The project parameter of the REST.
+   * @param maxResults
+   *          The maximum number of the returned deletions. Non positive value means the default.
+   * @return The deleted worklogs and the next watermark.
+   */
+  @Override
+  public Response findDeletedWorklogs(final String since, final String timeZone,
+      final String project, final int maxResults) throws WorklogQueryException {
+    if (worklogTombstoneStore == null) {
+      return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .entity("The deleted worklogs are not tracked.").build();
+    }
+    Watermark watermark = Watermark.decode(since);
+    ZoneId zone = convertTimeZone(timeZone);
+    int tmpMaxResults = maxResults;
+    if (tmpMaxResults <= 0) {
+      tmpMaxResults = WorklogQueryConfiguration.getChangesMaxResults();
+    }
+    tmpMaxResults = Math.min(tmpMaxResults, WorklogQueryConfiguration.getChangesMaxResultsLimit());
+
+    ApplicationUser loggedInUser =
+        ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    List<Long> projects = createProjects(project, loggedInUser);
+    Response targetsResponse = checkWorklogQueryTargets(project, projects, null);
+    if (targetsResponse != null) {
+      return targetsResponse;
+    }
+
+    long upperBound =
+        System.currentTimeMillis() - WorklogQueryConfiguration.getChangesSafetyLagMillis();
+    long queryStartNanos = System.nanoTime();
+    List<WorklogTombstone> tombstones =
+        worklogTombstoneStore.findDeletedSince(watermark, upperBound, projects, tmpMaxResults + 1);
+    WorklogQueryTrace.record(WorklogQueryStage.QUERY, queryStartNanos);
+    boolean hasMore = tombstones.size() > tmpMaxResults;
+    if (hasMore) {
+      tombstones = tombstones.subList(0, tmpMaxResults);
+    }
+    WorklogQueryTrace.addRows(tombstones.size());
+    long writeStartNanos = System.nanoTime();
+    try {
+      JSONArray jsonDeletions = new JSONArray();
+      Watermark nextWatermark = watermark;
+      for (WorklogTombstone tombstone : tombstones) {
+        JSONObject jsonDeletion = new JSONObject();
+        jsonDeletion.put("id", tombstone.getWorklogId());
+        jsonDeletion.put("issueId", tombstone.getIssueId());
+        jsonDeletion.put("deleted",
+            DateTimeConverterUtil.formatDateTime(tombstone.getDeleted(), zone));
+        jsonDeletions.put(jsonDeletion);
+        nextWatermark = new Watermark(tombstone.getDeleted(), tombstone.getWorklogId());
+      }
+      JSONObject jsonResult = new JSONObject();
+      jsonResult.put("worklogs", jsonDeletions);
+      jsonResult.put("nextWatermark", nextWatermark.encode());
+      jsonResult.put("hasMore", hasMore);
+      return Response.ok(jsonResult.toString()).build();
+    } catch (JSONException e) {
+      LOGGER.error("Failed to query the deleted worklogs", e);
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity(e.getMessage()).build();
+    } finally {
+      WorklogQueryTrace.record(WorklogQueryStage.WRITE, writeStartNanos);
+    }
+  }
+
   /**
    * The findUpdatedWorklogs REST method core implementation.
    *
@@ -341,6 +786,9 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    *          The start Date parameter of the REST.
    * @param endDate
    *          The end Date parameter of the REST.
+   * @param timeZone
+   *          The timeZone parameter of the REST. The dates are in this time zone, in the default
+   *          time zone if empty.
    * @param user
    *          The user parameter of the REST.
    * @param group
@@ -349,22 +797,27 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    *          The project parameter of the REST.
    * @param fields
    *          The fields parameter of the REST.
+   * @param request
+   *          The request to evaluate the preconditions of. Null if the client sent no
+   *          If-None-Match header, then the entity tag is sent only with a cached result.
    * @return The founded worklogs.
    *
    */
   @Override
   public Response findUpdatedWorklogs(final String startDate, final String endDate,
-      final String user, final String group,
-      final String project, final List<StringList> fields) throws WorklogQueryException {
+      final String timeZone, final String user, final String group, final String project,
+      final List<StringList> fields, final Request request) throws WorklogQueryException {
     Response checkRequiredFindWorklogsParamResponse = checkRequiredFindWorklogsParameter(startDate,
         user, group);
     if (checkRequiredFindWorklogsParamResponse != null) {
       return checkRequiredFindWorklogsParamResponse;
     }
-    Calendar startDateCalendar = convertStartDate(startDate);
-    Calendar endDateCalendar = convertEndDate(endDate);
+    ZoneId zone = convertTimeZone(timeZone);
+    Calendar startDateCalendar = convertStartDate(startDate, zone);
+    Calendar endDateCalendar = convertEndDate(endDate, zone);
     try {
-      return worklogQuery(startDateCalendar, endDateCalendar, user, group, project, fields, true);
+      return worklogQuery(startDateCalendar, endDateCalendar, user, group, project, fields, true,
+          request);
     } catch (Exception e) {
       LOGGER.error("Failed to query the worklogs", e);
       return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -372,6 +825,78 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
     }
   }
 
+  /**
+   * The worklog change feed REST method core implementation.
+   *
+   * @param since
+   *          The opaque watermark returned by the previous call. Null or empty to start the feed
+   *          from the beginning.
+   * @param timeZone
+   *          The timeZone parameter of the REST, the time zone of the start and updated dates.
+   * @param user
+   *          The user parameter of the REST.
+   * @param group
+   *          The group parameter of the REST.
+   * @param project
+   *          The project parameter of the REST.
+   * @param maxResults
+   *          The maximum number of the returned worklogs. Non positive value means the default.
+   * @param fields
+   *          The fields parameter of the REST.
+   * @return The changed worklogs and the next watermark.
+   */
+  @Override
+  public Response findWorklogChanges(final String since, final String timeZone,
+      final String user, final String group, final String project, final int maxResults,
+      final List<StringList> fields) throws WorklogQueryException {
+    Response checkRequiredUserParamResponse = checkRequiredUserParameter(user, group);
+    if (checkRequiredUserParamResponse != null) {
+      return checkRequiredUserParamResponse;
+    }
+    Watermark watermark = Watermark.decode(since);
+    ZoneId zone = convertTimeZone(timeZone);
+    int tmpMaxResults = maxResults;
+    if (tmpMaxResults <= 0) {
+      tmpMaxResults = WorklogQueryConfiguration.getChangesMaxResults();
+    }
+    tmpMaxResults = Math.min(tmpMaxResults, WorklogQueryConfiguration.getChangesMaxResultsLimit());
+
+    JiraAuthenticationContext authenticationContext = ComponentAccessor
+        .getJiraAuthenticationContext();
+    ApplicationUser loggedInUser = authenticationContext.getLoggedInUser();
+
+    List<Long> projects = createProjects(project, loggedInUser);
+    List<String> users = createUsers(user, group);
+    Response targetsResponse = checkWorklogQueryTargets(project, projects, users);
+    if (targetsResponse != null) {
+      return targetsResponse;
+    }
+
+    long upperBound =
+        System.currentTimeMillis() - WorklogQueryConfiguration.getChangesSafetyLagMillis();
+    long queryStartNanos = System.nanoTime();
+    WorklogChanges worklogChanges = querydslSupport.execute(
+        createStatementControl(WorklogEndpoint.WORKLOG_CHANGES).control(
+            new FindWorklogChangesQuery(watermark, upperBound, fields, users, projects,
+                tmpMaxResults, zone)));
+    WorklogQueryTrace.record(WorklogQueryStage.QUERY, queryStartNanos);
+    WorklogQueryTrace.addRows(worklogChanges.getWorklogs().size());
+    long writeStartNanos = System.nanoTime();
+    try {
+      JSONObject jsonResult = new JSONObject();
+      jsonResult.put("worklogs", new JSONArray(worklogChanges.getWorklogs()));
+      jsonResult.put("nextWatermark", worklogChanges.getNextWatermark().encode());
+      jsonResult.put("hasMore", worklogChanges.hasMore());
+      return Response.ok(jsonResult.toString()).build();
+    } catch (JSONException e) {
+      LOGGER.error("Failed to query the worklog changes", e);
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity(e.getMessage()).build();
+    } finally {
+      WorklogQueryTrace.record(WorklogQueryStage.WRITE, writeStartNanos);
+    }
+  }
+
   /**
    * The findWorklogs REST method core implementation.
    *
@@ -379,6 +904,9 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    *          The start Date parameter of the REST.
    * @param endDate
    *          The end Date parameter of the REST.
+   * @param timeZone
+   *          The timeZone parameter of the REST. The dates are in this time zone, in the default
+   *          time zone if empty.
    * @param user
    *          The user parameter of the REST.
    * @param group
@@ -387,21 +915,26 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    *          The project parameter of the REST.
    * @param fields
    *          The fields parameter of the REST.
+   * @param request
+   *          The request to evaluate the preconditions of. Null if the client sent no
+   *          If-None-Match header, then the entity tag is sent only with a cached result.
    * @return The founded worklogs.
    */
   @Override
-  public Response findWorklogs(final String startDate, final String endDate, final String user,
-      final String group, final String project, final List<StringList> fields)
-      throws WorklogQueryException {
+  public Response findWorklogs(final String startDate, final String endDate,
+      final String timeZone, final String user, final String group, final String project,
+      final List<StringList> fields, final Request request) throws WorklogQueryException {
     Response checkRequiredFindWorklogsParamResponse = checkRequiredFindWorklogsParameter(startDate,
         user, group);
     if (checkRequiredFindWorklogsParamResponse != null) {
       return checkRequiredFindWorklogsParamResponse;
     }
-    Calendar startDateCalendar = convertStartDate(startDate);
-    Calendar endDateCalendar = convertEndDate(endDate);
+    ZoneId zone = convertTimeZone(timeZone);
+    Calendar startDateCalendar = convertStartDate(startDate, zone);
+    Calendar endDateCalendar = convertEndDate(endDate, zone);
     try {
-      return worklogQuery(startDateCalendar, endDateCalendar, user, group, project, fields, false);
+      return worklogQuery(startDateCalendar, endDateCalendar, user, group, project, fields, false,
+          request);
     } catch (Exception e) {
       LOGGER.error("Failed to query the worklogs", e);
       return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -427,8 +960,9 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
         findWorklogsByIssuesParam.endDate, findWorklogsByIssuesParam.user,
         findWorklogsByIssuesParam.group);
 
-    Calendar startDateCalendar = convertStartDate(findWorklogsByIssuesParam.startDate);
-    Calendar endDateCalendar = convertEndDate(findWorklogsByIssuesParam.endDate);
+    ZoneId zone = convertTimeZone(findWorklogsByIssuesParam.timeZone);
+    Calendar startDateCalendar = convertStartDate(findWorklogsByIssuesParam.startDate, zone);
+    Calendar endDateCalendar = convertEndDate(findWorklogsByIssuesParam.endDate, zone);
     if (tmpStartAt < 0) {
       tmpStartAt = DEFAULT_STARTAT_PARAM;
     }
@@ -441,36 +975,93 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
       throw new WorklogQueryException(
           "Error running search: There is no group or user matching the given parameters.");
     }
-    List<Issue> issues = null;
-    try {
-      issues = getIssuesByJQL(findWorklogsByIssuesParam.jql);
-    } catch (SearchException e) {
-      LOGGER.error("Failed to query the worklogs", e);
-      throw new WorklogQueryException("Error running search: ", e);
-    } catch (JqlParseException e) {
-      LOGGER.error("Failed to parse the JQL", e);
-      throw new WorklogQueryException(e.getMessage(), e);
-    }
+    return searchWorklogsByIssues(startDateCalendar, endDateCalendar, users,
+        findWorklogsByIssuesParam, tmpStartAt, tmpMaxResults);
+  }
 
-    Map<Long, Issue> issueIdIssue = collectIssueIds(issues);
+  /**
+   *
+   * The summary mode of the findWorklogsByIssues REST method core implementation.
+   *
+   * @param findWorklogsByIssuesParam
+   *          The parameters object of the findWorklogsByIssues method parameters. The startAt and
+   *          maxResults parameters are ignored, the summary covers every matching worklog.
+   * @return The number and the summarized spent time of the matching worklogs.
+   */
+  @Override
+  public WorklogSummary findWorklogsByIssuesSummary(
+      final FindWorklogsByIssuesParam findWorklogsByIssuesParam)
+      throws WorklogQueryException {
+    checkRequiredFindWorklogsByIssuesParameter(findWorklogsByIssuesParam.startDate,
+        findWorklogsByIssuesParam.endDate, findWorklogsByIssuesParam.user,
+        findWorklogsByIssuesParam.group);
 
-    List<IssueBeanWithTimespent> issueBeans = null;
-    try {
-      String jiraBaseUrl = ComponentAccessor.getApplicationProperties()
-          .getString(APKeys.JIRA_BASEURL) + "/rest/api/2/issue/";
-      issueBeans = querydslSupport.execute(new FindWorklogsByIssuesQuery(startDateCalendar,
-          endDateCalendar, users, issueIdIssue.keySet(), tmpStartAt, tmpMaxResults, jiraBaseUrl));
+    ZoneId zone = convertTimeZone(findWorklogsByIssuesParam.timeZone);
+    Calendar startDateCalendar = convertStartDate(findWorklogsByIssuesParam.startDate, zone);
+    Calendar endDateCalendar = convertEndDate(findWorklogsByIssuesParam.endDate, zone);
+    List<String> users =
+        createUsers(findWorklogsByIssuesParam.user, findWorklogsByIssuesParam.group);
+    if (users.isEmpty()) {
+      throw new WorklogQueryException(
+          "Error running search: There is no group or user matching the given parameters.");
+    }
+    // The issues change without worklog events, so the search runs on every request and only the
+    // summary of the found issues is cached.
+    Map<Long, Issue> issueIdIssue = collectIssueIds(searchIssues(findWorklogsByIssuesParam.jql));
+    WorklogResultCacheKey cacheKey = new WorklogResultCacheKey("worklogsByIssuesSummary",
+        startDateCalendar.getTimeInMillis(), endDateCalendar.getTimeInMillis(), false, users,
+        null, createIssueIdsDigest(issueIdIssue.keySet()));
+    return cached(cacheKey, () -> {
+      WorklogQuerySpec spec = WorklogQuerySpec.byIssues(startDateCalendar, endDateCalendar,
+          users, issueIdIssue.keySet(),
+          createStatementControl(WorklogEndpoint.WORKLOGS_BY_ISSUES_SUMMARY));
+      try {
+        return WorklogQueryTrace.timed(WorklogQueryStage.QUERY,
+            () -> worklogQueryPlanner.planSummarize(spec).summarize(spec));
+      } catch (Exception e) {
+        LOGGER.error("Error when try summarize the worklogs.", e);
+        throw new WorklogQueryException("Error when try summarize the worklogs.", e);
+      }
+    });
+  }
 
-      addFieldsToIssueBeans(findWorklogsByIssuesParam.fields, issueIdIssue, issueBeans);
+  /**
+   * The summary mode of the findWorklogs REST method core implementation.
+   *
+   * @param startDate
+   *          The start Date parameter of the REST.
+   * @param endDate
+   *          The end Date parameter of the REST.
+   * @param timeZone
+   *          The timeZone parameter of the REST. The dates are in this time zone, in the default
+   *          time zone if empty.
+   * @param user
+   *          The user parameter of the REST.
+   * @param group
+   *          The group parameter of the REST.
+   * @param project
+   *          The project parameter of the REST.
+   * @return The number and the summarized spent time of the founded worklogs.
+   */
+  @Override
+  public Response findWorklogsSummary(final String startDate, final String endDate,
+      final String timeZone, final String user, final String group, final String project)
+      throws WorklogQueryException {
+    Response checkRequiredFindWorklogsParamResponse = checkRequiredFindWorklogsParameter(startDate,
+        user, group);
+    if (checkRequiredFindWorklogsParamResponse != null) {
+      return checkRequiredFindWorklogsParamResponse;
+    }
+    ZoneId zone = convertTimeZone(timeZone);
+    Calendar startDateCalendar = convertStartDate(startDate, zone);
+    Calendar endDateCalendar = convertEndDate(endDate, zone);
+    try {
+      return worklogSummaryQuery(startDateCalendar, endDateCalendar, user, group, project, false);
     } catch (Exception e) {
-      LOGGER.error("Error when try collectig issue beans.", e);
-      throw new WorklogQueryException("Error when try collectig issue beans.", e);
+      LOGGER.error("Failed to summarize the worklogs", e);
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity(e.getMessage()).build();
     }
-    SearchResultsBeanWithTimespent searchResultsBean =
-        new SearchResultsBeanWithTimespent(tmpStartAt, tmpMaxResults, issueBeans.size(),
-            issueBeans);
-
-    return searchResultsBean;
   }
 
   private FieldJsonRepresentation getFieldValue(final FieldLayoutItem fieldLayoutItem,
@@ -499,6 +1090,7 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
   private List<Issue> getIssuesByJQL(final String jql)
       throws SearchException,
       JqlParseException {
+    long startNanos = System.nanoTime();
     JiraAuthenticationContext authenticationContext = ComponentAccessor
         .getJiraAuthenticationContext();
     ApplicationUser loggedInUser = authenticationContext.getLoggedInUser();
@@ -512,6 +1104,7 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
     } else {
       throw new JqlParseException(null, parseResult.getErrors().toString());
     }
+    WorklogQueryTrace.record(WorklogQueryStage.ISSUE_SEARCH, startNanos);
     return issues;
   }
 
@@ -529,6 +1122,97 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
     return false;
   }
 
+  /**
+   * Runs the JQL search and translates its failures to {@link WorklogQueryException}.
+   *
+   * @param jql
+   *          JQL filter the search is based on.
+   * @return List of the matching JIRA Issues.
+   */
+  private List<Issue> searchIssues(final String jql) {
+    try {
+      return getIssuesByJQL(jql);
+    } catch (SearchException e) {
+      LOGGER.error("Failed to query the worklogs", e);
+      throw new WorklogQueryException("Error running search: ", e);
+    } catch (JqlParseException e) {
+      LOGGER.error("Failed to parse the JQL", e);
+      throw new WorklogQueryException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Runs the JQL search and collects the issue beans with their time spent.
+   *
+   * @param startDate
+   *          The startDate calendar parameter.
+   * @param endDate
+   *          The endDate calendar parameter.
+   * @param users
+   *          The keys of the worklog authors.
+   * @param findWorklogsByIssuesParam
+   *          The parameters object of the findWorklogsByIssues method parameters.
+   * @param startAt
+   *          The normalized startAt parameter.
+   * @param maxResults
+   *          The normalized maxResults parameter.
+   * @return The search result.
+   */
+  private SearchResultsBeanWithTimespent searchWorklogsByIssues(final Calendar startDate,
+      final Calendar endDate, final List<String> users,
+      final FindWorklogsByIssuesParam findWorklogsByIssuesParam, final int startAt,
+      final int maxResults) {
+    Map<Long, Issue> issueIdIssue = collectIssueIds(searchIssues(findWorklogsByIssuesParam.jql));
+
+    // The issues and their fields change without worklog events, so the search and the fields
+    // run on every request and only the time spent of the found issues is cached.
+    WorklogResultCacheKey cacheKey = new WorklogResultCacheKey("worklogsByIssues",
+        startDate.getTimeInMillis(), endDate.getTimeInMillis(), false, users, null,
+        createIssueIdsDigest(issueIdIssue.keySet()) + "|" + startAt + "|" + maxResults);
+    List<IssueBeanWithTimespent> issueBeans = null;
+    try {
+      issueBeans = copyIssueBeans(cached(cacheKey, () -> sumTimeSpentByIssues(startDate,
+          endDate, users, issueIdIssue, startAt, maxResults)));
+      WorklogQueryTrace.addRows(issueBeans.size());
+
+      addFieldsToIssueBeans(findWorklogsByIssuesParam.fields, issueIdIssue, issueBeans);
+    } catch (Exception e) {
+      LOGGER.error("Error when try collectig issue beans.", e);
+      throw new WorklogQueryException("Error when try collectig issue beans.", e);
+    }
+    SearchResultsBeanWithTimespent searchResultsBean =
+        new SearchResultsBeanWithTimespent(startAt, maxResults, issueBeans.size(), issueBeans);
+
+    return searchResultsBean;
+  }
+
+
+  /**
+   * Sums the time spent of the worklogs of the found issues on the requested page. The returned
+   * issue beans do not contain the fields of the issues.
+   */
+  private List<IssueBeanWithTimespent> sumTimeSpentByIssues(final Calendar startDate,
+      final Calendar endDate, final List<String> users, final Map<Long, Issue> issueIdIssue,
+      final int startAt, final int maxResults) {
+    String jiraBaseUrl = ComponentAccessor.getApplicationProperties()
+        .getString(APKeys.JIRA_BASEURL) + "/rest/api/2/issue/";
+    WorklogQuerySpec spec = WorklogQuerySpec.byIssues(startDate, endDate, users,
+        issueIdIssue.keySet(), createStatementControl(WorklogEndpoint.WORKLOGS_BY_ISSUES));
+    WorklogSumByIssuesEngine engine = worklogQueryPlanner.planSumByIssues(spec);
+    if (engine == null) {
+      return WorklogQueryTrace.timed(WorklogQueryStage.QUERY,
+          () -> querydslSupport.execute(spec.controlled(new FindWorklogsByIssuesQuery(
+              startDate, endDate, users, issueIdIssue.keySet(), startAt, maxResults,
+              jiraBaseUrl))));
+    }
+    try {
+      return collectIssueBeansFromAggregates(engine, spec, issueIdIssue, startAt, maxResults,
+          jiraBaseUrl);
+    } catch (URISyntaxException e) {
+      throw new WorklogQueryException("Error when try collectig issue beans.", e);
+    }
+  }
+
   /**
    * The method to query worklogs.
    *
@@ -545,40 +1229,110 @@ public class WorklogQueryCoreImpl implements WorklogQueryCore {
    * @param updated
    *          True if the method give back the worklogs which were created or updated in the given
    *          period, else false. The false give back the worklogs of the period.
-   * @return JSONString what contains a list of queried worklogs.
+   * @param request
+   *          The request to evaluate the preconditions of. Null if the client sent no
+   *          If-None-Match header, then the entity tag is sent only with a cached result.
+   * @return JSONString what contains a list of queried worklogs or Not Modified if the entity tag
+   *         of the client is still valid.
    */
   private Response worklogQuery(final Calendar startDate, final Calendar endDate,
       final String userString, final String groupString, final String projectString,
-      final List<StringList> fields, final boolean updated) {
+      final List<StringList> fields, final boolean updated, final Request request) {
 
     JiraAuthenticationContext authenticationContext = ComponentAccessor
         .getJiraAuthenticationContext();
     ApplicationUser loggedInUser = authenticationContext.getLoggedInUser();
 
     List<Long> projects = createProjects(projectString, loggedInUser);
-    if ((projectString != null) && projects.isEmpty()) {
-      return Response
-          .status(Response.Status.BAD_REQUEST)
-          .entity(
-              "Error running search: There is no project matching the given 'project' parameter: "
-                  + projectString)
-          .build();
+    List<String> users = createUsers(userString, groupString);
+    Response targetsResponse = checkWorklogQueryTargets(projectString, projects, users);
+    if (targetsResponse != null) {
+      return targetsResponse;
     }
 
-    List<String> users = createUsers(userString, groupString);
-    if (users.isEmpty()) {
-      return Response.status(Response.Status.BAD_REQUEST)
-          .entity("Error running search: There is no group or user matching the given parameters.")
-          .build();
+    WorklogStatementControl statementControl = createStatementControl(
+        updated ? WorklogEndpoint.UPDATED_WORKLOGS : WorklogEndpoint.WORKLOGS);
+    WorklogQuerySpec spec = WorklogQuerySpec.byProjects(startDate, endDate, users, projects,
+        fields, updated, statementControl);
+    WorklogResultCacheKey cacheKey = new WorklogResultCacheKey(
+        updated ? "updatedWorklogs" : "worklogs", startDate.getTimeInMillis(),
+        endDate.getTimeInMillis(), updated, users, projects,
+        fieldsParameter(fields) + "|" + startDate.getTimeZone().getID());
+    Object result = worklogResultCache == null ? null : worklogResultCache.getIfPresent(cacheKey);
+    EntityTag entityTag = null;
+    Date lastModified = null;
+    // The validator aggregates the whole interval, so it is calculated only for the conditional
+    // requests and the cached results, and it is cached like the results.
+    if ((request != null) || (result != null)) {
+      WorklogResultCacheKey validatorCacheKey = new WorklogResultCacheKey(
+          updated ? "updatedWorklogsValidator" : "worklogsValidator",
+          startDate.getTimeInMillis(), endDate.getTimeInMillis(), updated, users, projects, null);
+      WorklogValidator worklogValidator = cached(validatorCacheKey,
+          () -> WorklogQueryTrace.timed(WorklogQueryStage.QUERY,
+              () -> worklogQueryPlanner.planValidate(spec).validate(spec)));
+      entityTag = createEntityTag(startDate, endDate, users, projects, fields, updated,
+          worklogValidator);
+      lastModified = worklogValidator.getLastUpdated();
+      // Only the entity tag is evaluated, a deletion does not move the last modified date.
+      ResponseBuilder notModified =
+          request == null ? null : request.evaluatePreconditions(entityTag);
+      if (notModified != null) {
+        return notModified.tag(entityTag).build();
+      }
     }
 
-    List<JsonWorklog> jsonWorklogs =
-        querydslSupport.execute(new FindWorklogsQuery(startDate, endDate, fields,
-            users, projects, updated));
-    JSONArray jsonArrayResult = new JSONArray();
-    jsonArrayResult.put(jsonWorklogs);
+    if (result == null) {
+      result = new WorklogStreamingOutput(worklogQueryPlanner.planFind(spec), spec,
+          statementControl, worklogResultCache, cacheKey);
+    }
+    return Response.ok(result).tag(entityTag).lastModified(lastModified).build();
+  }
+
+  /**
+   * The method to summarize worklogs. The engine selected by the {@link WorklogQueryPlanner}
+   * aggregates the worklogs matching the predicate of the
+   * {@link #worklogQuery(Calendar, Calendar, String, String, String, List, boolean, Request)}
+   * method, without loading any worklog row.
+   *
+   * @param startDate
+   *          The startDate calendar parameter.
+   * @param endDate
+   *          The endDate calendar parameter.
+   * @param userString
+   *          The user String parameter.
+   * @param groupString
+   *          The group String parameter.
+   * @param projectString
+   *          The project String parameter.
+   * @param updated
+   *          True if the method summarizes the worklogs which were created or updated in the
+   *          given period, else false. The false summarizes the worklogs of the period.
+   * @return {@link Response} what contains the {@link WorklogSummary}.
+   */
+  private Response worklogSummaryQuery(final Calendar startDate, final Calendar endDate,
+      final String userString, final String groupString, final String projectString,
+      final boolean updated) {
+
+    JiraAuthenticationContext authenticationContext = ComponentAccessor
+        .getJiraAuthenticationContext();
+    ApplicationUser loggedInUser = authenticationContext.getLoggedInUser();
+
+    List<Long> projects = createProjects(projectString, loggedInUser);
+    List<String> users = createUsers(userString, groupString);
+    Response targetsResponse = checkWorklogQueryTargets(projectString, projects, users);
+    if (targetsResponse != null) {
+      return targetsResponse;
+    }
 
-    return Response.ok(jsonArrayResult.toString()).build();
+    WorklogResultCacheKey cacheKey = new WorklogResultCacheKey(
+        updated ? "updatedWorklogsSummary" : "worklogsSummary", startDate.getTimeInMillis(),
+        endDate.getTimeInMillis(), updated, users, projects, null);
+    WorklogQuerySpec spec = WorklogQuerySpec.byProjects(startDate, endDate, users, projects,
+        null, updated, createStatementControl(WorklogEndpoint.WORKLOGS_SUMMARY));
+    WorklogSummary worklogSummary = cached(cacheKey,
+        () -> WorklogQueryTrace.timed(WorklogQueryStage.QUERY,
+            () -> worklogQueryPlanner.planSummarize(spec).summarize(spec)));
+    return Response.ok(worklogSummary).build();
   }
 
 }
@@ -15,17 +15,39 @@
  */
 package org.everit.jira.worklog.query.plugin;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.function.Supplier;
 
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.everit.jira.worklog.query.plugin.admission.WorklogAdmission;
+import org.everit.jira.worklog.query.plugin.admission.WorklogAdmissionController;
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.index.WorklogColumnarIndex;
+import org.everit.jira.worklog.query.plugin.metrics.CountingOutputStream;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryMetrics;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryTrace;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogServerTiming;
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+import org.everit.jira.worklog.query.plugin.rollup.WorklogRollupStore;
+import org.everit.jira.worklog.query.plugin.tombstone.WorklogTombstoneStore;
+
+import com.atlassian.jira.component.ComponentAccessor;
 import com.atlassian.jira.rest.api.util.StringList;
+import com.atlassian.jira.user.ApplicationUser;
 
 /**
  * The WorklogQueryResource class. The class contains the findWorklogs method. The class grant the
@@ -35,21 +57,190 @@ import com.atlassian.jira.rest.api.util.StringList;
 @Path("/find")
 public class WorklogQueryResource {
 
-  private final WorklogQueryCore worklogQueryResource = new WorklogQueryCoreImpl();
+  /**
+   * The status of the queries rejected by the admission control.
+   */
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private final WorklogAdmissionController worklogAdmissionController;
+
+  private final WorklogQueryMetrics worklogQueryMetrics;
+
+  private final WorklogQueryCore worklogQueryResource;
+
+  /**
+   * Constructor with the plugin components.
+   *
+   * @param worklogTombstoneStore
+   *          The store of the deleted worklogs.
+   * @param worklogRollupStore
+   *          The store of the summarized worklogs.
+   * @param worklogResultCache
+   *          The cache of the query results.
+   * @param worklogColumnarIndex
+   *          The in-heap columnar index of the worklogs.
+   * @param worklogAdmissionController
+   *          The admission control of the queries.
+   * @param worklogQueryMetrics
+   *          The metrics of the endpoints.
+   */
+  public WorklogQueryResource(final WorklogTombstoneStore worklogTombstoneStore,
+      final WorklogRollupStore worklogRollupStore, final WorklogResultCache worklogResultCache,
+      final WorklogColumnarIndex worklogColumnarIndex,
+      final WorklogAdmissionController worklogAdmissionController,
+      final WorklogQueryMetrics worklogQueryMetrics) {
+    worklogQueryResource = new WorklogQueryCoreImpl(worklogTombstoneStore, worklogRollupStore,
+        worklogResultCache, worklogColumnarIndex, null);
+    this.worklogAdmissionController = worklogAdmissionController;
+    this.worklogQueryMetrics = worklogQueryMetrics;
+  }
+
+  /**
+   * Runs the query if the admission control admits it. A streamed response keeps the admission
+   * until it is written, or until the lease of the admission expires if the container never writes
+   * it. The timed out queries are returned as SERVICE_UNAVAILABLE, the other query exceptions as
+   * bad requests. The stages of the query are traced and recorded in the metrics of the endpoint
+   * when the response is complete.
+   *
+   * @param endpoint
+   *          The endpoint of the query.
+   * @param serverTiming
+   *          If true the stages finished before the response is returned are added to the
+   *          Server-Timing header. The stages of a streamed response run after the headers are
+   *          sent, so they are available only in the metrics.
+   * @param query
+   *          The query.
+   * @return The response of the query or TOO_MANY_REQUESTS with a Retry-After header if the query
+   *         was rejected.
+   */
+  private Response admitted(final WorklogEndpoint endpoint, final boolean serverTiming,
+      final Supplier<Response> query) {
+    ApplicationUser loggedInUser =
+        ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    WorklogAdmission admission = worklogAdmissionController.tryAdmit(endpoint,
+        loggedInUser == null ? null : loggedInUser.getKey());
+    if (admission == null) {
+      worklogQueryMetrics.recordRejection(endpoint);
+      return Response.status(TOO_MANY_REQUESTS)
+          .header("Retry-After", worklogAdmissionController.getRetryAfterSeconds())
+          .entity("Too many concurrent worklog queries. Retry later.").build();
+    }
+    WorklogQueryTrace trace = worklogQueryMetrics.start(endpoint);
+    trace.bind();
+    boolean streamed = false;
+    try {
+      Response response = query.get();
+      if (response.getStatus() >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()) {
+        trace.markFailed();
+      }
+      if (!(response.getEntity() instanceof StreamingOutput)) {
+        if (response.getEntity() instanceof String) {
+          trace.addBytes(CountingOutputStream.utf8Length((String) response.getEntity()));
+        }
+        return serverTiming ? withServerTiming(response, trace, true) : response;
+      }
+      StreamingOutput output = (StreamingOutput) response.getEntity();
+      Response streamedResponse = Response.fromResponse(
+          serverTiming ? withServerTiming(response, trace, false) : response)
+          .entity((StreamingOutput) outputStream -> {
+            trace.bind();
+            CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+            try {
+              output.write(countingOutputStream);
+            } catch (IOException | RuntimeException e) {
+              trace.markFailed();
+              throw e;
+            } finally {
+              admission.close();
+              trace.addBytes(countingOutputStream.getCount());
+              finish(trace);
+            }
+          }).build();
+      streamed = true;
+      return streamedResponse;
+    } catch (RuntimeException e) {
+      trace.markFailed();
+      if (WorklogStatementControl.isTimeout(e)) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", worklogAdmissionController.getRetryAfterSeconds())
+            .entity("The worklog query timed out.").build();
+      }
+      if (e instanceof WorklogQueryException) {
+        return Response.status(Response.Status.BAD_REQUEST)
+            .entity(e.getMessage()).build();
+      }
+      throw e;
+    } finally {
+      if (!streamed) {
+        admission.close();
+        finish(trace);
+      } else {
+        trace.unbind();
+      }
+    }
+  }
+
+  /**
+   * The deletedWorklogs restful api method. Returns the worklogs deleted strictly after the given
+   * watermark and the watermark of the next call. The deletions are retained for a limited time.
+   *
+   * @param since
+   *          The watermark returned by the previous call, optional. Default is the oldest retained
+   *          deletion.
+   * @param timeZone
+   *          The time zone of the deletion dates, optional. The ID of the time zone, for example
+   *          Europe/Budapest or +02:00. Default is the time zone of Jira.
+   * @param project
+   *          The query project parameter, optional. Default is all project.
+   * @param maxResults
+   *          The maximum number of the returned deletions, optional.
+   * @param serverTiming
+   *          If true the Server-Timing header of the response contains the time spent in the
+   *          stages of the query. Set by the X-Server-Timing request header.
+   * @return {@link Response} what contains the id, the issue id and the deletion date of the
+   *         deleted worklogs, the next watermark and the flag that shows if there are more
+   *         deletions.
+   */
+  @GET
+  @Produces({ MediaType.APPLICATION_JSON })
+  @Path("/deletedWorklogs")
+  public Response findDeletedWorklogs(
+      @QueryParam("since") final String since,
+      @QueryParam("timeZone") final String timeZone,
+      @QueryParam("project") final String project,
+      @DefaultValue("0") @QueryParam("maxResults") final int maxResults,
+      @HeaderParam(WorklogServerTiming.REQUEST_HEADER) final boolean serverTiming) {
+    return admitted(WorklogEndpoint.DELETED_WORKLOGS, serverTiming,
+        () -> worklogQueryResource.findDeletedWorklogs(since, timeZone, project, maxResults));
+  }
 
   /**
    * The updatedWorklogs restful api method.
    *
    * @param startDate
-   *          The query startDate parameter.
+   *          The query startDate parameter. A date (yyyy-MM-dd) or an ISO-8601 instant with
+   *          millisecond precision and offset, for example 2016-03-01T10:05:00.000+02:00.
    * @param endDate
-   *          The query endDate parameter, optional. Default value is the current time.
+   *          The query endDate parameter, optional. Default value is the current time. A date
+   *          (yyyy-MM-dd) or an exclusive ISO-8601 instant with millisecond precision and offset.
+   * @param timeZone
+   *          The query time zone parameter, optional. The ID of the time zone of the dates, for
+   *          example Europe/Budapest or +02:00. Default is the time zone of Jira.
    * @param user
    *          The query user parameter, optional. This or the group parameter is required.
    * @param group
    *          The query group parameter, optional. This or the user parameter is required.
    * @param project
    *          The query project parameter, optional. Default is all project.
+   * @param request
+   *          The request. The If-None-Match header is answered with Not Modified if the entity tag
+   *          of the result did not change.
+   * @param ifNoneMatch
+   *          The If-None-Match header. The entity tag is calculated only if it is present or the
+   *          result is cached.
+   * @param serverTiming
+   *          If true the Server-Timing header of the response contains the time spent in the
+   *          stages of the query. Set by the X-Server-Timing request header.
    * @return {@link Response} what contains the result of the query. If the method parameters was
    *         wrong then a message what contains the description of the bad request. In case of any
    *         exception return {@link Response} with INTERNAL_SERVER_ERROR status what contains the
@@ -61,32 +252,95 @@ public class WorklogQueryResource {
   public Response findUpdatedWorklogs(
       @QueryParam("startDate") final String startDate,
       @QueryParam("endDate") final String endDate,
+      @QueryParam("timeZone") final String timeZone,
       @QueryParam("user") final String user,
       @QueryParam("group") final String group,
       @QueryParam("project") final String project,
-      @QueryParam("fields") final List<StringList> fields) {
-    try {
-      return worklogQueryResource.findUpdatedWorklogs(startDate, endDate, user, group, project,
-          fields);
-    } catch (WorklogQueryException e) {
-      return Response.status(Response.Status.BAD_REQUEST)
-          .entity(e.getMessage()).build();
-    }
+      @QueryParam("fields") final List<StringList> fields,
+      @Context final Request request,
+      @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch,
+      @HeaderParam(WorklogServerTiming.REQUEST_HEADER) final boolean serverTiming) {
+    return admitted(WorklogEndpoint.UPDATED_WORKLOGS, serverTiming,
+        () -> worklogQueryResource.findUpdatedWorklogs(startDate, endDate, timeZone, user, group,
+            project, fields, ifNoneMatch == null ? null : request));
+  }
+
+  /**
+   * The worklog change feed restful api method. Returns the worklogs changed strictly after the
+   * given watermark, ordered by their updated date and id, and the watermark of the next call. The
+   * feed lags behind the current time a little, so the changes of the in-flight transactions are
+   * not skipped.
+   *
+   * @param since
+   *          The watermark returned by the previous call, optional. Default is the beginning of the
+   *          feed.
+   * @param timeZone
+   *          The time zone of the start and updated dates, optional. The ID of the time zone, for
+   *          example Europe/Budapest or +02:00. Default is the time zone of Jira.
+   * @param user
+   *          The query user parameter, optional. This or the group parameter is required.
+   * @param group
+   *          The query group parameter, optional. This or the user parameter is required.
+   * @param project
+   *          The query project parameter, optional. Default is all project.
+   * @param maxResults
+   *          The maximum number of the returned worklogs, optional.
+   * @param fields
+   *          List of the queried fields.
+   * @param serverTiming
+   *          If true the Server-Timing header of the response contains the time spent in the
+   *          stages of the query. Set by the X-Server-Timing request header.
+   * @return {@link Response} what contains the changed worklogs, the next watermark and the flag
+   *         that shows if there are more changes. If the method parameters was wrong then a
+   *         message what contains the description of the bad request.
+   */
+  @GET
+  @Produces({ MediaType.APPLICATION_JSON })
+  @Path("/worklogChanges")
+  public Response findWorklogChanges(
+      @QueryParam("since") final String since,
+      @QueryParam("timeZone") final String timeZone,
+      @QueryParam("user") final String user,
+      @QueryParam("group") final String group,
+      @QueryParam("project") final String project,
+      @DefaultValue("0") @QueryParam("maxResults") final int maxResults,
+      @QueryParam("fields") final List<StringList> fields,
+      @HeaderParam(WorklogServerTiming.REQUEST_HEADER) final boolean serverTiming) {
+    return admitted(WorklogEndpoint.WORKLOG_CHANGES, serverTiming,
+        () -> worklogQueryResource.findWorklogChanges(since, timeZone, user, group, project,
+            maxResults, fields));
   }
 
   /**
    * The worklogs restful api method.
    *
    * @param startDate
-   *          The query startDate parameter.
+   *          The query startDate parameter. A date (yyyy-MM-dd) or an ISO-8601 instant with
+   *          millisecond precision and offset, for example 2016-03-01T10:05:00.000+02:00.
    * @param endDate
-   *          The query endDate parameter, optional. Default value is the current time.
+   *          The query endDate parameter, optional. Default value is the current time. A date
+   *          (yyyy-MM-dd) or an exclusive ISO-8601 instant with millisecond precision and offset.
+   * @param timeZone
+   *          The query time zone parameter, optional. The ID of the time zone of the dates, for
+   *          example Europe/Budapest or +02:00. Default is the time zone of Jira.
    * @param user
    *          The query user parameter, optional. This or the group parameter is required.
    * @param group
    *          The query group parameter, optional. This or the user parameter is required.
    * @param project
    *          The query project parameter, optional. Default is all project.
+   * @param summary
+   *          If true only the number and the summarized spent time of the worklogs are returned,
+   *          optional. Default is false.
+   * @param request
+   *          The request. The If-None-Match header is answered with Not Modified if the entity tag
+   *          of the result did not change. Not evaluated in summary mode.
+   * @param ifNoneMatch
+   *          The If-None-Match header. The entity tag is calculated only if it is present or the
+   *          result is cached.
+   * @param serverTiming
+   *          If true the Server-Timing header of the response contains the time spent in the
+   *          stages of the query. Set by the X-Server-Timing request header.
    * @return {@link Response} what contains the result of the query. If the method parameters was
    *         wrong then a message what contains the description of the bad request. In case of any
    *         exception return {@link Response} with INTERNAL_SERVER_ERROR status what contains the
@@ -98,25 +352,37 @@ public class WorklogQueryResource {
   public Response findWorklogs(
       @QueryParam("startDate") final String startDate,
       @QueryParam("endDate") final String endDate,
+      @QueryParam("timeZone") final String timeZone,
       @QueryParam("user") final String user,
       @QueryParam("group") final String group,
       @QueryParam("project") final String project,
-      @QueryParam("fields") final List<StringList> fields) {
-    try {
-      return worklogQueryResource.findWorklogs(startDate, endDate, user, group, project, fields);
-    } catch (WorklogQueryException e) {
-      return Response.status(Response.Status.BAD_REQUEST)
-          .entity(e.getMessage()).build();
+      @QueryParam("fields") final List<StringList> fields,
+      @DefaultValue("false") @QueryParam("summary") final boolean summary,
+      @Context final Request request,
+      @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch,
+      @HeaderParam(WorklogServerTiming.REQUEST_HEADER) final boolean serverTiming) {
+    if (summary) {
+      return admitted(WorklogEndpoint.WORKLOGS_SUMMARY, serverTiming,
+          () -> worklogQueryResource.findWorklogsSummary(startDate, endDate, timeZone, user,
+              group, project));
     }
+    return admitted(WorklogEndpoint.WORKLOGS, serverTiming,
+        () -> worklogQueryResource.findWorklogs(startDate, endDate, timeZone, user, group, project,
+            fields, ifNoneMatch == null ? null : request));
   }
 
   /**
    * FindWorklogsByIssues REST method.
    *
    * @param startDate
-   *          The query start date.
+   *          The query start date. A date (yyyy-MM-dd) or an ISO-8601 instant with millisecond
+   *          precision and offset, for example 2016-03-01T10:05:00.000+02:00.
    * @param endDate
-   *          The query end date.
+   *          The query end date. A date (yyyy-MM-dd) or an exclusive ISO-8601 instant with
+   *          millisecond precision and offset.
+   * @param timeZone
+   *          The query time zone parameter, optional. The ID of the time zone of the dates, for
+   *          example Europe/Budapest or +02:00. Default is the time zone of Jira.
    * @param user
    *          The searched user. Optional.
    * @param group
@@ -129,6 +395,12 @@ public class WorklogQueryResource {
    *          Max number of results. Default 25.
    * @param fields
    *          List of the queried fields.
+   * @param summary
+   *          If true only the number and the summarized spent time of the worklogs of the matching
+   *          issues are returned, optional. Default is false.
+   * @param serverTiming
+   *          If true the Server-Timing header of the response contains the time spent in the
+   *          stages of the query. Set by the X-Server-Timing request header.
    * @return The found worklogs.
    */
   @GET
@@ -137,29 +409,55 @@ public class WorklogQueryResource {
   public Response findWorklogsByIssues(
       @QueryParam("startDate") final String startDate,
       @QueryParam("endDate") final String endDate,
+      @QueryParam("timeZone") final String timeZone,
       @QueryParam("user") final String user,
       @QueryParam("group") final String group,
       @DefaultValue("") @QueryParam("jql") final String jql,
       @DefaultValue("0") @QueryParam("startAt") final int startAt,
       @DefaultValue("25") @QueryParam("maxResults") final int maxResults,
-      @DefaultValue("emptyFieldValue") @QueryParam("fields") final List<StringList> fields) {
+      @DefaultValue("emptyFieldValue") @QueryParam("fields") final List<StringList> fields,
+      @DefaultValue("false") @QueryParam("summary") final boolean summary,
+      @HeaderParam(WorklogServerTiming.REQUEST_HEADER) final boolean serverTiming) {
     FindWorklogsByIssuesParam findWorklogsByIssuesParam =
         new FindWorklogsByIssuesParam()
             .startDate(startDate)
             .endDate(endDate)
+            .timeZone(timeZone)
             .user(user)
             .group(group)
             .jql(jql)
             .startAt(startAt)
             .maxResults(maxResults)
             .fields(fields);
-    try {
-      return Response.ok(worklogQueryResource.findWorklogsByIssues(findWorklogsByIssuesParam))
-          .build();
-    } catch (WorklogQueryException e) {
-      return Response.status(Response.Status.BAD_REQUEST)
-          .entity(e.getMessage()).build();
+    if (summary) {
+      return admitted(WorklogEndpoint.WORKLOGS_BY_ISSUES_SUMMARY, serverTiming, () -> Response
+          .ok(worklogQueryResource.findWorklogsByIssuesSummary(findWorklogsByIssuesParam))
+          .build());
+    }
+    return admitted(WorklogEndpoint.WORKLOGS_BY_ISSUES, serverTiming, () -> Response
+        .ok(worklogQueryResource.findWorklogsByIssues(findWorklogsByIssuesParam))
+        .build());
+  }
+
+  /**
+   * Finishes the trace of a request and records it in the metrics.
+   */
+  private void finish(final WorklogQueryTrace trace) {
+    trace.unbind();
+    trace.finish();
+    worklogQueryMetrics.record(trace);
+  }
+
+  /**
+   * Adds the Server-Timing header to the response if any stage of the request took time.
+   */
+  private Response withServerTiming(final Response response, final WorklogQueryTrace trace,
+      final boolean complete) {
+    String value = WorklogServerTiming.format(trace, complete);
+    if (value == null) {
+      return response;
     }
+    return Response.fromResponse(response).header(WorklogServerTiming.HEADER, value).build();
   }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.everit.jira.worklog.query.plugin.rollup.WorklogRollupStore;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.permission.GlobalPermissionKey;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.json.JSONException;
+import com.atlassian.jira.util.json.JSONObject;
+
+/**
+ * The administration REST resource of the worklog rollup table. Only the system administrators
+ * can use it.
+ */
+@Path("/rollup")
+public class WorklogRollupResource {
+
+  private final WorklogRollupStore worklogRollupStore;
+
+  /**
+   * Constructor with the plugin components.
+   *
+   * @param worklogRollupStore
+   *          The store of the summarized worklogs.
+   */
+  public WorklogRollupResource(final WorklogRollupStore worklogRollupStore) {
+    this.worklogRollupStore = worklogRollupStore;
+  }
+
+  private boolean isSystemAdmin() {
+    ApplicationUser loggedInUser =
+        ComponentAccessor.getJiraAuthenticationContext().getLoggedInUser();
+    return (loggedInUser != null) && ComponentAccessor.getGlobalPermissionManager()
+        .hasPermission(GlobalPermissionKey.SYSTEM_ADMIN, loggedInUser);
+  }
+
+  /**
+   * Start the rebuild of the worklog rollup table from the worklog table.
+   *
+   * @return {@link Response} with ACCEPTED status if the rebuild was started, CONFLICT if a rebuild
+   *         is already running.
+   */
+  @POST
+  @Path("/rebuild")
+  public Response rebuild() {
+    if (!isSystemAdmin()) {
+      return Response.status(Response.Status.FORBIDDEN).build();
+    }
+    if (!worklogRollupStore.rebuild()) {
+      return Response.status(Response.Status.CONFLICT)
+          .entity("The rebuild of the worklog rollup table is already running.").build();
+    }
+    return Response.status(Response.Status.ACCEPTED).build();
+  }
+
+  /**
+   * The state of the worklog rollup table.
+   *
+   * @return {@link Response} what contains if the rollup table is enabled, available for the
+   *         queries and under rebuild.
+   */
+  @GET
+  @Path("/status")
+  @Produces({ MediaType.APPLICATION_JSON })
+  public Response status() {
+    if (!isSystemAdmin()) {
+      return Response.status(Response.Status.FORBIDDEN).build();
+    }
+    try {
+      JSONObject status = new JSONObject();
+      status.put("enabled", WorklogQueryConfiguration.isRollupEnabled());
+      status.put("available", worklogRollupStore.isAvailable());
+      status.put("rebuilding", worklogRollupStore.isRebuilding());
+      return Response.ok(status.toString()).build();
+    } catch (JSONException e) {
+      return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+          .entity(e.getMessage()).build();
+    }
+  }
+
+}
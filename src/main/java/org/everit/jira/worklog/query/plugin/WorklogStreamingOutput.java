@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCacheKey;
+import org.everit.jira.worklog.query.plugin.engine.WorklogFindEngine;
+import org.everit.jira.worklog.query.plugin.engine.WorklogQuerySpec;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryStage;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryTrace;
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+
+/**
+ * Streams the worklog rows to the client while they are read from the database. If the client
+ * disconnects, the running statement is cancelled before the rows are closed, so the abandoned
+ * query stops. The streamed result is cached if it was written completely and it fits into an
+ * entry of the cache, the copy of a longer result is dropped while it is written. The time spent
+ * in writing to the client is measured separately from the time of the query.
+ */
+class WorklogStreamingOutput implements StreamingOutput {
+
+  /**
+   * Writes to the client and to the optional copy of the result. The copy is dropped when it
+   * exceeds its maximum length. Cancels the statements if the client can not be written. Measures
+   * the time spent in writing.
+   */
+  private static final class ClientWriter extends Writer {
+
+    private StringBuilder copy;
+
+    private final long maxCopyLength;
+
+    private final WorklogStatementControl statementControl;
+
+    private final Writer writer;
+
+    private long writeNanos;
+
+    ClientWriter(final Writer writer, final StringBuilder copy, final long maxCopyLength,
+        final WorklogStatementControl statementControl) {
+      this.writer = writer;
+      this.copy = copy;
+      this.maxCopyLength = maxCopyLength;
+      this.statementControl = statementControl;
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      long startNanos = System.nanoTime();
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        statementControl.cancel();
+        throw e;
+      } finally {
+        writeNanos += System.nanoTime() - startNanos;
+      }
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+      long startNanos = System.nanoTime();
+      try {
+        writer.write(cbuf, off, len);
+      } catch (IOException e) {
+        statementControl.cancel();
+        throw e;
+      } finally {
+        writeNanos += System.nanoTime() - startNanos;
+      }
+      if (copy != null) {
+        if ((copy.length() + (long) len) > maxCopyLength) {
+          copy = null;
+        } else {
+          copy.append(cbuf, off, len);
+        }
+      }
+    }
+  }
+
+  private final WorklogResultCacheKey cacheKey;
+
+  private final WorklogFindEngine engine;
+
+  private final WorklogQuerySpec spec;
+
+  private final WorklogStatementControl statementControl;
+
+  private final WorklogResultCache worklogResultCache;
+
+  WorklogStreamingOutput(final WorklogFindEngine engine, final WorklogQuerySpec spec,
+      final WorklogStatementControl statementControl,
+      final WorklogResultCache worklogResultCache, final WorklogResultCacheKey cacheKey) {
+    this.engine = engine;
+    this.spec = spec;
+    this.statementControl = statementControl;
+    this.worklogResultCache = worklogResultCache;
+    this.cacheKey = cacheKey;
+  }
+
+  @Override
+  public void write(final OutputStream output) throws IOException {
+    boolean cacheEnabled = (worklogResultCache != null) && worklogResultCache.isEnabled();
+    long invalidationCount = cacheEnabled ? worklogResultCache.getInvalidationCount() : 0;
+    StringBuilder copy = cacheEnabled ? new StringBuilder() : null;
+    long maxCopyLength = cacheEnabled ? worklogResultCache.getMaxStringLength() : 0;
+    ClientWriter writer = new ClientWriter(
+        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)), copy,
+        maxCopyLength, statementControl);
+    // The result has the format of a JSONArray that contains the JSONArray of the worklogs. The
+    // start is flushed before the query, so a disconnected client is detected early.
+    long startNanos = System.nanoTime();
+    try {
+      writer.write("[[");
+      writer.flush();
+      WorklogQueryTrace.addRows(engine.writeWorklogs(spec, writer));
+      writer.write("]]");
+      writer.flush();
+    } finally {
+      WorklogQueryTrace trace = WorklogQueryTrace.current();
+      if (trace != null) {
+        trace.addStageNanos(WorklogQueryStage.QUERY,
+            System.nanoTime() - startNanos - writer.writeNanos);
+        trace.addStageNanos(WorklogQueryStage.WRITE, writer.writeNanos);
+      }
+    }
+    if (writer.copy != null) {
+      worklogResultCache.put(cacheKey, writer.copy.toString(), invalidationCount);
+    }
+  }
+}
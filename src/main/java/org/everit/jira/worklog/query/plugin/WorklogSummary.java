@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * WorklogSummary contains the number of the matching worklogs and their summarized spent time.
+ */
+@XmlRootElement
+public class WorklogSummary {
+
+  @XmlElement
+  private Long count = 0L;
+
+  @XmlElement
+  private Long timeSpent = 0L;
+
+  /**
+   * WorklogSummary constructor with fields.
+   *
+   * @param count
+   *          The number of the matching worklogs.
+   * @param timeSpent
+   *          The summarized time spent of the matching worklogs in seconds. Null is handled as
+   *          zero.
+   */
+  public WorklogSummary(final Long count, final Long timeSpent) {
+    this.count = count;
+    if (timeSpent != null) {
+      this.timeSpent = timeSpent;
+    }
+  }
+
+  public Long getCount() {
+    return count;
+  }
+
+  public Long getTimeSpent() {
+    return timeSpent;
+  }
+}
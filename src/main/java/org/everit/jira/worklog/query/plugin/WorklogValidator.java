@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.util.Date;
+
+/**
+ * WorklogValidator contains the cheap aggregates of the matching worklogs that change whenever
+ * the result of the query changes: the number of the worklogs and their latest update date.
+ */
+public class WorklogValidator {
+
+  private final long count;
+
+  private final Date lastUpdated;
+
+  /**
+   * WorklogValidator constructor with fields.
+   *
+   * @param count
+   *          The number of the matching worklogs. Null is handled as zero.
+   * @param lastUpdated
+   *          The latest update date of the matching worklogs. Null if there is no matching
+   *          worklog.
+   */
+  public WorklogValidator(final Long count, final Date lastUpdated) {
+    this.count = count == null ? 0 : count;
+    this.lastUpdated = lastUpdated;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public Date getLastUpdated() {
+    return lastUpdated;
+  }
+}
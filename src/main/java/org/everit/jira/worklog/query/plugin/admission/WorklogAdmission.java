@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The permit of an admitted query. It has to be closed when the query finished, the
+ * {@link WorklogAdmissionController} releases it after its deadline otherwise.
+ */
+public final class WorklogAdmission implements AutoCloseable {
+
+  /**
+   * The admission of the queries that are not under admission control.
+   */
+  public static final WorklogAdmission UNLIMITED = new WorklogAdmission(Long.MAX_VALUE,
+      admission -> {
+      });
+
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  private final long deadlineNanos;
+
+  private final Consumer<WorklogAdmission> release;
+
+  WorklogAdmission(final long deadlineNanos, final Consumer<WorklogAdmission> release) {
+    this.deadlineNanos = deadlineNanos;
+    this.release = release;
+  }
+
+  /**
+   * Releases the permit. Only the first call has effect.
+   */
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      release.accept(this);
+    }
+  }
+
+  /**
+   * Check that the admission is held longer than its lease.
+   *
+   * @param nanoTime
+   *          the current value of the {@link System#nanoTime()} clock.
+   * @return true if the deadline of the admission passed.
+   */
+  boolean isExpired(final long nanoTime) {
+    return (nanoTime - deadlineNanos) >= 0;
+  }
+}
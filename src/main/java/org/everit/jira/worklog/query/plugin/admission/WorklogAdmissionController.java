@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.admission;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of the concurrently running queries per endpoint and per user, so a few
+ * heavy exports cannot use up the database connection pool of Jira. A query that finds its
+ * endpoint saturated waits a short time in a bounded queue, a query that exceeds the limit of its
+ * user or finds the queue full is rejected immediately. The limits of the
+ * {@link WorklogQueryLane#CHEAP} and the {@link WorklogQueryLane#HEAVY} endpoints are separate.
+ *
+ * <p>
+ * An admission is held at most for its lease. The container may never write a streamed response,
+ * for example on a HEAD request, so the admissions that are not closed in time are released by the
+ * next query instead of blocking the endpoint until the restart.
+ * </p>
+ */
+public class WorklogAdmissionController {
+
+  /**
+   * The concurrency limit and the wait queue of an endpoint.
+   */
+  private static final class EndpointGate {
+
+    private final Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    EndpointGate(final int limit) {
+      permits = new Semaphore(limit, true);
+    }
+
+    boolean acquire(final int queueSize, final long maxWaitMillis) {
+      if (permits.tryAcquire()) {
+        return true;
+      }
+      if (waiting.incrementAndGet() > queueSize) {
+        waiting.decrementAndGet();
+        return false;
+      }
+      try {
+        return permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } finally {
+        waiting.decrementAndGet();
+      }
+    }
+
+    void release() {
+      permits.release();
+    }
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogAdmissionController.class);
+
+  /**
+   * The admissions that are not closed yet.
+   */
+  private final Set<WorklogAdmission> admissions = ConcurrentHashMap.newKeySet();
+
+  private final boolean enabled;
+
+  private final Map<WorklogEndpoint, EndpointGate> gates = new EnumMap<>(WorklogEndpoint.class);
+
+  private final long leaseMillis;
+
+  private final long maxWaitMillis;
+
+  private final LongSupplier nanoTime;
+
+  private final int queueSize;
+
+  private final long retryAfterSeconds;
+
+  private final Map<WorklogQueryLane, ConcurrentHashMap<String, Integer>> runningByUser =
+      new EnumMap<>(WorklogQueryLane.class);
+
+  private final ToIntFunction<WorklogQueryLane> userLimit;
+
+  /**
+   * Constructor with the limits of the configuration.
+   */
+  public WorklogAdmissionController() {
+    this(WorklogQueryConfiguration.isAdmissionEnabled(),
+        endpoint -> WorklogQueryConfiguration.getAdmissionEndpointLimit(endpoint.getName(),
+            endpoint.getLane() == WorklogQueryLane.HEAVY),
+        lane -> WorklogQueryConfiguration.getAdmissionUserLimit(lane == WorklogQueryLane.HEAVY),
+        WorklogQueryConfiguration.getAdmissionQueueSize(),
+        WorklogQueryConfiguration.getAdmissionMaxWaitMillis(),
+        WorklogQueryConfiguration.getAdmissionRetryAfterSeconds(),
+        TimeUnit.SECONDS.toMillis(WorklogQueryConfiguration.getAdmissionLeaseSeconds()),
+        System::nanoTime);
+  }
+
+  /**
+   * Constructor with the given limits.
+   *
+   * @param enabled
+   *          false if every query is admitted.
+   * @param endpointLimit
+   *          the number of the concurrently running queries of an endpoint.
+   * @param userLimit
+   *          the number of the concurrently running queries of a user in a lane.
+   * @param queueSize
+   *          the number of the queries that may wait for an endpoint.
+   * @param maxWaitMillis
+   *          the maximum wait time of a query for its endpoint in milliseconds.
+   * @param retryAfterSeconds
+   *          the time after the rejected clients should retry in seconds.
+   * @param leaseMillis
+   *          the maximum time an admission is held in milliseconds.
+   * @param nanoTime
+   *          the clock of the leases, {@link System#nanoTime()} outside of the tests.
+   */
+  WorklogAdmissionController(final boolean enabled,
+      final ToIntFunction<WorklogEndpoint> endpointLimit,
+      final ToIntFunction<WorklogQueryLane> userLimit, final int queueSize,
+      final long maxWaitMillis, final long retryAfterSeconds, final long leaseMillis,
+      final LongSupplier nanoTime) {
+    this.enabled = enabled;
+    this.userLimit = userLimit;
+    this.queueSize = queueSize;
+    this.maxWaitMillis = maxWaitMillis;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.leaseMillis = leaseMillis;
+    this.nanoTime = nanoTime;
+    for (WorklogEndpoint endpoint : WorklogEndpoint.values()) {
+      gates.put(endpoint, new EndpointGate(endpointLimit.applyAsInt(endpoint)));
+    }
+    for (WorklogQueryLane lane : WorklogQueryLane.values()) {
+      runningByUser.put(lane, new ConcurrentHashMap<>());
+    }
+  }
+
+  private void decrementUser(final ConcurrentHashMap<String, Integer> running,
+      final String userKey) {
+    running.compute(userKey, (key, count) -> (count == null) || (count <= 1) ? null : count - 1);
+  }
+
+  /**
+   * The time after the rejected clients should retry.
+   *
+   * @return the time in seconds.
+   */
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  /**
+   * Releases the admissions that are held longer than their lease.
+   */
+  private void releaseExpired() {
+    long now = nanoTime.getAsLong();
+    for (WorklogAdmission admission : admissions) {
+      if (admission.isExpired(now)) {
+        LOGGER.warn("Released a worklog query admission that was not closed in {} ms.",
+            leaseMillis);
+        admission.close();
+      }
+    }
+  }
+
+  /**
+   * Admits a query if the limits of its endpoint and its user allow it. Waits for the endpoint
+   * at most the configured time. The expired admissions are released first.
+   *
+   * @param endpoint
+   *          the endpoint of the query.
+   * @param userKey
+   *          the key of the logged in user. Null for the anonymous users.
+   * @return the admission that has to be closed when the query finished or null if the query is
+   *         rejected.
+   */
+  public WorklogAdmission tryAdmit(final WorklogEndpoint endpoint, final String userKey) {
+    if (!enabled) {
+      return WorklogAdmission.UNLIMITED;
+    }
+    releaseExpired();
+    WorklogQueryLane lane = endpoint.getLane();
+    String runningKey = userKey == null ? "" : userKey;
+    ConcurrentHashMap<String, Integer> running = runningByUser.get(lane);
+    int limit = userLimit.applyAsInt(lane);
+    if (running.merge(runningKey, 1, Integer::sum) > limit) {
+      decrementUser(running, runningKey);
+      LOGGER.debug("Rejected a {} query, the user {} reached the limit.", endpoint, userKey);
+      return null;
+    }
+    EndpointGate gate = gates.get(endpoint);
+    if (!gate.acquire(queueSize, maxWaitMillis)) {
+      decrementUser(running, runningKey);
+      LOGGER.debug("Rejected a {} query, the endpoint is saturated.", endpoint);
+      return null;
+    }
+    WorklogAdmission admission = new WorklogAdmission(
+        nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(leaseMillis), closed -> {
+          admissions.remove(closed);
+          gate.release();
+          decrementUser(running, runningKey);
+        });
+    admissions.add(admission);
+    return admission;
+  }
+}
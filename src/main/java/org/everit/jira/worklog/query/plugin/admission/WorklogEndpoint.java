@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.admission;
+
+/**
+ * The REST endpoints under admission control with their lanes.
+ */
+public enum WorklogEndpoint {
+
+  DELETED_WORKLOGS("deletedWorklogs", WorklogQueryLane.CHEAP),
+
+  UPDATED_WORKLOGS("updatedWorklogs", WorklogQueryLane.HEAVY),
+
+  WORKLOG_CHANGES("worklogChanges", WorklogQueryLane.CHEAP),
+
+  WORKLOGS("worklogs", WorklogQueryLane.HEAVY),
+
+  WORKLOGS_BY_ISSUES("worklogsByIssues", WorklogQueryLane.HEAVY),
+
+  WORKLOGS_BY_ISSUES_SUMMARY("worklogsByIssuesSummary", WorklogQueryLane.CHEAP),
+
+  WORKLOGS_SUMMARY("worklogsSummary", WorklogQueryLane.CHEAP);
+
+  private final WorklogQueryLane lane;
+
+  private final String name;
+
+  WorklogEndpoint(final String name, final WorklogQueryLane lane) {
+    this.name = name;
+    this.lane = lane;
+  }
+
+  public WorklogQueryLane getLane() {
+    return lane;
+  }
+
+  /**
+   * The name of the endpoint that is used in the {@code admission.limit.<name>} configuration
+   * property.
+   *
+   * @return the name.
+   */
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.admission;
+
+/**
+ * The lanes of the admission control. The lanes have separate limits, so the cheap queries are
+ * never queued behind the heavy ones.
+ */
+public enum WorklogQueryLane {
+
+  /**
+   * The aggregate and the paged queries.
+   */
+  CHEAP,
+
+  /**
+   * The queries that load every matching worklog, for example the exports of a month.
+   */
+  HEAVY
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.cache;
+
+import java.util.function.Consumer;
+
+import com.atlassian.jira.cluster.ClusterMessageConsumer;
+import com.atlassian.jira.cluster.ClusterMessagingService;
+
+/**
+ * {@link WorklogCacheChannel} built on the cluster messages of JIRA. On a not clustered instance
+ * the sent messages are simply dropped.
+ */
+public class ClusterWorklogCacheChannel implements WorklogCacheChannel {
+
+  /**
+   * The name of the cluster message channel. At most 20 characters.
+   */
+  static final String CHANNEL = "EVERIT-JWQP-CACHE";
+
+  private final ClusterMessagingService clusterMessagingService;
+
+  private ClusterMessageConsumer consumer;
+
+  /**
+   * Simple constructor.
+   *
+   * @param clusterMessagingService
+   *          the cluster messaging service of JIRA.
+   */
+  public ClusterWorklogCacheChannel(final ClusterMessagingService clusterMessagingService) {
+    this.clusterMessagingService = clusterMessagingService;
+  }
+
+  @Override
+  public synchronized void register(final Consumer<String> receiver) {
+    unregister();
+    consumer = (final String channel, final String message, final String senderId) -> receiver
+        .accept(message);
+    clusterMessagingService.registerListener(CHANNEL, consumer);
+  }
+
+  @Override
+  public void send(final String message) {
+    clusterMessagingService.sendRemote(CHANNEL, message);
+  }
+
+  @Override
+  public synchronized void unregister() {
+    if (consumer != null) {
+      clusterMessagingService.unregisterListener(CHANNEL, consumer);
+      consumer = null;
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Channel that delivers the cache invalidation messages of a node to the other nodes of the
+ * cluster. The messages are not delivered back to the sending node.
+ */
+public interface WorklogCacheChannel {
+
+  /**
+   * Registers the receiver of the messages sent by the other nodes.
+   *
+   * @param receiver
+   *          the receiver of the messages.
+   */
+  void register(Consumer<String> receiver);
+
+  /**
+   * Sends a message to the other nodes of the cluster.
+   *
+   * @param message
+   *          the message. At most 200 characters.
+   */
+  void send(String message);
+
+  /**
+   * Unregisters the receiver of the messages.
+   */
+  void unregister();
+}
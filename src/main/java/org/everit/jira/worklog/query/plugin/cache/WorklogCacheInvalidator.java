@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.cache;
+
+import java.util.regex.Pattern;
+
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+import org.everit.jira.worklog.query.plugin.index.WorklogColumnarIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Keeps the {@link WorklogResultCache} and the {@link WorklogColumnarIndex} of every node of the
+ * cluster coherent. The local cache and index are updated directly and the change is sent to the
+ * other nodes through the {@link WorklogCacheChannel}, so a worklog edited on one node invalidates
+ * the affected results on all of them. A change whose author key does not fit into a cluster
+ * message is sent without the author key.
+ */
+public class WorklogCacheInvalidator implements InitializingBean, DisposableBean {
+
+  /**
+   * The logger used to log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogCacheInvalidator.class);
+
+  /**
+   * The maximum length of a cluster message.
+   */
+  private static final int MAX_MESSAGE_LENGTH = 200;
+
+  private static final int MESSAGE_FIELD_COUNT = 8;
+
+  private static final String SEPARATOR = "|";
+
+  /**
+   * Decodes a worklog change message.
+   *
+   * @param message
+   *          the message.
+   * @return the change or null if the message is not a worklog change. The author key of the
+   *         change is null if the message does not contain it.
+   */
+  static WorklogChange decode(final String message) {
+    String[] fields = message.split(Pattern.quote(SEPARATOR), MESSAGE_FIELD_COUNT);
+    if (fields.length != MESSAGE_FIELD_COUNT) {
+      return null;
+    }
+    try {
+      // The author key is the last field, so it may contain the separator.
+      return new WorklogChange(WorklogChange.Type.valueOf(fields[0]), Long.parseLong(fields[1]),
+          Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+          fields[7].isEmpty() ? null : fields[7], Long.parseLong(fields[4]),
+          Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Encodes a worklog change to a message.
+   *
+   * @param change
+   *          the change.
+   * @return the message. The author key is left out if the change does not fit into a message
+   *         with it, the other fields always fit.
+   */
+  static String encode(final WorklogChange change) {
+    String message = change.getType().name() + SEPARATOR + change.getWorklogId() + SEPARATOR
+        + change.getIssueId() + SEPARATOR + change.getProjectId() + SEPARATOR
+        + change.getStartDate() + SEPARATOR + change.getUpdated() + SEPARATOR
+        + change.getTimeSpent() + SEPARATOR;
+    String authorKey = change.getAuthorKey();
+    if ((authorKey == null) || ((message.length() + authorKey.length()) > MAX_MESSAGE_LENGTH)) {
+      return message;
+    }
+    return message + authorKey;
+  }
+
+  private final WorklogCacheChannel worklogCacheChannel;
+
+  private final WorklogColumnarIndex worklogColumnarIndex;
+
+  private final WorklogResultCache worklogResultCache;
+
+  /**
+   * Simple constructor.
+   *
+   * @param worklogResultCache
+   *          the cache of the query results of this node.
+   * @param worklogColumnarIndex
+   *          the columnar worklog index of this node.
+   * @param worklogCacheChannel
+   *          the channel to the other nodes of the cluster.
+   */
+  public WorklogCacheInvalidator(final WorklogResultCache worklogResultCache,
+      final WorklogColumnarIndex worklogColumnarIndex,
+      final WorklogCacheChannel worklogCacheChannel) {
+    this.worklogResultCache = worklogResultCache;
+    this.worklogColumnarIndex = worklogColumnarIndex;
+    this.worklogCacheChannel = worklogCacheChannel;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    worklogCacheChannel.register(this::receive);
+  }
+
+  @Override
+  public void destroy() {
+    worklogCacheChannel.unregister();
+  }
+
+  /**
+   * Invalidates the cached results affected by a worklog change on every node.
+   *
+   * @param change
+   *          the change of the worklog.
+   */
+  public void invalidate(final WorklogChange change) {
+    worklogColumnarIndex.apply(change);
+    worklogResultCache.invalidate(change);
+    send(encode(change));
+  }
+
+  private void receive(final String message) {
+    WorklogChange change = decode(message);
+    if (change == null) {
+      LOGGER.warn("Received an unknown cache invalidation message: {}", message);
+      worklogResultCache.invalidateAll();
+    } else {
+      worklogColumnarIndex.apply(change);
+      worklogResultCache.invalidate(change);
+    }
+  }
+
+  private void send(final String message) {
+    try {
+      worklogCacheChannel.send(message);
+    } catch (RuntimeException e) {
+      // The results cached on the other nodes expire by their time to live.
+      LOGGER.error("Failed to send the cache invalidation to the other nodes.", e);
+    }
+  }
+
+}
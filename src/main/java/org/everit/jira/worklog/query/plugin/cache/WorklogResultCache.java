@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.everit.jira.worklog.query.plugin.SearchResultsBeanWithTimespent;
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of the query results. The entries are evicted by their approximate size and time
+ * to live, and invalidated by the worklog changes that affect their interval, authors and
+ * projects.
+ */
+public class WorklogResultCache {
+
+  /**
+   * The number of the segments of the cache. An entry heavier than the weight limit of a segment
+   * is evicted immediately.
+   */
+  private static final int CONCURRENCY_LEVEL = 4;
+
+  /**
+   * The approximate size of an issue in a cached search result in bytes.
+   */
+  private static final int ISSUE_WEIGHT = 512;
+
+  /**
+   * The approximate size of the other cached values in bytes.
+   */
+  private static final int MIN_WEIGHT = 64;
+
+  private static int weigh(final Object value) {
+    if (value instanceof String) {
+      return MIN_WEIGHT + (((String) value).length() * 2);
+    }
+    if (value instanceof SearchResultsBeanWithTimespent) {
+      return MIN_WEIGHT + (((SearchResultsBeanWithTimespent) value).getIssues().size()
+          * ISSUE_WEIGHT);
+    }
+    return MIN_WEIGHT;
+  }
+
+  private final Cache<WorklogResultCacheKey, Object> cache;
+
+  private final boolean enabled;
+
+  /**
+   * The weight limit of an entry, the heavier results are not cached.
+   */
+  private final long maxEntryWeight;
+
+  /**
+   * Incremented by every invalidation. A loaded result is not cached if an invalidation happened
+   * during its loading, because it may contain the state before the change.
+   */
+  private final AtomicLong invalidationCounter = new AtomicLong();
+
+  /**
+   * Constructor. The size and the time to live of the cache are read from the
+   * {@link WorklogQueryConfiguration}.
+   */
+  public WorklogResultCache() {
+    this(WorklogQueryConfiguration.getCacheMaxBytes(),
+        WorklogQueryConfiguration.getCacheTtlSeconds());
+  }
+
+  /**
+   * Constructor with the given size and time to live.
+   *
+   * @param maxBytes
+   *          the approximate maximum size of the cached results in bytes. The cache is disabled if
+   *          it is not positive.
+   * @param ttlSeconds
+   *          the time to live of the cached results in seconds.
+   */
+  public WorklogResultCache(final long maxBytes, final long ttlSeconds) {
+    enabled = maxBytes > 0;
+    maxEntryWeight = Math.max(maxBytes, 0L) / CONCURRENCY_LEVEL;
+    cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(CONCURRENCY_LEVEL)
+        .maximumWeight(Math.max(maxBytes, 0L))
+        .weigher((final WorklogResultCacheKey key, final Object value) -> weigh(value))
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the cached result or loads and caches it.
+   *
+   * @param key
+   *          the key of the result.
+   * @param loader
+   *          loads the result if it is not cached.
+   * @param <T>
+   *          the type of the result.
+   * @return the result.
+   */
+  public <T> T get(final WorklogResultCacheKey key, final Supplier<T> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    T value = getIfPresent(key);
+    if (value == null) {
+      long invalidationCount = getInvalidationCount();
+      value = loader.get();
+      put(key, value, invalidationCount);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the cached result.
+   *
+   * @param key
+   *          the key of the result.
+   * @param <T>
+   *          the type of the result.
+   * @return the result or null if it is not cached.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getIfPresent(final WorklogResultCacheKey key) {
+    if (!enabled) {
+      return null;
+    }
+    return (T) cache.getIfPresent(key);
+  }
+
+  /**
+   * The number of the invalidations so far. It has to be read before a result is loaded and
+   * passed to the {@link #put(WorklogResultCacheKey, Object, long)} method.
+   *
+   * @return the number of the invalidations.
+   */
+  public long getInvalidationCount() {
+    return invalidationCounter.get();
+  }
+
+  /**
+   * The maximum length of a cached String result. The longer results would be evicted
+   * immediately, so they are not worth to be copied.
+   *
+   * @return the maximum number of the characters.
+   */
+  public long getMaxStringLength() {
+    return Math.max((maxEntryWeight - MIN_WEIGHT) / 2, 0L);
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Invalidates the cached results affected by a worklog change.
+   *
+   * @param change
+   *          the change of the worklog.
+   */
+  public void invalidate(final WorklogChange change) {
+    invalidationCounter.incrementAndGet();
+    cache.asMap().keySet().removeIf(key -> key.isAffectedBy(change));
+  }
+
+  /**
+   * Invalidates every cached result.
+   */
+  public void invalidateAll() {
+    invalidationCounter.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Caches a loaded result if no invalidation happened since its loading started and it is not
+   * heavier than the weight limit of an entry.
+   *
+   * @param key
+   *          the key of the result.
+   * @param value
+   *          the result.
+   * @param invalidationCount
+   *          the number of the invalidations before the loading of the result.
+   */
+  public void put(final WorklogResultCacheKey key, final Object value,
+      final long invalidationCount) {
+    if (enabled && (value != null) && (invalidationCount == invalidationCounter.get())
+        && (weigh(value) <= maxEntryWeight)) {
+      cache.put(key, value);
+    }
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+}
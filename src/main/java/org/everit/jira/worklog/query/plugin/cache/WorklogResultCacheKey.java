@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+
+/**
+ * The key of a cached query result. Contains the normalized query parameters and decides which
+ * worklog changes affect the cached result. The projects and the issues in the parameters are
+ * already filtered by the permissions of the viewer.
+ */
+public final class WorklogResultCacheKey {
+
+  private final long endDate;
+
+  private final String endpoint;
+
+  private final String parameters;
+
+  private final Set<Long> projectIds;
+
+  private final long startDate;
+
+  private final boolean updated;
+
+  private final Set<String> userKeys;
+
+  /**
+   * Constructor with fields.
+   *
+   * @param endpoint
+   *          the name of the endpoint that produced the result.
+   * @param startDate
+   *          the start of the queried interval in milliseconds.
+   * @param endDate
+   *          the end of the queried interval in milliseconds.
+   * @param updated
+   *          true if the interval is applied on the updated date of the worklogs.
+   * @param userKeys
+   *          the keys of the queried worklog authors.
+   * @param projectIds
+   *          the ids of the queried projects, or null if the result is not restricted by projects
+   *          directly.
+   * @param parameters
+   *          the other normalized parameters of the query, for example the fields.
+   */
+  public WorklogResultCacheKey(final String endpoint, final long startDate, final long endDate,
+      final boolean updated, final Collection<String> userKeys, final Collection<Long> projectIds,
+      final String parameters) {
+    this.endpoint = endpoint;
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.updated = updated;
+    this.userKeys = Collections.unmodifiableSet(new HashSet<>(userKeys));
+    this.projectIds = projectIds == null ? null
+        : Collections.unmodifiableSet(new HashSet<>(projectIds));
+    this.parameters = parameters;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof WorklogResultCacheKey)) {
+      return false;
+    }
+    WorklogResultCacheKey other = (WorklogResultCacheKey) obj;
+    return (startDate == other.startDate)
+        && (endDate == other.endDate)
+        && (updated == other.updated)
+        && endpoint.equals(other.endpoint)
+        && userKeys.equals(other.userKeys)
+        && Objects.equals(projectIds, other.projectIds)
+        && Objects.equals(parameters, other.parameters);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(endpoint, startDate, endDate, updated, userKeys, projectIds, parameters);
+  }
+
+  private boolean inInterval(final long time) {
+    return (time >= startDate) && (time < endDate);
+  }
+
+  /**
+   * Check if the change of a worklog can modify the cached result. The change must match the
+   * author, the project and the queried interval. The original values of an updated worklog are
+   * unknown, so an update affects every interval. A change of an unknown author affects every
+   * author.
+   *
+   * @param change
+   *          the change of the worklog.
+   * @return true if the cached result has to be invalidated.
+   */
+  public boolean isAffectedBy(final WorklogChange change) {
+    if ((change.getAuthorKey() != null) && !userKeys.contains(change.getAuthorKey())) {
+      return false;
+    }
+    if ((projectIds != null) && !projectIds.contains(change.getProjectId())) {
+      return false;
+    }
+    if (change.getType() == WorklogChange.Type.UPDATED) {
+      return true;
+    }
+    if (updated) {
+      return (change.getType() == WorklogChange.Type.DELETED) || inInterval(change.getUpdated());
+    }
+    return inInterval(change.getStartDate());
+  }
+
+}
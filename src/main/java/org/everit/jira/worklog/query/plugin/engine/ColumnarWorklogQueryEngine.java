@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.util.Map;
+
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+import org.everit.jira.worklog.query.plugin.WorklogValidator;
+import org.everit.jira.worklog.query.plugin.index.WorklogColumnarIndex;
+
+/**
+ * Engine that reads the in-heap {@link WorklogColumnarIndex}. It serves the aggregate queries, the
+ * index does not hold the rows.
+ */
+public class ColumnarWorklogQueryEngine
+    implements WorklogSummarizeEngine, WorklogSumByIssuesEngine, WorklogValidateEngine {
+
+  public static final String NAME = "columnar";
+
+  private final WorklogColumnarIndex worklogColumnarIndex;
+
+  public ColumnarWorklogQueryEngine(final WorklogColumnarIndex worklogColumnarIndex) {
+    this.worklogColumnarIndex = worklogColumnarIndex;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return (worklogColumnarIndex != null) && worklogColumnarIndex.isAvailable();
+  }
+
+  @Override
+  public WorklogSummary summarize(final WorklogQuerySpec spec) {
+    if (spec.isByProjects()) {
+      return worklogColumnarIndex.summarizeByProjects(spec.getStartDate().getTimeInMillis(),
+          spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getProjectIds(),
+          spec.isUpdated());
+    }
+    return worklogColumnarIndex.summarizeByIssues(spec.getStartDate().getTimeInMillis(),
+        spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getIssueIds());
+  }
+
+  @Override
+  public boolean supportsSumByIssues(final WorklogQuerySpec spec) {
+    return !spec.isByProjects();
+  }
+
+  @Override
+  public boolean supportsSummarize(final WorklogQuerySpec spec) {
+    return true;
+  }
+
+  @Override
+  public boolean supportsValidate(final WorklogQuerySpec spec) {
+    return spec.isByProjects();
+  }
+
+  @Override
+  public Map<Long, Long> sumTimeSpentByIssues(final WorklogQuerySpec spec) {
+    return worklogColumnarIndex.sumTimeSpentByIssues(spec.getStartDate().getTimeInMillis(),
+        spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getIssueIds());
+  }
+
+  @Override
+  public WorklogValidator validate(final WorklogQuerySpec spec) {
+    return worklogColumnarIndex.validate(spec.getStartDate().getTimeInMillis(),
+        spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getProjectIds(),
+        spec.isUpdated());
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.util.BytesRef;
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsQuery;
+import org.everit.jira.worklog.query.plugin.query.JsonWorklog;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.datetime.LocalDateFactory;
+import com.atlassian.jira.issue.index.DocumentConstants;
+import com.atlassian.jira.issue.search.SearchProviderFactory;
+import com.atlassian.jira.util.LuceneUtils;
+
+/**
+ * Engine that selects the worklogs from the worklog index of Jira. The index only holds the
+ * searchable fields of the worklogs, so the rows of the selected worklogs are looked up by their
+ * primary key in the database. The range scan on the worklog table and the joins that filter the
+ * projects move to the index.
+ *
+ * <p>
+ * The worklog index stores the start date of the worklogs with day precision, so the index
+ * selects the days of the interval and the database applies the exact interval on the selected
+ * worklogs. The index does not hold the updated date and the time spent, so the engine only serves
+ * the row queries on the start date.
+ * </p>
+ */
+public class LuceneWorklogQueryEngine implements WorklogFindEngine {
+
+  /**
+   * The number of worklog ids looked up by one database query. The rows of a chunk are written
+   * before the next chunk is read.
+   */
+  private static final int ID_CHUNK_SIZE = 1000;
+
+  public static final String NAME = "lucene";
+
+  private static final Set<String> WORKLOG_ID_FIELD =
+      Collections.singleton(DocumentConstants.WORKLOG_ID);
+
+  private static Query createTermsQuery(final String field, final Collection<?> values) {
+    List<BytesRef> terms = new ArrayList<>(values.size());
+    for (Object value : values) {
+      terms.add(new BytesRef(String.valueOf(value)));
+    }
+    return new TermInSetQuery(field, terms);
+  }
+
+  private static BytesRef toDateTerm(final Calendar date) {
+    return new BytesRef(LuceneUtils.localDateToString(LocalDateFactory.from(date.getTime())));
+  }
+
+  private final QuerydslSupport querydslSupport;
+
+  public LuceneWorklogQueryEngine(final QuerydslSupport querydslSupport) {
+    this.querydslSupport = querydslSupport;
+  }
+
+  /**
+   * Creates the index query of the worklogs. The end date is inclusive on the day of the last
+   * millisecond of the interval.
+   */
+  private Query createQuery(final WorklogQuerySpec spec) {
+    Calendar lastMillisecond = (Calendar) spec.getEndDate().clone();
+    lastMillisecond.add(Calendar.MILLISECOND, -1);
+    return new BooleanQuery.Builder()
+        .add(new TermRangeQuery(DocumentConstants.WORKLOG_DATE,
+            toDateTerm(spec.getStartDate()), toDateTerm(lastMillisecond), true, true),
+            Occur.FILTER)
+        .add(createTermsQuery(DocumentConstants.WORKLOG_AUTHOR, spec.getUserKeys()),
+            Occur.FILTER)
+        .add(createTermsQuery(DocumentConstants.PROJECT_ID, spec.getProjectIds()), Occur.FILTER)
+        .build();
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  private SearchProviderFactory getSearchProviderFactory() {
+    return ComponentAccessor.getComponent(SearchProviderFactory.class);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return getSearchProviderFactory() != null;
+  }
+
+  /**
+   * Selects the ids of the worklogs from the index in ascending order.
+   */
+  private long[] searchWorklogIds(final WorklogQuerySpec spec) {
+    IndexSearcher searcher =
+        getSearchProviderFactory().getSearcher(SearchProviderFactory.WORKLOG_INDEX);
+    WorklogIdCollector collector = new WorklogIdCollector();
+    try {
+      searcher.search(createQuery(spec), collector);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to search the worklog index.", e);
+    }
+    return collector.getSortedWorklogIds();
+  }
+
+  @Override
+  public boolean supportsFind(final WorklogQuerySpec spec) {
+    return spec.isByProjects() && !spec.isUpdated() && spec.isInDefaultTimeZone();
+  }
+
+  @Override
+  public long writeWorklogs(final WorklogQuerySpec spec, final Writer writer)
+      throws IOException {
+    long[] worklogIds = searchWorklogIds(spec);
+    long count = 0;
+    for (int i = 0; i < worklogIds.length; i += ID_CHUNK_SIZE) {
+      List<Long> chunk = new ArrayList<>(ID_CHUNK_SIZE);
+      for (int j = i; j < Math.min(i + ID_CHUNK_SIZE, worklogIds.length); j++) {
+        chunk.add(worklogIds[j]);
+      }
+      for (JsonWorklog worklog : querydslSupport.execute(spec.controlled(new FindWorklogsQuery(
+          spec.getStartDate(), spec.getEndDate(), spec.getFields(), spec.getUserKeys(),
+          spec.getProjectIds(), false, chunk)))) {
+        if (count > 0) {
+          writer.write(',');
+        }
+        writer.write(worklog.toString());
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Collects the ids of the matching worklogs into a primitive array. The id is read from the
+   * stored field of the document when it is collected.
+   */
+  private static final class WorklogIdCollector extends SimpleCollector {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int count;
+
+    private LeafReader reader;
+
+    private long[] worklogIds = new long[INITIAL_CAPACITY];
+
+    @Override
+    public void collect(final int doc) throws IOException {
+      Document document = reader.document(doc, WORKLOG_ID_FIELD);
+      if (count == worklogIds.length) {
+        worklogIds = Arrays.copyOf(worklogIds, count * 2);
+      }
+      worklogIds[count++] = Long.parseLong(document.get(DocumentConstants.WORKLOG_ID));
+    }
+
+    @Override
+    protected void doSetNextReader(final LeafReaderContext context) {
+      reader = context.reader();
+    }
+
+    long[] getSortedWorklogIds() {
+      long[] sortedWorklogIds = Arrays.copyOf(worklogIds, count);
+      Arrays.sort(sortedWorklogIds);
+      return sortedWorklogIds;
+    }
+
+    @Override
+    public boolean needsScores() {
+      return false;
+    }
+  }
+}
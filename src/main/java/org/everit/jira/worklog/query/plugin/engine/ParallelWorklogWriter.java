@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.worklog.query.plugin.query.JsonWorklog;
+import org.everit.jira.worklog.query.plugin.query.QueueWorklogsQuery;
+
+/**
+ * Writes the worklogs of a query whose interval is split into sub-intervals. Every sub-interval is
+ * read by its own thread on its own database connection, the rows are passed through bounded
+ * queues and merged by their id, so the output is the same as the output of the single query and
+ * the memory use does not depend on the size of the result.
+ */
+final class ParallelWorklogWriter {
+
+  /**
+   * The reader of a sub-interval.
+   */
+  private static final class RangeReader {
+
+    private volatile RuntimeException failure;
+
+    private JsonWorklog head;
+
+    private final BlockingQueue<JsonWorklog> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final WorklogQuerySpec spec;
+
+    private Thread thread;
+
+    RangeReader(final WorklogQuerySpec spec) {
+      this.spec = spec;
+    }
+  }
+
+  /**
+   * Marks the end of the rows of a sub-interval.
+   */
+  private static final JsonWorklog END = new JsonWorklog();
+
+  /**
+   * The number of the rows a reader may read ahead of the merge.
+   */
+  private static final int QUEUE_CAPACITY = 1000;
+
+  private volatile boolean aborted;
+
+  private final QuerydslSupport querydslSupport;
+
+  private final List<RangeReader> readers = new ArrayList<>();
+
+  /**
+   * Constructor.
+   *
+   * @param querydslSupport
+   *          the support that executes the queries of the sub-intervals.
+   * @param specs
+   *          the specifications of the sub-intervals.
+   */
+  ParallelWorklogWriter(final QuerydslSupport querydslSupport,
+      final List<WorklogQuerySpec> specs) {
+    this.querydslSupport = querydslSupport;
+    for (WorklogQuerySpec spec : specs) {
+      readers.add(new RangeReader(spec));
+    }
+  }
+
+  private void finish(final RangeReader reader) {
+    try {
+      while (!aborted && !reader.queue.offer(END, 1, TimeUnit.SECONDS)) {
+        // The merge is slower than the reader, the end is offered again.
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean next(final RangeReader reader) throws InterruptedIOException {
+    JsonWorklog row;
+    try {
+      row = reader.queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("The merge of the worklogs was interrupted.");
+    }
+    if (row == END) {
+      if (reader.failure != null) {
+        throw reader.failure;
+      }
+      return false;
+    }
+    reader.head = row;
+    return true;
+  }
+
+  private void read(final RangeReader reader) {
+    try {
+      querydslSupport.execute(reader.spec.controlled(new QueueWorklogsQuery(
+          SqlWorklogQueryEngine.createFindWorklogsQuery(reader.spec), reader.queue)));
+    } catch (RuntimeException e) {
+      reader.failure = e;
+    } finally {
+      finish(reader);
+    }
+  }
+
+  /**
+   * Writes the worklogs as JSON objects separated by commas in the order of their ids.
+   *
+   * @param writer
+   *          the writer of the worklogs.
+   * @return the number of the written worklogs.
+   * @throws IOException
+   *           if the worklogs can not be written.
+   */
+  long write(final Writer writer) throws IOException {
+    for (RangeReader reader : readers) {
+      reader.thread = new Thread(() -> read(reader), "jwqp-range-query");
+      reader.thread.setDaemon(true);
+      reader.thread.start();
+    }
+    boolean completed = false;
+    try {
+      PriorityQueue<RangeReader> heads = new PriorityQueue<>(readers.size(),
+          Comparator.comparingLong(reader -> reader.head.getId()));
+      for (RangeReader reader : readers) {
+        if (next(reader)) {
+          heads.add(reader);
+        }
+      }
+      long count = 0;
+      while (!heads.isEmpty()) {
+        RangeReader reader = heads.poll();
+        if (count > 0) {
+          writer.write(',');
+        }
+        writer.write(reader.head.toString());
+        count++;
+        if (next(reader)) {
+          heads.add(reader);
+        }
+      }
+      completed = true;
+      return count;
+    } finally {
+      aborted = true;
+      if (!completed) {
+        // The statements of the other sub-intervals are stopped, their rows are not needed.
+        readers.get(0).spec.cancel();
+        for (RangeReader reader : readers) {
+          reader.thread.interrupt();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.util.Map;
+
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+import org.everit.jira.worklog.query.plugin.rollup.WorklogRollupStore;
+
+/**
+ * Engine that reads the daily aggregates of the {@link WorklogRollupStore}. It serves the
+ * aggregate queries whose interval is applied on the start date of the worklogs. The days are in
+ * the default time zone, so the queries of other time zones and the intervals with sub-day
+ * boundaries are left to the other engines.
+ */
+public class RollupWorklogQueryEngine
+    implements WorklogSummarizeEngine, WorklogSumByIssuesEngine {
+
+  public static final String NAME = "rollup";
+
+  private final WorklogRollupStore worklogRollupStore;
+
+  public RollupWorklogQueryEngine(final WorklogRollupStore worklogRollupStore) {
+    this.worklogRollupStore = worklogRollupStore;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return (worklogRollupStore != null) && worklogRollupStore.isAvailable();
+  }
+
+  @Override
+  public WorklogSummary summarize(final WorklogQuerySpec spec) {
+    if (spec.isByProjects()) {
+      return worklogRollupStore.summarizeByProjects(spec.getStartDate().getTimeInMillis(),
+          spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getProjectIds());
+    }
+    return worklogRollupStore.summarizeByIssues(spec.getStartDate().getTimeInMillis(),
+        spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getIssueIds());
+  }
+
+  @Override
+  public boolean supportsSumByIssues(final WorklogQuerySpec spec) {
+    return !spec.isByProjects() && spec.isInDefaultTimeZone() && spec.isDayAligned();
+  }
+
+  @Override
+  public boolean supportsSummarize(final WorklogQuerySpec spec) {
+    return !spec.isUpdated() && spec.isInDefaultTimeZone() && spec.isDayAligned();
+  }
+
+  @Override
+  public Map<Long, Long> sumTimeSpentByIssues(final WorklogQuerySpec spec) {
+    return worklogRollupStore.sumTimeSpentByIssues(spec.getStartDate().getTimeInMillis(),
+        spec.getEndDate().getTimeInMillis(), spec.getUserKeys(), spec.getIssueIds());
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+import org.everit.jira.worklog.query.plugin.WorklogValidator;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsByIssuesSummaryQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsSummaryQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsValidatorQuery;
+import org.everit.jira.worklog.query.plugin.query.WriteWorklogsQuery;
+
+/**
+ * Engine that reads the worklog table of the Jira database. It serves every query except the time
+ * spent per issue, that is paged by the database with the issue beans.
+ */
+public class SqlWorklogQueryEngine
+    implements WorklogFindEngine, WorklogSummarizeEngine, WorklogValidateEngine {
+
+  public static final String NAME = "sql";
+
+  static FindWorklogsQuery createFindWorklogsQuery(final WorklogQuerySpec spec) {
+    return new FindWorklogsQuery(spec.getStartDate(), spec.getEndDate(), spec.getFields(),
+        spec.getUserKeys(), spec.getProjectIds(), spec.isUpdated());
+  }
+
+  private final QuerydslSupport querydslSupport;
+
+  public SqlWorklogQueryEngine(final QuerydslSupport querydslSupport) {
+    this.querydslSupport = querydslSupport;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return true;
+  }
+
+  @Override
+  public WorklogSummary summarize(final WorklogQuerySpec spec) {
+    if (spec.isByProjects()) {
+      return querydslSupport.execute(spec.controlled(new FindWorklogsSummaryQuery(
+          spec.getStartDate(), spec.getEndDate(), spec.getUserKeys(), spec.getProjectIds(),
+          spec.isUpdated())));
+    }
+    return querydslSupport.execute(spec.controlled(new FindWorklogsByIssuesSummaryQuery(
+        spec.getStartDate(), spec.getEndDate(), spec.getUserKeys(), spec.getIssueIds())));
+  }
+
+  @Override
+  public boolean supportsFind(final WorklogQuerySpec spec) {
+    return spec.isByProjects();
+  }
+
+  @Override
+  public boolean supportsSummarize(final WorklogQuerySpec spec) {
+    return true;
+  }
+
+  @Override
+  public boolean supportsValidate(final WorklogQuerySpec spec) {
+    return spec.isByProjects();
+  }
+
+  @Override
+  public WorklogValidator validate(final WorklogQuerySpec spec) {
+    return querydslSupport.execute(spec.controlled(new FindWorklogsValidatorQuery(
+        spec.getStartDate(), spec.getEndDate(), spec.getUserKeys(), spec.getProjectIds(),
+        spec.isUpdated())));
+  }
+
+  @Override
+  public long writeWorklogs(final WorklogQuerySpec spec, final Writer writer)
+      throws IOException {
+    List<WorklogQuerySpec> ranges =
+        spec.splitByMonths(WorklogQueryConfiguration.getQueryParallelism());
+    if (ranges.size() > 1) {
+      return new ParallelWorklogWriter(querydslSupport, ranges).write(writer);
+    }
+    try {
+      return querydslSupport.execute(spec.controlled(
+          new WriteWorklogsQuery(createFindWorklogsQuery(spec), writer)));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Engine that loads the rows of the worklogs.
+ */
+public interface WorklogFindEngine extends WorklogQueryEngine {
+
+  /**
+   * Check that the engine can load the rows of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return true if the engine supports the query.
+   */
+  boolean supportsFind(WorklogQuerySpec spec);
+
+  /**
+   * Writes the rows of the matching worklogs ordered by their id as JSON objects separated by
+   * commas. The rows are written while they are read, the whole result is not held in the memory.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @param writer
+   *          the writer of the rows.
+   * @return the number of the written rows.
+   * @throws IOException
+   *           if the writer failed.
+   */
+  long writeWorklogs(WorklogQuerySpec spec, Writer writer) throws IOException;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+/**
+ * A store that answers the worklog queries. The queries an engine can answer are declared by the
+ * capability interfaces it implements: {@link WorklogFindEngine}, {@link WorklogSummarizeEngine},
+ * {@link WorklogValidateEngine} and {@link WorklogSumByIssuesEngine}. The
+ * {@link WorklogQueryPlanner} selects the engine of each query among the engines of the required
+ * capability.
+ */
+public interface WorklogQueryEngine {
+
+  /**
+   * The name of the engine that is used in the {@code engine.order} configuration property.
+   *
+   * @return the name.
+   */
+  String getName();
+
+  /**
+   * Check that the engine can answer queries now, for example its index is built.
+   *
+   * @return true if the engine is available.
+   */
+  boolean isAvailable();
+}
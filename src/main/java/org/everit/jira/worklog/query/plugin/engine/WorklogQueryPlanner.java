@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the engine of the worklog queries. The engines are tried in the order of the
+ * {@code engine.order} configuration property and the first available engine that has the
+ * capability of the query and supports its parameters serves it. The engines missing from the
+ * property are disabled, except the SQL engine that is always the last resort.
+ */
+public class WorklogQueryPlanner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogQueryPlanner.class);
+
+  private final List<WorklogQueryEngine> engines;
+
+  /**
+   * Constructor with the engine order of the configuration.
+   *
+   * @param engines
+   *          the known engines.
+   */
+  public WorklogQueryPlanner(final List<WorklogQueryEngine> engines) {
+    this(engines, WorklogQueryConfiguration.getEngineOrder());
+  }
+
+  /**
+   * Constructor with the given engine order.
+   *
+   * @param engines
+   *          the known engines.
+   * @param engineOrder
+   *          the comma separated names of the enabled engines in preference order.
+   */
+  public WorklogQueryPlanner(final List<WorklogQueryEngine> engines, final String engineOrder) {
+    List<WorklogQueryEngine> orderedEngines = new ArrayList<>();
+    for (String name : engineOrder.split(",")) {
+      WorklogQueryEngine engine = findEngine(engines, name.trim());
+      if (engine == null) {
+        LOGGER.warn("Unknown worklog query engine in the engine order: {}", name);
+      } else if (!orderedEngines.contains(engine)) {
+        orderedEngines.add(engine);
+      }
+    }
+    WorklogQueryEngine sqlEngine = findEngine(engines, SqlWorklogQueryEngine.NAME);
+    if ((sqlEngine != null) && !orderedEngines.contains(sqlEngine)) {
+      orderedEngines.add(sqlEngine);
+    }
+    this.engines = Collections.unmodifiableList(orderedEngines);
+  }
+
+  private WorklogQueryEngine findEngine(final List<WorklogQueryEngine> knownEngines,
+      final String name) {
+    for (WorklogQueryEngine engine : knownEngines) {
+      if (engine.getName().equals(name)) {
+        return engine;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The enabled engines in preference order.
+   *
+   * @return the engines.
+   */
+  public List<WorklogQueryEngine> getEngines() {
+    return engines;
+  }
+
+  private <T extends WorklogQueryEngine> T plan(final Class<T> capability,
+      final WorklogQuerySpec spec, final BiPredicate<T, WorklogQuerySpec> supports) {
+    for (WorklogQueryEngine engine : engines) {
+      if (capability.isInstance(engine)) {
+        T capableEngine = capability.cast(engine);
+        if (supports.test(capableEngine, spec) && engine.isAvailable()) {
+          LOGGER.debug("The {} query is served by the {} engine.", capability.getSimpleName(),
+              engine.getName());
+          return capableEngine;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Selects the engine that loads the rows of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return the first available engine that supports the query or null if there is no such
+   *         engine.
+   */
+  public WorklogFindEngine planFind(final WorklogQuerySpec spec) {
+    return plan(WorklogFindEngine.class, spec, WorklogFindEngine::supportsFind);
+  }
+
+  /**
+   * Selects the engine that summarizes the time spent per issue of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return the first available engine that supports the query or null if there is no such
+   *         engine.
+   */
+  public WorklogSumByIssuesEngine planSumByIssues(final WorklogQuerySpec spec) {
+    return plan(WorklogSumByIssuesEngine.class, spec,
+        WorklogSumByIssuesEngine::supportsSumByIssues);
+  }
+
+  /**
+   * Selects the engine that summarizes the worklogs of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return the first available engine that supports the query or null if there is no such
+   *         engine.
+   */
+  public WorklogSummarizeEngine planSummarize(final WorklogQuerySpec spec) {
+    return plan(WorklogSummarizeEngine.class, spec, WorklogSummarizeEngine::supportsSummarize);
+  }
+
+  /**
+   * Selects the engine that validates the worklogs of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return the first available engine that supports the query or null if there is no such
+   *         engine.
+   */
+  public WorklogValidateEngine planValidate(final WorklogQuerySpec spec) {
+    return plan(WorklogValidateEngine.class, spec, WorklogValidateEngine::supportsValidate);
+  }
+}
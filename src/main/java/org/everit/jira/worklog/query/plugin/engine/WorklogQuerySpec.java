@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+
+import com.atlassian.jira.rest.api.util.StringList;
+
+/**
+ * The parameters of a worklog query that is served by a {@link WorklogQueryEngine}. The worklogs
+ * are restricted either to projects or to issues.
+ */
+public final class WorklogQuerySpec {
+
+  /**
+   * The time of the end dates of the day precision query parameters.
+   */
+  private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+
+  /**
+   * Creates the specification of a query restricted to issues. The interval is applied on the
+   * start date of the worklogs.
+   *
+   * @param startDate
+   *          the start date of the worklogs.
+   * @param endDate
+   *          the end date of the worklogs.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param issueIds
+   *          the ids of the issues.
+   * @param statementControl
+   *          the control of the JDBC statements of the query. Null if the statements are not
+   *          controlled.
+   * @return the specification.
+   */
+  public static WorklogQuerySpec byIssues(final Calendar startDate, final Calendar endDate,
+      final List<String> userKeys, final Set<Long> issueIds,
+      final WorklogStatementControl statementControl) {
+    return new WorklogQuerySpec(startDate, endDate, userKeys, null, issueIds, null, false,
+        statementControl);
+  }
+
+  /**
+   * Creates the specification of a query restricted to projects.
+   *
+   * @param startDate
+   *          the start date of the worklogs.
+   * @param endDate
+   *          the end date of the worklogs.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param projectIds
+   *          the ids of the projects.
+   * @param fields
+   *          the additional fields of the worklog rows. Null if no row is loaded.
+   * @param updated
+   *          true if the interval is applied on the updated date, false if it is applied on the
+   *          start date.
+   * @param statementControl
+   *          the control of the JDBC statements of the query. Null if the statements are not
+   *          controlled.
+   * @return the specification.
+   */
+  public static WorklogQuerySpec byProjects(final Calendar startDate, final Calendar endDate,
+      final List<String> userKeys, final List<Long> projectIds, final List<StringList> fields,
+      final boolean updated, final WorklogStatementControl statementControl) {
+    return new WorklogQuerySpec(startDate, endDate, userKeys, projectIds, null, fields, updated,
+        statementControl);
+  }
+
+  private static LocalTime timeOfDay(final Calendar date) {
+    return date.toInstant().atZone(date.getTimeZone().toZoneId()).toLocalTime();
+  }
+
+  private final Calendar endDate;
+
+  private final List<StringList> fields;
+
+  private final Set<Long> issueIds;
+
+  private final List<Long> projectIds;
+
+  private final Calendar startDate;
+
+  private final WorklogStatementControl statementControl;
+
+  private final boolean updated;
+
+  private final List<String> userKeys;
+
+  private WorklogQuerySpec(final Calendar startDate, final Calendar endDate,
+      final List<String> userKeys, final List<Long> projectIds, final Set<Long> issueIds,
+      final List<StringList> fields, final boolean updated,
+      final WorklogStatementControl statementControl) {
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.userKeys = userKeys;
+    this.projectIds = projectIds;
+    this.issueIds = issueIds;
+    this.fields = fields;
+    this.updated = updated;
+    this.statementControl = statementControl;
+  }
+
+  /**
+   * Cancels the running statements of the query if they are controlled.
+   */
+  public void cancel() {
+    if (statementControl != null) {
+      statementControl.cancel();
+    }
+  }
+
+  /**
+   * Wraps the callable of the query so its statements are controlled by the statement control of
+   * the query.
+   *
+   * @param callable
+   *          the callable.
+   * @param <T>
+   *          the type of the result of the callable.
+   * @return the controlled callable or the given callable if there is no statement control.
+   */
+  public <T> QuerydslCallable<T> controlled(final QuerydslCallable<T> callable) {
+    if (statementControl == null) {
+      return callable;
+    }
+    return statementControl.control(callable);
+  }
+
+  public Calendar getEndDate() {
+    return endDate;
+  }
+
+  public List<StringList> getFields() {
+    return fields;
+  }
+
+  /**
+   * The ids of the issues the worklogs are restricted to.
+   *
+   * @return the issue ids or null if the query is restricted to projects.
+   */
+  public Set<Long> getIssueIds() {
+    return issueIds;
+  }
+
+  /**
+   * The ids of the projects the worklogs are restricted to.
+   *
+   * @return the project ids or null if the query is restricted to issues.
+   */
+  public List<Long> getProjectIds() {
+    return projectIds;
+  }
+
+  public Calendar getStartDate() {
+    return startDate;
+  }
+
+  /**
+   * The time zone of the interval. The day boundaries of the dates and the dates of the found
+   * worklogs are in this time zone.
+   *
+   * @return the time zone of the start date.
+   */
+  public ZoneId getTimeZone() {
+    return startDate.getTimeZone().toZoneId();
+  }
+
+  public List<String> getUserKeys() {
+    return userKeys;
+  }
+
+  public boolean isByProjects() {
+    return projectIds != null;
+  }
+
+  /**
+   * Checks whether the interval is made of whole days, so the engines that store the worklogs by
+   * day can serve the query. The start date must be the start of a day and the end date must be
+   * the start or the last second of a day, the end of the day dates of the query parameters.
+   *
+   * @return true if the interval has no sub-day precision boundaries.
+   */
+  public boolean isDayAligned() {
+    LocalTime endTime = timeOfDay(endDate);
+    return LocalTime.MIDNIGHT.equals(timeOfDay(startDate))
+        && (LocalTime.MIDNIGHT.equals(endTime) || END_OF_DAY.equals(endTime));
+  }
+
+  /**
+   * Checks whether the interval is in the default time zone, so the engines that store the
+   * worklogs by day in the default time zone can serve the query.
+   *
+   * @return true if the time zone of the interval has the rules of the default time zone.
+   */
+  public boolean isInDefaultTimeZone() {
+    return getTimeZone().getRules().equals(ZoneId.systemDefault().getRules());
+  }
+
+  public boolean isUpdated() {
+    return updated;
+  }
+
+  /**
+   * Splits the interval of the query at the month boundaries into consecutive sub-intervals. The
+   * months are distributed evenly between the sub-intervals. The other parameters and the
+   * statement control are shared with this specification.
+   *
+   * @param maxParts
+   *          the maximum number of the sub-intervals.
+   * @return the specifications of the sub-intervals in chronological order. Only this specification
+   *         if the interval does not span more months or only one part is allowed.
+   */
+  public List<WorklogQuerySpec> splitByMonths(final int maxParts) {
+    List<Calendar> monthStarts = new ArrayList<>();
+    Calendar monthStart = (Calendar) startDate.clone();
+    monthStart.set(Calendar.DAY_OF_MONTH, 1);
+    monthStart.set(Calendar.HOUR_OF_DAY, 0);
+    monthStart.set(Calendar.MINUTE, 0);
+    monthStart.set(Calendar.SECOND, 0);
+    monthStart.set(Calendar.MILLISECOND, 0);
+    monthStart.add(Calendar.MONTH, 1);
+    while (monthStart.before(endDate)) {
+      monthStarts.add((Calendar) monthStart.clone());
+      monthStart.add(Calendar.MONTH, 1);
+    }
+    int months = monthStarts.size() + 1;
+    int parts = Math.min(maxParts, months);
+    if (parts <= 1) {
+      return Collections.singletonList(this);
+    }
+    List<WorklogQuerySpec> result = new ArrayList<>(parts);
+    Calendar partStart = startDate;
+    for (int i = 1; i < parts; i++) {
+      Calendar partEnd = monthStarts.get(((i * months) / parts) - 1);
+      result.add(new WorklogQuerySpec(partStart, partEnd, userKeys, projectIds, issueIds, fields,
+          updated, statementControl));
+      partStart = partEnd;
+    }
+    result.add(new WorklogQuerySpec(partStart, endDate, userKeys, projectIds, issueIds, fields,
+        updated, statementControl));
+    return result;
+  }
+}
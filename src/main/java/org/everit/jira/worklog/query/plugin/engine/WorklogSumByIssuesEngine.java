@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.util.Map;
+
+/**
+ * Engine that summarizes the time spent of the worklogs per issue.
+ */
+public interface WorklogSumByIssuesEngine extends WorklogQueryEngine {
+
+  /**
+   * Summarize the time spent of the matching worklogs per issue.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return the time spent in seconds by issue id. The issues without worklogs are missing.
+   */
+  Map<Long, Long> sumTimeSpentByIssues(WorklogQuerySpec spec);
+
+  /**
+   * Check that the engine can summarize the time spent per issue of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return true if the engine supports the query.
+   */
+  boolean supportsSumByIssues(WorklogQuerySpec spec);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import org.everit.jira.worklog.query.plugin.WorklogValidator;
+
+/**
+ * Engine that counts the worklogs and finds their latest update for the entity tags.
+ */
+public interface WorklogValidateEngine extends WorklogQueryEngine {
+
+  /**
+   * Check that the engine can validate the worklogs of the given query.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return true if the engine supports the query.
+   */
+  boolean supportsValidate(WorklogQuerySpec spec);
+
+  /**
+   * Count the matching worklogs and find their latest update.
+   *
+   * @param spec
+   *          the parameters of the query.
+   * @return the validator of the worklogs.
+   */
+  WorklogValidator validate(WorklogQuerySpec spec);
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.event;
+
+import java.util.Date;
+
+import com.atlassian.jira.issue.worklog.Worklog;
+
+/**
+ * The values of a changed worklog that are needed to keep the plugin owned data structures up to
+ * date.
+ */
+public final class WorklogChange {
+
+  /**
+   * The type of the change.
+   */
+  public enum Type {
+    CREATED, DELETED, UPDATED
+  }
+
+  /**
+   * Creates the change of a worklog event.
+   *
+   * @param type
+   *          the type of the change.
+   * @param worklog
+   *          the worklog of the event.
+   * @return the change.
+   */
+  public static WorklogChange of(final Type type, final Worklog worklog) {
+    Date updated = worklog.getUpdated();
+    return new WorklogChange(type, worklog.getId(), worklog.getIssue().getId(),
+        worklog.getIssue().getProjectId(), worklog.getAuthorKey(),
+        worklog.getStartDate().getTime(),
+        updated == null ? System.currentTimeMillis() : updated.getTime(),
+        worklog.getTimeSpent() == null ? 0L : worklog.getTimeSpent());
+  }
+
+  private final String authorKey;
+
+  private final long issueId;
+
+  private final long projectId;
+
+  private final long startDate;
+
+  private final long timeSpent;
+
+  private final Type type;
+
+  private final long updated;
+
+  private final long worklogId;
+
+  /**
+   * Constructor with fields.
+   *
+   * @param type
+   *          the type of the change.
+   * @param worklogId
+   *          the id of the worklog.
+   * @param issueId
+   *          the id of the issue of the worklog.
+   * @param projectId
+   *          the id of the project of the worklog.
+   * @param authorKey
+   *          the key of the worklog author. Null if it is unknown, for example in the changes
+   *          received from other nodes without the author key.
+   * @param startDate
+   *          the start date of the worklog in milliseconds.
+   * @param updated
+   *          the updated date of the worklog in milliseconds.
+   * @param timeSpent
+   *          the time spent of the worklog in seconds.
+   */
+  public WorklogChange(final Type type, final long worklogId, final long issueId,
+      final long projectId, final String authorKey, final long startDate, final long updated,
+      final long timeSpent) {
+    this.type = type;
+    this.worklogId = worklogId;
+    this.issueId = issueId;
+    this.projectId = projectId;
+    this.authorKey = authorKey;
+    this.startDate = startDate;
+    this.updated = updated;
+    this.timeSpent = timeSpent;
+  }
+
+  public String getAuthorKey() {
+    return authorKey;
+  }
+
+  public long getIssueId() {
+    return issueId;
+  }
+
+  public long getProjectId() {
+    return projectId;
+  }
+
+  public long getStartDate() {
+    return startDate;
+  }
+
+  public long getTimeSpent() {
+    return timeSpent;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public long getUpdated() {
+    return updated;
+  }
+
+  public long getWorklogId() {
+    return worklogId;
+  }
+
+}
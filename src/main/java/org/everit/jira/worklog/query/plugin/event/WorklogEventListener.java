@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.event;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.querydsl.support.ri.QuerydslSupportImpl;
+import org.everit.jira.worklog.query.plugin.cache.WorklogCacheInvalidator;
+import org.everit.jira.worklog.query.plugin.query.FindIssueWorklogChangesQuery;
+import org.everit.jira.worklog.query.plugin.rollup.WorklogRollupStore;
+import org.everit.jira.worklog.query.plugin.tombstone.WorklogTombstoneStore;
+import org.ofbiz.core.entity.GenericEntityException;
+import org.ofbiz.core.entity.GenericValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.event.issue.IssuePreDeleteEvent;
+import com.atlassian.jira.event.type.EventType;
+import com.atlassian.jira.event.worklog.WorklogCreatedEvent;
+import com.atlassian.jira.event.worklog.WorklogDeletedEvent;
+import com.atlassian.jira.event.worklog.WorklogUpdatedEvent;
+
+/**
+ * Listens to the worklog and issue events of JIRA and keeps the plugin owned stores and caches up
+ * to date. The worklogs of a deleted issue are removed without worklog events, so they are read
+ * before the deletion and handled as deleted worklogs after it. The worklogs of a moved issue are
+ * handled as deleted from the original project and created in the new one.
+ */
+public class WorklogEventListener implements InitializingBean, DisposableBean {
+
+  /**
+   * The name of the relation of the change items of a change group.
+   */
+  private static final String CHANGE_ITEM_RELATION = "ChildChangeItem";
+
+  /**
+   * The logger used to log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogEventListener.class);
+
+  /**
+   * The name of the project field in the change items.
+   */
+  private static final String PROJECT_FIELD = "project";
+
+  /**
+   * The worklogs of the issues under deletion by issue id, read before the deletion.
+   */
+  private final ConcurrentMap<Long, List<WorklogChange>> deletedIssueWorklogs =
+      new ConcurrentHashMap<>();
+
+  private final EventPublisher eventPublisher;
+
+  private QuerydslSupport querydslSupport;
+
+  private final WorklogCacheInvalidator worklogCacheInvalidator;
+
+  private final WorklogRollupStore worklogRollupStore;
+
+  private final WorklogTombstoneStore worklogTombstoneStore;
+
+  /**
+   * Simple constructor.
+   *
+   * @param eventPublisher
+   *          the event publisher of JIRA.
+   * @param worklogTombstoneStore
+   *          the store of the deleted worklogs.
+   * @param worklogRollupStore
+   *          the store of the summarized worklogs.
+   * @param worklogCacheInvalidator
+   *          the invalidator of the cached query results of the cluster.
+   */
+  public WorklogEventListener(final EventPublisher eventPublisher,
+      final WorklogTombstoneStore worklogTombstoneStore,
+      final WorklogRollupStore worklogRollupStore,
+      final WorklogCacheInvalidator worklogCacheInvalidator) {
+    this.eventPublisher = eventPublisher;
+    this.worklogTombstoneStore = worklogTombstoneStore;
+    this.worklogRollupStore = worklogRollupStore;
+    this.worklogCacheInvalidator = worklogCacheInvalidator;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    querydslSupport = new QuerydslSupportImpl();
+    eventPublisher.register(this);
+  }
+
+  @Override
+  public void destroy() {
+    eventPublisher.unregister(this);
+  }
+
+  /**
+   * Finds the original project of a moved issue in the change log of the move.
+   *
+   * @return the id of the original project or null if the change log does not contain it.
+   */
+  private Long findOriginalProjectId(final IssueEvent event) {
+    GenericValue changeLog = event.getChangeLog();
+    if (changeLog == null) {
+      return null;
+    }
+    try {
+      for (GenericValue changeItem : changeLog.getRelated(CHANGE_ITEM_RELATION)) {
+        if (PROJECT_FIELD.equalsIgnoreCase(changeItem.getString("field"))) {
+          return Long.valueOf(changeItem.getString("oldvalue"));
+        }
+      }
+    } catch (GenericEntityException | NumberFormatException e) {
+      LOGGER.error("Failed to read the original project of the moved issue.", e);
+    }
+    return null;
+  }
+
+  private void issueDeleted(final long issueId) {
+    List<WorklogChange> changes = deletedIssueWorklogs.remove(issueId);
+    if (changes == null) {
+      LOGGER.warn("The worklogs of the deleted issue {} are unknown.", issueId);
+    } else {
+      for (WorklogChange change : changes) {
+        recordTombstone(change);
+        worklogCacheInvalidator.invalidate(change);
+      }
+    }
+    refreshRollup(issueId);
+  }
+
+  private void issueMoved(final IssueEvent event) {
+    long issueId = event.getIssue().getId();
+    Long originalProjectId = findOriginalProjectId(event);
+    List<WorklogChange> changes = querydslSupport
+        .execute(new FindIssueWorklogChangesQuery(issueId, WorklogChange.Type.CREATED));
+    for (WorklogChange change : changes) {
+      if (originalProjectId != null) {
+        worklogCacheInvalidator.invalidate(new WorklogChange(WorklogChange.Type.DELETED,
+            change.getWorklogId(), issueId, originalProjectId, change.getAuthorKey(),
+            change.getStartDate(), change.getUpdated(), change.getTimeSpent()));
+      }
+      worklogCacheInvalidator.invalidate(change);
+    }
+    refreshRollup(issueId);
+  }
+
+  /**
+   * Handles the worklogs of the deleted and the moved issues.
+   *
+   * @param event
+   *          the issue event.
+   */
+  @EventListener
+  public void onIssueEvent(final IssueEvent event) {
+    Long eventTypeId = event.getEventTypeId();
+    if (EventType.ISSUE_DELETED_ID.equals(eventTypeId)) {
+      issueDeleted(event.getIssue().getId());
+    } else if (EventType.ISSUE_MOVED_ID.equals(eventTypeId)) {
+      issueMoved(event);
+    }
+  }
+
+  /**
+   * Reads the worklogs of the issue before they are deleted with the issue.
+   *
+   * @param event
+   *          the event of the issue deletion.
+   */
+  @EventListener
+  public void onIssuePreDelete(final IssuePreDeleteEvent event) {
+    long issueId = event.getIssue().getId();
+    try {
+      deletedIssueWorklogs.put(issueId, querydslSupport
+          .execute(new FindIssueWorklogChangesQuery(issueId, WorklogChange.Type.DELETED)));
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to read the worklogs of the deleted issue.", e);
+    }
+  }
+
+  /**
+   * Invalidates the affected query results and updates the rollup rows of the issue of the
+   * created worklog.
+   *
+   * @param event
+   *          the worklog created event.
+   */
+  @EventListener
+  public void onWorklogCreated(final WorklogCreatedEvent event) {
+    worklogChanged(WorklogChange.of(WorklogChange.Type.CREATED, event.getWorklog()));
+  }
+
+  /**
+   * Records the tombstone of the deleted worklog, invalidates the affected query results and
+   * updates the rollup rows of its issue.
+   *
+   * @param event
+   *          the worklog deleted event.
+   */
+  @EventListener
+  public void onWorklogDeleted(final WorklogDeletedEvent event) {
+    WorklogChange change = WorklogChange.of(WorklogChange.Type.DELETED, event.getWorklog());
+    recordTombstone(change);
+    worklogChanged(change);
+  }
+
+  /**
+   * Invalidates the affected query results and updates the rollup rows of the issue of the
+   * updated worklog. The rows of the whole issue are recalculated, because the event does not
+   * contain the original values of the worklog.
+   *
+   * @param event
+   *          the worklog updated event.
+   */
+  @EventListener
+  public void onWorklogUpdated(final WorklogUpdatedEvent event) {
+    worklogChanged(WorklogChange.of(WorklogChange.Type.UPDATED, event.getWorklog()));
+  }
+
+  private void recordTombstone(final WorklogChange change) {
+    try {
+      worklogTombstoneStore.record(change);
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to record the tombstone of the deleted worklog.", e);
+    }
+  }
+
+  private void refreshRollup(final long issueId) {
+    try {
+      worklogRollupStore.refreshIssue(issueId);
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to update the worklog rollup of the issue.", e);
+    }
+  }
+
+  private void worklogChanged(final WorklogChange change) {
+    worklogCacheInvalidator.invalidate(change);
+    refreshRollup(change.getIssueId());
+  }
+
+}
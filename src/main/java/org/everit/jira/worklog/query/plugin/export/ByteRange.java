@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.export;
+
+/**
+ * A single byte range of the Range header of a download request. Only one range is supported,
+ * the other requests are answered with the whole content.
+ */
+public final class ByteRange {
+
+  private static final String BYTES_UNIT = "bytes=";
+
+  /**
+   * Parses the Range header.
+   *
+   * @param header
+   *          the value of the Range header. Null if the header is missing.
+   * @param size
+   *          the size of the content in bytes.
+   * @return the range or null if the whole content has to be returned. The returned range is not
+   *         satisfiable if it starts after the end of the content.
+   */
+  public static ByteRange parse(final String header, final long size) {
+    if ((header == null) || !header.startsWith(BYTES_UNIT) || (header.indexOf(',') >= 0)) {
+      return null;
+    }
+    String range = header.substring(BYTES_UNIT.length()).trim();
+    int dashIndex = range.indexOf('-');
+    if (dashIndex < 0) {
+      return null;
+    }
+    try {
+      String first = range.substring(0, dashIndex).trim();
+      String last = range.substring(dashIndex + 1).trim();
+      if (first.isEmpty()) {
+        // Suffix range: the last N bytes.
+        long suffixLength = Long.parseLong(last);
+        if (suffixLength <= 0) {
+          return new ByteRange(size, size - 1, size);
+        }
+        return new ByteRange(Math.max(0, size - suffixLength), size - 1, size);
+      }
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+      if ((start < 0) || (end < start && start < size)) {
+        return null;
+      }
+      return new ByteRange(start, end, size);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private final long end;
+
+  private final long size;
+
+  private final long start;
+
+  private ByteRange(final long start, final long end, final long size) {
+    this.start = start;
+    this.end = end;
+    this.size = size;
+  }
+
+  /**
+   * The value of the Content-Range header of the response.
+   *
+   * @return the content range.
+   */
+  public String getContentRange() {
+    if (!isSatisfiable()) {
+      return "bytes */" + size;
+    }
+    return "bytes " + start + "-" + end + "/" + size;
+  }
+
+  public long getLength() {
+    return (end - start) + 1;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public boolean isSatisfiable() {
+    return start < size;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.export;
+
+import java.nio.file.Path;
+
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+
+import com.atlassian.jira.util.json.JSONException;
+import com.atlassian.jira.util.json.JSONObject;
+
+/**
+ * A background export of worklogs into a compressed file. The state transitions are
+ * synchronized, a job leaves the {@link WorklogExportStatus#QUEUED} and the
+ * {@link WorklogExportStatus#RUNNING} states only once.
+ */
+public class WorklogExportJob {
+
+  private final long created;
+
+  private final Path file;
+
+  private long finished;
+
+  private final String id;
+
+  private String message;
+
+  private final String nodeId;
+
+  private final String ownerKey;
+
+  private long size;
+
+  private final WorklogStatementControl statementControl;
+
+  private WorklogExportStatus status = WorklogExportStatus.QUEUED;
+
+  /**
+   * Constructor of a queued job.
+   *
+   * @param id
+   *          the unique identifier of the job.
+   * @param ownerKey
+   *          the key of the user who submitted the job.
+   * @param nodeId
+   *          the id of the cluster node that runs the job or null if Jira is not clustered.
+   * @param file
+   *          the file the job exports into.
+   * @param statementControl
+   *          the control of the statements of the export query.
+   */
+  public WorklogExportJob(final String id, final String ownerKey, final String nodeId,
+      final Path file, final WorklogStatementControl statementControl) {
+    this.id = id;
+    this.ownerKey = ownerKey;
+    this.nodeId = nodeId;
+    this.file = file;
+    this.statementControl = statementControl;
+    created = System.currentTimeMillis();
+  }
+
+  /**
+   * Cancels the job if it is queued or running. The running statement of the job is cancelled.
+   *
+   * @return true if the job was cancelled, false if it was already finished.
+   */
+  public boolean cancel() {
+    synchronized (this) {
+      if (isFinished()) {
+        return false;
+      }
+      finish(WorklogExportStatus.CANCELLED);
+    }
+    statementControl.cancel();
+    return true;
+  }
+
+  /**
+   * Completes the running job.
+   *
+   * @param fileSize
+   *          the size of the exported file in bytes.
+   * @return true if the job was completed, false if it was cancelled in the meantime.
+   */
+  public synchronized boolean complete(final long fileSize) {
+    if (status != WorklogExportStatus.RUNNING) {
+      return false;
+    }
+    size = fileSize;
+    finish(WorklogExportStatus.COMPLETED);
+    return true;
+  }
+
+  /**
+   * Fails the running job.
+   *
+   * @param errorMessage
+   *          the message of the failure.
+   */
+  public synchronized void fail(final String errorMessage) {
+    if (status == WorklogExportStatus.RUNNING) {
+      message = errorMessage;
+      finish(WorklogExportStatus.FAILED);
+    }
+  }
+
+  private void finish(final WorklogExportStatus finalStatus) {
+    status = finalStatus;
+    finished = System.currentTimeMillis();
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * The time the job finished.
+   *
+   * @return the time in milliseconds or zero if the job is not finished.
+   */
+  public synchronized long getFinished() {
+    return finished;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public String getOwnerKey() {
+    return ownerKey;
+  }
+
+  /**
+   * The size of the exported file.
+   *
+   * @return the size in bytes or zero if the job is not completed.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized WorklogExportStatus getStatus() {
+    return status;
+  }
+
+  public synchronized boolean isFinished() {
+    return (status != WorklogExportStatus.QUEUED) && (status != WorklogExportStatus.RUNNING);
+  }
+
+  /**
+   * Starts the queued job.
+   *
+   * @return true if the job was started, false if it was cancelled before it started.
+   */
+  public synchronized boolean start() {
+    if (status != WorklogExportStatus.QUEUED) {
+      return false;
+    }
+    status = WorklogExportStatus.RUNNING;
+    return true;
+  }
+
+  /**
+   * The state of the job as returned to the clients.
+   *
+   * @return the id, the status, the creation and the finish date, the size of the file, the
+   *         message of the failure and the cluster node of the job.
+   * @throws JSONException
+   *           if the JSON object can not be built.
+   */
+  public synchronized JSONObject toJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("id", id);
+    json.put("status", status.name());
+    json.put("created", created);
+    if (finished != 0) {
+      json.put("finished", finished);
+    }
+    if (status == WorklogExportStatus.COMPLETED) {
+      json.put("size", size);
+    }
+    if (message != null) {
+      json.put("message", message);
+    }
+    if (nodeId != null) {
+      json.put("node", nodeId);
+    }
+    return json;
+  }
+}
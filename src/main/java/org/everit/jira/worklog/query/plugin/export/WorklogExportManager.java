@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.jira.cluster.ClusterManager;
+import com.atlassian.jira.config.util.JiraHome;
+
+/**
+ * Runs the background worklog exports on a bounded pool of threads. The result of a job is
+ * streamed into a gzip compressed file in the local home of JIRA, so a large export does not
+ * hold an HTTP connection and does not have to fit into the heap. The number of the unfinished
+ * jobs of a user is limited. The jobs are kept in the memory of the node that accepted them, the
+ * finished jobs and their files are deleted after the retention period and at the restart of the
+ * plugin.
+ */
+public class WorklogExportManager implements InitializingBean, DisposableBean {
+
+  /**
+   * The period of the deletion of the expired jobs in minutes.
+   */
+  private static final long CLEANUP_PERIOD_MINUTES = 15;
+
+  /**
+   * The path of the export directory relative to the local home of JIRA.
+   */
+  private static final String EXPORT_PATH = "caches/everit-jwqp/exports";
+
+  /**
+   * The extension of the exported files.
+   */
+  private static final String FILE_EXTENSION = ".json.gz";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogExportManager.class);
+
+  /**
+   * The extension of the files under export.
+   */
+  private static final String PART_EXTENSION = ".part";
+
+  private static void deleteQuietly(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to delete the worklog export file " + file, e);
+    }
+  }
+
+  private static Path partFile(final Path file) {
+    return file.resolveSibling(file.getFileName() + PART_EXTENSION);
+  }
+
+  private ScheduledExecutorService cleanupExecutor;
+
+  private final ClusterManager clusterManager;
+
+  private Path exportDirectory;
+
+  private ThreadPoolExecutor exportExecutor;
+
+  private final JiraHome jiraHome;
+
+  private final Map<String, WorklogExportJob> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * The id of this cluster node or null if Jira is not clustered.
+   */
+  private String nodeId;
+
+  /**
+   * Simple constructor.
+   *
+   * @param jiraHome
+   *          the home directories of JIRA, the exports are written to the local home.
+   * @param clusterManager
+   *          the cluster manager of JIRA, used to identify the node of the jobs.
+   */
+  public WorklogExportManager(final JiraHome jiraHome, final ClusterManager clusterManager) {
+    this.jiraHome = jiraHome;
+    this.clusterManager = clusterManager;
+  }
+
+  @Override
+  public void afterPropertiesSet() throws IOException {
+    nodeId = clusterManager.isClustered() ? clusterManager.getNodeId() : null;
+    exportDirectory = jiraHome.getLocalHome().toPath().resolve(EXPORT_PATH);
+    Files.createDirectories(exportDirectory);
+    // The jobs of the previous run are lost, so their files can not be downloaded anymore.
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(exportDirectory)) {
+      for (Path file : files) {
+        deleteQuietly(file);
+      }
+    }
+    int threads = WorklogQueryConfiguration.getExportThreads();
+    exportExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, WorklogQueryConfiguration.getExportQueueSize())),
+        runnable -> {
+          Thread thread = new Thread(runnable, "jwqp-export");
+          thread.setDaemon(true);
+          return thread;
+        });
+    cleanupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwqp-export-cleanup");
+      thread.setDaemon(true);
+      return thread;
+    });
+    cleanupExecutor.scheduleWithFixedDelay(this::deleteExpiredJobs, CLEANUP_PERIOD_MINUTES,
+        CLEANUP_PERIOD_MINUTES, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Cancels the job if it is still running and deletes it with its file.
+   *
+   * @param id
+   *          the identifier of the job.
+   * @param ownerKey
+   *          the key of the user who asks for the deletion.
+   * @return true if the job was deleted, false if the user has no such job.
+   */
+  public boolean delete(final String id, final String ownerKey) {
+    WorklogExportJob job = getJob(id, ownerKey);
+    if ((job == null) || !jobs.remove(id, job)) {
+      return false;
+    }
+    job.cancel();
+    deleteQuietly(job.getFile());
+    return true;
+  }
+
+  private void deleteExpiredJobs() {
+    long expiry = System.currentTimeMillis()
+        - TimeUnit.HOURS.toMillis(WorklogQueryConfiguration.getExportRetentionHours());
+    Iterator<WorklogExportJob> iterator = jobs.values().iterator();
+    while (iterator.hasNext()) {
+      WorklogExportJob job = iterator.next();
+      if (job.isFinished() && (job.getFinished() < expiry)) {
+        iterator.remove();
+        deleteQuietly(job.getFile());
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (cleanupExecutor != null) {
+      cleanupExecutor.shutdownNow();
+    }
+    if (exportExecutor != null) {
+      exportExecutor.shutdownNow();
+    }
+    for (WorklogExportJob job : jobs.values()) {
+      job.cancel();
+    }
+  }
+
+  private int countUnfinishedJobs(final String ownerKey) {
+    int count = 0;
+    for (WorklogExportJob job : jobs.values()) {
+      if (Objects.equals(job.getOwnerKey(), ownerKey) && !job.isFinished()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the job of the user.
+   *
+   * @param id
+   *          the identifier of the job.
+   * @param ownerKey
+   *          the key of the user who asks for the job.
+   * @return the job or null if the user has no such job. The jobs of the other users are not
+   *         returned.
+   */
+  public WorklogExportJob getJob(final String id, final String ownerKey) {
+    WorklogExportJob job = jobs.get(id);
+    if ((job == null) || !Objects.equals(job.getOwnerKey(), ownerKey)) {
+      return null;
+    }
+    return job;
+  }
+
+  private void run(final WorklogExportJob job, final StreamingOutput output) {
+    if (!job.start()) {
+      return;
+    }
+    Path file = job.getFile();
+    Path partFile = partFile(file);
+    try {
+      try (OutputStream outputStream = new GZIPOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(partFile)))) {
+        output.write(outputStream);
+      }
+      Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+      if (!job.complete(Files.size(file))) {
+        deleteQuietly(file);
+      }
+    } catch (IOException | RuntimeException e) {
+      deleteQuietly(partFile);
+      if (!job.isFinished()) {
+        LOGGER.error("Failed to export the worklogs of the job " + job.getId(), e);
+        job.fail(WorklogStatementControl.isTimeout(e) ? "The worklog query timed out."
+            : String.valueOf(e.getMessage()));
+      }
+    }
+  }
+
+  /**
+   * The id of the cluster node that runs the jobs of this manager.
+   *
+   * @return the id of the node or null if Jira is not clustered.
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Submits an export job.
+   *
+   * @param ownerKey
+   *          the key of the user who submits the job. Only this user can access the job.
+   * @param statementControl
+   *          the control of the statements of the export query, used to cancel the job.
+   * @param output
+   *          the output that writes the exported worklogs.
+   * @return the queued job or null if the queue of the export jobs is full or the user has too
+   *         many queued and running jobs.
+   */
+  public WorklogExportJob submit(final String ownerKey,
+      final WorklogStatementControl statementControl, final StreamingOutput output) {
+    String id = UUID.randomUUID().toString();
+    WorklogExportJob job = new WorklogExportJob(id, ownerKey, nodeId,
+        exportDirectory.resolve(id + FILE_EXTENSION), statementControl);
+    synchronized (this) {
+      if (countUnfinishedJobs(ownerKey) >= WorklogQueryConfiguration.getExportUserLimit()) {
+        return null;
+      }
+      jobs.put(id, job);
+    }
+    try {
+      exportExecutor.execute(() -> run(job, output));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(id);
+      return null;
+    }
+    return job;
+  }
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.querydsl.support.ri.QuerydslSupportImpl;
+import org.everit.jira.worklog.query.plugin.Watermark;
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+import org.everit.jira.worklog.query.plugin.WorklogValidator;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+import org.everit.jira.worklog.query.plugin.query.CountWorklogsQuery;
+import org.everit.jira.worklog.query.plugin.query.FindIssueWorklogChangesQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogColumnsQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogsChangedSinceQuery;
+import org.everit.jira.worklog.query.plugin.tombstone.WorklogTombstone;
+import org.everit.jira.worklog.query.plugin.tombstone.WorklogTombstoneStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.jira.config.util.JiraHome;
+
+/**
+ * In-heap columnar copy of the worklog table that answers the aggregate queries without the
+ * database. It is built in the background at the plugin start if it is enabled, kept current by
+ * the worklog changes of every node of the cluster and rebuilt periodically. The changes are
+ * queued and applied by a background thread, so the event threads are not blocked by the index.
+ * The affected cached results are invalidated again after the change is applied.
+ *
+ * <p>
+ * Every build and the plugin stop writes a snapshot file to the local home. At the next start the
+ * snapshot is loaded and caught up with the worklogs changed and deleted since its watermark, so
+ * the start does not read the whole worklog table.
+ */
+public class WorklogColumnarIndex implements InitializingBean, DisposableBean {
+
+  /**
+   * The maximum time to wait for the queued changes at the plugin stop in seconds.
+   */
+  private static final long APPLY_TERMINATION_SECONDS = 10;
+
+  /**
+   * The delay of the first build and of the retry of a failed first build in minutes.
+   */
+  private static final long BUILD_DELAY_MINUTES = 1;
+
+  /**
+   * The logger used to log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogColumnarIndex.class);
+
+  /**
+   * The path of the snapshot file relative to the local home of JIRA.
+   */
+  private static final String SNAPSHOT_PATH = "caches/everit-jwqp/worklog-index.snapshot";
+
+  private ExecutorService applyExecutor;
+
+  /**
+   * True if the application of the queued changes is submitted but not started yet.
+   */
+  private final AtomicBoolean applyScheduled = new AtomicBoolean();
+
+  private ScheduledExecutorService buildExecutor;
+
+  /**
+   * The snapshot file or null if the snapshots are disabled.
+   */
+  private WorklogIndexFile indexFile;
+
+  private final JiraHome jiraHome;
+
+  /**
+   * The changes received during a build, replayed on the built snapshot. Null if no build is
+   * running.
+   */
+  private List<WorklogChange> pendingChanges;
+
+  private QuerydslSupport querydslSupport;
+
+  /**
+   * The changes waiting for the application.
+   */
+  private final Queue<WorklogChange> queuedChanges = new ConcurrentLinkedQueue<>();
+
+  private volatile WorklogIndexSnapshot snapshot;
+
+  private final WorklogResultCache worklogResultCache;
+
+  private final WorklogTombstoneStore worklogTombstoneStore;
+
+  /**
+   * Simple constructor.
+   *
+   * @param jiraHome
+   *          the home directories of JIRA, the snapshot is written to the local home.
+   * @param worklogTombstoneStore
+   *          the store of the deleted worklogs, used to catch up the snapshot.
+   * @param worklogResultCache
+   *          the cache of the results, invalidated after the changes are applied.
+   */
+  public WorklogColumnarIndex(final JiraHome jiraHome,
+      final WorklogTombstoneStore worklogTombstoneStore,
+      final WorklogResultCache worklogResultCache) {
+    this.jiraHome = jiraHome;
+    this.worklogTombstoneStore = worklogTombstoneStore;
+    this.worklogResultCache = worklogResultCache;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    if (!WorklogQueryConfiguration.isIndexEnabled()) {
+      return;
+    }
+    querydslSupport = new QuerydslSupportImpl();
+    if (WorklogQueryConfiguration.isIndexSnapshotEnabled()) {
+      indexFile = new WorklogIndexFile(jiraHome.getLocalHome().toPath().resolve(SNAPSHOT_PATH));
+    }
+    buildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwqp-index-build");
+      thread.setDaemon(true);
+      return thread;
+    });
+    applyExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwqp-index-apply");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // The first run is delayed, because Active Objects is not available during plugin startup.
+    buildExecutor.schedule(this::start, BUILD_DELAY_MINUTES, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Queues the change of a worklog for the application. The change is ignored if the index is
+   * not built and not under build when it is applied.
+   *
+   * @param change
+   *          the change of the worklog.
+   */
+  public void apply(final WorklogChange change) {
+    if (applyExecutor == null) {
+      return;
+    }
+    queuedChanges.add(change);
+    if (applyScheduled.compareAndSet(false, true)) {
+      try {
+        applyExecutor.execute(this::applyQueuedChanges);
+      } catch (RejectedExecutionException e) {
+        // The index is stopped, the changes are read by the catch-up of the snapshot.
+        queuedChanges.clear();
+      }
+    }
+  }
+
+  /**
+   * Applies every queued change on a single new snapshot. The created or updated worklog is read
+   * from the database if the author of the change is unknown.
+   */
+  private void applyQueuedChanges() {
+    applyScheduled.set(false);
+    List<WorklogChange> changes = new ArrayList<>();
+    try {
+      for (WorklogChange change = queuedChanges.poll(); change != null;
+          change = queuedChanges.poll()) {
+        if ((change.getAuthorKey() == null)
+            && (change.getType() != WorklogChange.Type.DELETED)) {
+          changes.add(findChange(change));
+        } else {
+          changes.add(change);
+        }
+      }
+      synchronized (this) {
+        if (pendingChanges != null) {
+          pendingChanges.addAll(changes);
+        }
+        WorklogIndexSnapshot changedSnapshot = snapshot;
+        if (changedSnapshot != null) {
+          for (WorklogChange change : changes) {
+            changedSnapshot = changedSnapshot.apply(change);
+          }
+          snapshot = changedSnapshot;
+        }
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to apply the worklog changes on the columnar index, rebuilding it.", e);
+      rebuild();
+    }
+    for (WorklogChange change : changes) {
+      worklogResultCache.invalidate(change);
+    }
+  }
+
+  private void build() {
+    synchronized (this) {
+      pendingChanges = new ArrayList<>();
+    }
+    long startTime = System.currentTimeMillis();
+    Watermark watermark = createWatermark(startTime);
+    WorklogColumns columns;
+    try {
+      columns = querydslSupport.execute(new FindWorklogColumnsQuery());
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to build the columnar worklog index.", e);
+      synchronized (this) {
+        pendingChanges = null;
+        if (snapshot == null) {
+          buildExecutor.schedule(this::build, BUILD_DELAY_MINUTES, TimeUnit.MINUTES);
+        }
+      }
+      return;
+    }
+    synchronized (this) {
+      WorklogIndexSnapshot builtSnapshot = new WorklogIndexSnapshot(columns, WorklogRowSet.EMPTY,
+          Collections.<WorklogChange> emptyList());
+      for (WorklogChange change : pendingChanges) {
+        builtSnapshot = builtSnapshot.apply(change);
+      }
+      pendingChanges = null;
+      snapshot = builtSnapshot;
+    }
+    LOGGER.info("Built the columnar worklog index of {} worklogs in {} ms.", columns.size(),
+        System.currentTimeMillis() - startTime);
+    writeSnapshot(columns, watermark);
+  }
+
+  /**
+   * Creates the watermark of a snapshot. The watermark lags behind the time of the snapshot, so
+   * the worklogs of the in-flight transactions are read again during the catch-up.
+   */
+  private Watermark createWatermark(final long time) {
+    return new Watermark(time - WorklogQueryConfiguration.getChangesSafetyLagMillis(), 0L);
+  }
+
+  /**
+   * Returns the current snapshot of the index.
+   *
+   * @return the snapshot.
+   * @throws IllegalStateException
+   *           if the index is not available, for example because it was stopped after the
+   *           availability check of the query.
+   */
+  private WorklogIndexSnapshot currentSnapshot() {
+    WorklogIndexSnapshot currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      throw new IllegalStateException("The columnar worklog index is not available.");
+    }
+    return currentSnapshot;
+  }
+
+  @Override
+  public void destroy() {
+    if (buildExecutor != null) {
+      buildExecutor.shutdownNow();
+    }
+    if (applyExecutor != null) {
+      applyExecutor.shutdown();
+      try {
+        if (!applyExecutor.awaitTermination(APPLY_TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+          LOGGER.warn("The queued worklog changes of the columnar index are not applied.");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    WorklogIndexSnapshot currentSnapshot;
+    synchronized (this) {
+      currentSnapshot = snapshot;
+      snapshot = null;
+    }
+    if (currentSnapshot != null) {
+      writeSnapshot(currentSnapshot.merge().getColumns(),
+          createWatermark(System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Reads the current values of a changed worklog.
+   *
+   * @param change
+   *          the change of the worklog.
+   * @return the change with the values of the database or a deletion if the worklog does not
+   *         exist anymore.
+   */
+  private WorklogChange findChange(final WorklogChange change) {
+    for (WorklogChange issueChange : querydslSupport
+        .execute(new FindIssueWorklogChangesQuery(change.getIssueId(), change.getType()))) {
+      if (issueChange.getWorklogId() == change.getWorklogId()) {
+        return issueChange;
+      }
+    }
+    return new WorklogChange(WorklogChange.Type.DELETED, change.getWorklogId(),
+        change.getIssueId(), change.getProjectId(), null, change.getStartDate(),
+        change.getUpdated(), change.getTimeSpent());
+  }
+
+  /**
+   * Check that the index can answer the queries.
+   *
+   * @return true if the index is enabled and built.
+   */
+  public boolean isAvailable() {
+    return snapshot != null;
+  }
+
+  /**
+   * Loads the snapshot file and catches it up with the changes since its watermark.
+   *
+   * @return true if the snapshot was loaded.
+   */
+  private boolean load() {
+    if (indexFile == null) {
+      return false;
+    }
+    synchronized (this) {
+      pendingChanges = new ArrayList<>();
+    }
+    long startTime = System.currentTimeMillis();
+    try {
+      WorklogIndexFile.Content content = indexFile.read();
+      if (content == null) {
+        return false;
+      }
+      long watermarkTime = content.getWatermark().getUpdated();
+      if (watermarkTime < (startTime - TimeUnit.DAYS
+          .toMillis(WorklogQueryConfiguration.getTombstoneRetentionDays()))) {
+        LOGGER.info("The columnar worklog index snapshot is older than the tombstones.");
+        return false;
+      }
+      List<WorklogChange> changes = new ArrayList<>(
+          querydslSupport.execute(new FindWorklogsChangedSinceQuery(content.getWatermark())));
+      for (WorklogTombstone tombstone : worklogTombstoneStore
+          .findAllDeletedSince(watermarkTime)) {
+        changes.add(new WorklogChange(WorklogChange.Type.DELETED, tombstone.getWorklogId(),
+            tombstone.getIssueId(), tombstone.getProjectId(), tombstone.getAuthorKey(), 0L,
+            tombstone.getDeleted(), 0L));
+      }
+      WorklogIndexSnapshot loadedSnapshot = new WorklogIndexSnapshot(content.getColumns(),
+          WorklogRowSet.EMPTY, Collections.<WorklogChange> emptyList()).applyAll(changes);
+      // The deletions are missed while the plugin is disabled, those snapshots are dropped.
+      long worklogCount = querydslSupport.execute(new CountWorklogsQuery());
+      if (worklogCount != loadedSnapshot.size()) {
+        LOGGER.info("The columnar worklog index snapshot contains {} worklogs instead of {}.",
+            loadedSnapshot.size(), worklogCount);
+        return false;
+      }
+      synchronized (this) {
+        for (WorklogChange change : pendingChanges) {
+          loadedSnapshot = loadedSnapshot.apply(change);
+        }
+        snapshot = loadedSnapshot;
+      }
+      LOGGER.info("Loaded the columnar worklog index snapshot and {} changes in {} ms.",
+          changes.size(), System.currentTimeMillis() - startTime);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error("Failed to load the columnar worklog index snapshot.", e);
+      return false;
+    } finally {
+      synchronized (this) {
+        pendingChanges = null;
+      }
+    }
+  }
+
+  /**
+   * Start the asynchronous rebuild of the index. The current index answers the queries until the
+   * rebuild finishes.
+   *
+   * @return false if the index is not enabled.
+   */
+  public boolean rebuild() {
+    if (buildExecutor == null) {
+      return false;
+    }
+    buildExecutor.execute(this::build);
+    return true;
+  }
+
+  /**
+   * The number of the worklogs in the index.
+   *
+   * @return the number of the worklogs or zero if the index is not available.
+   */
+  public int size() {
+    WorklogIndexSnapshot currentSnapshot = snapshot;
+    return currentSnapshot == null ? 0 : currentSnapshot.size();
+  }
+
+  /**
+   * Loads the snapshot or builds the index, and schedules the periodic rebuild.
+   */
+  private void start() {
+    boolean loaded = load();
+    long rebuildMinutes =
+        TimeUnit.HOURS.toMinutes(WorklogQueryConfiguration.getIndexRebuildHours());
+    buildExecutor.scheduleWithFixedDelay(this::build, loaded ? rebuildMinutes : 0,
+        rebuildMinutes, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Summarize the worklogs of the given authors on the given issues.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param issueIds
+   *          the ids of the issues.
+   * @return the number and the summarized time spent of the worklogs.
+   */
+  public WorklogSummary summarizeByIssues(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> issueIds) {
+    long[] totals = new long[2];
+    currentSnapshot().aggregate(startDate, endDate, userKeys, null, issueIds, false,
+        (issueId, timeSpent, updatedDate) -> {
+          totals[0]++;
+          totals[1] += timeSpent;
+        });
+    return new WorklogSummary(totals[0], totals[1]);
+  }
+
+  /**
+   * Summarize the worklogs of the given authors on the given projects.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param projectIds
+   *          the ids of the projects.
+   * @param updated
+   *          true if the interval is applied on the updated date, false if it is applied on the
+   *          start date.
+   * @return the number and the summarized time spent of the worklogs.
+   */
+  public WorklogSummary summarizeByProjects(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> projectIds,
+      final boolean updated) {
+    long[] totals = new long[2];
+    currentSnapshot().aggregate(startDate, endDate, userKeys, projectIds, null, updated,
+        (issueId, timeSpent, updatedDate) -> {
+          totals[0]++;
+          totals[1] += timeSpent;
+        });
+    return new WorklogSummary(totals[0], totals[1]);
+  }
+
+  /**
+   * Summarize the time spent of the worklogs of the given authors per issue.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param issueIds
+   *          the ids of the issues.
+   * @return the time spent in seconds by issue id. The issues without worklogs are missing.
+   */
+  public Map<Long, Long> sumTimeSpentByIssues(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> issueIds) {
+    Map<Long, Long> timeSpentByIssue = new HashMap<>();
+    currentSnapshot().aggregate(startDate, endDate, userKeys, null, issueIds, false,
+        (issueId, timeSpent, updatedDate) -> timeSpentByIssue.merge(issueId, timeSpent,
+            Long::sum));
+    return timeSpentByIssue;
+  }
+
+  /**
+   * Count the worklogs of the given authors on the given projects and find their latest update.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param projectIds
+   *          the ids of the projects.
+   * @param updated
+   *          true if the interval is applied on the updated date, false if it is applied on the
+   *          start date.
+   * @return the validator of the worklogs.
+   */
+  public WorklogValidator validate(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> projectIds,
+      final boolean updated) {
+    long[] totals = { 0, Long.MIN_VALUE };
+    currentSnapshot().aggregate(startDate, endDate, userKeys, projectIds, null, updated,
+        (issueId, timeSpent, updatedDate) -> {
+          totals[0]++;
+          totals[1] = Math.max(totals[1], updatedDate);
+        });
+    return new WorklogValidator(totals[0],
+        totals[0] == 0 ? null : new Date(totals[1]));
+  }
+
+  private void writeSnapshot(final WorklogColumns columns, final Watermark watermark) {
+    if (indexFile == null) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    try {
+      indexFile.write(columns, watermark);
+      LOGGER.info("Wrote the columnar worklog index snapshot in {} ms.",
+          System.currentTimeMillis() - startTime);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.error("Failed to write the columnar worklog index snapshot.", e);
+    }
+  }
+
+}
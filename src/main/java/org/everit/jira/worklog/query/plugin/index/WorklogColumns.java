@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable columnar copy of worklogs. Every worklog attribute is stored in a separate primitive
+ * array and the rows are sorted by the start date, so a start date interval is a continuous range
+ * of rows that can be found by binary search. The rows of the worklogs are found by id through an
+ * open addressing hash table. A row takes about 64 bytes.
+ */
+public final class WorklogColumns {
+
+  /**
+   * Builds the columns from rows added in start date order.
+   */
+  public static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> authorIndexes = new HashMap<>();
+
+    private String[] authorKeys = new String[INITIAL_CAPACITY];
+
+    private int[] authors;
+
+    private long[] ids;
+
+    private long[] issueIds;
+
+    private long[] projectIds;
+
+    private int size;
+
+    private long[] startDates;
+
+    private long[] timeSpents;
+
+    private long[] updatedDates;
+
+    /**
+     * Constructor of a builder with the default capacity.
+     */
+    public Builder() {
+      this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor of a builder that grows only after the given number of rows.
+     *
+     * @param capacity
+     *          the expected number of rows.
+     */
+    public Builder(final int capacity) {
+      int initialCapacity = Math.max(capacity, 1);
+      authors = new int[initialCapacity];
+      ids = new long[initialCapacity];
+      issueIds = new long[initialCapacity];
+      projectIds = new long[initialCapacity];
+      startDates = new long[initialCapacity];
+      timeSpents = new long[initialCapacity];
+      updatedDates = new long[initialCapacity];
+    }
+
+    /**
+     * Adds a row. The rows have to be added in ascending start date order.
+     *
+     * @param id
+     *          the id of the worklog.
+     * @param issueId
+     *          the id of the issue of the worklog.
+     * @param projectId
+     *          the id of the project of the issue.
+     * @param authorKey
+     *          the key of the author.
+     * @param startDate
+     *          the start date in milliseconds.
+     * @param updatedDate
+     *          the updated date in milliseconds.
+     * @param timeSpent
+     *          the time spent in seconds.
+     * @return this builder.
+     */
+    public Builder add(final long id, final long issueId, final long projectId,
+        final String authorKey, final long startDate, final long updatedDate,
+        final long timeSpent) {
+      if ((size > 0) && (startDates[size - 1] > startDate)) {
+        throw new IllegalStateException("The rows have to be added in start date order.");
+      }
+      if (size == ids.length) {
+        int capacity = size * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        issueIds = Arrays.copyOf(issueIds, capacity);
+        projectIds = Arrays.copyOf(projectIds, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        startDates = Arrays.copyOf(startDates, capacity);
+        updatedDates = Arrays.copyOf(updatedDates, capacity);
+        timeSpents = Arrays.copyOf(timeSpents, capacity);
+      }
+      ids[size] = id;
+      issueIds[size] = issueId;
+      projectIds[size] = projectId;
+      authors[size] = authorIndex(authorKey);
+      startDates[size] = startDate;
+      updatedDates[size] = updatedDate;
+      timeSpents[size] = timeSpent;
+      size++;
+      return this;
+    }
+
+    private int authorIndex(final String authorKey) {
+      Integer index = authorIndexes.get(authorKey);
+      if (index == null) {
+        index = authorIndexes.size();
+        authorIndexes.put(authorKey, index);
+        if (index == authorKeys.length) {
+          authorKeys = Arrays.copyOf(authorKeys, index * 2);
+        }
+        authorKeys[index] = authorKey;
+      }
+      return index;
+    }
+
+    /**
+     * Builds the columns. The arrays are trimmed to the number of rows, the arrays that are full
+     * are shared with the columns.
+     *
+     * @return the columns.
+     */
+    public WorklogColumns build() {
+      return new WorklogColumns(this);
+    }
+
+    public int size() {
+      return size;
+    }
+  }
+
+  /**
+   * The empty columns.
+   */
+  public static final WorklogColumns EMPTY = new Builder().build();
+
+  /**
+   * The multiplier of the Fibonacci hashing of the ids.
+   */
+  private static final long ID_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /**
+   * Creates the hash table of the rows by id. The table contains the row index plus one, zero
+   * marks the empty slots. The table is at most half full.
+   */
+  private static int[] createRowTable(final long[] ids, final int size) {
+    int[] table = new int[Integer.highestOneBit((Math.max(size, 1) * 2) - 1) << 1];
+    int mask = table.length - 1;
+    for (int row = 0; row < size; row++) {
+      int slot = hashId(ids[row]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = row + 1;
+    }
+    return table;
+  }
+
+  private static int hashId(final long id) {
+    return (int) ((id * ID_HASH_MULTIPLIER) >>> Integer.SIZE);
+  }
+
+  private static int[] trim(final int[] array, final int size) {
+    return array.length == size ? array : Arrays.copyOf(array, size);
+  }
+
+  private static long[] trim(final long[] array, final int size) {
+    return array.length == size ? array : Arrays.copyOf(array, size);
+  }
+
+  private final Map<String, Integer> authorIndexes;
+
+  private final String[] authorKeys;
+
+  private final int[] authors;
+
+  private final long[] ids;
+
+  private final long[] issueIds;
+
+  private final long[] projectIds;
+
+  /**
+   * The rows by id, see {@link #createRowTable(long[], int)}.
+   */
+  private final int[] rowTable;
+
+  private final int size;
+
+  private final long[] startDates;
+
+  private final long[] timeSpents;
+
+  private final long[] updatedDates;
+
+  /**
+   * Constructor with the columns.
+   *
+   * @param longColumns
+   *          the ids, the issue ids, the project ids, the start dates, the updated dates and the
+   *          time spents, in this order, as returned by {@link #getLongColumns()}.
+   * @param authors
+   *          the author indexes.
+   * @param authorKeys
+   *          the author keys by index.
+   */
+  WorklogColumns(final long[][] longColumns, final int[] authors, final String[] authorKeys) {
+    size = authors.length;
+    ids = longColumns[0];
+    issueIds = longColumns[1];
+    projectIds = longColumns[2];
+    startDates = longColumns[3];
+    updatedDates = longColumns[4];
+    timeSpents = longColumns[5];
+    this.authors = authors;
+    this.authorKeys = authorKeys;
+    authorIndexes = new HashMap<>();
+    for (int i = 0; i < authorKeys.length; i++) {
+      authorIndexes.put(authorKeys[i], i);
+    }
+    rowTable = createRowTable(ids, size);
+  }
+
+  private WorklogColumns(final Builder builder) {
+    size = builder.size;
+    // The builder grows the full arrays before it writes them, so they can be shared.
+    ids = trim(builder.ids, size);
+    issueIds = trim(builder.issueIds, size);
+    projectIds = trim(builder.projectIds, size);
+    authors = trim(builder.authors, size);
+    startDates = trim(builder.startDates, size);
+    updatedDates = trim(builder.updatedDates, size);
+    timeSpents = trim(builder.timeSpents, size);
+    authorKeys = Arrays.copyOf(builder.authorKeys, builder.authorIndexes.size());
+    authorIndexes = new HashMap<>(builder.authorIndexes);
+    rowTable = createRowTable(ids, size);
+  }
+
+  /**
+   * Creates the author filter of the given user keys.
+   *
+   * @param userKeys
+   *          the keys of the accepted authors.
+   * @return an array that contains true at the index of the accepted authors.
+   */
+  boolean[] authorFilter(final Collection<String> userKeys) {
+    boolean[] filter = new boolean[authorKeys.length];
+    for (String userKey : userKeys) {
+      Integer index = authorIndexes.get(userKey);
+      if (index != null) {
+        filter[index] = true;
+      }
+    }
+    return filter;
+  }
+
+  int getAuthor(final int row) {
+    return authors[row];
+  }
+
+  String getAuthorKey(final int row) {
+    return authorKeys[authors[row]];
+  }
+
+  String[] getAuthorKeys() {
+    return authorKeys.clone();
+  }
+
+  int[] getAuthors() {
+    return authors;
+  }
+
+  long getId(final int row) {
+    return ids[row];
+  }
+
+  long getIssueId(final int row) {
+    return issueIds[row];
+  }
+
+  /**
+   * Returns the long columns for serialization. The arrays must not be modified.
+   *
+   * @return the ids, the issue ids, the project ids, the start dates, the updated dates and the
+   *         time spents.
+   */
+  long[][] getLongColumns() {
+    return new long[][] { ids, issueIds, projectIds, startDates, updatedDates, timeSpents };
+  }
+
+  long getProjectId(final int row) {
+    return projectIds[row];
+  }
+
+  long getStartDate(final int row) {
+    return startDates[row];
+  }
+
+  long getTimeSpent(final int row) {
+    return timeSpents[row];
+  }
+
+  long getUpdatedDate(final int row) {
+    return updatedDates[row];
+  }
+
+  /**
+   * Finds the row of a worklog.
+   *
+   * @param id
+   *          the id of the worklog.
+   * @return the index of the row or -1 if the worklog is not found.
+   */
+  int indexOf(final long id) {
+    int mask = rowTable.length - 1;
+    int slot = hashId(id) & mask;
+    while (rowTable[slot] != 0) {
+      int row = rowTable[slot] - 1;
+      if (ids[row] == id) {
+        return row;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the first row whose start date is not before the given time.
+   *
+   * @param time
+   *          the time in milliseconds.
+   * @return the index of the row or the size if every row starts before the time.
+   */
+  int lowerBound(final long time) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (startDates[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  public int size() {
+    return size;
+  }
+
+}
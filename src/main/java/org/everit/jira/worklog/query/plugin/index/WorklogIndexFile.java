@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.everit.jira.worklog.query.plugin.Watermark;
+
+/**
+ * The on-disk snapshot of the {@link WorklogColumns}. The file contains a header with the
+ * watermark of the snapshot and the author keys, followed by the columns as raw little endian
+ * arrays. The columns are memory mapped one by one on read, so a file larger than 2 GB can be read
+ * without copying it through the heap twice.
+ */
+final class WorklogIndexFile {
+
+  /**
+   * The content of a snapshot file.
+   */
+  static final class Content {
+
+    private final WorklogColumns columns;
+
+    private final Watermark watermark;
+
+    Content(final WorklogColumns columns, final Watermark watermark) {
+      this.columns = columns;
+      this.watermark = watermark;
+    }
+
+    WorklogColumns getColumns() {
+      return columns;
+    }
+
+    Watermark getWatermark() {
+      return watermark;
+    }
+  }
+
+  /**
+   * The size of the write buffer in bytes.
+   */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private static final int LONG_COLUMN_COUNT = 6;
+
+  /**
+   * The first bytes of the file ("JWQPIDX" and the format version).
+   */
+  private static final long MAGIC = 0x4A5751504944_5801L;
+
+  private final Path path;
+
+  /**
+   * Simple constructor.
+   *
+   * @param path
+   *          the path of the snapshot file.
+   */
+  WorklogIndexFile(final Path path) {
+    this.path = path;
+  }
+
+  private void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private long[] mapLongColumn(final FileChannel channel, final long position, final int size)
+      throws IOException {
+    long[] column = new long[size];
+    MappedByteBuffer mapped =
+        channel.map(FileChannel.MapMode.READ_ONLY, position, (long) size * Long.BYTES);
+    mapped.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(column);
+    return column;
+  }
+
+  /**
+   * Reads the snapshot file.
+   *
+   * @return the content of the file or null if the file does not exist or it is not a complete
+   *         snapshot of the current format.
+   * @throws IOException
+   *           if the file cannot be read.
+   */
+  Content read() throws IOException {
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          Math.min(fileSize, Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+      if ((fileSize < (Long.BYTES * 3 + Integer.BYTES * 2)) || (header.getLong() != MAGIC)) {
+        return null;
+      }
+      Watermark watermark = new Watermark(header.getLong(), header.getLong());
+      int size = header.getInt();
+      String[] authorKeys;
+      try {
+        authorKeys = new String[header.getInt()];
+        for (int i = 0; i < authorKeys.length; i++) {
+          byte[] authorKey = new byte[header.getInt()];
+          header.get(authorKey);
+          authorKeys[i] = new String(authorKey, StandardCharsets.UTF_8);
+        }
+      } catch (BufferUnderflowException | NegativeArraySizeException e) {
+        return null;
+      }
+      long position = header.position();
+      long expectedSize = position + ((long) size * Long.BYTES * LONG_COLUMN_COUNT)
+          + ((long) size * Integer.BYTES);
+      if (fileSize != expectedSize) {
+        return null;
+      }
+      long[][] longColumns = new long[LONG_COLUMN_COUNT][];
+      for (int i = 0; i < LONG_COLUMN_COUNT; i++) {
+        longColumns[i] = mapLongColumn(channel, position, size);
+        position += (long) size * Long.BYTES;
+      }
+      int[] authors = new int[size];
+      channel.map(FileChannel.MapMode.READ_ONLY, position, (long) size * Integer.BYTES)
+          .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(authors);
+      WorklogColumns columns = new WorklogColumns(longColumns, authors, authorKeys);
+      return new Content(columns, watermark);
+    }
+  }
+
+  /**
+   * Writes the snapshot file. The file is written next to the target and moved to its place, so a
+   * crash during the write leaves the previous snapshot intact.
+   *
+   * @param columns
+   *          the columns.
+   * @param watermark
+   *          the watermark of the snapshot. The worklogs changed after the watermark are read from
+   *          the database after the snapshot is loaded.
+   * @throws IOException
+   *           if the file cannot be written.
+   */
+  void write(final WorklogColumns columns, final Watermark watermark) throws IOException {
+    Files.createDirectories(path.getParent());
+    Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong(MAGIC);
+      buffer.putLong(watermark.getUpdated());
+      buffer.putLong(watermark.getId());
+      buffer.putInt(columns.size());
+      String[] authorKeys = columns.getAuthorKeys();
+      buffer.putInt(authorKeys.length);
+      for (String authorKey : authorKeys) {
+        byte[] bytes = authorKey.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < (Integer.BYTES + bytes.length)) {
+          flush(channel, buffer);
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+      }
+      for (long[] column : columns.getLongColumns()) {
+        writeLongs(channel, buffer, column);
+      }
+      writeInts(channel, buffer, columns.getAuthors());
+      flush(channel, buffer);
+      channel.force(true);
+    }
+    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void writeInts(final FileChannel channel, final ByteBuffer buffer, final int[] values)
+      throws IOException {
+    int offset = 0;
+    while (offset < values.length) {
+      if (buffer.remaining() < Integer.BYTES) {
+        flush(channel, buffer);
+      }
+      int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+      buffer.asIntBuffer().put(values, offset, count);
+      buffer.position(buffer.position() + (count * Integer.BYTES));
+      offset += count;
+    }
+  }
+
+  private void writeLongs(final FileChannel channel, final ByteBuffer buffer, final long[] values)
+      throws IOException {
+    int offset = 0;
+    while (offset < values.length) {
+      if (buffer.remaining() < Long.BYTES) {
+        flush(channel, buffer);
+      }
+      int count = Math.min(values.length - offset, buffer.remaining() / Long.BYTES);
+      buffer.asLongBuffer().put(values, offset, count);
+      buffer.position(buffer.position() + (count * Long.BYTES));
+      offset += count;
+    }
+  }
+
+}
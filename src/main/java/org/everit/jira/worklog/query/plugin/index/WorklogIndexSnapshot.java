@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+
+/**
+ * Immutable state of the {@link WorklogColumnarIndex}: the sorted columns, the deleted rows of the
+ * columns and the worklogs created or updated since the columns were built. The changes create a
+ * new snapshot that shares the unchanged state with the previous one, the deltas are merged into
+ * new columns when they grow too large.
+ */
+final class WorklogIndexSnapshot {
+
+  /**
+   * Receives the matching worklogs of an aggregation.
+   */
+  interface Aggregator {
+    void accept(long issueId, long timeSpent, long updatedDate);
+  }
+
+  /**
+   * The maximum number of the deleted rows before the merge, relative to the number of rows.
+   */
+  private static final int DELETED_RATIO = 8;
+
+  /**
+   * The maximum number of the delta worklogs before the merge, relative to the number of rows. A
+   * merge copies every row, so the large columns merge after proportionally more changes.
+   */
+  private static final int DELTA_RATIO = 1024;
+
+  /**
+   * The maximum number of the delta worklogs and the deleted rows before the merge, in addition to
+   * the part relative to the number of rows.
+   */
+  private static final int MAX_DELTA_SIZE = 4096;
+
+  private static long[] sortedArray(final Collection<Long> values) {
+    if (values == null) {
+      return null;
+    }
+    long[] result = new long[values.size()];
+    int i = 0;
+    for (Long value : values) {
+      result[i++] = value;
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  private final WorklogColumns columns;
+
+  private final WorklogRowSet deleted;
+
+  private final List<WorklogChange> delta;
+
+  /**
+   * Constructor with fields.
+   *
+   * @param columns
+   *          the sorted columns.
+   * @param deleted
+   *          the deleted rows of the columns.
+   * @param delta
+   *          the worklogs created or updated since the columns were built. Not modified after the
+   *          construction.
+   */
+  WorklogIndexSnapshot(final WorklogColumns columns, final WorklogRowSet deleted,
+      final List<WorklogChange> delta) {
+    this.columns = columns;
+    this.deleted = deleted;
+    this.delta = delta;
+  }
+
+  private void addChange(final WorklogColumns.Builder builder, final WorklogChange change) {
+    builder.add(change.getWorklogId(), change.getIssueId(), change.getProjectId(),
+        change.getAuthorKey(), change.getStartDate(), change.getUpdated(), change.getTimeSpent());
+  }
+
+  /**
+   * Passes the worklogs matching the filters to the aggregator.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param projectIds
+   *          the ids of the projects or null if the projects are not filtered.
+   * @param issueIds
+   *          the ids of the issues or null if the issues are not filtered.
+   * @param updated
+   *          true if the interval is applied on the updated date, false if it is applied on the
+   *          start date.
+   * @param aggregator
+   *          receives the matching worklogs.
+   */
+  void aggregate(final long startDate, final long endDate, final Collection<String> userKeys,
+      final Collection<Long> projectIds, final Collection<Long> issueIds, final boolean updated,
+      final Aggregator aggregator) {
+    long[] projectFilter = sortedArray(projectIds);
+    long[] issueFilter = sortedArray(issueIds);
+    boolean[] authorFilter = columns.authorFilter(userKeys);
+    // The rows are sorted by the start date, the updated date interval needs a full scan.
+    int from = updated ? 0 : columns.lowerBound(startDate);
+    int to = updated ? columns.size() : columns.lowerBound(endDate);
+    for (int i = from; i < to; i++) {
+      if (!authorFilter[columns.getAuthor(i)] || deleted.contains(i)) {
+        continue;
+      }
+      long updatedDate = columns.getUpdatedDate(i);
+      if (updated && ((updatedDate < startDate) || (updatedDate >= endDate))) {
+        continue;
+      }
+      long issueId = columns.getIssueId(i);
+      if (((projectFilter != null)
+          && (Arrays.binarySearch(projectFilter, columns.getProjectId(i)) < 0))
+          || ((issueFilter != null) && (Arrays.binarySearch(issueFilter, issueId) < 0))) {
+        continue;
+      }
+      aggregator.accept(issueId, columns.getTimeSpent(i), updatedDate);
+    }
+
+    Set<String> userKeySet = delta.isEmpty() ? Collections.emptySet() : new HashSet<>(userKeys);
+    for (WorklogChange change : delta) {
+      long time = updated ? change.getUpdated() : change.getStartDate();
+      if ((time < startDate) || (time >= endDate)
+          || !userKeySet.contains(change.getAuthorKey())
+          || ((projectFilter != null)
+              && (Arrays.binarySearch(projectFilter, change.getProjectId()) < 0))
+          || ((issueFilter != null)
+              && (Arrays.binarySearch(issueFilter, change.getIssueId()) < 0))) {
+        continue;
+      }
+      aggregator.accept(change.getIssueId(), change.getTimeSpent(), change.getUpdated());
+    }
+  }
+
+  /**
+   * Creates the snapshot that contains the change. The deleted and the updated worklogs are
+   * removed, the created and the updated worklogs are added to the delta.
+   *
+   * @param change
+   *          the change of a worklog.
+   * @return the new snapshot.
+   */
+  WorklogIndexSnapshot apply(final WorklogChange change) {
+    long worklogId = change.getWorklogId();
+    int row = columns.indexOf(worklogId);
+    WorklogRowSet newDeleted = row < 0 ? deleted : deleted.add(row);
+
+    List<WorklogChange> newDelta = new ArrayList<>(delta.size() + 1);
+    for (WorklogChange deltaChange : delta) {
+      if (deltaChange.getWorklogId() != worklogId) {
+        newDelta.add(deltaChange);
+      }
+    }
+    if (change.getType() != WorklogChange.Type.DELETED) {
+      newDelta.add(change);
+    }
+
+    WorklogIndexSnapshot snapshot = new WorklogIndexSnapshot(columns, newDeleted, newDelta);
+    if ((newDelta.size() > (MAX_DELTA_SIZE + (columns.size() / DELTA_RATIO)))
+        || (newDeleted.size() > (MAX_DELTA_SIZE + (columns.size() / DELETED_RATIO)))) {
+      return snapshot.merge();
+    }
+    return snapshot;
+  }
+
+  /**
+   * Creates the merged snapshot that contains many changes.
+   *
+   * @param changes
+   *          the changes in the order of their occurrence.
+   * @return the new merged snapshot.
+   */
+  WorklogIndexSnapshot applyAll(final Collection<WorklogChange> changes) {
+    Map<Long, WorklogChange> lastChanges = new LinkedHashMap<>();
+    for (WorklogChange change : changes) {
+      lastChanges.remove(change.getWorklogId());
+      lastChanges.put(change.getWorklogId(), change);
+    }
+    int[] changedRows = new int[lastChanges.size()];
+    int changedRowCount = 0;
+    for (Long worklogId : lastChanges.keySet()) {
+      int row = columns.indexOf(worklogId);
+      if (row >= 0) {
+        changedRows[changedRowCount++] = row;
+      }
+    }
+    WorklogRowSet newDeleted = deleted.addAll(Arrays.copyOf(changedRows, changedRowCount));
+    List<WorklogChange> newDelta = new ArrayList<>(delta.size() + lastChanges.size());
+    for (WorklogChange deltaChange : delta) {
+      if (!lastChanges.containsKey(deltaChange.getWorklogId())) {
+        newDelta.add(deltaChange);
+      }
+    }
+    for (WorklogChange change : lastChanges.values()) {
+      if (change.getType() != WorklogChange.Type.DELETED) {
+        newDelta.add(change);
+      }
+    }
+    return new WorklogIndexSnapshot(columns, newDeleted, newDelta).merge();
+  }
+
+  /**
+   * The columns of the snapshot. Contains every worklog only if the snapshot is merged.
+   *
+   * @return the columns.
+   */
+  WorklogColumns getColumns() {
+    return columns;
+  }
+
+  /**
+   * Merges the delta into new columns and drops the deleted rows.
+   *
+   * @return the merged snapshot.
+   */
+  WorklogIndexSnapshot merge() {
+    List<WorklogChange> sortedDelta = new ArrayList<>(delta);
+    sortedDelta.sort(Comparator.comparingLong(WorklogChange::getStartDate));
+    WorklogColumns.Builder builder = new WorklogColumns.Builder(size());
+    int deltaIndex = 0;
+    for (int i = 0; i < columns.size(); i++) {
+      if (deleted.contains(i)) {
+        continue;
+      }
+      while ((deltaIndex < sortedDelta.size())
+          && (sortedDelta.get(deltaIndex).getStartDate() < columns.getStartDate(i))) {
+        addChange(builder, sortedDelta.get(deltaIndex++));
+      }
+      builder.add(columns.getId(i), columns.getIssueId(i), columns.getProjectId(i),
+          columns.getAuthorKey(i), columns.getStartDate(i), columns.getUpdatedDate(i),
+          columns.getTimeSpent(i));
+    }
+    while (deltaIndex < sortedDelta.size()) {
+      addChange(builder, sortedDelta.get(deltaIndex++));
+    }
+    return new WorklogIndexSnapshot(builder.build(), WorklogRowSet.EMPTY,
+        Collections.<WorklogChange> emptyList());
+  }
+
+  /**
+   * The number of the worklogs in the snapshot.
+   *
+   * @return the number of the not deleted rows and the delta worklogs.
+   */
+  int size() {
+    return (columns.size() - deleted.size()) + delta.size();
+  }
+
+}
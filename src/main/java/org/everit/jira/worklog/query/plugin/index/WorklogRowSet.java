@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of the rows of {@link WorklogColumns}. The bits are stored in pages, so adding a
+ * row copies only the page of the row and the array of the page references instead of the whole
+ * set.
+ */
+final class WorklogRowSet {
+
+  /**
+   * The empty set.
+   */
+  static final WorklogRowSet EMPTY = new WorklogRowSet(new long[0][], 0);
+
+  /**
+   * The binary logarithm of the number of the rows in a page.
+   */
+  private static final int PAGE_SHIFT = 12;
+
+  /**
+   * The number of the words in a page.
+   */
+  private static final int PAGE_WORDS = 1 << (PAGE_SHIFT - 6);
+
+  private static boolean contains(final long[][] searchedPages, final int row) {
+    int pageIndex = row >>> PAGE_SHIFT;
+    if (pageIndex >= searchedPages.length) {
+      return false;
+    }
+    long[] page = searchedPages[pageIndex];
+    return (page != null) && ((page[(row >>> 6) & (PAGE_WORDS - 1)] & (1L << row)) != 0);
+  }
+
+  private final long[][] pages;
+
+  private final int size;
+
+  private WorklogRowSet(final long[][] pages, final int size) {
+    this.pages = pages;
+    this.size = size;
+  }
+
+  /**
+   * Creates the set that contains the given row too.
+   *
+   * @param row
+   *          the index of the row.
+   * @return the new set or this set if it contains the row.
+   */
+  WorklogRowSet add(final int row) {
+    return addAll(new int[] { row });
+  }
+
+  /**
+   * Creates the set that contains the given rows too. Every page is copied at most once.
+   *
+   * @param rows
+   *          the indexes of the rows.
+   * @return the new set or this set if it contains every row.
+   */
+  WorklogRowSet addAll(final int[] rows) {
+    long[][] newPages = null;
+    boolean[] copiedPages = null;
+    int newSize = size;
+    for (int row : rows) {
+      if (contains(row) || ((newPages != null) && contains(newPages, row))) {
+        continue;
+      }
+      int pageIndex = row >>> PAGE_SHIFT;
+      if (newPages == null) {
+        newPages = Arrays.copyOf(pages, Math.max(pages.length, pageIndex + 1));
+        copiedPages = new boolean[newPages.length];
+      } else if (pageIndex >= newPages.length) {
+        newPages = Arrays.copyOf(newPages, pageIndex + 1);
+        copiedPages = Arrays.copyOf(copiedPages, newPages.length);
+      }
+      if (!copiedPages[pageIndex]) {
+        long[] page = newPages[pageIndex];
+        newPages[pageIndex] = page == null ? new long[PAGE_WORDS] : page.clone();
+        copiedPages[pageIndex] = true;
+      }
+      newPages[pageIndex][(row >>> 6) & (PAGE_WORDS - 1)] |= 1L << row;
+      newSize++;
+    }
+    return newPages == null ? this : new WorklogRowSet(newPages, newSize);
+  }
+
+  /**
+   * Check if the set contains a row.
+   *
+   * @param row
+   *          the index of the row.
+   * @return true if the set contains the row.
+   */
+  boolean contains(final int row) {
+    return contains(pages, row);
+  }
+
+  int size() {
+    return size;
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written to the underlying stream.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+  private static final int MAX_ONE_BYTE_CHAR = 0x7F;
+
+  private static final int MAX_TWO_BYTE_CHAR = 0x7FF;
+
+  private static final int SURROGATE_PAIR_LENGTH = 4;
+
+  private static final int THREE_BYTE_LENGTH = 3;
+
+  /**
+   * The number of the bytes of a text encoded in UTF-8, counted without encoding the text. An
+   * unpaired surrogate is counted as the one byte of its replacement.
+   *
+   * @param text
+   *          the text.
+   * @return the number of the bytes.
+   */
+  public static long utf8Length(final CharSequence text) {
+    long length = 0;
+    int textLength = text.length();
+    int i = 0;
+    while (i < textLength) {
+      char c = text.charAt(i);
+      int charCount = 1;
+      if (c <= MAX_ONE_BYTE_CHAR) {
+        length++;
+      } else if (c <= MAX_TWO_BYTE_CHAR) {
+        length += 2;
+      } else if (!Character.isSurrogate(c)) {
+        length += THREE_BYTE_LENGTH;
+      } else if (Character.isHighSurrogate(c) && ((i + 1) < textLength)
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += SURROGATE_PAIR_LENGTH;
+        charCount = 2;
+      } else {
+        length++;
+      }
+      i += charCount;
+    }
+    return length;
+  }
+
+  private long count;
+
+  public CountingOutputStream(final OutputStream out) {
+    super(out);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    out.write(b, off, len);
+    count += len;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    out.write(b);
+    count++;
+  }
+}
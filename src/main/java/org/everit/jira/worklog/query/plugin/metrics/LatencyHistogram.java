@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed, roughly logarithmic buckets. The percentiles are
+ * estimated by the upper bound of the bucket that contains them.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The upper bounds of the buckets in milliseconds. The last bucket is unbounded.
+   */
+  private static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000,
+      2500, 5000, 10000, 30000, 60000, 120000, 300000 };
+
+  /**
+   * The upper bounds of the buckets in milliseconds. The last, unbounded bucket has no upper
+   * bound.
+   *
+   * @return a copy of the bounds.
+   */
+  public static long[] getBucketBoundsMillis() {
+    return BUCKET_BOUNDS_MILLIS.clone();
+  }
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  /**
+   * Constructor of an empty histogram.
+   */
+  public LatencyHistogram() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * The number of the recorded values per bucket.
+   *
+   * @return the counts of the buckets, the last is the unbounded bucket.
+   */
+  public long[] getBucketCounts() {
+    long[] counts = new long[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  /**
+   * Estimates a percentile from the given bucket counts.
+   *
+   * @param counts
+   *          the counts of the buckets returned by {@link #getBucketCounts()}.
+   * @param percentile
+   *          the percentile between 0 and 1.
+   * @return the upper bound of the bucket of the percentile in milliseconds, the maximum for the
+   *         unbounded bucket and zero if there is no recorded value.
+   */
+  public long percentileMillis(final long[] counts, final double percentile) {
+    long count = 0;
+    for (long bucketCount : counts) {
+      count += bucketCount;
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile * count);
+    long cumulative = 0;
+    for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+      cumulative += counts[i];
+      if (cumulative >= rank) {
+        return BUCKET_BOUNDS_MILLIS[i];
+      }
+    }
+    return TimeUnit.NANOSECONDS.toMillis(getMaxNanos());
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos
+   *          the latency in nanoseconds.
+   */
+  public void record(final long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while ((bucket < BUCKET_BOUNDS_MILLIS.length) && (millis >= BUCKET_BOUNDS_MILLIS[bucket])) {
+      bucket++;
+    }
+    buckets[bucket].increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * Clears the recorded values.
+   */
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    totalNanos.reset();
+    maxNanos.reset();
+  }
+}
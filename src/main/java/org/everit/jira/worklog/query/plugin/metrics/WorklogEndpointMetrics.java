@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The request counters and the stage latency histograms of an endpoint.
+ */
+public class WorklogEndpointMetrics implements WorklogEndpointMetricsMXBean {
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  private final LongAdder bytesWritten = new LongAdder();
+
+  private final LongAdder errorCount = new LongAdder();
+
+  private final Map<WorklogQueryStage, LatencyHistogram> histograms =
+      new EnumMap<>(WorklogQueryStage.class);
+
+  private final LongAdder inFlightCount = new LongAdder();
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  private final LongAdder requestCount = new LongAdder();
+
+  private final LongAdder rowCount = new LongAdder();
+
+  /**
+   * Constructor of empty metrics.
+   */
+  public WorklogEndpointMetrics() {
+    for (WorklogQueryStage stage : WorklogQueryStage.values()) {
+      histograms.put(stage, new LatencyHistogram());
+    }
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  public LatencyHistogram getHistogram(final WorklogQueryStage stage) {
+    return histograms.get(stage);
+  }
+
+  @Override
+  public long getInFlightCount() {
+    return inFlightCount.sum();
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  @Override
+  public long getRowCount() {
+    return rowCount.sum();
+  }
+
+  @Override
+  public Map<String, WorklogStageStatistics> getStages() {
+    Map<String, WorklogStageStatistics> stages = new TreeMap<>();
+    for (Map.Entry<WorklogQueryStage, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      long[] counts = histogram.getBucketCounts();
+      long count = 0;
+      for (long bucketCount : counts) {
+        count += bucketCount;
+      }
+      if (count > 0) {
+        long totalNanos = histogram.getTotalNanos();
+        stages.put(entry.getKey().getName(), new WorklogStageStatistics(count,
+            TimeUnit.NANOSECONDS.toMillis(totalNanos), totalNanos / NANOS_PER_MILLI / count,
+            TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos()),
+            histogram.percentileMillis(counts, 0.5), histogram.percentileMillis(counts, 0.95),
+            histogram.percentileMillis(counts, 0.99)));
+      }
+    }
+    return stages;
+  }
+
+  /**
+   * Records a finished request. Only the stages the request went through are recorded, except the
+   * total time.
+   *
+   * @param trace
+   *          the measurements of the request.
+   */
+  public void record(final WorklogQueryTrace trace) {
+    inFlightCount.decrement();
+    requestCount.increment();
+    if (trace.isFailed()) {
+      errorCount.increment();
+    }
+    rowCount.add(trace.getRows());
+    bytesWritten.add(trace.getBytes());
+    for (WorklogQueryStage stage : WorklogQueryStage.values()) {
+      long nanos = trace.getStageNanos(stage);
+      if ((nanos > 0) || (stage == WorklogQueryStage.TOTAL)) {
+        histograms.get(stage).record(nanos);
+      }
+    }
+  }
+
+  /**
+   * Records a request rejected by the admission control.
+   */
+  public void recordRejection() {
+    rejectedCount.increment();
+  }
+
+  /**
+   * Records an admitted request that is running until it is recorded.
+   */
+  public void recordStart() {
+    inFlightCount.increment();
+  }
+
+  /**
+   * Clears the metrics of the endpoint, except the number of the running requests.
+   */
+  @Override
+  public void reset() {
+    bytesWritten.reset();
+    errorCount.reset();
+    rejectedCount.reset();
+    requestCount.reset();
+    rowCount.reset();
+    for (LatencyHistogram histogram : histograms.values()) {
+      histogram.reset();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX interface of the metrics of an endpoint.
+ */
+public interface WorklogEndpointMetricsMXBean {
+
+  long getBytesWritten();
+
+  long getErrorCount();
+
+  /**
+   * The number of the admitted requests that are still running.
+   *
+   * @return the number of the requests.
+   */
+  long getInFlightCount();
+
+  long getRejectedCount();
+
+  long getRequestCount();
+
+  long getRowCount();
+
+  /**
+   * The latency statistics of the stages of the requests, keyed by the name of the stages.
+   *
+   * @return the statistics of the stages that were measured at least once.
+   */
+  Map<String, WorklogStageStatistics> getStages();
+
+  /**
+   * Clears the metrics of the endpoint, except the number of the running requests.
+   */
+  void reset();
+}
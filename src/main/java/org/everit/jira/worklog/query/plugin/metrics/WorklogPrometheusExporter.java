@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.function.ToLongFunction;
+
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Writes the metrics of the plugin in the Prometheus text exposition format. The latencies are
+ * exposed as histograms in seconds with the buckets of the {@link LatencyHistogram}, the counters
+ * of the endpoints and the result cache as counters and the running requests as a gauge.
+ */
+public final class WorklogPrometheusExporter {
+
+  /**
+   * The content type of the text exposition format.
+   */
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double MILLIS_PER_SECOND = 1000D;
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000D;
+
+  private static final String PREFIX = "jwqp_";
+
+  private static void appendCounter(final StringBuilder text, final WorklogQueryMetrics metrics,
+      final String name, final String help, final ToLongFunction<WorklogEndpointMetrics> value) {
+    appendEndpointSamples(text, metrics, name, "counter", help, value);
+  }
+
+  private static void appendEndpointSamples(final StringBuilder text,
+      final WorklogQueryMetrics metrics, final String name, final String type, final String help,
+      final ToLongFunction<WorklogEndpointMetrics> value) {
+    appendHeader(text, name, type, help);
+    for (WorklogEndpoint endpoint : WorklogEndpoint.values()) {
+      appendSample(text, name, endpointLabel(endpoint),
+          value.applyAsLong(metrics.getEndpointMetrics(endpoint)));
+    }
+  }
+
+  private static void appendHeader(final StringBuilder text, final String name, final String type,
+      final String help) {
+    text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n')
+        .append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void appendHistogram(final StringBuilder text, final String name,
+      final String labels, final LatencyHistogram histogram) {
+    long[] counts = histogram.getBucketCounts();
+    long[] boundsMillis = LatencyHistogram.getBucketBoundsMillis();
+    long cumulativeCount = 0;
+    for (int i = 0; i < boundsMillis.length; i++) {
+      cumulativeCount += counts[i];
+      appendSample(text, name + "_bucket",
+          labels + ",le=\"" + (boundsMillis[i] / MILLIS_PER_SECOND) + "\"", cumulativeCount);
+    }
+    cumulativeCount += counts[boundsMillis.length];
+    appendSample(text, name + "_bucket", labels + ",le=\"+Inf\"", cumulativeCount);
+    appendSample(text, name + "_sum", labels, histogram.getTotalNanos() / NANOS_PER_SECOND);
+    appendSample(text, name + "_count", labels, cumulativeCount);
+  }
+
+  private static void appendSample(final StringBuilder text, final String name,
+      final String labels, final double value) {
+    text.append(PREFIX).append(name);
+    if (labels != null) {
+      text.append('{').append(labels).append('}');
+    }
+    text.append(' ').append(value).append('\n');
+  }
+
+  private static void appendSample(final StringBuilder text, final String name,
+      final String labels, final long value) {
+    text.append(PREFIX).append(name);
+    if (labels != null) {
+      text.append('{').append(labels).append('}');
+    }
+    text.append(' ').append(value).append('\n');
+  }
+
+  private static String endpointLabel(final WorklogEndpoint endpoint) {
+    return "endpoint=\"" + endpoint.getName() + "\"";
+  }
+
+  /**
+   * Writes the metrics of the endpoints and the result cache.
+   *
+   * @param metrics
+   *          the metrics of the endpoints.
+   * @param cache
+   *          the cache of the query results.
+   * @return the metrics in the text exposition format.
+   */
+  public static String export(final WorklogQueryMetrics metrics,
+      final WorklogResultCache cache) {
+    StringBuilder text = new StringBuilder();
+    appendCounter(text, metrics, "requests_total", "The number of the finished requests.",
+        WorklogEndpointMetrics::getRequestCount);
+    appendCounter(text, metrics, "request_errors_total",
+        "The number of the requests that failed with a server error.",
+        WorklogEndpointMetrics::getErrorCount);
+    appendCounter(text, metrics, "requests_rejected_total",
+        "The number of the requests rejected by the admission control.",
+        WorklogEndpointMetrics::getRejectedCount);
+    appendEndpointSamples(text, metrics, "requests_in_flight", "gauge",
+        "The number of the admitted requests that are still running.",
+        WorklogEndpointMetrics::getInFlightCount);
+    appendCounter(text, metrics, "rows_total", "The number of the returned rows.",
+        WorklogEndpointMetrics::getRowCount);
+    appendCounter(text, metrics, "response_bytes_total",
+        "The number of the bytes of the responses.", WorklogEndpointMetrics::getBytesWritten);
+
+    appendHeader(text, "request_duration_seconds", "histogram",
+        "The duration of the requests from the admission until the response is written.");
+    for (WorklogEndpoint endpoint : WorklogEndpoint.values()) {
+      appendHistogram(text, "request_duration_seconds", endpointLabel(endpoint),
+          metrics.getEndpointMetrics(endpoint).getHistogram(WorklogQueryStage.TOTAL));
+    }
+    appendHeader(text, "stage_duration_seconds", "histogram",
+        "The duration of the stages of the requests.");
+    for (WorklogEndpoint endpoint : WorklogEndpoint.values()) {
+      for (WorklogQueryStage stage : WorklogQueryStage.values()) {
+        if (stage != WorklogQueryStage.TOTAL) {
+          appendHistogram(text, "stage_duration_seconds",
+              endpointLabel(endpoint) + ",stage=\"" + stage.getName() + "\"",
+              metrics.getEndpointMetrics(endpoint).getHistogram(stage));
+        }
+      }
+    }
+
+    CacheStats cacheStats = cache.getStats();
+    appendHeader(text, "result_cache_hits_total", "counter",
+        "The number of the query results served from the cache.");
+    appendSample(text, "result_cache_hits_total", null, cacheStats.hitCount());
+    appendHeader(text, "result_cache_misses_total", "counter",
+        "The number of the query results not found in the cache.");
+    appendSample(text, "result_cache_misses_total", null, cacheStats.missCount());
+    appendHeader(text, "result_cache_evictions_total", "counter",
+        "The number of the query results evicted from the cache.");
+    appendSample(text, "result_cache_evictions_total", null, cacheStats.evictionCount());
+    appendHeader(text, "result_cache_hit_ratio", "gauge",
+        "The ratio of the cache hits to all cache lookups since the start of the plugin.");
+    appendSample(text, "result_cache_hit_ratio", null, cacheStats.hitRate());
+    appendHeader(text, "result_cache_entries", "gauge",
+        "The number of the cached query results.");
+    appendSample(text, "result_cache_entries", null, cache.size());
+    return text.toString();
+  }
+
+  private WorklogPrometheusExporter() {
+  }
+}
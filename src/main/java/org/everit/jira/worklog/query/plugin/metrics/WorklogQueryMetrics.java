@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * The metrics of the worklog query endpoints. The metrics of every endpoint are registered as an
+ * MXBean in the platform MBean server, so the slow stages of the queries can be found with any
+ * JMX console in production. The requests above the slow query threshold are logged by the
+ * {@link WorklogSlowQueryLog}.
+ */
+public class WorklogQueryMetrics implements InitializingBean, DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogQueryMetrics.class);
+
+  /**
+   * The prefix of the object names of the endpoint MXBeans.
+   */
+  private static final String OBJECT_NAME_PREFIX =
+      "org.everit.jira.worklog.query:type=EndpointMetrics,endpoint=";
+
+  private final Map<WorklogEndpoint, WorklogEndpointMetrics> endpointMetrics =
+      new EnumMap<>(WorklogEndpoint.class);
+
+  private boolean registered;
+
+  private WorklogSlowQueryLog slowQueryLog;
+
+  /**
+   * Constructor of empty metrics.
+   */
+  public WorklogQueryMetrics() {
+    for (WorklogEndpoint endpoint : WorklogEndpoint.values()) {
+      endpointMetrics.put(endpoint, new WorklogEndpointMetrics());
+    }
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    slowQueryLog = new WorklogSlowQueryLog();
+    if (!WorklogQueryConfiguration.isMetricsJmxEnabled()) {
+      return;
+    }
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    try {
+      for (Map.Entry<WorklogEndpoint, WorklogEndpointMetrics> entry : endpointMetrics
+          .entrySet()) {
+        ObjectName objectName = createObjectName(entry.getKey());
+        // The MXBean of a previous plugin instance is replaced.
+        if (mbeanServer.isRegistered(objectName)) {
+          mbeanServer.unregisterMBean(objectName);
+        }
+        mbeanServer.registerMBean(entry.getValue(), objectName);
+      }
+      registered = true;
+    } catch (JMException e) {
+      LOGGER.warn("Failed to register the worklog query metrics MXBeans.", e);
+    }
+  }
+
+  private ObjectName createObjectName(final WorklogEndpoint endpoint) throws JMException {
+    return new ObjectName(OBJECT_NAME_PREFIX + endpoint.getName());
+  }
+
+  @Override
+  public void destroy() {
+    if (slowQueryLog != null) {
+      slowQueryLog.close();
+    }
+    if (!registered) {
+      return;
+    }
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    for (WorklogEndpoint endpoint : endpointMetrics.keySet()) {
+      try {
+        ObjectName objectName = createObjectName(endpoint);
+        if (mbeanServer.isRegistered(objectName)) {
+          mbeanServer.unregisterMBean(objectName);
+        }
+      } catch (JMException e) {
+        LOGGER.debug("Failed to unregister a worklog query metrics MXBean.", e);
+      }
+    }
+  }
+
+  public WorklogEndpointMetrics getEndpointMetrics(final WorklogEndpoint endpoint) {
+    return endpointMetrics.get(endpoint);
+  }
+
+  /**
+   * Records a finished request in the metrics of its endpoint and logs it if it was slow.
+   *
+   * @param trace
+   *          the measurements of the request.
+   */
+  public void record(final WorklogQueryTrace trace) {
+    endpointMetrics.get(trace.getEndpoint()).record(trace);
+    long thresholdMillis = WorklogQueryConfiguration.getSlowQueryThresholdMillis();
+    if ((slowQueryLog != null) && (thresholdMillis > 0) && (trace.getStageNanos(
+        WorklogQueryStage.TOTAL) >= TimeUnit.MILLISECONDS.toNanos(thresholdMillis))) {
+      slowQueryLog.log(trace);
+    }
+  }
+
+  /**
+   * Records a request rejected by the admission control.
+   *
+   * @param endpoint
+   *          the endpoint of the request.
+   */
+  public void recordRejection(final WorklogEndpoint endpoint) {
+    endpointMetrics.get(endpoint).recordRejection();
+  }
+
+  /**
+   * Starts the trace of an admitted request. The request is counted as running until its trace is
+   * recorded.
+   *
+   * @param endpoint
+   *          the endpoint of the request.
+   * @return the trace of the request.
+   */
+  public WorklogQueryTrace start(final WorklogEndpoint endpoint) {
+    endpointMetrics.get(endpoint).recordStart();
+    return new WorklogQueryTrace(endpoint);
+  }
+}
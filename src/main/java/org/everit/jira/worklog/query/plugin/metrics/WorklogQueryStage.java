@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+/**
+ * The measured stages of the worklog queries.
+ */
+public enum WorklogQueryStage {
+
+  /**
+   * The loading of the requested fields of the issues.
+   */
+  FIELDS("fields", "Field rendering"),
+
+  /**
+   * The JQL search of the issues.
+   */
+  ISSUE_SEARCH("issueSearch", "JQL search"),
+
+  /**
+   * The selection of the browsable projects.
+   */
+  PROJECTS("projects", "Permission resolution"),
+
+  /**
+   * The database queries and the mapping of the rows.
+   */
+  QUERY("query", "SQL"),
+
+  /**
+   * The whole request from the admission until the response is written.
+   */
+  TOTAL("total", "Total"),
+
+  /**
+   * The selection of the users of the user or the group parameter.
+   */
+  USERS("users", "User resolution"),
+
+  /**
+   * The serialization of the response and the writing of it to the client.
+   */
+  WRITE("write", "Serialization");
+
+  private final String description;
+
+  private final String name;
+
+  WorklogQueryStage(final String name, final String description) {
+    this.name = name;
+    this.description = description;
+  }
+
+  /**
+   * The human readable description of the stage that is used in the Server-Timing header.
+   *
+   * @return the description.
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * The name of the stage that is used in the metrics.
+   *
+   * @return the name.
+   */
+  public String getName() {
+    return name;
+  }
+}
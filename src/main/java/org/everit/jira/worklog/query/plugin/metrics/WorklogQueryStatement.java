@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SQL statement generated by a worklog query, captured for the slow query log.
+ */
+public final class WorklogQueryStatement {
+
+  private final List<Object> bindings;
+
+  private final Map<String, Integer> inListSizes;
+
+  private final String queryName;
+
+  private final String sql;
+
+  /**
+   * Constructor with fields.
+   *
+   * @param queryName
+   *          the name of the query that generated the statement.
+   * @param sql
+   *          the SQL of the statement with placeholders.
+   * @param bindings
+   *          the values of the placeholders.
+   * @param inListSizes
+   *          the sizes of the IN lists of the statement keyed by their names.
+   */
+  public WorklogQueryStatement(final String queryName, final String sql,
+      final List<Object> bindings, final Map<String, Integer> inListSizes) {
+    this.queryName = queryName;
+    this.sql = sql;
+    this.bindings = bindings;
+    this.inListSizes = inListSizes;
+  }
+
+  public List<Object> getBindings() {
+    return bindings;
+  }
+
+  public Map<String, Integer> getInListSizes() {
+    return inListSizes;
+  }
+
+  public String getQueryName() {
+    return queryName;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+
+import com.querydsl.sql.SQLBindings;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * The measurements of a single request. The trace is bound to the thread that serves the request,
+ * so the stages of the query core can be measured without passing the trace to every method. The
+ * static methods do nothing if no trace is bound, for example in the export jobs.
+ */
+public final class WorklogQueryTrace {
+
+  private static final ThreadLocal<WorklogQueryTrace> CURRENT = new ThreadLocal<>();
+
+  /**
+   * The maximum number of the captured statements of a request.
+   */
+  private static final int MAX_STATEMENTS = 10;
+
+  /**
+   * Adds rows to the trace bound to the current thread.
+   *
+   * @param rows
+   *          the number of the read rows.
+   */
+  public static void addRows(final long rows) {
+    WorklogQueryTrace trace = CURRENT.get();
+    if (trace != null) {
+      trace.rows += rows;
+    }
+  }
+
+  /**
+   * Captures the SQL of a query in the trace bound to the current thread, for the slow query log.
+   * The query is serialized, so the caller should check {@link #isCapturingStatements()} first.
+   *
+   * @param queryName
+   *          the name of the query.
+   * @param query
+   *          the query.
+   * @param inListSizes
+   *          the sizes of the IN lists of the query keyed by their names.
+   */
+  public static void addStatement(final String queryName, final SQLQuery<?> query,
+      final Map<String, Integer> inListSizes) {
+    WorklogQueryTrace trace = CURRENT.get();
+    if ((trace != null) && (trace.statements.size() < MAX_STATEMENTS)) {
+      SQLBindings sqlBindings = query.getSQL();
+      trace.statements.add(new WorklogQueryStatement(queryName, sqlBindings.getSQL(),
+          new ArrayList<>(sqlBindings.getBindings()), inListSizes));
+    }
+  }
+
+  /**
+   * The trace bound to the current thread.
+   *
+   * @return the trace or null if no trace is bound.
+   */
+  public static WorklogQueryTrace current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Check that the statements of the current request are captured. They are captured if a trace
+   * is bound to the current thread and the slow query log is enabled.
+   *
+   * @return true if the statements are captured.
+   */
+  public static boolean isCapturingStatements() {
+    WorklogQueryTrace trace = CURRENT.get();
+    return (trace != null) && (trace.statements.size() < MAX_STATEMENTS)
+        && (WorklogQueryConfiguration.getSlowQueryThresholdMillis() > 0);
+  }
+
+  /**
+   * Records the time elapsed since the start of a stage in the trace bound to the current thread.
+   *
+   * @param stage
+   *          the stage.
+   * @param startNanos
+   *          the start of the stage returned by {@link System#nanoTime()}.
+   */
+  public static void record(final WorklogQueryStage stage, final long startNanos) {
+    WorklogQueryTrace trace = CURRENT.get();
+    if (trace != null) {
+      trace.addStageNanos(stage, System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Runs a stage and records its time in the trace bound to the current thread.
+   *
+   * @param stage
+   *          the stage.
+   * @param supplier
+   *          the stage.
+   * @param <T>
+   *          the type of the result of the stage.
+   * @return the result of the stage.
+   */
+  public static <T> T timed(final WorklogQueryStage stage, final Supplier<T> supplier) {
+    long startNanos = System.nanoTime();
+    try {
+      return supplier.get();
+    } finally {
+      record(stage, startNanos);
+    }
+  }
+
+  private long bytes;
+
+  private final WorklogEndpoint endpoint;
+
+  private boolean failed;
+
+  private long rows;
+
+  private final long[] stageNanos = new long[WorklogQueryStage.values().length];
+
+  private final long startNanos = System.nanoTime();
+
+  private final List<WorklogQueryStatement> statements = new ArrayList<>();
+
+  /**
+   * Constructor of a trace that starts now.
+   *
+   * @param endpoint
+   *          the endpoint of the request.
+   */
+  public WorklogQueryTrace(final WorklogEndpoint endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  public void addBytes(final long writtenBytes) {
+    bytes += writtenBytes;
+  }
+
+  public void addStageNanos(final WorklogQueryStage stage, final long nanos) {
+    stageNanos[stage.ordinal()] += nanos;
+  }
+
+  /**
+   * Binds the trace to the current thread.
+   */
+  public void bind() {
+    CURRENT.set(this);
+  }
+
+  /**
+   * Finishes the trace, the total time is the time elapsed since the creation of the trace.
+   */
+  public void finish() {
+    stageNanos[WorklogQueryStage.TOTAL.ordinal()] = getElapsedNanos();
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public WorklogEndpoint getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * The time elapsed since the creation of the trace.
+   *
+   * @return the elapsed time in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public long getStageNanos(final WorklogQueryStage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  public List<WorklogQueryStatement> getStatements() {
+    return Collections.unmodifiableList(statements);
+  }
+
+  public boolean isFailed() {
+    return failed;
+  }
+
+  public void markFailed() {
+    failed = true;
+  }
+
+  /**
+   * Unbinds the trace from the current thread.
+   */
+  public void unbind() {
+    if (CURRENT.get() == this) {
+      CURRENT.remove();
+    }
+  }
+}
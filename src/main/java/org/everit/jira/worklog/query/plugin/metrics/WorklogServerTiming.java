@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.Locale;
+
+/**
+ * Formats the measured stages of a request as the value of a <code>Server-Timing</code> response
+ * header, so the clients can see where their requests spend time without the server logs.
+ */
+public final class WorklogServerTiming {
+
+  /**
+   * The name of the response header.
+   */
+  public static final String HEADER = "Server-Timing";
+
+  /**
+   * The request header that asks for the Server-Timing response header with the value
+   * <code>true</code>.
+   */
+  public static final String REQUEST_HEADER = "X-Server-Timing";
+
+  private static final double NANOS_PER_MILLI = 1_000_000D;
+
+  private static void appendEntry(final StringBuilder value, final WorklogQueryStage stage,
+      final long nanos) {
+    if (value.length() > 0) {
+      value.append(", ");
+    }
+    value.append(stage.getName())
+        .append(";desc=\"").append(stage.getDescription())
+        .append("\";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / NANOS_PER_MILLI));
+  }
+
+  /**
+   * Formats the stages of the trace that took time until now. The total is added only if the
+   * response is complete, because the stages of a streamed response run after the headers are
+   * sent.
+   *
+   * @param trace
+   *          the trace of the request.
+   * @param complete
+   *          <code>true</code> if every stage of the request is finished.
+   * @return the value of the header, or <code>null</code> if no stage took time.
+   */
+  public static String format(final WorklogQueryTrace trace, final boolean complete) {
+    StringBuilder value = new StringBuilder();
+    for (WorklogQueryStage stage : WorklogQueryStage.values()) {
+      long nanos = trace.getStageNanos(stage);
+      if ((stage != WorklogQueryStage.TOTAL) && (nanos > 0)) {
+        appendEntry(value, stage, nanos);
+      }
+    }
+    if (complete) {
+      appendEntry(value, WorklogQueryStage.TOTAL, trace.getElapsedNanos());
+    }
+    return value.length() == 0 ? null : value.toString();
+  }
+
+  private WorklogServerTiming() {
+  }
+}
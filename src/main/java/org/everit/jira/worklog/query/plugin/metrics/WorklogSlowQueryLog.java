@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.querydsl.support.ri.QuerydslSupportImpl;
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the requests that exceeded the slow query threshold with their stage timings, the captured
+ * SQL statements and the sizes of their IN lists. The values of the bindings are not logged. The
+ * execution plans of the statements are optionally queried on a background thread, so the request
+ * is not delayed by them. The log has its own logger, so it can be routed to a separate file.
+ */
+public class WorklogSlowQueryLog {
+
+  /**
+   * The maximum number of the slow requests waiting for their execution plans. The further slow
+   * requests are logged without plans.
+   */
+  private static final int EXPLAIN_QUEUE_SIZE = 16;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogSlowQueryLog.class);
+
+  private ThreadPoolExecutor explainExecutor;
+
+  private QuerydslSupport querydslSupport;
+
+  /**
+   * Constructor. The explain thread is started if the execution plans are enabled.
+   */
+  public WorklogSlowQueryLog() {
+    if (WorklogQueryConfiguration.isSlowQueryExplainEnabled()) {
+      explainExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "jwqp-slow-query-explain");
+            thread.setDaemon(true);
+            return thread;
+          });
+    }
+  }
+
+  /**
+   * Stops the explain thread.
+   */
+  public void close() {
+    if (explainExecutor != null) {
+      explainExecutor.shutdownNow();
+    }
+  }
+
+  private String explain(final WorklogQueryStatement statement) {
+    if (querydslSupport == null) {
+      querydslSupport = new QuerydslSupportImpl();
+    }
+    String explainSql = WorklogQueryConfiguration.getSlowQueryExplainPrefix() + " "
+        + statement.getSql();
+    return querydslSupport.execute((connection, configuration) -> {
+      StringBuilder plan = new StringBuilder();
+      try (PreparedStatement preparedStatement = connection.prepareStatement(explainSql)) {
+        List<Object> bindings = statement.getBindings();
+        for (int i = 0; i < bindings.size(); i++) {
+          preparedStatement.setObject(i + 1, bindings.get(i));
+        }
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+          while (resultSet.next()) {
+            plan.append(System.lineSeparator()).append("    ").append(resultSet.getString(1));
+          }
+        }
+      }
+      return plan.toString();
+    });
+  }
+
+  private String format(final WorklogQueryTrace trace, final boolean withPlans) {
+    StringBuilder message = new StringBuilder("Slow worklog query: endpoint=")
+        .append(trace.getEndpoint().getName())
+        .append(", total=").append(toMillis(trace.getStageNanos(WorklogQueryStage.TOTAL)))
+        .append("ms, failed=").append(trace.isFailed())
+        .append(", rows=").append(trace.getRows())
+        .append(", bytes=").append(trace.getBytes())
+        .append(", stages=[");
+    String separator = "";
+    for (WorklogQueryStage stage : WorklogQueryStage.values()) {
+      long nanos = trace.getStageNanos(stage);
+      if ((stage != WorklogQueryStage.TOTAL) && (nanos > 0)) {
+        message.append(separator).append(stage.getName()).append('=').append(toMillis(nanos))
+            .append("ms");
+        separator = ", ";
+      }
+    }
+    message.append(']');
+    for (WorklogQueryStatement statement : trace.getStatements()) {
+      message.append(System.lineSeparator()).append("  ").append(statement.getQueryName())
+          .append(": inLists=[");
+      separator = "";
+      for (Map.Entry<String, Integer> inListSize : statement.getInListSizes().entrySet()) {
+        message.append(separator).append(inListSize.getKey()).append('=')
+            .append(inListSize.getValue());
+        separator = ", ";
+      }
+      message.append("], bindings=").append(statement.getBindings().size())
+          .append(", sql=").append(statement.getSql());
+      if (withPlans) {
+        message.append(System.lineSeparator()).append("  plan:");
+        try {
+          message.append(explain(statement));
+        } catch (RuntimeException e) {
+          LOGGER.debug("Failed to explain a slow worklog query.", e);
+          message.append(" failed: ").append(e.getMessage());
+        }
+      }
+    }
+    return message.toString();
+  }
+
+  /**
+   * Logs the trace of a slow request.
+   *
+   * @param trace
+   *          the finished trace of the request.
+   */
+  public void log(final WorklogQueryTrace trace) {
+    if (!LOGGER.isWarnEnabled()) {
+      return;
+    }
+    if ((explainExecutor != null) && !trace.getStatements().isEmpty()
+        && (explainExecutor.getQueue().remainingCapacity() > 0)) {
+      try {
+        explainExecutor.execute(() -> LOGGER.warn(format(trace, true)));
+        return;
+      } catch (RuntimeException e) {
+        LOGGER.debug("The execution plan of a slow worklog query is skipped.", e);
+      }
+    }
+    LOGGER.warn(format(trace, false));
+  }
+
+  private long toMillis(final long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The latency statistics of a stage of an endpoint, as published over JMX.
+ */
+public class WorklogStageStatistics {
+
+  private final long count;
+
+  private final long maxMillis;
+
+  private final double meanMillis;
+
+  private final long p50Millis;
+
+  private final long p95Millis;
+
+  private final long p99Millis;
+
+  private final long totalMillis;
+
+  /**
+   * Constructor with fields.
+   *
+   * @param count
+   *          the number of the measured requests.
+   * @param totalMillis
+   *          the summarized time of the stage.
+   * @param meanMillis
+   *          the average time of the stage.
+   * @param maxMillis
+   *          the maximum time of the stage.
+   * @param p50Millis
+   *          the estimated median time of the stage.
+   * @param p95Millis
+   *          the estimated 95th percentile time of the stage.
+   * @param p99Millis
+   *          the estimated 99th percentile time of the stage.
+   */
+  @ConstructorProperties({ "count", "totalMillis", "meanMillis", "maxMillis", "p50Millis",
+      "p95Millis", "p99Millis" })
+  public WorklogStageStatistics(final long count, final long totalMillis, final double meanMillis,
+      final long maxMillis, final long p50Millis, final long p95Millis, final long p99Millis) {
+    this.count = count;
+    this.totalMillis = totalMillis;
+    this.meanMillis = meanMillis;
+    this.maxMillis = maxMillis;
+    this.p50Millis = p50Millis;
+    this.p95Millis = p95Millis;
+    this.p99Millis = p99Millis;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMaxMillis() {
+    return maxMillis;
+  }
+
+  public double getMeanMillis() {
+    return meanMillis;
+  }
+
+  public long getP50Millis() {
+    return p50Millis;
+  }
+
+  public long getP95Millis() {
+    return p95Millis;
+  }
+
+  public long getP99Millis() {
+    return p99Millis;
+  }
+
+  public long getTotalMillis() {
+    return totalMillis;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to count the worklogs with an existing issue, the worklogs read by the
+ * {@link FindWorklogColumnsQuery}.
+ */
+public class CountWorklogsQuery implements QuerydslCallable<Long> {
+
+  @Override
+  public Long call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+
+    return new SQLQuery<Long>(connection, configuration)
+        .select(worklog.id.count())
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .fetchOne();
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to read the current values of the worklogs of an issue as changes of the given type. Used
+ * when the worklogs of an issue change without worklog events, for example when the issue is
+ * deleted or moved to another project.
+ */
+public class FindIssueWorklogChangesQuery implements QuerydslCallable<List<WorklogChange>> {
+
+  private final long issueId;
+
+  private final WorklogChange.Type type;
+
+  /**
+   * Simple constructor.
+   *
+   * @param issueId
+   *          the id of the issue.
+   * @param type
+   *          the type of the created changes.
+   */
+  public FindIssueWorklogChangesQuery(final long issueId, final WorklogChange.Type type) {
+    this.issueId = issueId;
+    this.type = type;
+  }
+
+  @Override
+  public List<WorklogChange> call(final Connection connection,
+      final Configuration configuration) throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+
+    List<WorklogChange> changes = new ArrayList<>();
+    for (Tuple row : new SQLQuery<Tuple>(connection, configuration)
+        .select(worklog.id, issue.project, worklog.author, worklog.startdate, worklog.updated,
+            worklog.timeworked)
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .where(worklog.issueid.eq(issueId))
+        .fetch()) {
+      Long timeworked = row.get(worklog.timeworked);
+      changes.add(new WorklogChange(type, row.get(worklog.id), issueId, row.get(issue.project),
+          row.get(worklog.author), row.get(worklog.startdate).getTime(),
+          row.get(worklog.updated).getTime(), timeworked == null ? 0L : timeworked));
+    }
+    return changes;
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QProject;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.Watermark;
+import org.everit.jira.worklog.query.plugin.WorklogChanges;
+
+import com.atlassian.jira.rest.api.util.StringList;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.QBean;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to find the worklogs changed strictly after a watermark, ordered by the updated date and
+ * the id of the worklogs.
+ */
+public class FindWorklogChangesQuery implements QuerydslCallable<WorklogChanges> {
+
+  private final List<StringList> fields;
+
+  private final int maxResults;
+
+  private final List<Long> projectIds;
+
+  private final long upperBound;
+
+  private final List<String> userKeys;
+
+  private final Watermark watermark;
+
+  private final ZoneId zone;
+
+  /**
+   * Simple constructor.
+   *
+   * @param watermark
+   *          the watermark of the last consumed change.
+   * @param upperBound
+   *          only the worklogs updated before this time (in milliseconds) are returned.
+   * @param fields
+   *          a list of additional fields.
+   * @param userKeys
+   *          a list of user keys.
+   * @param projectIds
+   *          a list of project ids.
+   * @param maxResults
+   *          the maximum number of the returned worklogs.
+   * @param zone
+   *          the time zone of the start and updated dates.
+   */
+  public FindWorklogChangesQuery(final Watermark watermark, final long upperBound,
+      final List<StringList> fields, final List<String> userKeys, final List<Long> projectIds,
+      final int maxResults, final ZoneId zone) {
+    this.watermark = watermark;
+    this.upperBound = upperBound;
+    this.fields = fields;
+    this.userKeys = userKeys;
+    this.projectIds = projectIds;
+    this.maxResults = maxResults;
+    this.zone = zone;
+  }
+
+  @Override
+  public WorklogChanges call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+    QProject project = new QProject("project");
+
+    StringExpression issueKey = project.pkey.concat("-").concat(issue.issuenum.stringValue());
+
+    Timestamp watermarkTimestamp = new Timestamp(watermark.getUpdated());
+    Timestamp upperBoundTimestamp = new Timestamp(upperBound);
+
+    List<String> fieldsAsList =
+        Arrays.asList(StringList.joinLists(fields).toQueryParam().split(","));
+    final boolean useComment = fieldsAsList.contains("comment");
+
+    BooleanExpression afterWatermark = worklog.updated.gt(watermarkTimestamp)
+        .or(worklog.updated.eq(watermarkTimestamp).and(worklog.id.gt(watermark.getId())));
+
+    QBean<JsonWorklog> jsonWorklog = JsonWorklog.createProjection(worklog.id,
+        worklog.startdate,
+        issueKey,
+        FindWorklogsQuery.createUserNameSubQuery(worklog),
+        worklog.timeworked,
+        useComment ? worklog.worklogbody : null,
+        worklog.updated,
+        zone);
+
+    List<Tuple> rows = new SQLQuery<Tuple>(connection, configuration)
+        .select(jsonWorklog, worklog.updated, worklog.id)
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .join(project).on(project.id.eq(issue.project))
+        .where(afterWatermark
+            .and(worklog.updated.lt(upperBoundTimestamp))
+            .and(worklog.author.in(userKeys))
+            .and(issue.project.in(projectIds)))
+        .orderBy(worklog.updated.asc(), worklog.id.asc())
+        .limit(maxResults + 1L)
+        .fetch();
+
+    boolean hasMore = rows.size() > maxResults;
+    List<Tuple> page = hasMore ? rows.subList(0, maxResults) : rows;
+    List<JsonWorklog> worklogs = new ArrayList<>(page.size());
+    Watermark nextWatermark = watermark;
+    for (Tuple row : page) {
+      worklogs.add(row.get(jsonWorklog));
+      nextWatermark = new Watermark(row.get(worklog.updated).getTime(), row.get(worklog.id));
+    }
+    return new WorklogChanges(worklogs, nextWatermark, hasMore);
+  }
+
+}
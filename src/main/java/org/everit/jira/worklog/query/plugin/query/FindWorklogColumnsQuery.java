@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.index.WorklogColumns;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to read every worklog into {@link WorklogColumns}. The rows are streamed in start date
+ * order, so the whole result is never held as objects.
+ */
+public class FindWorklogColumnsQuery implements QuerydslCallable<WorklogColumns> {
+
+  @Override
+  public WorklogColumns call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+
+    WorklogColumns.Builder builder = new WorklogColumns.Builder();
+    CloseableIterator<Tuple> rows = new SQLQuery<Tuple>(connection, configuration)
+        .select(worklog.id, worklog.issueid, issue.project, worklog.author, worklog.startdate,
+            worklog.updated, worklog.timeworked)
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .orderBy(worklog.startdate.asc(), worklog.id.asc())
+        .iterate();
+    try {
+      while (rows.hasNext()) {
+        Tuple row = rows.next();
+        Timestamp updated = row.get(worklog.updated);
+        Long timeworked = row.get(worklog.timeworked);
+        builder.add(row.get(worklog.id), row.get(worklog.issueid), row.get(issue.project),
+            row.get(worklog.author), row.get(worklog.startdate).getTime(),
+            updated == null ? 0L : updated.getTime(), timeworked == null ? 0L : timeworked);
+      }
+    } finally {
+      rows.close();
+    }
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to find the ids of the issues that have worklogs, in ascending order. Used to iterate over
+ * the worklog table in chunks.
+ */
+public class FindWorklogIssueIdsQuery implements QuerydslCallable<List<Long>> {
+
+  private final long afterIssueId;
+
+  private final long limit;
+
+  /**
+   * Simple constructor.
+   *
+   * @param afterIssueId
+   *          only the issue ids greater than this are returned.
+   * @param limit
+   *          the maximum number of the returned issue ids.
+   */
+  public FindWorklogIssueIdsQuery(final long afterIssueId, final long limit) {
+    this.afterIssueId = afterIssueId;
+    this.limit = limit;
+  }
+
+  @Override
+  public List<Long> call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    return new SQLQuery<Long>(connection, configuration)
+        .select(worklog.issueid)
+        .distinct()
+        .from(worklog)
+        .where(worklog.issueid.gt(afterIssueId))
+        .orderBy(worklog.issueid.asc())
+        .limit(limit)
+        .fetch();
+  }
+
+}
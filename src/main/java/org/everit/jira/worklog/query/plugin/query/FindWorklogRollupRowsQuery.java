@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.DateTimeConverterUtil;
+import org.everit.jira.worklog.query.plugin.rollup.WorklogRollupRow;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to aggregate the worklogs of the given issues by author, issue and day. The days are
+ * calculated in Java, so the query does not depend on the date functions of the database.
+ */
+public class FindWorklogRollupRowsQuery implements QuerydslCallable<Collection<WorklogRollupRow>> {
+
+  private final Collection<Long> issueIds;
+
+  /**
+   * Simple constructor.
+   *
+   * @param issueIds
+   *          the ids of the aggregated issues.
+   */
+  public FindWorklogRollupRowsQuery(final Collection<Long> issueIds) {
+    this.issueIds = issueIds;
+  }
+
+  @Override
+  public Collection<WorklogRollupRow> call(final Connection connection,
+      final Configuration configuration) throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+
+    Map<WorklogRollupRow, WorklogRollupRow> rollupRows = new HashMap<>();
+    for (Tuple row : new SQLQuery<Tuple>(connection, configuration)
+        .select(worklog.author, worklog.issueid, issue.project, worklog.startdate,
+            worklog.timeworked)
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .where(worklog.issueid.in(issueIds))
+        .fetch()) {
+      Long timeworked = row.get(worklog.timeworked);
+      WorklogRollupRow key = new WorklogRollupRow(row.get(worklog.author),
+          row.get(worklog.issueid), row.get(issue.project),
+          DateTimeConverterUtil.startOfDay(row.get(worklog.startdate).getTime()));
+      WorklogRollupRow rollupRow = rollupRows.get(key);
+      if (rollupRow == null) {
+        rollupRow = key;
+        rollupRows.put(key, key);
+      }
+      rollupRow.add(timeworked == null ? 0L : timeworked);
+    }
+    return rollupRows.values();
+  }
+
+}
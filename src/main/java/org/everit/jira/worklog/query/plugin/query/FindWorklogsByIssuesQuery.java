@@ -19,7 +19,9 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.everit.jira.querydsl.schema.QJiraissue;
@@ -27,9 +29,11 @@ import org.everit.jira.querydsl.schema.QProject;
 import org.everit.jira.querydsl.schema.QWorklog;
 import org.everit.jira.querydsl.support.QuerydslCallable;
 import org.everit.jira.worklog.query.plugin.IssueBeanWithTimespent;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryTrace;
 
 import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.SimpleExpression;
 import com.querydsl.core.types.dsl.StringExpression;
@@ -87,6 +91,31 @@ public class FindWorklogsByIssuesQuery implements QuerydslCallable<List<IssueBea
     this.jiraBaseUrl = jiraBaseUrl;
   }
 
+  /**
+   * Creates the predicate shared by the worklogs by issues queries.
+   *
+   * @param worklog
+   *          the worklog path.
+   * @param startDate
+   *          the start date of worklogs.
+   * @param endDate
+   *          the end date of worklogs
+   * @param userKeys
+   *          a list of user keys.
+   * @param issueIds
+   *          a collection of issue ids.
+   * @return the predicate.
+   */
+  static BooleanExpression createPredicate(final QWorklog worklog, final Calendar startDate,
+      final Calendar endDate, final List<String> userKeys, final Set<Long> issueIds) {
+    Timestamp startTimestamp = new Timestamp(startDate.getTimeInMillis());
+    Timestamp endTimestamp = new Timestamp(endDate.getTimeInMillis());
+    return worklog.startdate.goe(startTimestamp)
+        .and(worklog.startdate.lt(endTimestamp))
+        .and(worklog.author.in(userKeys))
+        .and(worklog.issueid.in(issueIds));
+  }
+
   @Override
   public List<IssueBeanWithTimespent> call(final Connection connection,
       final Configuration configuration)
@@ -95,16 +124,14 @@ public class FindWorklogsByIssuesQuery implements QuerydslCallable<List<IssueBea
     QJiraissue issue = new QJiraissue("issue");
     QProject project = new QProject("project");
 
-    Timestamp startTimestamp = new Timestamp(startDate.getTimeInMillis());
-    Timestamp endTimestamp = new Timestamp(endDate.getTimeInMillis());
-
     StringExpression issueKey = project.pkey.concat("-").concat(issue.issuenum.stringValue());
     SimpleExpression<Long> timeworked = SQLExpressions.sum(worklog.timeworked).as("timeworked");
     Expression<String> jiraBaseUrlExpression = Expressions.constant(jiraBaseUrl);
     StringExpression jiraBaseUrlStringExpression = StringExpressions.ltrim(jiraBaseUrlExpression);
 
     StringExpression concat = jiraBaseUrlStringExpression.concat(issue.id.stringValue());
-    return new SQLQuery<List<IssueBeanWithTimespent>>(connection, configuration)
+    SQLQuery<IssueBeanWithTimespent> query = new SQLQuery<IssueBeanWithTimespent>(connection,
+        configuration)
         .select(Projections.constructor(IssueBeanWithTimespent.class,
             issue.id,
             issueKey,
@@ -113,15 +140,18 @@ public class FindWorklogsByIssuesQuery implements QuerydslCallable<List<IssueBea
         .from(worklog)
         .join(issue).on(issue.id.eq(worklog.issueid))
         .join(project).on(project.id.eq(issue.project))
-        .where(worklog.startdate.goe(startTimestamp)
-            .and(worklog.startdate.lt(endTimestamp))
-            .and(worklog.author.in(userKeys))
-            .and(worklog.issueid.in(issueIds)))
+        .where(createPredicate(worklog, startDate, endDate, userKeys, issueIds))
         .groupBy(issue.id, project.pkey, issue.issuenum)
         .offset(offset)
         .limit(limit)
-        .orderBy(issue.id.asc())
-        .fetch();
+        .orderBy(issue.id.asc());
+    if (WorklogQueryTrace.isCapturingStatements()) {
+      Map<String, Integer> inListSizes = new LinkedHashMap<>();
+      inListSizes.put("users", userKeys.size());
+      inListSizes.put("issues", issueIds.size());
+      WorklogQueryTrace.addStatement("FindWorklogsByIssuesQuery", query, inListSizes);
+    }
+    return query.fetch();
   }
 
 }
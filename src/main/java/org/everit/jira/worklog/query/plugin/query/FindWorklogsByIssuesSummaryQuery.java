@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to count the worklogs and summarize their spent time with the predicate of the
+ * {@link FindWorklogsByIssuesQuery}.
+ */
+public class FindWorklogsByIssuesSummaryQuery implements QuerydslCallable<WorklogSummary> {
+
+  private final Calendar endDate;
+
+  private final Set<Long> issueIds;
+
+  private final Calendar startDate;
+
+  private final List<String> userKeys;
+
+  /**
+   * Simple constructor.
+   *
+   * @param startDate
+   *          the start date of worklogs.
+   * @param endDate
+   *          the end date of worklogs
+   * @param userKeys
+   *          a list of user keys.
+   * @param issueIds
+   *          a collection of issue ids.
+   */
+  public FindWorklogsByIssuesSummaryQuery(final Calendar startDate, final Calendar endDate,
+      final List<String> userKeys, final Set<Long> issueIds) {
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.userKeys = userKeys;
+    this.issueIds = issueIds;
+  }
+
+  @Override
+  public WorklogSummary call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+
+    NumberExpression<Long> count = worklog.id.count();
+    NumberExpression<Long> timeSpent = worklog.timeworked.sum();
+    Tuple result = new SQLQuery<Tuple>(connection, configuration)
+        .select(count, timeSpent)
+        .from(worklog)
+        .where(FindWorklogsByIssuesQuery.createPredicate(worklog, startDate, endDate, userKeys,
+            issueIds))
+        .fetchOne();
+    return new WorklogSummary(result.get(count), result.get(timeSpent));
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.Watermark;
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to read the current values of the worklogs created or updated strictly after a watermark,
+ * as {@link WorklogChange.Type#UPDATED} changes. Used to catch up a snapshot of the worklogs.
+ */
+public class FindWorklogsChangedSinceQuery implements QuerydslCallable<List<WorklogChange>> {
+
+  private final Watermark watermark;
+
+  /**
+   * Simple constructor.
+   *
+   * @param watermark
+   *          the watermark of the snapshot.
+   */
+  public FindWorklogsChangedSinceQuery(final Watermark watermark) {
+    this.watermark = watermark;
+  }
+
+  @Override
+  public List<WorklogChange> call(final Connection connection,
+      final Configuration configuration) throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+
+    Timestamp watermarkTimestamp = new Timestamp(watermark.getUpdated());
+    List<WorklogChange> changes = new ArrayList<>();
+    for (Tuple row : new SQLQuery<Tuple>(connection, configuration)
+        .select(worklog.id, worklog.issueid, issue.project, worklog.author, worklog.startdate,
+            worklog.updated, worklog.timeworked)
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .where(worklog.updated.gt(watermarkTimestamp)
+            .or(worklog.updated.eq(watermarkTimestamp).and(worklog.id.gt(watermark.getId()))))
+        .orderBy(worklog.updated.asc(), worklog.id.asc())
+        .fetch()) {
+      Long timeworked = row.get(worklog.timeworked);
+      changes.add(new WorklogChange(WorklogChange.Type.UPDATED, row.get(worklog.id),
+          row.get(worklog.issueid), row.get(issue.project), row.get(worklog.author),
+          row.get(worklog.startdate).getTime(), row.get(worklog.updated).getTime(),
+          timeworked == null ? 0L : timeworked));
+    }
+    return changes;
+  }
+
+}
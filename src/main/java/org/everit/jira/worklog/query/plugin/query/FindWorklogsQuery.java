@@ -20,7 +20,10 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.everit.jira.querydsl.schema.QAppUser;
 import org.everit.jira.querydsl.schema.QCwdUser;
@@ -28,6 +31,7 @@ import org.everit.jira.querydsl.schema.QJiraissue;
 import org.everit.jira.querydsl.schema.QProject;
 import org.everit.jira.querydsl.schema.QWorklog;
 import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryTrace;
 
 import com.atlassian.jira.rest.api.util.StringList;
 import com.querydsl.core.types.dsl.BooleanExpression;
@@ -37,7 +41,8 @@ import com.querydsl.sql.SQLExpressions;
 import com.querydsl.sql.SQLQuery;
 
 /**
- * Query to find worklogs.
+ * Query to find worklogs. The dates of the found worklogs are formatted in the time zone of the
+ * start date.
  */
 public class FindWorklogsQuery implements QuerydslCallable<List<JsonWorklog>> {
 
@@ -53,6 +58,8 @@ public class FindWorklogsQuery implements QuerydslCallable<List<JsonWorklog>> {
 
   private final List<String> userKeys;
 
+  private final Collection<Long> worklogIds;
+
   /**
    * Simple constructor.
    *
@@ -73,62 +80,156 @@ public class FindWorklogsQuery implements QuerydslCallable<List<JsonWorklog>> {
   public FindWorklogsQuery(final Calendar startDate, final Calendar endDate,
       final List<StringList> fields, final List<String> userKeys, final List<Long> projectIds,
       final boolean updated) {
+    this(startDate, endDate, fields, userKeys, projectIds, updated, null);
+  }
+
+  /**
+   * Constructor that restricts the worklogs to the given ids. The ids are selected by an other
+   * engine, for example the worklog index of Jira, the database only looks them up by their
+   * primary key and applies the same predicate on them.
+   *
+   * @param startDate
+   *          the start date of worklogs.
+   * @param endDate
+   *          the end date of worklogs
+   * @param fields
+   *          a list of additional fields.
+   * @param userKeys
+   *          a list of user keys.
+   * @param projectIds
+   *          a list of project ids.
+   * @param updated
+   *          True if the method give back the worklogs which were created or updated in the given
+   *          period, else false. The false give back the worklogs of the period.
+   * @param worklogIds
+   *          the ids of the worklogs. Null if the worklogs are not restricted by their ids.
+   */
+  public FindWorklogsQuery(final Calendar startDate, final Calendar endDate,
+      final List<StringList> fields, final List<String> userKeys, final List<Long> projectIds,
+      final boolean updated, final Collection<Long> worklogIds) {
     this.startDate = startDate;
     this.endDate = endDate;
     this.fields = fields;
     this.userKeys = userKeys;
     this.projectIds = projectIds;
     this.updated = updated;
+    this.worklogIds = worklogIds;
+  }
+
+  /**
+   * Creates the predicate shared by the worklog queries. The worklog and the issue paths have to be
+   * joined by the caller.
+   *
+   * @param worklog
+   *          the worklog path.
+   * @param issue
+   *          the issue path.
+   * @param startDate
+   *          the start date of worklogs.
+   * @param endDate
+   *          the end date of worklogs.
+   * @param userKeys
+   *          a list of user keys.
+   * @param projectIds
+   *          a list of project ids.
+   * @param updated
+   *          True if the predicate filters on the updated date of the worklogs, else false.
+   * @return the predicate.
+   */
+  static BooleanExpression createPredicate(final QWorklog worklog, final QJiraissue issue,
+      final Calendar startDate, final Calendar endDate, final List<String> userKeys,
+      final List<Long> projectIds, final boolean updated) {
+    Timestamp startTimestamp = new Timestamp(startDate.getTimeInMillis());
+    Timestamp endTimestamp = new Timestamp(endDate.getTimeInMillis());
+
+    BooleanExpression intervalPredicate = null;
+    if (updated) {
+      intervalPredicate = worklog.updated.goe(startTimestamp)
+          .and(worklog.updated.lt(endTimestamp));
+    } else {
+      intervalPredicate = worklog.startdate.goe(startTimestamp)
+          .and(worklog.startdate.lt(endTimestamp));
+    }
+    return intervalPredicate
+        .and(worklog.author.in(userKeys))
+        .and(issue.project.in(projectIds));
+  }
+
+  /**
+   * Creates the subquery that selects the user name of the worklog author.
+   *
+   * @param worklog
+   *          the worklog path.
+   * @return the user name subquery.
+   */
+  static SQLQuery<String> createUserNameSubQuery(final QWorklog worklog) {
+    QCwdUser cwduser = new QCwdUser("cwd_user");
+    QAppUser appuser = new QAppUser("app_user");
+    return SQLExpressions.select(cwduser.userName)
+        .from(cwduser)
+        .join(appuser).on(cwduser.lowerUserName.eq(appuser.lowerUserName))
+        .where(appuser.userKey.eq(worklog.author))
+        .distinct();
   }
 
   @Override
   public List<JsonWorklog> call(final Connection connection, final Configuration configuration)
       throws SQLException {
+    return createQuery(connection, configuration).fetch();
+  }
+
+  /**
+   * Creates the query of the worklogs ordered by their id.
+   *
+   * @param connection
+   *          the connection of the query.
+   * @param configuration
+   *          the configuration of the query.
+   * @return the query.
+   */
+  SQLQuery<JsonWorklog> createQuery(final Connection connection,
+      final Configuration configuration) {
     QWorklog worklog = new QWorklog("worklog");
     QJiraissue issue = new QJiraissue("issue");
     QProject project = new QProject("project");
-    QCwdUser cwduser = new QCwdUser("cwd_user");
-    QAppUser appuser = new QAppUser("app_user");
 
     StringExpression issueKey = project.pkey.concat("-").concat(issue.issuenum.stringValue());
 
-    Timestamp startTimestamp = new Timestamp(startDate.getTimeInMillis());
-    Timestamp endTimestamp = new Timestamp(endDate.getTimeInMillis());
-
     List<String> fieldsAsList =
         Arrays.asList(StringList.joinLists(fields).toQueryParam().split(","));
     final boolean useComment = fieldsAsList.contains("comment");
     final boolean useUpdated = fieldsAsList.contains("updated");
 
-    BooleanExpression intervalPredicate = null;
-    if (updated) {
-      intervalPredicate = worklog.updated.goe(startTimestamp)
-          .and(worklog.updated.lt(endTimestamp));
-    } else {
-      intervalPredicate = worklog.startdate.goe(startTimestamp)
-          .and(worklog.startdate.lt(endTimestamp));
+    BooleanExpression predicate = createPredicate(worklog, issue, startDate, endDate, userKeys,
+        projectIds, updated);
+    if (worklogIds != null) {
+      predicate = worklog.id.in(worklogIds).and(predicate);
     }
 
-    return new SQLQuery<JsonWorklog>(connection, configuration)
+    SQLQuery<JsonWorklog> query = new SQLQuery<JsonWorklog>(connection, configuration)
         .select(JsonWorklog.createProjection(worklog.id,
             worklog.startdate,
             issueKey,
-            SQLExpressions.select(cwduser.userName)
-                .from(cwduser)
-                .join(appuser).on(cwduser.lowerUserName.eq(appuser.lowerUserName))
-                .where(appuser.userKey.eq(worklog.author))
-                .distinct(),
+            createUserNameSubQuery(worklog),
             worklog.timeworked,
             useComment ? worklog.worklogbody : null,
-            useUpdated ? worklog.updated : null))
+            useUpdated ? worklog.updated : null,
+            startDate.getTimeZone().toZoneId()))
         .from(worklog)
         .join(issue).on(issue.id.eq(worklog.issueid))
         .join(project).on(project.id.eq(issue.project))
-        .where(intervalPredicate
-            .and(worklog.author.in(userKeys))
-            .and(issue.project.in(projectIds)))
-        .orderBy(worklog.id.asc())
-        .fetch();
+        .where(predicate)
+        .orderBy(worklog.id.asc());
+    if (WorklogQueryTrace.isCapturingStatements()) {
+      Map<String, Integer> inListSizes = new LinkedHashMap<>();
+      inListSizes.put("users", userKeys.size());
+      inListSizes.put("projects", projectIds.size());
+      if (worklogIds != null) {
+        inListSizes.put("worklogs", worklogIds.size());
+      }
+      WorklogQueryTrace.addStatement("FindWorklogsQuery", query, inListSizes);
+    }
+    return query;
   }
 
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+
+import org.everit.jira.querydsl.schema.QJiraissue;
+import org.everit.jira.querydsl.schema.QWorklog;
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.worklog.query.plugin.WorklogValidator;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.DateTimeExpression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+
+/**
+ * Query to count the worklogs and get their latest update date with the predicate of the
+ * {@link FindWorklogsQuery}. The result is used to validate the cached copies of the clients.
+ */
+public class FindWorklogsValidatorQuery implements QuerydslCallable<WorklogValidator> {
+
+  private final Calendar endDate;
+
+  private final List<Long> projectIds;
+
+  private final Calendar startDate;
+
+  private final boolean updated;
+
+  private final List<String> userKeys;
+
+  /**
+   * Simple constructor.
+   *
+   * @param startDate
+   *          the start date of worklogs.
+   * @param endDate
+   *          the end date of worklogs
+   * @param userKeys
+   *          a list of user keys.
+   * @param projectIds
+   *          a list of project ids.
+   * @param updated
+   *          True if the method validates the worklogs which were created or updated in the
+   *          given period, else false. The false validates the worklogs of the period.
+   */
+  public FindWorklogsValidatorQuery(final Calendar startDate, final Calendar endDate,
+      final List<String> userKeys, final List<Long> projectIds, final boolean updated) {
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.userKeys = userKeys;
+    this.projectIds = projectIds;
+    this.updated = updated;
+  }
+
+  @Override
+  public WorklogValidator call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    QWorklog worklog = new QWorklog("worklog");
+    QJiraissue issue = new QJiraissue("issue");
+
+    NumberExpression<Long> count = worklog.id.count();
+    DateTimeExpression<Timestamp> lastUpdated = worklog.updated.max();
+    Tuple result = new SQLQuery<Tuple>(connection, configuration)
+        .select(count, lastUpdated)
+        .from(worklog)
+        .join(issue).on(issue.id.eq(worklog.issueid))
+        .where(FindWorklogsQuery.createPredicate(worklog, issue, startDate, endDate, userKeys,
+            projectIds, updated))
+        .fetchOne();
+    return new WorklogValidator(result.get(count), result.get(lastUpdated));
+  }
+
+}
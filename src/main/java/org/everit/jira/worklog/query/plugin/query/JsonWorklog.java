@@ -16,6 +16,9 @@
 package org.everit.jira.worklog.query.plugin.query;
 
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,7 +26,7 @@ import org.everit.jira.worklog.query.plugin.DateTimeConverterUtil;
 
 import com.atlassian.jira.util.json.JSONException;
 import com.atlassian.jira.util.json.JSONObject;
-import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.QBean;
 import com.querydsl.core.types.dsl.DateTimeExpression;
 import com.querydsl.core.types.dsl.NumberExpression;
@@ -36,6 +39,26 @@ import com.querydsl.sql.SQLQuery;
  */
 public class JsonWorklog extends JSONObject {
 
+  /**
+   * Bean projection that creates the worklogs with the formatter of a time zone.
+   */
+  private static final class ZonedProjection extends QBean<JsonWorklog> {
+
+    private static final long serialVersionUID = 4405725339962003587L;
+
+    private final ZoneId zone;
+
+    ZonedProjection(final ZoneId zone, final Expression<?>... expressions) {
+      super(JsonWorklog.class, expressions);
+      this.zone = zone;
+    }
+
+    @Override
+    protected JsonWorklog create(final Class<? extends JsonWorklog> type) {
+      return new JsonWorklog(zone);
+    }
+  }
+
   private static final String COMMENT = "commentBody";
 
   private static final String DURATION = "duration";
@@ -67,12 +90,15 @@ public class JsonWorklog extends JSONObject {
    *          the worklog comment expression.
    * @param updated
    *          the worklog updated date expression.
+   * @param zone
+   *          the time zone of the formatted dates.
    * @return the JsonWorklog Bean population projection.
    */
   public static QBean<JsonWorklog> createProjection(final NumberExpression<Long> worklogId,
       final DateTimeExpression<Timestamp> startDate, final StringExpression issueKey,
       final SQLQuery<String> userId, final NumberExpression<Long> duration,
-      final StringExpression comment, final DateTimeExpression<Timestamp> updated) {
+      final StringExpression comment, final DateTimeExpression<Timestamp> updated,
+      final ZoneId zone) {
 
     List<SimpleExpression<?>> expressionList = new ArrayList<SimpleExpression<?>>();
     expressionList.add(worklogId.as(ID));
@@ -89,7 +115,7 @@ public class JsonWorklog extends JSONObject {
 
     SimpleExpression<?>[] expressions = new SimpleExpression<?>[expressionList.size()];
 
-    return Projections.bean(JsonWorklog.class, expressionList.toArray(expressions));
+    return new ZonedProjection(zone, expressionList.toArray(expressions));
   }
 
   /**
@@ -109,12 +135,15 @@ public class JsonWorklog extends JSONObject {
    *          the worklog comment expression.
    * @param updated
    *          the worklog updated date expression.
+   * @param zone
+   *          the time zone of the formatted dates.
    * @return the JsonWorklog Bean population projection.
    */
   public static QBean<JsonWorklog> createProjection(final NumberExpression<Long> worklogId,
       final DateTimeExpression<Timestamp> startDate, final StringExpression issueKey,
       final StringExpression userId, final NumberExpression<Long> duration,
-      final StringExpression comment, final DateTimeExpression<Timestamp> updated) {
+      final StringExpression comment, final DateTimeExpression<Timestamp> updated,
+      final ZoneId zone) {
 
     List<SimpleExpression<?>> expressionList = new ArrayList<SimpleExpression<?>>();
     expressionList.add(worklogId.as(ID));
@@ -131,7 +160,35 @@ public class JsonWorklog extends JSONObject {
 
     SimpleExpression<?>[] expressions = new SimpleExpression<?>[expressionList.size()];
 
-    return Projections.bean(JsonWorklog.class, expressionList.toArray(expressions));
+    return new ZonedProjection(zone, expressionList.toArray(expressions));
+  }
+
+  private final DateTimeFormatter dateTimeFormatter;
+
+  /**
+   * Constructor of a worklog with the dates in the default time zone.
+   */
+  public JsonWorklog() {
+    this(ZoneId.systemDefault());
+  }
+
+  /**
+   * Constructor of a worklog with the dates in the given time zone.
+   *
+   * @param zone
+   *          the time zone of the dates.
+   */
+  public JsonWorklog(final ZoneId zone) {
+    dateTimeFormatter = DateTimeConverterUtil.getOutputFormatter(zone);
+  }
+
+  /**
+   * The id of the worklog.
+   *
+   * @return the id or zero if it is not set.
+   */
+  public long getId() {
+    return optLong(ID);
   }
 
   public void setCommentBody(final String comment) throws JSONException {
@@ -151,11 +208,11 @@ public class JsonWorklog extends JSONObject {
   }
 
   public void setStartDate(final Timestamp startDate) throws JSONException {
-    put(START_DATE, DateTimeConverterUtil.stringDateToISO8601FormatString(startDate));
+    put(START_DATE, dateTimeFormatter.format(Instant.ofEpochMilli(startDate.getTime())));
   }
 
   public void setUpdated(final Timestamp updated) throws JSONException {
-    put(UPDATED, DateTimeConverterUtil.stringDateToISO8601FormatString(updated));
+    put(UPDATED, dateTimeFormatter.format(Instant.ofEpochMilli(updated.getTime())));
   }
 
   public void setUserId(final String userId) throws JSONException {
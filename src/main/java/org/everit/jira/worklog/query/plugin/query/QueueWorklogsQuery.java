@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+
+import org.everit.jira.querydsl.support.QuerydslCallable;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.sql.Configuration;
+
+/**
+ * Query that puts the worklogs of a {@link FindWorklogsQuery} into a bounded queue while the rows
+ * are read, so an other thread can consume them. The reading stops if the thread is interrupted
+ * while it waits for the consumer.
+ */
+public class QueueWorklogsQuery implements QuerydslCallable<Long> {
+
+  private final FindWorklogsQuery query;
+
+  private final BlockingQueue<JsonWorklog> queue;
+
+  /**
+   * Simple constructor.
+   *
+   * @param query
+   *          the query of the worklogs.
+   * @param queue
+   *          the queue of the worklogs.
+   */
+  public QueueWorklogsQuery(final FindWorklogsQuery query, final BlockingQueue<JsonWorklog> queue) {
+    this.query = query;
+    this.queue = queue;
+  }
+
+  @Override
+  public Long call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    long count = 0;
+    CloseableIterator<JsonWorklog> rows = query.createQuery(connection, configuration).iterate();
+    try {
+      while (rows.hasNext()) {
+        queue.put(rows.next());
+        count++;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("The reading of the worklogs was interrupted.", e);
+    } finally {
+      rows.close();
+    }
+    return count;
+  }
+
+}
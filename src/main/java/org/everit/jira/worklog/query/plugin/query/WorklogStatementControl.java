@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Controls the JDBC statements of the queries of a request. The statements get the query timeout
+ * of the request and they can be cancelled, for example when the client of the request
+ * disconnected. The statements are intercepted on the connection, so every
+ * {@link QuerydslCallable} can be controlled without changing it.
+ */
+public final class WorklogStatementControl {
+
+  /**
+   * The SQL state of the cancelled statements.
+   */
+  private static final String CANCELLED_SQL_STATE = "57014";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogStatementControl.class);
+
+  /**
+   * Check that the given exception or one of its causes was thrown by a timed out or cancelled
+   * statement.
+   *
+   * @param throwable
+   *          the exception.
+   * @return true if a statement timed out or was cancelled.
+   */
+  public static boolean isTimeout(final Throwable throwable) {
+    Throwable cause = throwable;
+    while (cause != null) {
+      if ((cause instanceof SQLTimeoutException) || ((cause instanceof SQLException)
+          && CANCELLED_SQL_STATE.equals(((SQLException) cause).getSQLState()))) {
+        return true;
+      }
+      cause = cause.getCause();
+    }
+    return false;
+  }
+
+  private volatile boolean cancelled;
+
+  private final Set<Statement> statements =
+      Collections.newSetFromMap(new ConcurrentHashMap<Statement, Boolean>());
+
+  private final int timeoutSeconds;
+
+  /**
+   * Constructor.
+   *
+   * @param timeoutSeconds
+   *          the query timeout of the statements in seconds. Zero means no timeout.
+   */
+  public WorklogStatementControl(final int timeoutSeconds) {
+    this.timeoutSeconds = timeoutSeconds;
+  }
+
+  /**
+   * Cancels the running statements of the request. The later statements are cancelled before
+   * they are executed.
+   */
+  public void cancel() {
+    cancelled = true;
+    for (Statement statement : statements) {
+      try {
+        statement.cancel();
+      } catch (SQLException | RuntimeException e) {
+        LOGGER.debug("Failed to cancel a worklog query statement.", e);
+      }
+    }
+  }
+
+  /**
+   * Wraps the callable so its statements are controlled.
+   *
+   * @param callable
+   *          the callable.
+   * @param <T>
+   *          the type of the result of the callable.
+   * @return the controlled callable.
+   */
+  public <T> QuerydslCallable<T> control(final QuerydslCallable<T> callable) {
+    return (connection, configuration) -> {
+      List<Statement> callStatements = new ArrayList<>();
+      try {
+        return callable.call(controlConnection(connection, callStatements), configuration);
+      } finally {
+        statements.removeAll(callStatements);
+      }
+    };
+  }
+
+  private Connection controlConnection(final Connection connection,
+      final List<Statement> callStatements) {
+    return (Connection) Proxy.newProxyInstance(WorklogStatementControl.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+          Object result;
+          try {
+            result = method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+          if (result instanceof Statement) {
+            Statement statement = (Statement) result;
+            register(statement);
+            callStatements.add(statement);
+          }
+          return result;
+        });
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  private void register(final Statement statement) throws SQLException {
+    if (cancelled) {
+      statement.close();
+      throw new SQLException("The worklog query was cancelled.", CANCELLED_SQL_STATE);
+    }
+    if (timeoutSeconds > 0) {
+      statement.setQueryTimeout(timeoutSeconds);
+    }
+    statements.add(statement);
+    if (cancelled) {
+      statement.cancel();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.everit.jira.querydsl.support.QuerydslCallable;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.sql.Configuration;
+
+/**
+ * Query that writes the worklogs of a {@link FindWorklogsQuery} as JSON objects separated by
+ * commas while the rows are read, so the whole result is never held in the memory. The
+ * {@link IOException} of the writer is thrown as {@link UncheckedIOException}.
+ */
+public class WriteWorklogsQuery implements QuerydslCallable<Long> {
+
+  private final FindWorklogsQuery query;
+
+  private final Writer writer;
+
+  /**
+   * Simple constructor.
+   *
+   * @param query
+   *          the query of the worklogs.
+   * @param writer
+   *          the writer of the worklogs.
+   */
+  public WriteWorklogsQuery(final FindWorklogsQuery query, final Writer writer) {
+    this.query = query;
+    this.writer = writer;
+  }
+
+  @Override
+  public Long call(final Connection connection, final Configuration configuration)
+      throws SQLException {
+    long count = 0;
+    CloseableIterator<JsonWorklog> rows = query.createQuery(connection, configuration).iterate();
+    try {
+      while (rows.hasNext()) {
+        if (count > 0) {
+          writer.write(',');
+        }
+        writer.write(rows.next().toString());
+        count++;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      rows.close();
+    }
+    return count;
+  }
+
+}
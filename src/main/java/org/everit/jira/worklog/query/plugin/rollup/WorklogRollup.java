@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.rollup;
+
+import net.java.ao.Entity;
+import net.java.ao.Preload;
+import net.java.ao.schema.Indexed;
+
+/**
+ * Active Objects entity of the summarized worklogs of an author on an issue on a day.
+ */
+@Preload
+public interface WorklogRollup extends Entity {
+
+  @Indexed
+  String getAuthorKey();
+
+  /**
+   * The start of the day in milliseconds, in the default time zone of the JVM.
+   *
+   * @return the day.
+   */
+  @Indexed
+  long getDay();
+
+  @Indexed
+  long getIssueId();
+
+  @Indexed
+  long getProjectId();
+
+  long getTimeWorked();
+
+  long getWorklogCount();
+
+  void setAuthorKey(String authorKey);
+
+  void setDay(long day);
+
+  void setIssueId(long issueId);
+
+  void setProjectId(long projectId);
+
+  void setTimeWorked(long timeWorked);
+
+  void setWorklogCount(long worklogCount);
+}
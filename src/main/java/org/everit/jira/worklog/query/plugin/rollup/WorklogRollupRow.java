@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.rollup;
+
+import java.util.Objects;
+
+/**
+ * The summarized worklogs of an author on an issue on a day. The equality is based on the author,
+ * the issue and the day, the aggregated values are mutable.
+ */
+public final class WorklogRollupRow {
+
+  private final String authorKey;
+
+  private final long day;
+
+  private final long issueId;
+
+  private final long projectId;
+
+  private long timeWorked;
+
+  private long worklogCount;
+
+  /**
+   * Simple constructor.
+   *
+   * @param authorKey
+   *          the key of the worklog author.
+   * @param issueId
+   *          the id of the issue.
+   * @param projectId
+   *          the id of the project of the issue.
+   * @param day
+   *          the start of the day in milliseconds.
+   */
+  public WorklogRollupRow(final String authorKey, final long issueId, final long projectId,
+      final long day) {
+    this.authorKey = authorKey;
+    this.issueId = issueId;
+    this.projectId = projectId;
+    this.day = day;
+  }
+
+  /**
+   * Add a worklog to the aggregated values.
+   *
+   * @param worklogTimeWorked
+   *          the time spent of the worklog in seconds.
+   */
+  public void add(final long worklogTimeWorked) {
+    timeWorked += worklogTimeWorked;
+    worklogCount++;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof WorklogRollupRow)) {
+      return false;
+    }
+    WorklogRollupRow other = (WorklogRollupRow) obj;
+    return (day == other.day) && (issueId == other.issueId)
+        && Objects.equals(authorKey, other.authorKey);
+  }
+
+  public String getAuthorKey() {
+    return authorKey;
+  }
+
+  public long getDay() {
+    return day;
+  }
+
+  public long getIssueId() {
+    return issueId;
+  }
+
+  public long getProjectId() {
+    return projectId;
+  }
+
+  public long getTimeWorked() {
+    return timeWorked;
+  }
+
+  public long getWorklogCount() {
+    return worklogCount;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(authorKey, issueId, day);
+  }
+
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.rollup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import org.everit.jira.querydsl.support.QuerydslSupport;
+import org.everit.jira.querydsl.support.ri.QuerydslSupportImpl;
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogIssueIdsQuery;
+import org.everit.jira.worklog.query.plugin.query.FindWorklogRollupRowsQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.beehive.ClusterLockService;
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+
+import net.java.ao.Query;
+
+/**
+ * Stores the worklogs summarized by author, issue and day. The rows of an issue are recalculated
+ * from the worklog table when a worklog of the issue changes, and the whole table can be rebuilt
+ * in chunks of issues. The aggregate queries can read this table instead of the worklog table
+ * after the first rebuild.
+ *
+ * <p>
+ * The recalculations and the rebuild are serialized by cluster locks, so the nodes of a Data
+ * Center cluster do not write the rows of the same issue at the same time.
+ * </p>
+ */
+public class WorklogRollupStore implements InitializingBean, DisposableBean {
+
+  /**
+   * The maximum number of values in an IN condition.
+   */
+  private static final int IN_LIST_CHUNK_SIZE = 500;
+
+  /**
+   * The prefix of the names of the cluster locks that serialize the recalculation of the same
+   * issue.
+   */
+  private static final String ISSUE_LOCK_NAME_PREFIX =
+      WorklogQueryConfiguration.PROPERTY_PREFIX + "rollup.issue.";
+
+  /**
+   * The number of the locks that serialize the recalculation of the same issue.
+   */
+  private static final int LOCK_STRIPES = 64;
+
+  /**
+   * The logger used to log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogRollupStore.class);
+
+  /**
+   * The name of the cluster lock held by the node that rebuilds the table.
+   */
+  private static final String REBUILD_LOCK_NAME =
+      WorklogQueryConfiguration.PROPERTY_PREFIX + "rollup.rebuild";
+
+  /**
+   * The key of the plugin setting that contains the start time of the running rebuild.
+   */
+  private static final String REBUILDING_SETTING_KEY =
+      WorklogQueryConfiguration.PROPERTY_PREFIX + "rollup.rebuilding";
+
+  /**
+   * The period of the read of the time of the last rebuild while the table was never rebuilt. The
+   * table can be rebuilt by another node of the cluster.
+   */
+  private static final long REBUILT_CHECK_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * The key of the plugin setting that contains the time of the last finished rebuild.
+   */
+  private static final String REBUILT_SETTING_KEY =
+      WorklogQueryConfiguration.PROPERTY_PREFIX + "rollup.rebuilt";
+
+  private final ActiveObjects activeObjects;
+
+  /**
+   * The cluster locks of the issues. A recalculation holds the lock of its issue and the rebuild
+   * of a chunk of issues holds all of them, so a recalculation cannot commit between the read and
+   * the write of the rebuild.
+   */
+  private final Lock[] locks = new Lock[LOCK_STRIPES];
+
+  private final PluginSettingsFactory pluginSettingsFactory;
+
+  private QuerydslSupport querydslSupport;
+
+  private ExecutorService rebuildExecutor;
+
+  /**
+   * Set while this node runs or starts a rebuild.
+   */
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+  /**
+   * The cluster lock held by the node that rebuilds the table.
+   */
+  private final Lock rebuildLock;
+
+  /**
+   * The time of the last finished rebuild, cached after it is read once. Null if the table was
+   * never rebuilt.
+   */
+  private volatile Long rebuilt;
+
+  /**
+   * The time of the last read of the time of the last rebuild that found no rebuild.
+   */
+  private volatile long rebuiltCheckTime;
+
+  /**
+   * Simple constructor.
+   *
+   * @param activeObjects
+   *          the Active Objects service of the plugin.
+   * @param pluginSettingsFactory
+   *          the plugin settings factory, used to store the state of the rebuild.
+   * @param clusterLockService
+   *          the cluster lock service, used to serialize the writes of the nodes.
+   */
+  public WorklogRollupStore(final ActiveObjects activeObjects,
+      final PluginSettingsFactory pluginSettingsFactory,
+      final ClusterLockService clusterLockService) {
+    this.activeObjects = activeObjects;
+    this.pluginSettingsFactory = pluginSettingsFactory;
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = clusterLockService.getLockForName(ISSUE_LOCK_NAME_PREFIX + i);
+    }
+    rebuildLock = clusterLockService.getLockForName(REBUILD_LOCK_NAME);
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    querydslSupport = new QuerydslSupportImpl();
+    rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwqp-rollup-rebuild");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private void appendInCondition(final StringBuilder where, final String column,
+      final Collection<?> values, final List<Object> parameters) {
+    where.append(" AND ").append(column).append(" IN (");
+    boolean first = true;
+    for (Object value : values) {
+      where.append(first ? "?" : ",?");
+      parameters.add(value);
+      first = false;
+    }
+    where.append(')');
+  }
+
+  @Override
+  public void destroy() {
+    rebuildExecutor.shutdownNow();
+  }
+
+  /**
+   * Runs the callback for every rollup row in the date interval of the given authors that belongs
+   * to the values of the chunked column.
+   */
+  private void forEachRollup(final long startDate, final long endDate,
+      final Collection<String> userKeys, final String chunkedColumn,
+      final Collection<Long> chunkedValues, final RollupCallback callback) {
+    Set<String> authorFilter = null;
+    if (userKeys.size() > IN_LIST_CHUNK_SIZE) {
+      authorFilter = new HashSet<>(userKeys);
+    }
+    for (List<Long> chunk : partition(chunkedValues)) {
+      StringBuilder where = new StringBuilder("DAY >= ? AND DAY < ?");
+      List<Object> parameters = new ArrayList<>();
+      parameters.add(startDate);
+      parameters.add(endDate);
+      appendInCondition(where, chunkedColumn, chunk, parameters);
+      if (authorFilter == null) {
+        appendInCondition(where, "AUTHOR_KEY", userKeys, parameters);
+      }
+      final Set<String> authors = authorFilter;
+      activeObjects.stream(WorklogRollup.class,
+          Query.select("ID, AUTHOR_KEY, ISSUE_ID, TIME_WORKED, WORKLOG_COUNT")
+              .where(where.toString(), parameters.toArray()),
+          rollup -> {
+            if ((authors == null) || authors.contains(rollup.getAuthorKey())) {
+              callback.accept(rollup);
+            }
+          });
+    }
+  }
+
+  private Long getRebuilt() {
+    Long cachedRebuilt = rebuilt;
+    long now = System.currentTimeMillis();
+    if ((cachedRebuilt != null) || ((now - rebuiltCheckTime) < REBUILT_CHECK_PERIOD_MILLIS)) {
+      return cachedRebuilt;
+    }
+    Object setting = pluginSettingsFactory.createGlobalSettings().get(REBUILT_SETTING_KEY);
+    if (setting == null) {
+      rebuiltCheckTime = now;
+      return null;
+    }
+    cachedRebuilt = Long.valueOf(setting.toString());
+    rebuilt = cachedRebuilt;
+    return cachedRebuilt;
+  }
+
+  /**
+   * Check that the aggregate queries can read the rollup table.
+   *
+   * @return true if the rollup table is enabled and it was rebuilt at least once.
+   */
+  public boolean isAvailable() {
+    return WorklogQueryConfiguration.isRollupEnabled() && (getRebuilt() != null);
+  }
+
+  /**
+   * Check that a node of the cluster rebuilds the rollup table.
+   *
+   * @return true if a rebuild is running.
+   */
+  public boolean isRebuilding() {
+    if (rebuilding.get()) {
+      return true;
+    }
+    PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+    if (pluginSettings.get(REBUILDING_SETTING_KEY) == null) {
+      return false;
+    }
+    if (!rebuildLock.tryLock()) {
+      return true;
+    }
+    try {
+      // The node of the rebuild stopped before it could clear the setting.
+      pluginSettings.remove(REBUILDING_SETTING_KEY);
+      return false;
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  private void lockAll() {
+    int locked = 0;
+    try {
+      while (locked < LOCK_STRIPES) {
+        locks[locked].lock();
+        locked++;
+      }
+    } catch (RuntimeException e) {
+      unlockAll(locked);
+      throw e;
+    }
+  }
+
+  private List<List<Long>> partition(final Collection<Long> values) {
+    List<List<Long>> chunks = new ArrayList<>();
+    List<Long> chunk = new ArrayList<>(IN_LIST_CHUNK_SIZE);
+    for (Long value : values) {
+      chunk.add(value);
+      if (chunk.size() == IN_LIST_CHUNK_SIZE) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>(IN_LIST_CHUNK_SIZE);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  /**
+   * Start the asynchronous rebuild of the whole rollup table.
+   *
+   * @return false if a node of the cluster already runs a rebuild.
+   */
+  public boolean rebuild() {
+    if (!rebuilding.compareAndSet(false, true)) {
+      return false;
+    }
+    // The cluster lock is held by the thread of the rebuild, so the executor reports whether it
+    // could take the lock.
+    CompletableFuture<Boolean> started = new CompletableFuture<>();
+    try {
+      rebuildExecutor.execute(() -> {
+        try {
+          if (!rebuildLock.tryLock()) {
+            started.complete(Boolean.FALSE);
+            return;
+          }
+          try {
+            started.complete(Boolean.TRUE);
+            rebuildAll();
+          } finally {
+            rebuildLock.unlock();
+          }
+        } catch (RuntimeException e) {
+          started.complete(Boolean.FALSE);
+          LOGGER.error("Failed to rebuild the worklog rollup table.", e);
+        } finally {
+          rebuilding.set(false);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rebuilding.set(false);
+      throw e;
+    }
+    return started.join();
+  }
+
+  /**
+   * Rebuilds the whole table. The caller holds the rebuild lock, the state of the rebuild is
+   * stored in the plugin settings for the other nodes.
+   */
+  private void rebuildAll() {
+    PluginSettings pluginSettings = pluginSettingsFactory.createGlobalSettings();
+    try {
+      long startTime = System.currentTimeMillis();
+      pluginSettings.put(REBUILDING_SETTING_KEY, String.valueOf(startTime));
+      int chunkSize = WorklogQueryConfiguration.getRollupRebuildChunkSize();
+      Long lastIssueId = 0L;
+      while (lastIssueId != null) {
+        lastIssueId = rebuildChunk(lastIssueId, chunkSize);
+      }
+      long rebuiltTime = System.currentTimeMillis();
+      pluginSettings.put(REBUILT_SETTING_KEY, String.valueOf(rebuiltTime));
+      rebuilt = rebuiltTime;
+      LOGGER.info("Rebuilt the worklog rollup table in {} ms.", rebuiltTime - startTime);
+    } finally {
+      pluginSettings.remove(REBUILDING_SETTING_KEY);
+    }
+  }
+
+  /**
+   * Replaces the rollup rows of the next chunk of issues. The ids of the issues are read under the
+   * locks of all issues too, so the recalculations of the issues on every node wait until the
+   * chunk is replaced and no recalculation is overwritten by the rebuild.
+   *
+   * @return the id of the last issue of the chunk or null if no issue with worklogs is left.
+   */
+  private Long rebuildChunk(final long fromIssueId, final int chunkSize) {
+    lockAll();
+    try {
+      List<Long> issueIds =
+          querydslSupport.execute(new FindWorklogIssueIdsQuery(fromIssueId, chunkSize));
+      if (issueIds.isEmpty()) {
+        activeObjects.deleteWithSQL(WorklogRollup.class, "ISSUE_ID > ?", fromIssueId);
+        return null;
+      }
+      long toIssueId = issueIds.get(issueIds.size() - 1);
+      Collection<WorklogRollupRow> rollupRows =
+          querydslSupport.execute(new FindWorklogRollupRowsQuery(issueIds));
+      activeObjects.executeInTransaction(() -> {
+        // The whole id range is replaced, so the rows of the issues without worklogs are removed.
+        activeObjects.deleteWithSQL(WorklogRollup.class, "ISSUE_ID > ? AND ISSUE_ID <= ?",
+            fromIssueId, toIssueId);
+        saveRollups(rollupRows);
+        return null;
+      });
+      return toIssueId;
+    } finally {
+      unlockAll(LOCK_STRIPES);
+    }
+  }
+
+  /**
+   * Recalculate the rollup rows of an issue from the worklog table. The rows are recalculated
+   * before the first rebuild too, so no change is lost while another node rebuilds the table.
+   *
+   * @param issueId
+   *          the id of the issue.
+   */
+  public void refreshIssue(final long issueId) {
+    Lock lock = locks[(int) Math.floorMod(issueId, (long) LOCK_STRIPES)];
+    lock.lock();
+    try {
+      Collection<WorklogRollupRow> rollupRows = querydslSupport
+          .execute(new FindWorklogRollupRowsQuery(Collections.singletonList(issueId)));
+      activeObjects.executeInTransaction(() -> {
+        activeObjects.deleteWithSQL(WorklogRollup.class, "ISSUE_ID = ?", issueId);
+        saveRollups(rollupRows);
+        return null;
+      });
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void saveRollups(final Collection<WorklogRollupRow> rollupRows) {
+    for (WorklogRollupRow rollupRow : rollupRows) {
+      WorklogRollup rollup = activeObjects.create(WorklogRollup.class);
+      rollup.setAuthorKey(rollupRow.getAuthorKey());
+      rollup.setIssueId(rollupRow.getIssueId());
+      rollup.setProjectId(rollupRow.getProjectId());
+      rollup.setDay(rollupRow.getDay());
+      rollup.setTimeWorked(rollupRow.getTimeWorked());
+      rollup.setWorklogCount(rollupRow.getWorklogCount());
+      rollup.save();
+    }
+  }
+
+  /**
+   * Summarize the worklogs of the given authors on the given issues. The interval boundaries have
+   * to be the start of a day and the end of a day in the default time zone.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param issueIds
+   *          the ids of the issues.
+   * @return the number and the summarized time spent of the worklogs.
+   */
+  public WorklogSummary summarizeByIssues(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> issueIds) {
+    long[] totals = new long[2];
+    forEachRollup(startDate, endDate, userKeys, "ISSUE_ID", issueIds, rollup -> {
+      totals[0] += rollup.getWorklogCount();
+      totals[1] += rollup.getTimeWorked();
+    });
+    return new WorklogSummary(totals[0], totals[1]);
+  }
+
+  /**
+   * Summarize the worklogs of the given authors on the given projects. The interval boundaries
+   * have to be the start of a day and the end of a day in the default time zone.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param projectIds
+   *          the ids of the projects.
+   * @return the number and the summarized time spent of the worklogs.
+   */
+  public WorklogSummary summarizeByProjects(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> projectIds) {
+    long[] totals = new long[2];
+    forEachRollup(startDate, endDate, userKeys, "PROJECT_ID", projectIds, rollup -> {
+      totals[0] += rollup.getWorklogCount();
+      totals[1] += rollup.getTimeWorked();
+    });
+    return new WorklogSummary(totals[0], totals[1]);
+  }
+
+  /**
+   * Summarize the time spent of the worklogs of the given authors per issue. The interval
+   * boundaries have to be the start of a day and the end of a day in the default time zone.
+   *
+   * @param startDate
+   *          the start of the interval in milliseconds.
+   * @param endDate
+   *          the end of the interval in milliseconds.
+   * @param userKeys
+   *          the keys of the worklog authors.
+   * @param issueIds
+   *          the ids of the issues.
+   * @return the time spent in seconds by issue id. The issues without worklogs are missing.
+   */
+  public Map<Long, Long> sumTimeSpentByIssues(final long startDate, final long endDate,
+      final Collection<String> userKeys, final Collection<Long> issueIds) {
+    Map<Long, Long> timeSpentByIssue = new HashMap<>();
+    forEachRollup(startDate, endDate, userKeys, "ISSUE_ID", issueIds,
+        rollup -> timeSpentByIssue.merge(rollup.getIssueId(), rollup.getTimeWorked(), Long::sum));
+    return timeSpentByIssue;
+  }
+
+  private void unlockAll(final int locked) {
+    for (int i = locked - 1; i >= 0; i--) {
+      locks[i].unlock();
+    }
+  }
+
+  /**
+   * Callback of the rollup row iteration.
+   */
+  private interface RollupCallback {
+    void accept(WorklogRollup rollup);
+  }
+
+}
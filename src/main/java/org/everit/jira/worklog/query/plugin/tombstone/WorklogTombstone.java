@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.tombstone;
+
+import net.java.ao.Entity;
+import net.java.ao.Preload;
+import net.java.ao.schema.Indexed;
+
+/**
+ * Active Objects entity of a deleted worklog.
+ */
+@Preload
+public interface WorklogTombstone extends Entity {
+
+  String getAuthorKey();
+
+  /**
+   * The time of the deletion in milliseconds.
+   *
+   * @return the deletion time.
+   */
+  @Indexed
+  long getDeleted();
+
+  long getIssueId();
+
+  long getProjectId();
+
+  @Indexed
+  long getWorklogId();
+
+  void setAuthorKey(String authorKey);
+
+  void setDeleted(long deleted);
+
+  void setIssueId(long issueId);
+
+  void setProjectId(long projectId);
+
+  void setWorklogId(long worklogId);
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.tombstone;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.jira.worklog.query.plugin.Watermark;
+import org.everit.jira.worklog.query.plugin.WorklogQueryConfiguration;
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+
+import net.java.ao.Query;
+
+/**
+ * Stores the tombstones of the deleted worklogs, so the incremental consumers of the worklog
+ * changes can be notified about the deletions. The tombstones older than the retention time are
+ * purged periodically.
+ */
+public class WorklogTombstoneStore implements InitializingBean, DisposableBean {
+
+  /**
+   * The logger used to log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogTombstoneStore.class);
+
+  /**
+   * The period of the purge of the expired tombstones in hours.
+   */
+  private static final long PURGE_PERIOD_HOURS = 1;
+
+  private final ActiveObjects activeObjects;
+
+  private ScheduledExecutorService purgeExecutor;
+
+  /**
+   * Simple constructor.
+   *
+   * @param activeObjects
+   *          the Active Objects service of the plugin.
+   */
+  public WorklogTombstoneStore(final ActiveObjects activeObjects) {
+    this.activeObjects = activeObjects;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    purgeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "jwqp-tombstone-purge");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // The first run is delayed, because Active Objects is not available during plugin startup.
+    purgeExecutor.scheduleWithFixedDelay(this::purgeExpired, PURGE_PERIOD_HOURS,
+        PURGE_PERIOD_HOURS, TimeUnit.HOURS);
+  }
+
+  @Override
+  public void destroy() {
+    purgeExecutor.shutdownNow();
+  }
+
+  /**
+   * Find every tombstone recorded at or after the given time.
+   *
+   * @param deletedSince
+   *          the time in milliseconds.
+   * @return the tombstones.
+   */
+  public List<WorklogTombstone> findAllDeletedSince(final long deletedSince) {
+    return Arrays.asList(activeObjects.find(WorklogTombstone.class,
+        Query.select().where("DELETED >= ?", deletedSince)));
+  }
+
+  /**
+   * Find the tombstones recorded strictly after the given watermark, ordered by the deletion time
+   * and the worklog id.
+   *
+   * @param watermark
+   *          the watermark of the last consumed deletion.
+   * @param upperBound
+   *          only the tombstones recorded before this time (in milliseconds) are returned.
+   * @param projectIds
+   *          the ids of the projects of the deleted worklogs.
+   * @param maxResults
+   *          the maximum number of the returned tombstones.
+   * @return the tombstones.
+   */
+  public List<WorklogTombstone> findDeletedSince(final Watermark watermark, final long upperBound,
+      final List<Long> projectIds, final int maxResults) {
+    if (projectIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    StringBuilder where = new StringBuilder(
+        "(DELETED > ? OR (DELETED = ? AND WORKLOG_ID > ?)) AND DELETED < ? AND PROJECT_ID IN (");
+    Object[] parameters = new Object[4 + projectIds.size()];
+    parameters[0] = watermark.getUpdated();
+    parameters[1] = watermark.getUpdated();
+    parameters[2] = watermark.getId();
+    parameters[3] = upperBound;
+    for (int i = 0; i < projectIds.size(); i++) {
+      where.append(i == 0 ? "?" : ",?");
+      parameters[4 + i] = projectIds.get(i);
+    }
+    where.append(')');
+    WorklogTombstone[] tombstones = activeObjects.find(WorklogTombstone.class,
+        Query.select()
+            .where(where.toString(), parameters)
+            .order("DELETED ASC, WORKLOG_ID ASC")
+            .limit(maxResults));
+    return Arrays.asList(tombstones);
+  }
+
+  /**
+   * Delete the tombstones older than the configured retention time.
+   */
+  public void purgeExpired() {
+    long cutoff = System.currentTimeMillis()
+        - TimeUnit.DAYS.toMillis(WorklogQueryConfiguration.getTombstoneRetentionDays());
+    try {
+      int deleted = activeObjects.deleteWithSQL(WorklogTombstone.class, "DELETED < ?", cutoff);
+      LOGGER.debug("Purged {} expired worklog tombstones.", deleted);
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to purge the expired worklog tombstones.", e);
+    }
+  }
+
+  /**
+   * Record the tombstone of a deleted worklog.
+   *
+   * @param change
+   *          the deletion of the worklog.
+   */
+  public void record(final WorklogChange change) {
+    WorklogTombstone tombstone = activeObjects.create(WorklogTombstone.class);
+    tombstone.setWorklogId(change.getWorklogId());
+    tombstone.setIssueId(change.getIssueId());
+    tombstone.setProjectId(change.getProjectId());
+    tombstone.setAuthorKey(change.getAuthorKey());
+    tombstone.setDeleted(System.currentTimeMillis());
+    tombstone.save();
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the time zone aware conversions of the {@link DateTimeConverterUtil}.
+ */
+public class DateTimeConverterUtilTest {
+
+  private static final ZoneId BUDAPEST = ZoneId.of("Europe/Budapest");
+
+  @Test
+  public void testFormatDateTimeInTimeZone() {
+    long millis = Instant.parse("2016-03-27T00:30:00.967Z").toEpochMilli();
+    Assert.assertEquals("2016-03-27T00:30:00+0000",
+        DateTimeConverterUtil.formatDateTime(millis, ZoneId.of("UTC")));
+    Assert.assertEquals("2016-03-27T01:30:00+0100",
+        DateTimeConverterUtil.formatDateTime(millis, BUDAPEST));
+    Assert.assertEquals("2016-03-27T04:30:00+0200",
+        DateTimeConverterUtil.formatDateTime(millis + 7_200_000L, BUDAPEST));
+  }
+
+  @Test
+  public void testInputStringToCalendarInTimeZone() {
+    Calendar startOfDay =
+        DateTimeConverterUtil.inputStringToCalendar("2016-03-27", LocalTime.MIDNIGHT, BUDAPEST);
+    Assert.assertEquals(Instant.parse("2016-03-26T23:00:00Z").toEpochMilli(),
+        startOfDay.getTimeInMillis());
+    Calendar endOfDay = DateTimeConverterUtil.inputStringToCalendar("2016-3-27",
+        LocalTime.of(23, 59, 59), BUDAPEST);
+    Assert.assertEquals(Instant.parse("2016-03-27T21:59:59Z").toEpochMilli(),
+        endOfDay.getTimeInMillis());
+    Assert.assertEquals(BUDAPEST, endOfDay.getTimeZone().toZoneId());
+  }
+
+  @Test(expected = DateTimeParseException.class)
+  public void testInvalidDate() {
+    DateTimeConverterUtil.inputStringToCalendar("2016-13-01", LocalTime.MIDNIGHT, BUDAPEST);
+  }
+
+  @Test(expected = DateTimeParseException.class)
+  public void testInstantWithoutOffset() {
+    DateTimeConverterUtil.inputStringToCalendar("2016-03-01T10:05:00", LocalTime.MIDNIGHT,
+        BUDAPEST);
+  }
+
+  @Test
+  public void testInputInstantToCalendar() {
+    Calendar instant = DateTimeConverterUtil.inputStringToCalendar(
+        "2016-03-01T10:05:00.123+02:00", LocalTime.MIDNIGHT, BUDAPEST);
+    Assert.assertEquals(Instant.parse("2016-03-01T08:05:00.123Z").toEpochMilli(),
+        instant.getTimeInMillis());
+    Assert.assertEquals(BUDAPEST, instant.getTimeZone().toZoneId());
+    Assert.assertEquals(Instant.parse("2016-03-01T08:10:00Z").toEpochMilli(),
+        DateTimeConverterUtil.inputStringToCalendar("2016-03-01T08:10Z", LocalTime.MIDNIGHT,
+            BUDAPEST).getTimeInMillis());
+  }
+
+  @Test(expected = DateTimeException.class)
+  public void testInvalidTimeZone() {
+    DateTimeConverterUtil.parseTimeZone("Mars/Olympus_Mons");
+  }
+
+  @Test
+  public void testParseTimeZone() {
+    Assert.assertEquals(ZoneId.systemDefault(), DateTimeConverterUtil.parseTimeZone(null));
+    Assert.assertEquals(ZoneId.systemDefault(), DateTimeConverterUtil.parseTimeZone(""));
+    Assert.assertEquals(BUDAPEST, DateTimeConverterUtil.parseTimeZone("Europe/Budapest"));
+    Assert.assertEquals(ZoneId.of("+02:00"), DateTimeConverterUtil.parseTimeZone("+02:00"));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCacheKey;
+import org.everit.jira.worklog.query.plugin.engine.WorklogFindEngine;
+import org.everit.jira.worklog.query.plugin.engine.WorklogQuerySpec;
+import org.everit.jira.worklog.query.plugin.query.WorklogStatementControl;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the caching of the results streamed by the {@link WorklogStreamingOutput}.
+ */
+public class WorklogStreamingOutputTest {
+
+  /**
+   * Engine that writes the given number of the same worklog.
+   */
+  private static class TestFindEngine implements WorklogFindEngine {
+
+    private final int rows;
+
+    TestFindEngine(final int rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public String getName() {
+      return "test";
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    public boolean supportsFind(final WorklogQuerySpec spec) {
+      return true;
+    }
+
+    @Override
+    public long writeWorklogs(final WorklogQuerySpec spec, final Writer writer)
+        throws IOException {
+      for (int i = 0; i < rows; i++) {
+        if (i > 0) {
+          writer.write(',');
+        }
+        writer.write(WORKLOG);
+      }
+      return rows;
+    }
+  }
+
+  private static final WorklogResultCacheKey CACHE_KEY = new WorklogResultCacheKey("worklogs",
+      0L, 1L, false, Collections.singletonList("user1"), null, null);
+
+  private static final long CACHE_MAX_BYTES = 64 * 1024;
+
+  private static final String WORKLOG = "{\"id\":1,\"commentBody\":\"Streamed worklog\"}";
+
+  private String stream(final WorklogResultCache cache, final int rows) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new WorklogStreamingOutput(new TestFindEngine(rows), null, new WorklogStatementControl(0),
+        cache, CACHE_KEY).write(output);
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testResultLargerThanAnEntryIsNotCached() throws IOException {
+    WorklogResultCache cache = new WorklogResultCache(CACHE_MAX_BYTES, 60);
+    int rows = (int) (cache.getMaxStringLength() / WORKLOG.length()) + 1;
+    String result = stream(cache, rows);
+
+    Assert.assertTrue(result.length() > cache.getMaxStringLength());
+    Assert.assertNull(cache.getIfPresent(CACHE_KEY));
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSmallResultIsCached() throws IOException {
+    WorklogResultCache cache = new WorklogResultCache(CACHE_MAX_BYTES, 60);
+    String result = stream(cache, 3);
+
+    Assert.assertEquals(result, cache.getIfPresent(CACHE_KEY));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.admission;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the limits of the {@link WorklogAdmissionController}.
+ */
+public class WorklogAdmissionControllerTest {
+
+  private static final long LEASE_MILLIS = 1000L;
+
+  private WorklogAdmissionController controller;
+
+  private long nanoTime;
+
+  @Before
+  public void setUp() {
+    controller = new WorklogAdmissionController(true,
+        endpoint -> endpoint.getLane() == WorklogQueryLane.HEAVY ? 2 : 4,
+        lane -> lane == WorklogQueryLane.HEAVY ? 1 : 4, 0, 0, 7, LEASE_MILLIS,
+        () -> nanoTime);
+  }
+
+  @Test
+  public void testCheapLaneIsNotBlockedByHeavyQueries() {
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.WORKLOGS, "user1"));
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.WORKLOGS, "user2"));
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.WORKLOGS, "user3"));
+
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.WORKLOGS_SUMMARY, "user1"));
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.WORKLOGS_BY_ISSUES, "user3"));
+  }
+
+  @Test
+  public void testDisabled() {
+    WorklogAdmissionController disabled = new WorklogAdmissionController(false,
+        endpoint -> 1, lane -> 1, 0, 0, 7, LEASE_MILLIS, () -> nanoTime);
+    Assert.assertSame(WorklogAdmission.UNLIMITED,
+        disabled.tryAdmit(WorklogEndpoint.WORKLOGS, "user1"));
+    Assert.assertSame(WorklogAdmission.UNLIMITED,
+        disabled.tryAdmit(WorklogEndpoint.WORKLOGS, "user1"));
+  }
+
+  @Test
+  public void testEndpointLimit() {
+    WorklogAdmission first = controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user1");
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user2"));
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user3"));
+
+    first.close();
+    first.close();
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user3"));
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, null));
+    Assert.assertEquals(7, controller.getRetryAfterSeconds());
+  }
+
+  @Test
+  public void testNotClosedAdmissionExpires() {
+    // The admission of a streamed response whose entity is never written is never closed.
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user1"));
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user2"));
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user1"));
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user3"));
+
+    nanoTime += TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS) - 1;
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user3"));
+
+    nanoTime++;
+    WorklogAdmission admission = controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user1");
+    Assert.assertNotNull(admission);
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user3"));
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user2"));
+    admission.close();
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user2"));
+  }
+
+  @Test
+  public void testUserLimit() {
+    WorklogAdmission admission = controller.tryAdmit(WorklogEndpoint.WORKLOGS, "user1");
+    Assert.assertNotNull(admission);
+    Assert.assertNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user1"));
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user2"));
+
+    admission.close();
+    Assert.assertNotNull(controller.tryAdmit(WorklogEndpoint.UPDATED_WORKLOGS, "user1"));
+  }
+}
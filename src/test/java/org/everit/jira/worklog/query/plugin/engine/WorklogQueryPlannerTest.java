@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
+import org.everit.jira.worklog.query.plugin.WorklogValidator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the engine selection of the {@link WorklogQueryPlanner}.
+ */
+public class WorklogQueryPlannerTest {
+
+  /**
+   * Engine that has every capability and supports the queries of the given capabilities.
+   */
+  private static class TestEngine implements WorklogFindEngine, WorklogSummarizeEngine,
+      WorklogSumByIssuesEngine, WorklogValidateEngine {
+
+    private boolean available = true;
+
+    private final Set<Class<? extends WorklogQueryEngine>> capabilities;
+
+    private final String name;
+
+    @SafeVarargs
+    TestEngine(final String name, final Class<? extends WorklogQueryEngine>... capabilities) {
+      this.name = name;
+      this.capabilities = new HashSet<>(Arrays.asList(capabilities));
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return available;
+    }
+
+    @Override
+    public WorklogSummary summarize(final WorklogQuerySpec spec) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public boolean supportsFind(final WorklogQuerySpec spec) {
+      return capabilities.contains(WorklogFindEngine.class);
+    }
+
+    @Override
+    public boolean supportsSumByIssues(final WorklogQuerySpec spec) {
+      return capabilities.contains(WorklogSumByIssuesEngine.class);
+    }
+
+    @Override
+    public boolean supportsSummarize(final WorklogQuerySpec spec) {
+      return capabilities.contains(WorklogSummarizeEngine.class);
+    }
+
+    @Override
+    public boolean supportsValidate(final WorklogQuerySpec spec) {
+      return capabilities.contains(WorklogValidateEngine.class);
+    }
+
+    @Override
+    public Map<Long, Long> sumTimeSpentByIssues(final WorklogQuerySpec spec) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public WorklogValidator validate(final WorklogQuerySpec spec) {
+      throw new AssertionError();
+    }
+
+    @Override
+    public long writeWorklogs(final WorklogQuerySpec spec, final Writer writer) {
+      throw new AssertionError();
+    }
+  }
+
+  /**
+   * Engine that only loads the rows.
+   */
+  private static class TestFindEngine implements WorklogFindEngine {
+
+    private final String name;
+
+    TestFindEngine(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    public boolean supportsFind(final WorklogQuerySpec spec) {
+      return true;
+    }
+
+    @Override
+    public long writeWorklogs(final WorklogQuerySpec spec, final Writer writer) {
+      throw new AssertionError();
+    }
+  }
+
+  private final TestEngine columnar = new TestEngine(ColumnarWorklogQueryEngine.NAME,
+      WorklogSummarizeEngine.class, WorklogValidateEngine.class);
+
+  private final TestFindEngine lucene = new TestFindEngine(LuceneWorklogQueryEngine.NAME);
+
+  private final WorklogQuerySpec spec = WorklogQuerySpec.byProjects(Calendar.getInstance(),
+      Calendar.getInstance(), Collections.singletonList("user"), Collections.singletonList(1L),
+      null, false, null);
+
+  private final TestEngine sql = new TestEngine(SqlWorklogQueryEngine.NAME,
+      WorklogFindEngine.class, WorklogSummarizeEngine.class, WorklogValidateEngine.class);
+
+  private WorklogQueryPlanner createPlanner(final String engineOrder) {
+    return new WorklogQueryPlanner(Arrays.<WorklogQueryEngine> asList(columnar, lucene, sql),
+        engineOrder);
+  }
+
+  @Test
+  public void testDisabledEngineIsSkipped() {
+    WorklogQueryPlanner planner = createPlanner("columnar");
+    Assert.assertEquals(Arrays.asList(columnar, sql), planner.getEngines());
+    Assert.assertSame(sql, planner.planFind(spec));
+  }
+
+  @Test
+  public void testEngineOrder() {
+    WorklogQueryPlanner planner = createPlanner("lucene, columnar,sql");
+    Assert.assertSame(lucene, planner.planFind(spec));
+    Assert.assertSame(columnar, planner.planSummarize(spec));
+    Assert.assertNull(planner.planSumByIssues(spec));
+
+    planner = createPlanner("sql,columnar,lucene");
+    Assert.assertSame(sql, planner.planSummarize(spec));
+  }
+
+  @Test
+  public void testEngineWithoutCapabilityIsSkipped() {
+    WorklogQueryPlanner planner = createPlanner("lucene,sql");
+    Assert.assertSame(sql, planner.planSummarize(spec));
+    Assert.assertSame(sql, planner.planValidate(spec));
+  }
+
+  @Test
+  public void testUnavailableEngineIsSkipped() {
+    WorklogQueryPlanner planner = createPlanner("columnar,lucene,sql");
+    columnar.available = false;
+    Assert.assertSame(sql, planner.planValidate(spec));
+    columnar.available = true;
+    Assert.assertSame(columnar, planner.planValidate(spec));
+  }
+}
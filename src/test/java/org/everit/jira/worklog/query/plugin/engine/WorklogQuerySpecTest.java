@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.engine;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the interval of a {@link WorklogQuerySpec}: the day alignment and the split at the month
+ * boundaries.
+ */
+public class WorklogQuerySpecTest {
+
+  private static WorklogQuerySpec createSpec(final Calendar startDate, final Calendar endDate) {
+    return WorklogQuerySpec.byProjects(startDate, endDate, Collections.singletonList("admin"),
+        Collections.singletonList(1L), null, false, null);
+  }
+
+  @Test
+  public void testDayAligned() {
+    Assert.assertTrue(createSpec(new GregorianCalendar(2020, Calendar.JANUARY, 1),
+        new GregorianCalendar(2020, Calendar.FEBRUARY, 1)).isDayAligned());
+    Assert.assertTrue(createSpec(new GregorianCalendar(2020, Calendar.JANUARY, 1),
+        new GregorianCalendar(2020, Calendar.JANUARY, 31, 23, 59, 59)).isDayAligned());
+    Assert.assertFalse(createSpec(new GregorianCalendar(2020, Calendar.JANUARY, 1, 10, 5),
+        new GregorianCalendar(2020, Calendar.JANUARY, 2)).isDayAligned());
+    Assert.assertFalse(createSpec(new GregorianCalendar(2020, Calendar.JANUARY, 1),
+        new GregorianCalendar(2020, Calendar.JANUARY, 1, 10, 10)).isDayAligned());
+  }
+
+  @Test
+  public void testSplitDistributesMonths() {
+    Calendar startDate = new GregorianCalendar(2020, Calendar.JANUARY, 15, 10, 0);
+    Calendar endDate = new GregorianCalendar(2020, Calendar.JULY, 10);
+    List<WorklogQuerySpec> parts = createSpec(startDate, endDate).splitByMonths(3);
+    Assert.assertEquals(3, parts.size());
+    Assert.assertEquals(startDate, parts.get(0).getStartDate());
+    Assert.assertEquals(new GregorianCalendar(2020, Calendar.MARCH, 1), parts.get(0).getEndDate());
+    Assert.assertEquals(parts.get(0).getEndDate(), parts.get(1).getStartDate());
+    Assert.assertEquals(new GregorianCalendar(2020, Calendar.MAY, 1), parts.get(1).getEndDate());
+    Assert.assertEquals(parts.get(1).getEndDate(), parts.get(2).getStartDate());
+    Assert.assertEquals(endDate, parts.get(2).getEndDate());
+  }
+
+  @Test
+  public void testSplitLimitedByMonths() {
+    Calendar startDate = new GregorianCalendar(2020, Calendar.JANUARY, 15);
+    Calendar endDate = new GregorianCalendar(2020, Calendar.MARCH, 1);
+    Assert.assertEquals(2, createSpec(startDate, endDate).splitByMonths(8).size());
+  }
+
+  @Test
+  public void testWithinMonthNotSplit() {
+    WorklogQuerySpec spec = createSpec(new GregorianCalendar(2020, Calendar.JANUARY, 1),
+        new GregorianCalendar(2020, Calendar.FEBRUARY, 1));
+    Assert.assertEquals(Collections.singletonList(spec), spec.splitByMonths(4));
+    spec = createSpec(new GregorianCalendar(2020, Calendar.JANUARY, 1),
+        new GregorianCalendar(2020, Calendar.DECEMBER, 1));
+    Assert.assertEquals(Collections.singletonList(spec), spec.splitByMonths(1));
+  }
+}
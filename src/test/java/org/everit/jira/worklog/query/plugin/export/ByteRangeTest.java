@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.export;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the parsing of the Range header by the {@link ByteRange}.
+ */
+public class ByteRangeTest {
+
+  @Test
+  public void testClosedRange() {
+    ByteRange range = ByteRange.parse("bytes=10-19", 100);
+    Assert.assertEquals(10, range.getStart());
+    Assert.assertEquals(10, range.getLength());
+    Assert.assertEquals("bytes 10-19/100", range.getContentRange());
+  }
+
+  @Test
+  public void testIgnoredHeaders() {
+    Assert.assertNull(ByteRange.parse(null, 100));
+    Assert.assertNull(ByteRange.parse("items=0-1", 100));
+    Assert.assertNull(ByteRange.parse("bytes=0-1,5-6", 100));
+    Assert.assertNull(ByteRange.parse("bytes=a-b", 100));
+    Assert.assertNull(ByteRange.parse("bytes=20-10", 100));
+  }
+
+  @Test
+  public void testOpenRange() {
+    ByteRange range = ByteRange.parse("bytes=90-", 100);
+    Assert.assertEquals(90, range.getStart());
+    Assert.assertEquals(10, range.getLength());
+    range = ByteRange.parse("bytes=90-500", 100);
+    Assert.assertEquals("bytes 90-99/100", range.getContentRange());
+  }
+
+  @Test
+  public void testSuffixRange() {
+    ByteRange range = ByteRange.parse("bytes=-30", 100);
+    Assert.assertEquals(70, range.getStart());
+    Assert.assertEquals(30, range.getLength());
+    range = ByteRange.parse("bytes=-300", 100);
+    Assert.assertEquals(0, range.getStart());
+    Assert.assertEquals(100, range.getLength());
+  }
+
+  @Test
+  public void testUnsatisfiableRange() {
+    ByteRange range = ByteRange.parse("bytes=100-", 100);
+    Assert.assertFalse(range.isSatisfiable());
+    Assert.assertEquals("bytes */100", range.getContentRange());
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.everit.jira.worklog.query.plugin.Watermark;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the snapshot file of the columnar worklog index.
+ */
+public class WorklogIndexFileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private WorklogColumns createColumns() {
+    return new WorklogColumns.Builder()
+        .add(1L, 100L, 10L, "user1", 1000L, 5000L, 3600L)
+        .add(2L, 100L, 10L, "\u00e1rv\u00edzt\u0171r\u0151", 2000L, 2000L, 1800L)
+        .add(3L, 200L, 20L, "user1", 2000L, 3000L, 600L)
+        .build();
+  }
+
+  @Test
+  public void testMissingAndTruncatedFile() throws IOException {
+    Path path = temporaryFolder.getRoot().toPath().resolve("index/worklog-index.snapshot");
+    WorklogIndexFile indexFile = new WorklogIndexFile(path);
+    Assert.assertNull(indexFile.read());
+
+    indexFile.write(createColumns(), new Watermark(4000L, 0L));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+    Assert.assertNull(indexFile.read());
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    Path path = temporaryFolder.getRoot().toPath().resolve("index/worklog-index.snapshot");
+    WorklogIndexFile indexFile = new WorklogIndexFile(path);
+    WorklogColumns columns = createColumns();
+    indexFile.write(columns, new Watermark(4000L, 7L));
+
+    WorklogIndexFile.Content content = indexFile.read();
+    Assert.assertEquals(new Watermark(4000L, 7L), content.getWatermark());
+    WorklogColumns readColumns = content.getColumns();
+    Assert.assertEquals(columns.size(), readColumns.size());
+    for (int row = 0; row < columns.size(); row++) {
+      Assert.assertEquals(columns.getId(row), readColumns.getId(row));
+      Assert.assertEquals(columns.getIssueId(row), readColumns.getIssueId(row));
+      Assert.assertEquals(columns.getProjectId(row), readColumns.getProjectId(row));
+      Assert.assertEquals(columns.getAuthorKey(row), readColumns.getAuthorKey(row));
+      Assert.assertEquals(columns.getStartDate(row), readColumns.getStartDate(row));
+      Assert.assertEquals(columns.getUpdatedDate(row), readColumns.getUpdatedDate(row));
+      Assert.assertEquals(columns.getTimeSpent(row), readColumns.getTimeSpent(row));
+    }
+    Assert.assertEquals(1, readColumns.lowerBound(2000L));
+  }
+
+}
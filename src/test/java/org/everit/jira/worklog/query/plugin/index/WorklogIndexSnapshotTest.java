@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the queries and the changes of the columnar worklog index.
+ */
+public class WorklogIndexSnapshotTest {
+
+  private static final long DAY = 86400000L;
+
+  private static final String USER1 = "user1";
+
+  private static final String USER2 = "user2";
+
+  private WorklogIndexSnapshot snapshot;
+
+  private long[] aggregate(final WorklogIndexSnapshot indexSnapshot, final long startDate,
+      final long endDate, final List<String> userKeys, final List<Long> projectIds,
+      final boolean updated) {
+    long[] totals = new long[2];
+    indexSnapshot.aggregate(startDate, endDate, userKeys, projectIds, null, updated,
+        (issueId, timeSpent, updatedDate) -> {
+          totals[0]++;
+          totals[1] += timeSpent;
+        });
+    return totals;
+  }
+
+  @Before
+  public void setUp() {
+    WorklogColumns columns = new WorklogColumns.Builder()
+        .add(1L, 100L, 10L, USER1, DAY, 5 * DAY, 3600L)
+        .add(2L, 100L, 10L, USER2, 2 * DAY, 2 * DAY, 1800L)
+        .add(3L, 200L, 20L, USER1, 2 * DAY, 3 * DAY, 600L)
+        .add(4L, 200L, 20L, USER1, 4 * DAY, 4 * DAY, 60L)
+        .build();
+    snapshot = new WorklogIndexSnapshot(columns, WorklogRowSet.EMPTY,
+        Collections.<WorklogChange> emptyList());
+  }
+
+  @Test
+  public void testAggregate() {
+    List<String> user1 = Collections.singletonList(USER1);
+    Assert.assertArrayEquals(new long[] { 2, 4200 },
+        aggregate(snapshot, DAY, 3 * DAY, user1, null, false));
+    Assert.assertArrayEquals(new long[] { 2, 5400 },
+        aggregate(snapshot, 0, 10 * DAY, Arrays.asList(USER1, USER2), Arrays.asList(10L),
+            false));
+    Assert.assertArrayEquals(new long[] { 2, 660 },
+        aggregate(snapshot, 3 * DAY, 5 * DAY, user1, null, true));
+  }
+
+  @Test
+  public void testApplyAll() {
+    List<String> user1 = Collections.singletonList(USER1);
+    WorklogIndexSnapshot caughtUp = snapshot.applyAll(Arrays.asList(
+        new WorklogChange(WorklogChange.Type.UPDATED, 1L, 100L, 10L, USER1, DAY, 6 * DAY,
+            7200L),
+        new WorklogChange(WorklogChange.Type.UPDATED, 5L, 300L, 30L, USER1, 3 * DAY, 6 * DAY,
+            120L),
+        new WorklogChange(WorklogChange.Type.DELETED, 4L, 200L, 20L, USER1, 0L, 6 * DAY, 0L),
+        new WorklogChange(WorklogChange.Type.DELETED, 9L, 900L, 90L, USER1, 0L, 6 * DAY, 0L)));
+
+    Assert.assertEquals(caughtUp.getColumns().size(), caughtUp.size());
+    Assert.assertEquals(4, caughtUp.size());
+    Assert.assertArrayEquals(new long[] { 3, 7920 },
+        aggregate(caughtUp, 0, 10 * DAY, user1, null, false));
+  }
+
+  @Test
+  public void testApplyAndMerge() {
+    List<String> user1 = Collections.singletonList(USER1);
+    WorklogIndexSnapshot changed = snapshot
+        .apply(new WorklogChange(WorklogChange.Type.CREATED, 5L, 300L, 30L, USER1, 3 * DAY,
+            6 * DAY, 120L))
+        .apply(new WorklogChange(WorklogChange.Type.UPDATED, 1L, 100L, 10L, USER1, 9 * DAY,
+            7 * DAY, 7200L))
+        .apply(new WorklogChange(WorklogChange.Type.DELETED, 3L, 200L, 20L, USER1, 2 * DAY,
+            3 * DAY, 600L));
+
+    Assert.assertEquals(4, changed.size());
+    Assert.assertArrayEquals(new long[] { 2, 180 },
+        aggregate(changed, 0, 5 * DAY, user1, null, false));
+    Assert.assertArrayEquals(new long[] { 1, 7200 },
+        aggregate(changed, 9 * DAY, 10 * DAY, user1, null, false));
+
+    WorklogIndexSnapshot merged = changed.merge();
+    Assert.assertEquals(4, merged.size());
+    for (long start = 0; start < 10 * DAY; start += DAY) {
+      Assert.assertArrayEquals(aggregate(changed, start, start + 2 * DAY, user1, null, false),
+          aggregate(merged, start, start + 2 * DAY, user1, null, false));
+    }
+    Assert.assertArrayEquals(aggregate(changed, 0, 10 * DAY, user1, null, true),
+        aggregate(merged, 0, 10 * DAY, user1, null, true));
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the copy-on-write set of the rows.
+ */
+public class WorklogRowSetTest {
+
+  @Test
+  public void testAdd() {
+    WorklogRowSet set = WorklogRowSet.EMPTY.add(5).add(70000);
+
+    Assert.assertEquals(2, set.size());
+    Assert.assertTrue(set.contains(5));
+    Assert.assertTrue(set.contains(70000));
+    Assert.assertFalse(set.contains(6));
+    Assert.assertFalse(set.contains(1000000));
+    Assert.assertSame(set, set.add(5));
+    Assert.assertFalse(WorklogRowSet.EMPTY.contains(5));
+  }
+
+  @Test
+  public void testAddAllDoesNotModifyTheOriginal() {
+    WorklogRowSet original = WorklogRowSet.EMPTY.add(1);
+    WorklogRowSet changed = original.addAll(new int[] { 1, 2, 2, 64, 4096 });
+
+    Assert.assertEquals(1, original.size());
+    Assert.assertFalse(original.contains(2));
+    Assert.assertEquals(4, changed.size());
+    Assert.assertTrue(changed.contains(2));
+    Assert.assertTrue(changed.contains(64));
+    Assert.assertTrue(changed.contains(4096));
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the byte counting of the {@link CountingOutputStream}.
+ */
+public class CountingOutputStreamTest {
+
+  private static final String TEXT = "\u00E1rv\u00EDzt\u0171r\u0151";
+
+  private static void assertUtf8Length(final String text) {
+    Assert.assertEquals(text.getBytes(StandardCharsets.UTF_8).length,
+        CountingOutputStream.utf8Length(text));
+  }
+
+  @Test
+  public void testCount() throws IOException {
+    CountingOutputStream output = new CountingOutputStream(new ByteArrayOutputStream());
+    output.write('[');
+    output.write(TEXT.getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(1 + CountingOutputStream.utf8Length(TEXT), output.getCount());
+  }
+
+  @Test
+  public void testUtf8Length() {
+    assertUtf8Length("");
+    assertUtf8Length("{\"id\":1}");
+    assertUtf8Length("\u00E1rv\u00EDzt\u0171r\u0151 t\u00FCk\u00F6rf\u00FAr\u00F3g\u00E9p");
+    assertUtf8Length("\u20AC \u4E2D\u6587");
+    assertUtf8Length("worklog \uD83D\uDE00");
+    assertUtf8Length("unpaired \uD83D and \uDE00");
+    assertUtf8Length("trailing \uD83D");
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the recording of the request traces in the {@link WorklogEndpointMetrics} and the
+ * {@link WorklogServerTiming} header.
+ */
+public class WorklogEndpointMetricsTest {
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 98; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+    }
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(700));
+    histogram.record(TimeUnit.SECONDS.toNanos(400));
+    long[] counts = histogram.getBucketCounts();
+    Assert.assertEquals(5, histogram.percentileMillis(counts, 0.5));
+    Assert.assertEquals(5, histogram.percentileMillis(counts, 0.95));
+    Assert.assertEquals(1000, histogram.percentileMillis(counts, 0.99));
+    Assert.assertEquals(400000, histogram.percentileMillis(counts, 1));
+    Assert.assertEquals(0, new LatencyHistogram().percentileMillis(
+        new LatencyHistogram().getBucketCounts(), 0.5));
+  }
+
+  @Test
+  public void testRecord() {
+    WorklogEndpointMetrics metrics = new WorklogEndpointMetrics();
+    metrics.recordStart();
+    Assert.assertEquals(1, metrics.getInFlightCount());
+    WorklogQueryTrace trace = new WorklogQueryTrace(WorklogEndpoint.WORKLOGS);
+    trace.bind();
+    try {
+      WorklogQueryTrace.addRows(3);
+      Assert.assertEquals("result",
+          WorklogQueryTrace.timed(WorklogQueryStage.QUERY, () -> "result"));
+      WorklogQueryTrace.record(WorklogQueryStage.PROJECTS, System.nanoTime() - 1000);
+    } finally {
+      trace.unbind();
+    }
+    Assert.assertNull(WorklogQueryTrace.current());
+    trace.addBytes(100);
+    trace.markFailed();
+    trace.finish();
+    metrics.record(trace);
+
+    Assert.assertEquals(0, metrics.getInFlightCount());
+    Assert.assertEquals(1, metrics.getRequestCount());
+    Assert.assertEquals(1, metrics.getErrorCount());
+    Assert.assertEquals(3, metrics.getRowCount());
+    Assert.assertEquals(100, metrics.getBytesWritten());
+    Map<String, WorklogStageStatistics> stages = metrics.getStages();
+    Assert.assertEquals(1, stages.get("projects").getCount());
+    Assert.assertEquals(1, stages.get("total").getCount());
+    Assert.assertFalse(stages.containsKey("fields"));
+
+    metrics.reset();
+    Assert.assertEquals(0, metrics.getRequestCount());
+    Assert.assertTrue(metrics.getStages().isEmpty());
+  }
+
+  @Test
+  public void testServerTiming() {
+    WorklogQueryTrace trace = new WorklogQueryTrace(WorklogEndpoint.WORKLOGS);
+    Assert.assertNull(WorklogServerTiming.format(trace, false));
+    trace.addStageNanos(WorklogQueryStage.PROJECTS, 1_250_000);
+    trace.addStageNanos(WorklogQueryStage.QUERY, 30_000_000);
+    Assert.assertEquals("projects;desc=\"Permission resolution\";dur=1.3, "
+        + "query;desc=\"SQL\";dur=30.0", WorklogServerTiming.format(trace, false));
+    Assert.assertTrue(WorklogServerTiming.format(trace, true)
+        .matches(".*, total;desc=\"Total\";dur=\\d+\\.\\d"));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.plugin.query;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.querydsl.core.QueryException;
+
+/**
+ * Test the timeout and the cancellation of the statements of the {@link WorklogStatementControl}.
+ */
+public class WorklogStatementControlTest {
+
+  @Test
+  public void testCancel() throws SQLException {
+    Connection connection = Mockito.mock(Connection.class);
+    PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+    Mockito.when(connection.prepareStatement("select 1")).thenReturn(statement);
+
+    WorklogStatementControl control = new WorklogStatementControl(0);
+    control.control((controlledConnection, configuration) -> {
+      Assert.assertSame(statement, controlledConnection.prepareStatement("select 1"));
+      control.cancel();
+      return null;
+    }).call(connection, null);
+    Mockito.verify(statement, Mockito.never()).setQueryTimeout(Mockito.anyInt());
+    Mockito.verify(statement).cancel();
+    Assert.assertTrue(control.isCancelled());
+
+    try {
+      control.control((controlledConnection, configuration) -> controlledConnection
+          .prepareStatement("select 1")).call(connection, null);
+      Assert.fail("The statement of a cancelled control is prepared.");
+    } catch (SQLException e) {
+      Assert.assertTrue(WorklogStatementControl.isTimeout(e));
+    }
+    Mockito.verify(statement).close();
+  }
+
+  @Test
+  public void testIsTimeout() {
+    Assert.assertTrue(WorklogStatementControl
+        .isTimeout(new QueryException(new SQLTimeoutException("timeout"))));
+    Assert.assertTrue(WorklogStatementControl
+        .isTimeout(new RuntimeException(new SQLException("canceled", "57014"))));
+    Assert.assertFalse(WorklogStatementControl
+        .isTimeout(new QueryException(new SQLException("syntax", "42000"))));
+  }
+
+  @Test
+  public void testTimeout() throws SQLException {
+    Connection connection = Mockito.mock(Connection.class);
+    PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+    Mockito.when(connection.prepareStatement("select 1")).thenReturn(statement);
+
+    WorklogStatementControl control = new WorklogStatementControl(30);
+    control.control((controlledConnection, configuration) -> controlledConnection
+        .prepareStatement("select 1")).call(connection, null);
+    Mockito.verify(statement).setQueryTimeout(30);
+
+    control.cancel();
+    Mockito.verify(statement, Mockito.never()).cancel();
+  }
+}
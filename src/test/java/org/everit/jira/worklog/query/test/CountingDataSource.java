@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * {@link DataSource} that counts the SQL statements and the database round trips of the
+ * connections it returns. A statement is counted when a connection creates or prepares it, a round
+ * trip when one of the execute methods of a statement is called. The SQL of the prepared
+ * statements is recorded, so a failed assertion can show the statements.
+ */
+public class CountingDataSource implements DataSource {
+
+  /**
+   * Counts the statements of a connection.
+   */
+  private final class ConnectionHandler implements InvocationHandler {
+
+    private final Connection connection;
+
+    ConnectionHandler(final Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+        throws Throwable {
+      Object result = invokeDelegate(connection, method, args);
+      if (result instanceof Statement) {
+        statementCount.incrementAndGet();
+        String sql = (args != null) && (args.length > 0) && (args[0] instanceof String)
+            ? (String) args[0]
+            : method.getName();
+        statements.add(sql);
+        return proxy(method.getReturnType(), new StatementHandler((Statement) result));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Counts the round trips of a statement.
+   */
+  private final class StatementHandler implements InvocationHandler {
+
+    private final Statement statement;
+
+    StatementHandler(final Statement statement) {
+      this.statement = statement;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+        throws Throwable {
+      if (method.getName().startsWith("execute")) {
+        roundTripCount.incrementAndGet();
+      }
+      return invokeDelegate(statement, method, args);
+    }
+  }
+
+  private static Object invokeDelegate(final Object delegate, final Method method,
+      final Object[] args) throws Throwable {
+    try {
+      return method.invoke(delegate, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(),
+        new Class<?>[] { type }, handler));
+  }
+
+  private final AtomicInteger connectionCount = new AtomicInteger();
+
+  private final DataSource dataSource;
+
+  private final AtomicInteger roundTripCount = new AtomicInteger();
+
+  private final AtomicInteger statementCount = new AtomicInteger();
+
+  private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+  public CountingDataSource(final DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  private Connection counted(final Connection connection) {
+    connectionCount.incrementAndGet();
+    return proxy(Connection.class, new ConnectionHandler(connection));
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return counted(dataSource.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password)
+      throws SQLException {
+    return counted(dataSource.getConnection(username, password));
+  }
+
+  public int getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return dataSource.getLoginTimeout();
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return dataSource.getLogWriter();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return dataSource.getParentLogger();
+  }
+
+  public int getRoundTripCount() {
+    return roundTripCount.get();
+  }
+
+  public int getStatementCount() {
+    return statementCount.get();
+  }
+
+  /**
+   * The SQL of the counted statements. The statements created without SQL are recorded by the
+   * name of the creating method.
+   *
+   * @return a copy of the recorded statements in the order of their creation.
+   */
+  public List<String> getStatements() {
+    synchronized (statements) {
+      return new ArrayList<>(statements);
+    }
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+    return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+  }
+
+  /**
+   * Resets the counters and the recorded statements.
+   */
+  public void reset() {
+    connectionCount.set(0);
+    roundTripCount.set(0);
+    statementCount.set(0);
+    statements.clear();
+  }
+
+  @Override
+  public void setLoginTimeout(final int seconds) throws SQLException {
+    dataSource.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public void setLogWriter(final PrintWriter out) throws SQLException {
+    dataSource.setLogWriter(out);
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    return dataSource.unwrap(iface);
+  }
+}
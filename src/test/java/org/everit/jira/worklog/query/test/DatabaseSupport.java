@@ -15,14 +15,39 @@
  */
 package org.everit.jira.worklog.query.test;
 
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 import javax.sql.DataSource;
 
+import org.h2.jdbcx.JdbcDataSource;
+
 public final class DatabaseSupport {
 
+  /**
+   * Counts and discards the written bytes.
+   */
+  public static final class DiscardingOutputStream extends OutputStream {
+
+    private long count;
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      count += len;
+    }
+
+    @Override
+    public void write(final int b) {
+      count++;
+    }
+  }
+
   private static void createAppUserTable(final Statement createStatement) throws SQLException {
     createStatement.execute("CREATE TABLE \"PUBLIC\".APP_USER ("
         + " ID BIGINT NOT NULL,"
@@ -106,6 +131,29 @@ public final class DatabaseSupport {
         + " );");
   }
 
+  /**
+   * Creates the empty tables of the worklog queries.
+   *
+   * @param datasource
+   *          the database.
+   * @throws SQLException
+   *           if the tables cannot be created.
+   */
+  public static void createTables(final DataSource datasource) throws SQLException {
+    try (Connection connection = datasource.getConnection();
+        Statement createStatement = connection.createStatement();) {
+      DatabaseSupport.createWorklogTable(createStatement);
+
+      DatabaseSupport.createJiraIssueTable(createStatement);
+
+      DatabaseSupport.createProjectTable(createStatement);
+
+      DatabaseSupport.createCwdUserTable(createStatement);
+
+      DatabaseSupport.createAppUserTable(createStatement);
+    }
+  }
+
   private static void createWorklogTable(final Statement createStatement) throws SQLException {
     createStatement.execute("CREATE TABLE \"PUBLIC\".WORKLOG ("
         + " ID BIGINT NOT NULL,"
@@ -123,6 +171,21 @@ public final class DatabaseSupport {
         + " );");
   }
 
+  /**
+   * Drops every object of the database.
+   *
+   * @param datasource
+   *          the database.
+   * @throws SQLException
+   *           if the objects cannot be dropped.
+   */
+  public static void dropDatabase(final DataSource datasource) throws SQLException {
+    try (Connection connection = datasource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("DROP ALL OBJECTS");
+    }
+  }
+
   public static void dropTables(final DataSource datasource) throws SQLException {
     try (Connection connection = datasource.getConnection();
         Statement createStatement = connection.createStatement();) {
@@ -134,19 +197,39 @@ public final class DatabaseSupport {
     }
   }
 
+  /**
+   * Creates an in-memory H2 database with the tables of the worklog queries and the rows of the
+   * generator. The database is kept until it is dropped with {@link #dropDatabase(DataSource)},
+   * it is dropped right away if it cannot be initialized.
+   *
+   * @param name
+   *          the name of the database.
+   * @param generator
+   *          the generator of the rows.
+   * @return the database.
+   * @throws SQLException
+   *           if the database cannot be initialized.
+   */
+  public static JdbcDataSource generatedDatabase(final String name,
+      final WorklogDatasetGenerator generator) throws SQLException {
+    JdbcDataSource datasource = new JdbcDataSource();
+    datasource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    datasource.setUser("sa");
+    datasource.setPassword("");
+    try {
+      DatabaseSupport.createTables(datasource);
+      generator.generate(datasource);
+    } catch (SQLException | RuntimeException e) {
+      DatabaseSupport.dropDatabase(datasource);
+      throw e;
+    }
+    return datasource;
+  }
+
   public static void initializeDatabase(final DataSource datasource) throws SQLException {
+    DatabaseSupport.createTables(datasource);
     try (Connection connection = datasource.getConnection();
         Statement createStatement = connection.createStatement();) {
-      DatabaseSupport.createWorklogTable(createStatement);
-
-      DatabaseSupport.createJiraIssueTable(createStatement);
-
-      DatabaseSupport.createProjectTable(createStatement);
-
-      DatabaseSupport.createCwdUserTable(createStatement);
-
-      DatabaseSupport.createAppUserTable(createStatement);
-
       DatabaseSupport.insertJiraIssueRows(createStatement);
 
       DatabaseSupport.insertWorklogRows(createStatement);
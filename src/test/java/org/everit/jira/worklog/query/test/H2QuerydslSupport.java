@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.everit.jira.querydsl.support.QuerydslCallable;
+import org.everit.jira.querydsl.support.QuerydslSupport;
+
+import com.querydsl.sql.Configuration;
+import com.querydsl.sql.H2Templates;
+
+/**
+ * {@link QuerydslSupport} on a plain H2 data source, so the queries can be run and measured
+ * without the database layer of Jira.
+ */
+public class H2QuerydslSupport implements QuerydslSupport {
+
+  private final Configuration configuration = new Configuration(H2Templates.builder().build());
+
+  private final DataSource dataSource;
+
+  public H2QuerydslSupport(final DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  @Override
+  public <R> R execute(final QuerydslCallable<R> callable) {
+    try (Connection connection = dataSource.getConnection()) {
+      return callable.call(connection, configuration);
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public Configuration getConfiguration() {
+    return configuration;
+  }
+}
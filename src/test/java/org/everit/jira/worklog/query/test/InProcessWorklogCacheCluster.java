@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.everit.jira.worklog.query.plugin.cache.WorklogCacheChannel;
+
+/**
+ * In-process stand-in of a JIRA cluster. The channels created by the same instance deliver the
+ * sent messages synchronously to every other channel, like the cluster messages of JIRA.
+ */
+public class InProcessWorklogCacheCluster {
+
+  /**
+   * The channel of a node.
+   */
+  private final class NodeChannel implements WorklogCacheChannel {
+
+    private volatile Consumer<String> receiver;
+
+    @Override
+    public void register(final Consumer<String> receiver) {
+      this.receiver = receiver;
+    }
+
+    @Override
+    public void send(final String message) {
+      for (NodeChannel node : nodes) {
+        Consumer<String> nodeReceiver = node.receiver;
+        if ((node != this) && (nodeReceiver != null)) {
+          nodeReceiver.accept(message);
+        }
+      }
+    }
+
+    @Override
+    public void unregister() {
+      receiver = null;
+    }
+  }
+
+  private final List<NodeChannel> nodes = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates the channel of a new node.
+   *
+   * @return the channel.
+   */
+  public WorklogCacheChannel createChannel() {
+    NodeChannel node = new NodeChannel();
+    nodes.add(node);
+    return node;
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.bc.issue.search.SearchService.ParseResult;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.mock.issue.MockIssue;
+import com.atlassian.jira.permission.ProjectPermissions;
+import com.atlassian.jira.project.MockProject;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.security.PermissionManager;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.user.MockApplicationUser;
+import com.atlassian.jira.user.util.UserManager;
+import com.atlassian.jira.user.util.UserUtil;
+import com.atlassian.jira.util.MessageSetImpl;
+import com.atlassian.query.QueryImpl;
+
+/**
+ * Mocks the Jira components used by the worklog queries for the data of a
+ * {@link WorklogDatasetGenerator}. Every user can browse every project, every generated user and
+ * group is resolved and every JQL search returns every generated issue.
+ */
+public final class MockJiraComponents {
+
+  /**
+   * Registers the mocks in the {@link MockComponentWorker} with the first generated user logged
+   * in.
+   *
+   * @param generator
+   *          the generator of the data.
+   * @return the logged in user.
+   */
+  public static ApplicationUser init(final WorklogDatasetGenerator generator) {
+    ApplicationUser loggedInUser = new MockApplicationUser(generator.getUserKey(0));
+    init(generator, () -> loggedInUser);
+    return loggedInUser;
+  }
+
+  /**
+   * Registers the mocks in the {@link MockComponentWorker}.
+   *
+   * @param generator
+   *          the generator of the data.
+   * @param loggedInUser
+   *          supplies the logged in user of the calling thread.
+   */
+  public static void init(final WorklogDatasetGenerator generator,
+      final Supplier<ApplicationUser> loggedInUser) {
+    JiraAuthenticationContext jiraAuthenticationContext =
+        Mockito.mock(JiraAuthenticationContext.class);
+    Mockito.when(jiraAuthenticationContext.getLoggedInUser())
+        .thenAnswer(invocation -> loggedInUser.get());
+
+    List<Project> projects = new ArrayList<>();
+    for (int project = 0; project < generator.getProjectCount(); project++) {
+      projects.add(new MockProject(generator.getProjectId(project),
+          generator.getProjectKey(project)));
+    }
+    PermissionManager permissionManager = Mockito.mock(PermissionManager.class);
+    Mockito.when(permissionManager.getProjects(
+        ArgumentMatchers.eq(ProjectPermissions.BROWSE_PROJECTS), ArgumentMatchers.any()))
+        .thenReturn(projects);
+
+    UserManager userManager = Mockito.mock(UserManager.class);
+    Mockito.when(userManager.getUserByName(ArgumentMatchers.anyString()))
+        .thenAnswer(invocation -> new MockApplicationUser(invocation.getArgument(0)));
+
+    UserUtil userUtil = Mockito.mock(UserUtil.class);
+    for (int group = 0; group < generator.getGroupCount(); group++) {
+      SortedSet<ApplicationUser> groupUsers =
+          new TreeSet<>(Comparator.comparing(ApplicationUser::getKey));
+      for (String userKey : generator.getGroupUserKeys(group)) {
+        groupUsers.add(new MockApplicationUser(userKey));
+      }
+      Mockito.when(userUtil.getAllUsersInGroupNames(
+          Collections.singletonList(generator.getGroupName(group)))).thenReturn(groupUsers);
+    }
+
+    List<Issue> issues = new ArrayList<>();
+    for (int issue = 0; issue < generator.getIssueCount(); issue++) {
+      issues.add(new MockIssue(generator.getIssueId(issue)));
+    }
+    SearchResults searchResults = Mockito.mock(SearchResults.class);
+    Mockito.when(searchResults.getResults()).thenReturn(issues);
+    SearchService searchService = Mockito.mock(SearchService.class);
+    Mockito.when(searchService.parseQuery(ArgumentMatchers.any(), ArgumentMatchers.anyString()))
+        .thenReturn(new ParseResult(new QueryImpl(), new MessageSetImpl()));
+    Mockito.when(searchService.search(ArgumentMatchers.any(), ArgumentMatchers.any(),
+        ArgumentMatchers.any())).thenReturn(searchResults);
+
+    new MockComponentWorker()
+        .addMock(JiraAuthenticationContext.class, jiraAuthenticationContext)
+        .addMock(PermissionManager.class, permissionManager)
+        .addMock(UserManager.class, userManager)
+        .addMock(UserUtil.class, userUtil)
+        .addMock(SearchService.class, searchService)
+        .init();
+  }
+
+  private MockJiraComponents() {
+  }
+}
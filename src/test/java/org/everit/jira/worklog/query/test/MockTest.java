@@ -15,7 +15,9 @@
  */
 package org.everit.jira.worklog.query.test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.CallableStatement;
@@ -40,7 +42,11 @@ import java.util.concurrent.Executor;
 
 import javax.sql.XADataSource;
 import javax.transaction.xa.XAException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.dbcp2.managed.BasicManagedDataSource;
 import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
@@ -48,6 +54,7 @@ import org.everit.jira.worklog.query.plugin.FindWorklogsByIssuesParam;
 import org.everit.jira.worklog.query.plugin.IssueBeanWithTimespent;
 import org.everit.jira.worklog.query.plugin.SearchResultsBeanWithTimespent;
 import org.everit.jira.worklog.query.plugin.WorklogQueryCoreImpl;
+import org.everit.jira.worklog.query.plugin.WorklogSummary;
 import org.h2.jdbcx.JdbcDataSource;
 import org.junit.After;
 import org.junit.Assert;
@@ -78,6 +85,9 @@ import com.atlassian.jira.security.JiraAuthenticationContext;
 import com.atlassian.jira.security.PermissionManager;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.user.util.UserManager;
+import com.atlassian.jira.util.json.JSONArray;
+import com.atlassian.jira.util.json.JSONException;
+import com.atlassian.jira.util.json.JSONObject;
 
 @RunWith(PowerMockRunner.class)
 @PowerMockIgnore("javax.security.*")
@@ -485,6 +495,15 @@ public class MockTest {
     return xaDatasource;
   }
 
+  private String entityToString(final Response response) throws IOException {
+    if (!(response.getEntity() instanceof StreamingOutput)) {
+      return response.getEntity().toString();
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(output);
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
   private Properties loadExpectedResultProperties() throws IOException {
     Properties properties = new Properties();
     properties.load(this.getClass().getResourceAsStream("/expectedResults.properties"));
@@ -544,20 +563,82 @@ public class MockTest {
   }
 
   @Test
-  public void testFindWorklogs() throws IOException {
-    Response findWorklogs = worklogQuery.findWorklogs("2016-02-24", "2016-03-12", TEST_USER, "", "",
+  public void testFindWorklogChanges() throws JSONException {
+    Response firstPage = worklogQuery.findWorklogChanges(null, "", TEST_USER, "", "", 2,
         new ArrayList<StringList>());
-    String json = findWorklogs.getEntity().toString();
+    JSONObject firstResult = new JSONObject(firstPage.getEntity().toString());
+    JSONArray firstWorklogs = firstResult.getJSONArray("worklogs");
+    Assert.assertEquals(2, firstWorklogs.length());
+    Assert.assertEquals(10001L, firstWorklogs.getJSONObject(0).getLong("id"));
+    Assert.assertEquals(10002L, firstWorklogs.getJSONObject(1).getLong("id"));
+    Assert.assertTrue(firstResult.getBoolean("hasMore"));
+
+    Response secondPage = worklogQuery.findWorklogChanges(
+        firstResult.getString("nextWatermark"), "", TEST_USER, "", "", 2,
+        new ArrayList<StringList>());
+    JSONObject secondResult = new JSONObject(secondPage.getEntity().toString());
+    JSONArray secondWorklogs = secondResult.getJSONArray("worklogs");
+    Assert.assertEquals(2, secondWorklogs.length());
+    Assert.assertEquals(10003L, secondWorklogs.getJSONObject(0).getLong("id"));
+    Assert.assertEquals(10000L, secondWorklogs.getJSONObject(1).getLong("id"));
+    Assert.assertFalse(secondResult.getBoolean("hasMore"));
+
+    Response emptyPage = worklogQuery.findWorklogChanges(
+        secondResult.getString("nextWatermark"), "", TEST_USER, "", "", 2,
+        new ArrayList<StringList>());
+    JSONObject emptyResult = new JSONObject(emptyPage.getEntity().toString());
+    Assert.assertEquals(0, emptyResult.getJSONArray("worklogs").length());
+    Assert.assertEquals(secondResult.getString("nextWatermark"),
+        emptyResult.getString("nextWatermark"));
+  }
+
+  @Test
+  public void testFindWorklogs() throws IOException {
+    Response findWorklogs = worklogQuery.findWorklogs("2016-02-24", "2016-03-12", "", TEST_USER,
+        "", "", new ArrayList<StringList>(), null);
+    Assert.assertNull(findWorklogs.getMetadata().getFirst(HttpHeaders.ETAG));
+    String json = entityToString(findWorklogs);
     Properties properties = loadExpectedResultProperties();
     Assert.assertEquals(properties.get("findWorklogs"), json);
   }
 
+  @Test
+  public void testFindWorklogsNotModified() throws IOException {
+    Request request = Mockito.mock(Request.class);
+    Response findWorklogs = worklogQuery.findWorklogs("2016-02-24", "2016-03-12", "", TEST_USER,
+        "", "", new ArrayList<StringList>(), request);
+    Assert.assertEquals(Response.Status.OK.getStatusCode(), findWorklogs.getStatus());
+    EntityTag entityTag = (EntityTag) findWorklogs.getMetadata().getFirst(HttpHeaders.ETAG);
+    Assert.assertNotNull(entityTag);
+    Assert.assertNotNull(findWorklogs.getMetadata().getFirst(HttpHeaders.LAST_MODIFIED));
+
+    Mockito.when(request.evaluatePreconditions(entityTag)).thenReturn(Response.notModified());
+    Response notModified = worklogQuery.findWorklogs("2016-02-24", "2016-03-12", "", TEST_USER,
+        "", "", new ArrayList<StringList>(), request);
+    Assert.assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), notModified.getStatus());
+    Assert.assertNull(notModified.getEntity());
+
+    Response updatedWorklogs = worklogQuery.findUpdatedWorklogs("2016-02-24", "2016-03-12", "",
+        TEST_USER, "", "", new ArrayList<StringList>(), request);
+    Assert.assertNotEquals(entityTag,
+        updatedWorklogs.getMetadata().getFirst(HttpHeaders.ETAG));
+  }
+
+  @Test
+  public void testFindWorklogsSummary() {
+    Response findWorklogsSummary =
+        worklogQuery.findWorklogsSummary("2016-02-24", "2016-03-12", "", TEST_USER, "", "");
+    WorklogSummary worklogSummary = (WorklogSummary) findWorklogsSummary.getEntity();
+    Assert.assertEquals(3L, worklogSummary.getCount().longValue());
+    Assert.assertEquals(66120L, worklogSummary.getTimeSpent().longValue());
+  }
+
   @Test
   public void testUpdateWorklogs() throws IOException {
     Response findUpdatedWorklogs =
-        worklogQuery.findUpdatedWorklogs("2016-02-24", "2016-03-12", TEST_USER, "", "",
-            new ArrayList<StringList>());
-    String json = findUpdatedWorklogs.getEntity().toString();
+        worklogQuery.findUpdatedWorklogs("2016-02-24", "2016-03-12", "", TEST_USER, "", "",
+            new ArrayList<StringList>(), null);
+    String json = entityToString(findUpdatedWorklogs);
     Properties properties = loadExpectedResultProperties();
     Assert.assertEquals(properties.get("findUpdatedWorklogs"), json);
   }
@@ -586,4 +667,20 @@ public class MockTest {
     Assert.assertEquals("10003", issues.get(2).getId());
     Assert.assertEquals("SAM-4", issues.get(2).getKey());
   }
+
+  @Test
+  public void testWorklogsByIssuesSummary() {
+    FindWorklogsByIssuesParam findWorklogsByIssuesParam = new FindWorklogsByIssuesParam()
+        .startDate("2016-02-24")
+        .endDate("2016-03-12")
+        .user(TEST_USER)
+        .jql("")
+        .startAt(0)
+        .maxResults(1);
+    WorklogSummary worklogSummary =
+        worklogQuery.findWorklogsByIssuesSummary(findWorklogsByIssuesParam);
+
+    Assert.assertEquals(3L, worklogSummary.getCount().longValue());
+    Assert.assertEquals(66120L, worklogSummary.getTimeSpent().longValue());
+  }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.everit.jira.worklog.query.plugin.FindWorklogsByIssuesParam;
+import org.everit.jira.worklog.query.plugin.SearchResultsBeanWithTimespent;
+import org.everit.jira.worklog.query.plugin.WorklogQueryCoreImpl;
+import org.everit.jira.worklog.query.plugin.admission.WorklogEndpoint;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryTrace;
+import org.everit.jira.worklog.query.test.DatabaseSupport.DiscardingOutputStream;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.atlassian.jira.rest.api.util.StringList;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Allocation budgets of the per-row processing. The bytes allocated by the calling thread are
+ * read from the {@link ThreadMXBean} and divided by the number of the returned worklogs or
+ * issues, so the per-row garbage of the serialization (maps, date formats, timestamp copies,
+ * boxed values) is caught by the build when it grows over the budget. Every query is warmed up
+ * before the measurement and the smallest allocation of the measured runs is compared, so the
+ * one-time allocations of the class loading and the JIT do not count.
+ */
+public class WorklogAllocationTest {
+
+  /**
+   * A query of the test.
+   */
+  @FunctionalInterface
+  private interface MeasuredQuery {
+
+    int run() throws IOException;
+  }
+
+  /**
+   * The allocation budget of an issue returned by the findWorklogsByIssues query in bytes. An
+   * issue aggregates 20 worklogs in the database and creates two beans with their URIs. The
+   * default is an estimate of these objects that has not been measured yet, the measured value is
+   * logged by every run and the budget can be set from it with the
+   * <code>jwqp.allocationTest.issueBudget</code> system property until the default is replaced.
+   */
+  private static final long BYTES_PER_ISSUE_BUDGET =
+      Long.getLong("jwqp.allocationTest.issueBudget", 16 * 1024);
+
+  /**
+   * The allocation budget of a worklog returned by the findWorklogs query in bytes. A worklog
+   * creates a row with its user subquery, a JSON object with two formatted dates and its JSON
+   * text. The default is an estimate of these objects that has not been measured yet, the
+   * measured value is logged by every run and the budget can be set from it with the
+   * <code>jwqp.allocationTest.worklogBudget</code> system property until the default is replaced.
+   */
+  private static final long BYTES_PER_WORKLOG_BUDGET =
+      Long.getLong("jwqp.allocationTest.worklogBudget", 7 * 1024);
+
+  private static final String END_DATE = "2016-12-31";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogAllocationTest.class);
+
+  private static final int ISSUES = 500;
+
+  private static final int MEASURED_RUNS = 5;
+
+  private static final String START_DATE = "2016-01-01";
+
+  private static final int WARMUP_RUNS = 5;
+
+  private static final int WORKLOGS = 10000;
+
+  private JdbcDataSource dataSource;
+
+  private WorklogDatasetGenerator generator;
+
+  private ThreadMXBean threadMXBean;
+
+  private WorklogQueryCoreImpl worklogQueryCore;
+
+  /**
+   * Drops the database.
+   *
+   * @throws SQLException
+   *           if the database cannot be dropped.
+   */
+  @After
+  public void after() throws SQLException {
+    if (dataSource != null) {
+      DatabaseSupport.dropDatabase(dataSource);
+    }
+  }
+
+  private void assertBudget(final String name, final long budget, final MeasuredQuery query)
+      throws IOException {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      query.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    double minBytesPerRow = Double.MAX_VALUE;
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long before = threadMXBean.getThreadAllocatedBytes(threadId);
+      int rows = query.run();
+      long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+      Assert.assertTrue(name + " returned no rows", rows > 0);
+      minBytesPerRow = Math.min(minBytesPerRow, allocated / (double) rows);
+    }
+    String measurement = String.format(Locale.ENGLISH,
+        "%s allocated %.0f bytes per row, the budget is %d bytes", name, minBytesPerRow, budget);
+    LOGGER.info(measurement);
+    Assert.assertTrue(measurement, minBytesPerRow <= budget);
+  }
+
+  /**
+   * Generates the data and mocks the Jira components. Skipped if the JVM cannot measure the
+   * allocations of a thread.
+   *
+   * @throws SQLException
+   *           if the database cannot be initialized.
+   */
+  @Before
+  public void before() throws SQLException {
+    java.lang.management.ThreadMXBean platformThreadMXBean =
+        ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(platformThreadMXBean instanceof ThreadMXBean);
+    threadMXBean = (ThreadMXBean) platformThreadMXBean;
+    Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+    System.setProperty("user.timezone", "UTC");
+    TimeZone.setDefault(null);
+
+    generator = new WorklogDatasetGenerator()
+        .users(100)
+        .groups(1)
+        .projects(10)
+        .issues(ISSUES)
+        .worklogs(WORKLOGS)
+        .startDate(START_DATE)
+        .days(366);
+    dataSource = DatabaseSupport.generatedDatabase("allocation", generator);
+    MockJiraComponents.init(generator);
+    worklogQueryCore = new WorklogQueryCoreImpl(new H2QuerydslSupport(dataSource));
+  }
+
+  @Test
+  public void testFindWorklogsAllocationPerWorklog() throws IOException {
+    assertBudget("findWorklogs", BYTES_PER_WORKLOG_BUDGET, () -> {
+      Response response = worklogQueryCore.findWorklogs(START_DATE, END_DATE, "", "",
+          generator.getGroupName(0), "", new ArrayList<StringList>(), null);
+      Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+      WorklogQueryTrace trace = new WorklogQueryTrace(WorklogEndpoint.WORKLOGS);
+      trace.bind();
+      try {
+        ((StreamingOutput) response.getEntity()).write(new DiscardingOutputStream());
+      } finally {
+        trace.unbind();
+      }
+      return (int) trace.getRows();
+    });
+  }
+
+  @Test
+  public void testFindWorklogsByIssuesAllocationPerIssue() throws IOException {
+    List<StringList> fields = new ArrayList<>();
+    fields.add(StringList.fromList("emptyFieldValue"));
+    FindWorklogsByIssuesParam findWorklogsByIssuesParam = new FindWorklogsByIssuesParam()
+        .startDate(START_DATE)
+        .endDate(END_DATE)
+        .group(generator.getGroupName(0))
+        .jql("")
+        .startAt(0)
+        .maxResults(ISSUES)
+        .fields(fields);
+    assertBudget("findWorklogsByIssues", BYTES_PER_ISSUE_BUDGET, () -> {
+      SearchResultsBeanWithTimespent result =
+          worklogQueryCore.findWorklogsByIssues(findWorklogsByIssuesParam);
+      return result.getIssues().size();
+    });
+  }
+}
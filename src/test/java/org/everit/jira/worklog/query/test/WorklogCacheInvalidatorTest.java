@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.everit.jira.worklog.query.plugin.cache.WorklogCacheInvalidator;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCache;
+import org.everit.jira.worklog.query.plugin.cache.WorklogResultCacheKey;
+import org.everit.jira.worklog.query.plugin.event.WorklogChange;
+import org.everit.jira.worklog.query.plugin.index.WorklogColumnarIndex;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the cache invalidation between the nodes of a cluster.
+ */
+public class WorklogCacheInvalidatorTest {
+
+  private static final long END_DATE = 2000000L;
+
+  private static final int NODE_COUNT = 4;
+
+  private static final long PROJECT_ID = 10000L;
+
+  private static final long START_DATE = 1000000L;
+
+  private static final String USER_KEY = "user1";
+
+  private final List<WorklogResultCache> caches = new ArrayList<>();
+
+  private final List<WorklogCacheInvalidator> invalidators = new ArrayList<>();
+
+  private WorklogResultCacheKey createKey(final long projectId) {
+    return new WorklogResultCacheKey("worklogs", START_DATE, END_DATE, false,
+        Collections.singletonList(USER_KEY), Collections.singletonList(projectId), "");
+  }
+
+  private void fillCaches(final WorklogResultCacheKey... keys) {
+    for (WorklogResultCache cache : caches) {
+      for (WorklogResultCacheKey key : keys) {
+        cache.get(key, () -> "result");
+      }
+    }
+  }
+
+  @Before
+  public void setUp() {
+    InProcessWorklogCacheCluster cluster = new InProcessWorklogCacheCluster();
+    for (int i = 0; i < NODE_COUNT; i++) {
+      WorklogResultCache cache = new WorklogResultCache();
+      WorklogCacheInvalidator invalidator = new WorklogCacheInvalidator(cache,
+          new WorklogColumnarIndex(null, null, cache), cluster.createChannel());
+      invalidator.afterPropertiesSet();
+      caches.add(cache);
+      invalidators.add(invalidator);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (WorklogCacheInvalidator invalidator : invalidators) {
+      invalidator.destroy();
+    }
+  }
+
+  @Test
+  public void testInvalidateOnEveryNode() {
+    WorklogResultCacheKey affectedKey = createKey(PROJECT_ID);
+    WorklogResultCacheKey otherProjectKey = createKey(PROJECT_ID + 1);
+    fillCaches(affectedKey, otherProjectKey);
+
+    invalidators.get(0).invalidate(new WorklogChange(WorklogChange.Type.CREATED, 1L, 2L,
+        PROJECT_ID, USER_KEY, START_DATE + 1, END_DATE, 3600L));
+
+    for (WorklogResultCache cache : caches) {
+      Assert.assertEquals(1, cache.size());
+      Assert.assertEquals("result", cache.get(otherProjectKey, () -> "reloaded"));
+      Assert.assertEquals("reloaded", cache.get(affectedKey, () -> "reloaded"));
+    }
+  }
+
+  @Test
+  public void testTooLongAuthorKeyInvalidatesEveryAuthor() {
+    char[] longKey = new char[250];
+    Arrays.fill(longKey, 'u');
+    WorklogResultCacheKey affectedKey = createKey(PROJECT_ID);
+    WorklogResultCacheKey otherProjectKey = createKey(PROJECT_ID + 1);
+    fillCaches(affectedKey, otherProjectKey);
+
+    invalidators.get(1).invalidate(new WorklogChange(WorklogChange.Type.DELETED, 1L, 2L,
+        PROJECT_ID, new String(longKey), START_DATE + 1, END_DATE, 3600L));
+
+    // The local node knows the author, the other nodes invalidate the project for every author.
+    Assert.assertEquals(2, caches.get(1).size());
+    for (int i = 0; i < NODE_COUNT; i++) {
+      if (i != 1) {
+        Assert.assertEquals(1, caches.get(i).size());
+        Assert.assertEquals("result", caches.get(i).get(otherProjectKey, () -> "reloaded"));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * Deterministic generator of synthetic users, projects, issues and worklogs for the tests and the
+ * benchmarks. The same parameters and seed always produce the same rows. The rows are inserted
+ * with batched prepared statements into the tables created by
+ * {@link DatabaseSupport#createTables(DataSource)}. The groups are not stored in the database,
+ * because the plugin resolves them through Jira; the users of a group are returned by
+ * {@link #getGroupUserKeys(int)} for the mocks.
+ *
+ * <p>
+ * The ids of the generated rows start at {@link #FIRST_ID}, above the fixed rows of the
+ * {@link DatabaseSupport}. User <code>i</code> is the member of the group <code>i % groups</code>
+ * and issue <code>i</code> belongs to the project <code>i % projects</code>. The worklogs are
+ * spread evenly over the issues, the users and the days from the start date. The comments are
+ * empty with the given ratio, the length of the other comments follows an exponential
+ * distribution with the given mean up to the given maximum.
+ * </p>
+ */
+public class WorklogDatasetGenerator {
+
+  public static final long FIRST_ID = 100000L;
+
+  private static final String[] WORDS = { "fixed", "the", "query", "of", "worklog", "review",
+      "meeting", "with", "customer", "deploy", "test", "release", "and", "support", "analysis" };
+
+  private int batchSize = 1000;
+
+  private double commentEmptyRatio = 0.2;
+
+  private int commentMaxLength = 2000;
+
+  private int commentMeanLength = 40;
+
+  private String commentText;
+
+  private int days = 365;
+
+  private int groups = 1;
+
+  private int issues = 100;
+
+  private int projects = 1;
+
+  private long seed = 1L;
+
+  private LocalDate startDate = LocalDate.of(2016, 1, 1);
+
+  private int users = 10;
+
+  private long worklogs = 1000L;
+
+  /**
+   * The number of the rows inserted by a batch.
+   *
+   * @param batchSize
+   *          the number of the rows.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator batchSize(final int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * The distribution of the comment lengths.
+   *
+   * @param emptyRatio
+   *          the ratio of the empty comments between 0 and 1.
+   * @param meanLength
+   *          the mean length of the not empty comments.
+   * @param maxLength
+   *          the maximum length of the comments.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator commentLength(final double emptyRatio, final int meanLength,
+      final int maxLength) {
+    commentEmptyRatio = emptyRatio;
+    commentMeanLength = meanLength;
+    commentMaxLength = maxLength;
+    return this;
+  }
+
+  private String createComment(final SplittableRandom random) {
+    if (random.nextDouble() < commentEmptyRatio) {
+      return "";
+    }
+    double length = -commentMeanLength * Math.log(1 - random.nextDouble());
+    int offset = random.nextInt(WORDS.length);
+    return commentText.substring(offset, offset + Math.min(commentMaxLength, 1 + (int) length));
+  }
+
+  private String createCommentText() {
+    StringBuilder text = new StringBuilder(commentMaxLength + (WORDS.length * 2) + 16);
+    int word = 0;
+    while (text.length() < (commentMaxLength + WORDS.length + 1)) {
+      text.append(WORDS[word % WORDS.length]).append(' ');
+      word++;
+    }
+    return text.toString();
+  }
+
+  /**
+   * The number of the days the start dates of the worklogs are spread over.
+   *
+   * @param days
+   *          the number of the days.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator days(final int days) {
+    this.days = days;
+    return this;
+  }
+
+  /**
+   * Executes the batch and commits it, so the transaction log of the database does not grow with
+   * the whole dataset.
+   */
+  private void flush(final PreparedStatement statement) throws SQLException {
+    statement.executeBatch();
+    statement.getConnection().commit();
+  }
+
+  /**
+   * Inserts the generated rows into the tables of the database.
+   *
+   * @param dataSource
+   *          the database with the tables of the {@link DatabaseSupport}.
+   * @throws SQLException
+   *           if the rows cannot be inserted.
+   */
+  public void generate(final DataSource dataSource) throws SQLException {
+    commentText = createCommentText();
+    try (Connection connection = dataSource.getConnection()) {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        insertUsers(connection);
+        insertProjects(connection);
+        insertIssues(connection);
+        insertWorklogs(connection);
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    }
+  }
+
+  public int getGroupCount() {
+    return groups;
+  }
+
+  public String getGroupName(final int group) {
+    return "group-" + group;
+  }
+
+  /**
+   * The keys of the members of a group.
+   *
+   * @param group
+   *          the index of the group.
+   * @return the keys of the users.
+   */
+  public List<String> getGroupUserKeys(final int group) {
+    List<String> userKeys = new ArrayList<>();
+    for (int user = group; user < users; user += groups) {
+      userKeys.add(getUserKey(user));
+    }
+    return userKeys;
+  }
+
+  public int getIssueCount() {
+    return issues;
+  }
+
+  public long getIssueId(final int issue) {
+    return FIRST_ID + issue;
+  }
+
+  public int getProjectCount() {
+    return projects;
+  }
+
+  public long getProjectId(final int project) {
+    return FIRST_ID + project;
+  }
+
+  public String getProjectKey(final int project) {
+    return "P" + project;
+  }
+
+  public int getUserCount() {
+    return users;
+  }
+
+  public String getUserKey(final int user) {
+    return "user-" + user + "@everit.biz";
+  }
+
+  public long getWorklogCount() {
+    return worklogs;
+  }
+
+  /**
+   * The number of the groups of the users.
+   *
+   * @param groups
+   *          the number of the groups.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator groups(final int groups) {
+    this.groups = groups;
+    return this;
+  }
+
+  private void insertIssues(final Connection connection) throws SQLException {
+    SplittableRandom random = new SplittableRandom(seed + 2);
+    try (PreparedStatement statement = connection.prepareStatement(
+        "INSERT INTO jiraissue (ID, ISSUENUM, PROJECT, REPORTER, CREATOR, ISSUETYPE, SUMMARY,"
+            + " PRIORITY, ISSUESTATUS, CREATED, UPDATED, VOTES, WATCHES)"
+            + " VALUES (?, ?, ?, ?, ?, '10001', ?, '3', '10000', ?, ?, 0, 1)")) {
+      Timestamp created = new Timestamp(toMillis(startDate));
+      for (int issue = 0; issue < issues; issue++) {
+        String reporter = getUserKey(random.nextInt(users));
+        statement.setLong(1, getIssueId(issue));
+        statement.setLong(2, (issue / projects) + 1);
+        statement.setLong(3, getProjectId(issue % projects));
+        statement.setString(4, reporter);
+        statement.setString(5, reporter);
+        statement.setString(6, "Issue " + issue);
+        statement.setTimestamp(7, created);
+        statement.setTimestamp(8, created);
+        statement.addBatch();
+        if (((issue + 1) % batchSize) == 0) {
+          flush(statement);
+        }
+      }
+      flush(statement);
+    }
+  }
+
+  private void insertProjects(final Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "INSERT INTO project (ID, PNAME, URL, LEAD, DESCRIPTION, PKEY, PCOUNTER, ASSIGNEETYPE,"
+            + " ORIGINALKEY, PROJECTTYPE) VALUES (?, ?, '', ?, '', ?, ?, 3, ?, 'software')")) {
+      for (int project = 0; project < projects; project++) {
+        statement.setLong(1, getProjectId(project));
+        statement.setString(2, "Project " + project);
+        statement.setString(3, getUserKey(project % users));
+        statement.setString(4, getProjectKey(project));
+        statement.setLong(5, ((issues - project) + projects - 1) / projects);
+        statement.setString(6, getProjectKey(project));
+        statement.addBatch();
+      }
+      flush(statement);
+    }
+  }
+
+  private void insertUsers(final Connection connection) throws SQLException {
+    try (PreparedStatement appUserStatement = connection.prepareStatement(
+        "INSERT INTO app_user (ID, USER_KEY, LOWER_USER_NAME) VALUES (?, ?, ?)");
+        PreparedStatement cwdUserStatement = connection.prepareStatement(
+            "INSERT INTO cwd_user (ID, DIRECTORY_ID, USER_NAME, LOWER_USER_NAME, ACTIVE,"
+                + " DISPLAY_NAME, LOWER_DISPLAY_NAME, EMAIL_ADDRESS, LOWER_EMAIL_ADDRESS)"
+                + " VALUES (?, 1, ?, ?, 1, ?, ?, ?, ?)")) {
+      for (int user = 0; user < users; user++) {
+        String userKey = getUserKey(user);
+        appUserStatement.setLong(1, FIRST_ID + user);
+        appUserStatement.setString(2, userKey);
+        appUserStatement.setString(3, userKey);
+        appUserStatement.addBatch();
+        cwdUserStatement.setLong(1, FIRST_ID + user);
+        cwdUserStatement.setString(2, userKey);
+        cwdUserStatement.setString(3, userKey);
+        cwdUserStatement.setString(4, "User " + user);
+        cwdUserStatement.setString(5, "user " + user);
+        cwdUserStatement.setString(6, userKey);
+        cwdUserStatement.setString(7, userKey);
+        cwdUserStatement.addBatch();
+        if (((user + 1) % batchSize) == 0) {
+          appUserStatement.executeBatch();
+          flush(cwdUserStatement);
+        }
+      }
+      appUserStatement.executeBatch();
+      flush(cwdUserStatement);
+    }
+  }
+
+  private void insertWorklogs(final Connection connection) throws SQLException {
+    SplittableRandom random = new SplittableRandom(seed + 3);
+    long startMillis = toMillis(startDate);
+    long spreadMillis = TimeUnit.DAYS.toMillis(days);
+    long maxUpdateDelayMillis = TimeUnit.DAYS.toMillis(1);
+    try (PreparedStatement statement = connection.prepareStatement(
+        "INSERT INTO worklog (ID, ISSUEID, AUTHOR, WORKLOGBODY, CREATED, UPDATEAUTHOR, UPDATED,"
+            + " STARTDATE, TIMEWORKED) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+      for (long worklog = 0; worklog < worklogs; worklog++) {
+        String author = getUserKey(random.nextInt(users));
+        long startDateMillis = startMillis
+            + (random.nextLong(spreadMillis) / TimeUnit.MINUTES.toMillis(1)
+                * TimeUnit.MINUTES.toMillis(1));
+        long createdMillis = startDateMillis + random.nextLong(maxUpdateDelayMillis);
+        statement.setLong(1, FIRST_ID + worklog);
+        statement.setLong(2, getIssueId(random.nextInt(issues)));
+        statement.setString(3, author);
+        statement.setString(4, createComment(random));
+        statement.setTimestamp(5, new Timestamp(createdMillis));
+        statement.setString(6, author);
+        statement.setTimestamp(7, new Timestamp(createdMillis
+            + random.nextLong(maxUpdateDelayMillis)));
+        statement.setTimestamp(8, new Timestamp(startDateMillis));
+        statement.setLong(9, TimeUnit.MINUTES.toSeconds(15) * (1 + random.nextInt(16)));
+        statement.addBatch();
+        if (((worklog + 1) % batchSize) == 0) {
+          flush(statement);
+        }
+      }
+      flush(statement);
+    }
+  }
+
+  /**
+   * The number of the issues.
+   *
+   * @param issues
+   *          the number of the issues.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator issues(final int issues) {
+    this.issues = issues;
+    return this;
+  }
+
+  /**
+   * The number of the projects.
+   *
+   * @param projects
+   *          the number of the projects.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator projects(final int projects) {
+    this.projects = projects;
+    return this;
+  }
+
+  /**
+   * The seed of the random values.
+   *
+   * @param seed
+   *          the seed.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator seed(final long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * The first day of the start dates of the worklogs.
+   *
+   * @param startDate
+   *          the date in yyyy-MM-dd format.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator startDate(final String startDate) {
+    this.startDate = LocalDate.parse(startDate);
+    return this;
+  }
+
+  private long toMillis(final LocalDate date) {
+    return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+  }
+
+  /**
+   * The number of the users.
+   *
+   * @param users
+   *          the number of the users.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator users(final int users) {
+    this.users = users;
+    return this;
+  }
+
+  /**
+   * The number of the worklogs.
+   *
+   * @param worklogs
+   *          the number of the worklogs.
+   * @return this generator.
+   */
+  public WorklogDatasetGenerator worklogs(final long worklogs) {
+    this.worklogs = worklogs;
+    return this;
+  }
+}
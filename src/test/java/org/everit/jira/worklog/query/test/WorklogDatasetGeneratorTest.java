@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link WorklogDatasetGenerator}.
+ */
+public class WorklogDatasetGeneratorTest {
+
+  private static final int COMMENT_MAX_LENGTH = 100;
+
+  private static final int WORKLOGS = 2500;
+
+  private WorklogDatasetGenerator createGenerator(final long seed) {
+    return new WorklogDatasetGenerator()
+        .seed(seed)
+        .users(20)
+        .groups(3)
+        .projects(4)
+        .issues(50)
+        .worklogs(WORKLOGS)
+        .startDate("2016-01-01")
+        .days(31)
+        .commentLength(0.5, 20, COMMENT_MAX_LENGTH)
+        .batchSize(100);
+  }
+
+  private String generate(final String database, final WorklogDatasetGenerator generator)
+      throws SQLException {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + database);
+    dataSource.setUser("sa");
+    dataSource.setPassword("");
+    // The in-memory database is kept until the last connection is closed.
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      DatabaseSupport.createTables(dataSource);
+      generator.generate(dataSource);
+      try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), SUM(TIMEWORKED),"
+          + " SUM(ISSUEID), SUM(LENGTH(WORKLOGBODY)), MAX(LENGTH(WORKLOGBODY)),"
+          + " MIN(STARTDATE), MAX(STARTDATE) FROM worklog")) {
+        resultSet.next();
+        Assert.assertEquals(WORKLOGS, resultSet.getLong(1));
+        Assert.assertTrue(resultSet.getInt(5) <= COMMENT_MAX_LENGTH);
+        Assert.assertFalse(resultSet.getTimestamp(6)
+            .before(Timestamp.valueOf("2016-01-01 00:00:00")));
+        Assert.assertTrue(resultSet.getTimestamp(7)
+            .before(Timestamp.valueOf("2016-02-01 00:00:00")));
+        return resultSet.getLong(2) + "|" + resultSet.getLong(3) + "|" + resultSet.getLong(4);
+      } finally {
+        DatabaseSupport.dropTables(dataSource);
+      }
+    }
+  }
+
+  @Test
+  public void testGenerate() throws SQLException {
+    String checksum = generate("generator1", createGenerator(1));
+    Assert.assertEquals(checksum, generate("generator2", createGenerator(1)));
+    Assert.assertNotEquals(checksum, generate("generator3", createGenerator(2)));
+  }
+
+  @Test
+  public void testGroups() {
+    WorklogDatasetGenerator generator = createGenerator(1);
+    Assert.assertEquals(7, generator.getGroupUserKeys(0).size());
+    Assert.assertEquals(7, generator.getGroupUserKeys(1).size());
+    Assert.assertEquals(6, generator.getGroupUserKeys(2).size());
+    Assert.assertEquals("user-4@everit.biz", generator.getGroupUserKeys(1).get(1));
+  }
+}
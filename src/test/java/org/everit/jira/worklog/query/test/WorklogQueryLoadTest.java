@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.everit.jira.worklog.query.plugin.WorklogQueryResource;
+import org.everit.jira.worklog.query.plugin.admission.WorklogAdmissionController;
+import org.everit.jira.worklog.query.plugin.metrics.WorklogQueryMetrics;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.ofbiz.core.entity.config.DatasourceInfo;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.atlassian.jira.ofbiz.DefaultOfBizConnectionFactory;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.user.MockApplicationUser;
+import com.sun.jersey.api.container.ContainerFactory;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Load test of the {@link WorklogQueryResource} hosted in an embedded Jersey container on the
+ * mocked Jira components and an H2 database filled by the {@link WorklogDatasetGenerator}. The
+ * clients run a weighted mix of the dashboard queries concurrently, each client as a different
+ * user, and the throughput and the latency percentiles of every query are logged after the run.
+ * The queries rejected by the admission control are counted separately, any other failed query
+ * fails the test.
+ *
+ * <p>
+ * The test is skipped unless the <code>jwqp.loadTest</code> system property is true. The load is
+ * configured by the following system properties:
+ * <ul>
+ * <li><code>jwqp.loadTest.clients</code>: the number of the concurrent clients (default 50).</li>
+ * <li><code>jwqp.loadTest.warmupSeconds</code>: the time before the measurement (default
+ * 10).</li>
+ * <li><code>jwqp.loadTest.durationSeconds</code>: the time of the measurement (default 60).</li>
+ * <li><code>jwqp.loadTest.worklogs</code>: the number of the generated worklogs (default
+ * 100000).</li>
+ * <li><code>jwqp.loadTest.mix</code>: the weights of the queries (default
+ * <code>worklogs=4,worklogsSummary=2,worklogsByIssues=3,updatedWorklogs=1</code>).</li>
+ * </ul>
+ * For example: <code>mvn test -Dtest=WorklogQueryLoadTest -Djwqp.loadTest=true
+ * -Djwqp.loadTest.clients=100</code>.
+ */
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.security.*", "javax.xml.*", "org.xml.*", "org.w3c.*",
+    "com.sun.net.httpserver.*" })
+@PrepareForTest({ DefaultOfBizConnectionFactory.class, DatasourceInfo.class })
+public class WorklogQueryLoadTest {
+
+  /**
+   * The queries of the load with the names used in the mix. Every query reads a random 30 days
+   * window of the generated year.
+   */
+  private enum LoadQuery {
+
+    UPDATED_WORKLOGS("updatedWorklogs") {
+      @Override
+      String path(final SplittableRandom random, final WorklogDatasetGenerator generator) {
+        return "/find/updatedWorklogs?" + dateRange(random) + "&project="
+            + generator.getProjectKey(random.nextInt(generator.getProjectCount()));
+      }
+    },
+
+    WORKLOGS("worklogs") {
+      @Override
+      String path(final SplittableRandom random, final WorklogDatasetGenerator generator) {
+        return "/find/worklogs?" + dateRange(random) + "&user="
+            + generator.getUserKey(random.nextInt(generator.getUserCount()));
+      }
+    },
+
+    WORKLOGS_BY_ISSUES("worklogsByIssues") {
+      @Override
+      String path(final SplittableRandom random, final WorklogDatasetGenerator generator) {
+        return "/find/worklogsByIssues?" + dateRange(random) + "&group="
+            + generator.getGroupName(random.nextInt(generator.getGroupCount()))
+            + "&maxResults=50";
+      }
+    },
+
+    WORKLOGS_SUMMARY("worklogsSummary") {
+      @Override
+      String path(final SplittableRandom random, final WorklogDatasetGenerator generator) {
+        return "/find/worklogs?" + dateRange(random) + "&group="
+            + generator.getGroupName(random.nextInt(generator.getGroupCount()))
+            + "&summary=true";
+      }
+    };
+
+    private static String dateRange(final SplittableRandom random) {
+      LocalDate startDate = LocalDate.parse(START_DATE).plusDays(random.nextInt(DAYS - WINDOW));
+      return "startDate=" + startDate + "&endDate=" + startDate.plusDays(WINDOW - 1);
+    }
+
+    private static LoadQuery forName(final String name) {
+      for (LoadQuery query : values()) {
+        if (query.name.equals(name)) {
+          return query;
+        }
+      }
+      throw new IllegalArgumentException("Unknown query in the mix: " + name);
+    }
+
+    private final String name;
+
+    LoadQuery(final String name) {
+      this.name = name;
+    }
+
+    abstract String path(SplittableRandom random, WorklogDatasetGenerator generator);
+  }
+
+  /**
+   * The responses of a query. Not thread safe, every client collects its own statistics.
+   */
+  private static final class LoadStatistics {
+
+    private int count;
+
+    private int errors;
+
+    private long[] latencies = new long[1024];
+
+    private int rejected;
+
+    void add(final LoadStatistics other) {
+      for (int i = 0; i < other.count; i++) {
+        record(other.latencies[i]);
+      }
+      errors += other.errors;
+      rejected += other.rejected;
+    }
+
+    double percentileMillis(final long[] sortedLatencies, final double percentile) {
+      if (sortedLatencies.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+      return sortedLatencies[Math.max(0, index)] / NANOS_PER_MILLI;
+    }
+
+    void record(final long latencyNanos) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = latencyNanos;
+    }
+
+    void record(final int status, final long latencyNanos) {
+      if (status == TOO_MANY_REQUESTS) {
+        rejected++;
+      } else if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+        errors++;
+      } else {
+        record(latencyNanos);
+      }
+    }
+
+    String report(final String name) {
+      long[] sortedLatencies = Arrays.copyOf(latencies, count);
+      Arrays.sort(sortedLatencies);
+      return String.format(Locale.ENGLISH, REPORT_FORMAT, name, count,
+          count / (double) DURATION_SECONDS, errors, rejected,
+          percentileMillis(sortedLatencies, 0.5), percentileMillis(sortedLatencies, 0.95),
+          percentileMillis(sortedLatencies, 0.99), percentileMillis(sortedLatencies, 1));
+    }
+  }
+
+  private static final int CLIENTS = Integer.getInteger("jwqp.loadTest.clients", 50);
+
+  private static final String CONTEXT_PATH = "/jira-worklog-query";
+
+  private static final int DAYS = 365;
+
+  private static final int DURATION_SECONDS =
+      Integer.getInteger("jwqp.loadTest.durationSeconds", 60);
+
+  private static final ThreadLocal<ApplicationUser> LOGGED_IN_USER = new ThreadLocal<>();
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorklogQueryLoadTest.class);
+
+  private static final String MIX = System.getProperty("jwqp.loadTest.mix",
+      "worklogs=4,worklogsSummary=2,worklogsByIssues=3,updatedWorklogs=1");
+
+  private static final double NANOS_PER_MILLI = 1_000_000D;
+
+  private static final String REPORT_FORMAT =
+      "%-18s %9d %9.1f %7d %9d %9.1f %9.1f %9.1f %9.1f%n";
+
+  private static final String REPORT_HEADER = String.format(Locale.ENGLISH,
+      "%-18s %9s %9s %7s %9s %9s %9s %9s %9s%n", "query", "count", "req/s", "errors", "rejected",
+      "p50 ms", "p95 ms", "p99 ms", "max ms");
+
+  private static final long SEED = 20160101L;
+
+  private static final String START_DATE = "2016-01-01";
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private static final String USER_HEADER = "X-Load-Test-User";
+
+  private static final int WARMUP_SECONDS = Integer.getInteger("jwqp.loadTest.warmupSeconds", 10);
+
+  private static final int WINDOW = 30;
+
+  private static final int WORKLOGS = Integer.getInteger("jwqp.loadTest.worklogs", 100000);
+
+  private static final int WORKLOGS_PER_ISSUE = 20;
+
+  private static int send(final String uri, final String userKey) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection();
+    connection.setRequestProperty(USER_HEADER, userKey);
+    int status = connection.getResponseCode();
+    try (InputStream body = status < HttpURLConnection.HTTP_BAD_REQUEST
+        ? connection.getInputStream()
+        : connection.getErrorStream()) {
+      if (body != null) {
+        byte[] buffer = new byte[8192];
+        while (body.read(buffer) != -1) {
+          // drain the response, so the connection is kept alive
+        }
+      }
+    }
+    return status;
+  }
+
+  private JdbcDataSource dataSource;
+
+  private WorklogDatasetGenerator generator;
+
+  private HttpServer server;
+
+  private ExecutorService serverExecutor;
+
+  /**
+   * Stops the server and drops the database.
+   *
+   * @throws SQLException
+   *           if the database cannot be dropped.
+   */
+  @After
+  public void after() throws SQLException {
+    if (server != null) {
+      server.stop(0);
+      serverExecutor.shutdownNow();
+    }
+    if (dataSource != null) {
+      DatabaseSupport.dropDatabase(dataSource);
+    }
+  }
+
+  /**
+   * Generates the data, mocks the Jira components and starts the embedded server.
+   *
+   * @throws Exception
+   *           if the database or the server cannot be initialized.
+   */
+  @Before
+  public void before() throws Exception {
+    Assume.assumeTrue("Enable the load test with -Djwqp.loadTest=true",
+        Boolean.getBoolean("jwqp.loadTest"));
+    System.setProperty("user.timezone", "UTC");
+    TimeZone.setDefault(null);
+
+    generator = new WorklogDatasetGenerator()
+        .seed(SEED)
+        .users(CLIENTS * 10)
+        .groups(10)
+        .projects(50)
+        .issues(Math.max(1, WORKLOGS / WORKLOGS_PER_ISSUE))
+        .worklogs(WORKLOGS)
+        .startDate(START_DATE)
+        .days(DAYS);
+    dataSource = DatabaseSupport.generatedDatabase("loadtest", generator);
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("CREATE INDEX worklog_issue ON worklog (ISSUEID)");
+      statement.execute("CREATE INDEX worklog_author ON worklog (AUTHOR)");
+    }
+
+    mockDefaultOfBizConnectionFactory();
+    MockJiraComponents.init(generator, LOGGED_IN_USER::get);
+
+    DefaultResourceConfig resourceConfig = new DefaultResourceConfig();
+    resourceConfig.getSingletons().add(new JacksonJaxbJsonProvider());
+    resourceConfig.getSingletons().add(new WorklogQueryResource(null, null, null, null,
+        new WorklogAdmissionController(), new WorklogQueryMetrics()));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(CONTEXT_PATH,
+        ContainerFactory.createContainer(HttpHandler.class, resourceConfig))
+        .getFilters().add(new Filter() {
+
+          @Override
+          public String description() {
+            return "Logs in the user of the " + USER_HEADER + " header";
+          }
+
+          @Override
+          public void doFilter(final HttpExchange exchange, final Chain chain)
+              throws IOException {
+            LOGGED_IN_USER.set(
+                new MockApplicationUser(exchange.getRequestHeaders().getFirst(USER_HEADER)));
+            try {
+              chain.doFilter(exchange);
+            } finally {
+              LOGGED_IN_USER.remove();
+            }
+          }
+        });
+    serverExecutor = Executors.newFixedThreadPool(CLIENTS);
+    server.setExecutor(serverExecutor);
+    server.start();
+  }
+
+  private void mockDefaultOfBizConnectionFactory() throws SQLException {
+    PowerMockito.mockStatic(DefaultOfBizConnectionFactory.class);
+    DefaultOfBizConnectionFactory defaultOfBizConnectionFactory =
+        Mockito.mock(DefaultOfBizConnectionFactory.class);
+    PowerMockito.when(DefaultOfBizConnectionFactory.getInstance())
+        .thenReturn(defaultOfBizConnectionFactory);
+
+    PowerMockito.mockStatic(DatasourceInfo.class);
+    DatasourceInfo datasourceInfo = Mockito.mock(DatasourceInfo.class);
+    Mockito.when(defaultOfBizConnectionFactory.getDatasourceInfo()).thenReturn(datasourceInfo);
+    Mockito.when(datasourceInfo.getSchemaName()).thenReturn("PUBLIC");
+    Mockito.when(defaultOfBizConnectionFactory.getConnection())
+        .thenAnswer(invocation -> dataSource.getConnection());
+  }
+
+  private LoadQuery[] parseMix() {
+    List<LoadQuery> mix = new ArrayList<>();
+    for (String entry : MIX.split(",")) {
+      String[] nameAndWeight = entry.trim().split("=");
+      LoadQuery query = LoadQuery.forName(nameAndWeight[0].trim());
+      int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1].trim()) : 1;
+      for (int i = 0; i < weight; i++) {
+        mix.add(query);
+      }
+    }
+    return mix.toArray(new LoadQuery[mix.size()]);
+  }
+
+  private Map<LoadQuery, LoadStatistics> runClient(final int client, final LoadQuery[] mix,
+      final long measurementStart, final long end) {
+    String baseUri = "http://" + server.getAddress().getHostString() + ":"
+        + server.getAddress().getPort() + CONTEXT_PATH;
+    String userKey = generator.getUserKey(client % generator.getUserCount());
+    SplittableRandom random = new SplittableRandom(SEED + client);
+    Map<LoadQuery, LoadStatistics> statistics = new EnumMap<>(LoadQuery.class);
+    for (LoadQuery query : LoadQuery.values()) {
+      statistics.put(query, new LoadStatistics());
+    }
+    try {
+      long start = System.nanoTime();
+      while (start < end) {
+        LoadQuery query = mix[random.nextInt(mix.length)];
+        int status = send(baseUri + query.path(random, generator), userKey);
+        long finish = System.nanoTime();
+        if (start >= measurementStart) {
+          statistics.get(query).record(status, finish - start);
+        }
+        start = finish;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return statistics;
+  }
+
+  @Test
+  public void testMixedLoad() throws InterruptedException, ExecutionException {
+    LoadQuery[] mix = parseMix();
+    long measurementStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+    long end = measurementStart + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+    ExecutorService clientExecutor = Executors.newFixedThreadPool(CLIENTS);
+    List<Future<Map<LoadQuery, LoadStatistics>>> clients = new ArrayList<>();
+    try {
+      for (int client = 0; client < CLIENTS; client++) {
+        int clientIndex = client;
+        clients.add(clientExecutor
+            .submit(() -> runClient(clientIndex, mix, measurementStart, end)));
+      }
+      Map<LoadQuery, LoadStatistics> statistics = new EnumMap<>(LoadQuery.class);
+      for (LoadQuery query : LoadQuery.values()) {
+        statistics.put(query, new LoadStatistics());
+      }
+      for (Future<Map<LoadQuery, LoadStatistics>> client : clients) {
+        for (Map.Entry<LoadQuery, LoadStatistics> entry : client.get().entrySet()) {
+          statistics.get(entry.getKey()).add(entry.getValue());
+        }
+      }
+
+      LoadStatistics total = new LoadStatistics();
+      StringBuilder report = new StringBuilder(String.format(Locale.ENGLISH,
+          "%d clients, %d worklogs, %d s measured after %d s warmup%n", CLIENTS, WORKLOGS,
+          DURATION_SECONDS, WARMUP_SECONDS)).append(REPORT_HEADER);
+      for (LoadQuery query : LoadQuery.values()) {
+        report.append(statistics.get(query).report(query.name));
+        total.add(statistics.get(query));
+      }
+      report.append(total.report("total"));
+      LOGGER.info("Load test report:{}{}", System.lineSeparator(), report);
+
+      Assert.assertEquals("Failed queries", 0, total.errors);
+      Assert.assertTrue("No query completed", total.count > 0);
+    } finally {
+      clientExecutor.shutdownNow();
+    }
+  }
+}
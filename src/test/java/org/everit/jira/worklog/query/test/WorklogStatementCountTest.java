@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2013 Everit Kft. (http://www.everit.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.everit.jira.worklog.query.test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.everit.jira.worklog.query.plugin.FindWorklogsByIssuesParam;
+import org.everit.jira.worklog.query.plugin.WorklogQueryCoreImpl;
+import org.everit.jira.worklog.query.test.DatabaseSupport.DiscardingOutputStream;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.atlassian.jira.rest.api.util.StringList;
+
+/**
+ * Checks that the number of the SQL statements and round trips of the queries does not depend on
+ * the number of the users, issues and worklogs, so per-row or per-issue lookups cannot slip into
+ * the queries. Every query is run on a small and on a four times larger generated dataset through
+ * a {@link CountingDataSource}.
+ */
+public class WorklogStatementCountTest {
+
+  /**
+   * A query of the test.
+   */
+  @FunctionalInterface
+  private interface CountedQuery {
+
+    void run(WorklogQueryCoreImpl worklogQueryCore, WorklogDatasetGenerator generator)
+        throws IOException;
+  }
+
+  private static final String END_DATE = "2016-12-31";
+
+  private static final int LARGE_SCALE = 4;
+
+  private static final int SMALL_SCALE = 1;
+
+  private static final String START_DATE = "2016-01-01";
+
+  private static List<StringList> fields(final String... fields) {
+    List<StringList> result = new ArrayList<>();
+    result.add(StringList.fromList(fields));
+    return result;
+  }
+
+  private static void write(final Response response) throws IOException {
+    Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    ((StreamingOutput) response.getEntity()).write(new DiscardingOutputStream());
+  }
+
+  private void assertConstantStatementCount(final String name, final CountedQuery query)
+      throws SQLException, IOException {
+    CountingDataSource small = count(SMALL_SCALE, query);
+    CountingDataSource large = count(LARGE_SCALE, query);
+    String message = name + " statements on the small dataset: " + small.getStatements()
+        + ", on the large dataset: " + large.getStatements();
+    Assert.assertTrue(message, small.getStatementCount() > 0);
+    Assert.assertEquals(message, small.getStatementCount(), large.getStatementCount());
+    Assert.assertEquals(message, small.getRoundTripCount(), large.getRoundTripCount());
+    Assert.assertEquals(message, small.getConnectionCount(), large.getConnectionCount());
+  }
+
+  @Before
+  public void before() {
+    System.setProperty("user.timezone", "UTC");
+    TimeZone.setDefault(null);
+  }
+
+  /**
+   * Runs the query on a generated dataset of the given scale. The query is run once before the
+   * counting, so the one-time statements of the first query are not counted.
+   *
+   * @param scale
+   *          the multiplier of the number of the generated users, projects, issues and worklogs.
+   * @param query
+   *          the query.
+   * @return the data source with the counters of the second run.
+   */
+  private CountingDataSource count(final int scale, final CountedQuery query)
+      throws SQLException, IOException {
+    WorklogDatasetGenerator generator = new WorklogDatasetGenerator()
+        .users(scale * 50)
+        .groups(1)
+        .projects(scale * 5)
+        .issues(scale * 100)
+        .worklogs(scale * 2000)
+        .startDate(START_DATE)
+        .days(366);
+    JdbcDataSource h2DataSource =
+        DatabaseSupport.generatedDatabase("statements-" + scale, generator);
+    try {
+      MockJiraComponents.init(generator);
+
+      CountingDataSource dataSource = new CountingDataSource(h2DataSource);
+      WorklogQueryCoreImpl worklogQueryCore =
+          new WorklogQueryCoreImpl(new H2QuerydslSupport(dataSource));
+      query.run(worklogQueryCore, generator);
+      dataSource.reset();
+      query.run(worklogQueryCore, generator);
+      return dataSource;
+    } finally {
+      DatabaseSupport.dropDatabase(h2DataSource);
+    }
+  }
+
+  @Test
+  public void testFindUpdatedWorklogsStatementCount() throws SQLException, IOException {
+    assertConstantStatementCount("findUpdatedWorklogs",
+        (worklogQueryCore, generator) -> write(worklogQueryCore.findUpdatedWorklogs(START_DATE,
+            END_DATE, "", "", generator.getGroupName(0), "", fields("commentBody"), null)));
+  }
+
+  @Test
+  public void testFindWorklogsByIssuesStatementCount() throws SQLException, IOException {
+    assertConstantStatementCount("findWorklogsByIssues",
+        (worklogQueryCore, generator) -> Assert.assertEquals(generator.getIssueCount(),
+            worklogQueryCore.findWorklogsByIssues(new FindWorklogsByIssuesParam()
+                .startDate(START_DATE)
+                .endDate(END_DATE)
+                .group(generator.getGroupName(0))
+                .jql("")
+                .startAt(0)
+                .maxResults(generator.getIssueCount())
+                .fields(fields("emptyFieldValue")))
+                .getIssues().size()));
+  }
+
+  @Test
+  public void testFindWorklogsStatementCount() throws SQLException, IOException {
+    assertConstantStatementCount("findWorklogs",
+        (worklogQueryCore, generator) -> write(worklogQueryCore.findWorklogs(START_DATE,
+            END_DATE, "", "", generator.getGroupName(0), "", fields("commentBody", "updated"),
+            null)));
+  }
+}